@@ -0,0 +1,257 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reads the items of a batch manifest.
+ *
+ * <p>
+ * Each line of the manifest describes an item with the options for processing
+ * a single source, separated by whitespace, so that the line looks like the
+ * command line. An argument with whitespace can be enclosed in double quotes;
+ * within the quotes, a backslash escapes a double quote or a backslash. Empty
+ * lines and lines starting with {@code #} are ignored.
+ *
+ * <p>
+ * The manifest is read lazily, item by item, so that the items can be
+ * processed while the rest of the manifest is still coming.
+ */
+final class BatchManifest {
+
+    /** Options with an argument allowed in an item. */
+    private static final Set<String> OPTIONS_WITH_ARGUMENT = options("-pet", "-cache", "-bnd", "-properties");
+    /** Options without any argument allowed in an item. */
+    private static final Set<String> OPTIONS_WITHOUT_ARGUMENT = options("-bundle-version", "-report", "-restore");
+
+    /** Source of the manifest lines. */
+    private final BufferedReader reader;
+    /** Number of the last line read. */
+    private int line;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param source
+     *            the source of the manifest lines. It must not be
+     *            {@code null}.
+     */
+    public BatchManifest(BufferedReader source) {
+        reader = Objects.requireNonNull(source);
+    }
+
+    /**
+     * Reads the next item.
+     *
+     * @return the next item, or {@code null} if no more items are available
+     *
+     * @throws IOException
+     *             if the manifest could not be read
+     */
+    public Item next() throws IOException {
+        for (String text; (text = reader.readLine()) != null;) {
+            ++line;
+
+            final String content = text.trim();
+            if (content.isEmpty() || content.startsWith("#")) {
+                continue;
+            }
+
+            try {
+                return new Item(line, validate(tokenize(content)), null);
+            } catch (IllegalArgumentException e) {
+                return new Item(line, Collections.emptyList(), e.getMessage());
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Splits a line into the arguments.
+     *
+     * @param text
+     *            the line to split. It must not be {@code null}.
+     *
+     * @return the arguments
+     *
+     * @throws IllegalArgumentException
+     *             if the line is not valid
+     */
+    static List<String> tokenize(String text) {
+        final List<String> result = new ArrayList<>();
+        final StringBuilder current = new StringBuilder();
+        boolean argument = false; // Distinguishes an empty quoted argument
+        boolean quoted = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+
+            if (quoted) {
+                if (c == '"') {
+                    quoted = false;
+                } else if ((c == '\\') && (i + 1 < text.length()) && ((text.charAt(i + 1) == '"') || (text.charAt(i + 1) == '\\'))) {
+                    current.append(text.charAt(++i));
+                } else {
+                    current.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (argument) {
+                    result.add(current.toString());
+                    current.setLength(0);
+                    argument = false;
+                }
+            } else if (c == '"') {
+                argument = true;
+                quoted = true;
+            } else {
+                argument = true;
+                current.append(c);
+            }
+        }
+
+        if (quoted) {
+            throw new IllegalArgumentException("Missing closing quote.");
+        }
+
+        if (argument) {
+            result.add(current.toString());
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks that the arguments contain only the options allowed in an item.
+     *
+     * @param arguments
+     *            the arguments to check. It must not be {@code null}.
+     *
+     * @return the arguments
+     *
+     * @throws IllegalArgumentException
+     *             if the arguments are not valid
+     */
+    private static List<String> validate(List<String> arguments) {
+        for (Iterator<String> it = arguments.iterator(); it.hasNext();) {
+            final String option = it.next();
+
+            if (OPTIONS_WITH_ARGUMENT.contains(option)) {
+                if (!it.hasNext()) {
+                    throw new IllegalArgumentException(String.format("Missing argument for option '%s'.", option));
+                }
+
+                it.next();
+                continue;
+            }
+
+            if (!OPTIONS_WITHOUT_ARGUMENT.contains(option)) {
+                throw new IllegalArgumentException(String.format("Option '%s' can't be used in a batch item.", option));
+            }
+        }
+
+        return arguments;
+    }
+
+    /**
+     * Makes a set of options.
+     *
+     * @param options
+     *            the options. It must not be {@code null}.
+     *
+     * @return the set
+     */
+    private static Set<String> options(String... options) {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(options)));
+    }
+
+    /**
+     * Represents an item of the manifest.
+     */
+    static final class Item {
+
+        /** Number of the line with the item. */
+        private final int line;
+        /** Arguments of the item. */
+        private final List<String> arguments;
+        /** Error of the item if the line is not valid. */
+        private final String error;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param lineNumber
+         *            the number of the line with the item
+         * @param itemArguments
+         *            the arguments of the item. It must not be {@code null}.
+         * @param itemError
+         *            the error of the item, or {@code null} if the line is
+         *            valid
+         */
+        Item(int lineNumber, List<String> itemArguments, String itemError) {
+            arguments = Collections.unmodifiableList(itemArguments);
+            line = lineNumber;
+            error = itemError;
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return String.format("Item[line=%d, arguments=%s]", line, arguments);
+        }
+
+        /**
+         * Returns the number of the line with the item.
+         *
+         * @return the number of the line with the item
+         */
+        public int line() {
+            return line;
+        }
+
+        /**
+         * Returns the arguments of the item.
+         *
+         * @return the arguments of the item
+         */
+        public List<String> arguments() {
+            return arguments;
+        }
+
+        /**
+         * Returns the error of the item.
+         *
+         * @return the error of the item if the line is not valid
+         */
+        public Optional<String> error() {
+            return Optional.ofNullable(error);
+        }
+    }
+}
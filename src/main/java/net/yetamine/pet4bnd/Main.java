@@ -17,29 +17,52 @@
 package net.yetamine.pet4bnd;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import net.yetamine.pet4bnd.daemon.Daemon;
+import net.yetamine.pet4bnd.daemon.DaemonClient;
+import net.yetamine.pet4bnd.daemon.DaemonCache;
 import net.yetamine.pet4bnd.feedback.Feedback;
 import net.yetamine.pet4bnd.format.Format2Bnd;
 import net.yetamine.pet4bnd.format.Format2Map;
+import net.yetamine.pet4bnd.model.Bundle;
 import net.yetamine.pet4bnd.model.LoggingResolver;
+import net.yetamine.pet4bnd.model.ResolvedBundle;
 import net.yetamine.pet4bnd.model.VersionResolver;
 import net.yetamine.pet4bnd.model.format.PetFormat;
 import net.yetamine.pet4bnd.model.format.PetParser;
+import net.yetamine.pet4bnd.model.format.PetSnapshot;
+import net.yetamine.pet4bnd.pom.PomUpdate;
+import net.yetamine.pet4bnd.support.PathLocks;
 import net.yetamine.pet4bnd.support.Resource;
 import net.yetamine.pet4bnd.version.Version;
 
@@ -56,6 +79,8 @@ public final class Main {
     private static final int EXIT_INPUT = 2;
     /** Fail due to an output error. */
     private static final int EXIT_OUTPUT = 3;
+    /** Fail due to a failed communication with the daemon. */
+    private static final int EXIT_DAEMON = 4;
 
     /** Resource with the HELP content. */
     private static final Resource RESOURCE_HELP = new Resource("/module-resources/pet4bnd-help.txt");
@@ -97,16 +122,47 @@ public final class Main {
      *             if something goes wrong
      */
     public static int main(List<String> args) throws Exception {
+        return run(args, System.out, System.err, null, Context.COMMAND_LINE, null);
+    }
+
+    /**
+     * Executes the command line arguments.
+     *
+     * @param args
+     *            the command line arguments. It must not be {@code null}.
+     * @param out
+     *            the standard output stream. It must not be {@code null}.
+     * @param err
+     *            the standard error stream. It must not be {@code null}.
+     * @param directory
+     *            the working directory to resolve relative paths against, or
+     *            {@code null} for using the paths as they are
+     * @param context
+     *            the context of the execution. It must not be {@code null}.
+     * @param definitions
+     *            the cache of the definitions when running in a daemon or in
+     *            a batch, or {@code null} otherwise
+     *
+     * @return the return value
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    private static int run(List<String> args, PrintStream out, PrintStream err, Path directory, Context context, DaemonCache definitions) throws Exception {
         if (args.isEmpty()) {
-            System.err.println("Missing arguments. Use --help to display details.");
+            err.println("Missing arguments. Use --help to display details.");
             return EXIT_SYNTAX;
         }
 
         if ((args.size() == 1) && isHelpOption(args.get(0))) {
-            printHelpContent();
+            printHelpContent(out);
             return EXIT_SUCCESS;
         }
 
+        if ("-connect".equals(args.get(0)) && (context == Context.COMMAND_LINE)) { // Forward the rest to the daemon
+            return connect(args, out, err, directory);
+        }
+
         // Option properties
         boolean bundleVersion = false;
         boolean restore = false;
@@ -115,8 +171,14 @@ public final class Main {
         boolean debug = false;
 
         Path petFile = null;
+        Path cacheFile = null;
         Path bndFile = null;
         Path propertiesFile = null;
+        Path pomRoot = null;
+        boolean snapshot = false;
+        Path daemonFile = null;
+        boolean batch = false;
+        Path batchFile = null;
 
         // Parse arguments for the tool instance
         for (Iterator<String> it = args.iterator(); it.hasNext();) {
@@ -128,24 +190,59 @@ public final class Main {
                 }
 
                 switch (option) {
+                    case "-batch":
+                        if (context == Context.BATCH_ITEM) {
+                            throw new IllegalArgumentException(context.unavailable(option));
+                        }
+
+                        final String manifest = it.next();
+                        batchFile = "-".equals(manifest) ? null : path(directory, manifest);
+                        batch = true;
+                        break;
+
                     case "-bundle-version":
                         bundleVersion = true;
                         break;
 
+                    case "-connect":
+                        if (context != Context.COMMAND_LINE) {
+                            throw new IllegalArgumentException(context.unavailable(option));
+                        }
+
+                        throw new IllegalArgumentException("The -connect option must be the first option.");
+
+                    case "-daemon":
+                        daemonFile = path(directory, it.next());
+                        break;
+
                     case "-debug":
                         debug = true;
                         break;
 
                     case "-pet":
-                        petFile = Paths.get(it.next());
+                        petFile = path(directory, it.next());
+                        break;
+
+                    case "-cache":
+                        cacheFile = path(directory, it.next());
                         break;
 
                     case "-bnd":
-                        bndFile = Paths.get(it.next());
+                        bndFile = path(directory, it.next());
                         break;
 
                     case "-properties":
-                        propertiesFile = Paths.get(it.next());
+                        propertiesFile = path(directory, it.next());
+                        break;
+
+                    case "-refresh":
+                        pomRoot = path(directory, it.next());
+                        snapshot = true;
+                        break;
+
+                    case "-release":
+                        pomRoot = path(directory, it.next());
+                        snapshot = false;
                         break;
 
                     case "-report":
@@ -164,88 +261,399 @@ public final class Main {
                         throw new IllegalArgumentException(String.format("Unknown option '%s'.", option));
                 }
             } catch (InvalidPathException e) {
-                System.err.format("Unable to convert the argument to a file path.%n%s%n", e.getMessage());
+                err.format("Unable to convert the argument to a file path.%n%s%n", e.getMessage());
                 return EXIT_SYNTAX;
             } catch (NoSuchElementException e) {
-                System.err.println(String.format("Missing argument for option '%s'.", option));
+                err.println(String.format("Missing argument for option '%s'.", option));
                 return EXIT_SYNTAX;
             } catch (IllegalArgumentException e) {
-                System.err.println(e.getMessage());
+                err.println(e.getMessage());
                 return EXIT_SYNTAX;
             }
         }
 
-        final Feedback feedback = newFeedback(debug);
-        final PetFormat description;
+        final Feedback feedback = newFeedback(debug, err);
 
-        try { // Load the source
-            if (petFile == null) {
-                feedback.warn("No source file specified, trying to use the default.");
-                petFile = DEFAULT_SOURCE;
+        if (daemonFile != null) { // Serve the requests of the clients instead
+            if (context != Context.COMMAND_LINE) {
+                err.println(context.unavailable("-daemon"));
+                return EXIT_SYNTAX;
             }
 
-            feedback.info(String.format("Loading source file: %s", petFile));
-            description = description(petFile, feedback);
-        } catch (NoSuchFileException e) {
-            feedback.fail("Missing source file.");
-            return EXIT_INPUT;
+            if (args.size() != 2) {
+                err.println("The -daemon option can't be combined with other options.");
+                return EXIT_SYNTAX;
+            }
+
+            return serve(daemonFile, feedback);
+        }
+
+        if (batch) { // Process the items of the manifest instead of a single source
+            if (bundleVersion || restore || report || (petFile != null) || (cacheFile != null) || (bndFile != null) || (propertiesFile != null) || (pomRoot != null)) {
+                err.println("The -batch option can be combined only with -debug and -verbose.");
+                return EXIT_SYNTAX;
+            }
+
+            final List<String> options = new ArrayList<>();
+            if (debug) {
+                options.add("-debug");
+            }
+
+            if (verbose) {
+                options.add("-verbose");
+            }
+
+            if (batchFile == null) {
+                if (context != Context.COMMAND_LINE) {
+                    err.format("The batch manifest can't be read from the standard input %s.%n", context.description());
+                    return EXIT_SYNTAX;
+                }
+
+                final BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                return batch(new BatchManifest(reader), options, out, err, directory, new DaemonCache(), feedback);
+            }
+
+            feedback.info(String.format("Loading batch manifest: %s", batchFile));
+            try (BufferedReader reader = Files.newBufferedReader(batchFile, StandardCharsets.UTF_8)) {
+                final DaemonCache cache = (definitions != null) ? definitions : new DaemonCache();
+                return batch(new BatchManifest(reader), options, out, err, directory, cache, feedback);
+            } catch (NoSuchFileException e) {
+                feedback.fail("Missing batch manifest.");
+                return EXIT_INPUT;
+            } catch (IOException e) {
+                feedback.fail(e);
+                return EXIT_INPUT;
+            }
+        }
+
+        if (pomRoot != null) { // Update the POMs instead of processing a single source
+            if (bundleVersion || restore || report || (petFile != null) || (cacheFile != null) || (bndFile != null) || (propertiesFile != null)) {
+                err.println("The -release and -refresh options can be combined only with -debug and -verbose.");
+                return EXIT_SYNTAX;
+            }
+
+            return updatePoms(pomRoot, snapshot, verbose, feedback);
+        }
+
+        if (petFile == null) {
+            feedback.warn("No source file specified, trying to use the default.");
+            petFile = (directory != null) ? directory.resolve(DEFAULT_SOURCE) : DEFAULT_SOURCE;
+        }
+
+        // Keep concurrent daemon requests and batch items off the files meanwhile
+        final List<Path> writing = Stream.of(cacheFile, bndFile, propertiesFile, restore ? petFile : null).filter(Objects::nonNull).collect(Collectors.toList());
+        final PathLocks.Hold hold = PathLocks.locking(Collections.singleton(petFile), writing);
+        try {
+            final DaemonCache.Lookup lookup;
+            final Optional<ResolvedBundle> cached;
+            final PetFormat description;
+
+            try { // Load the source
+                feedback.info(String.format("Loading source file: %s", petFile));
+                lookup = ((definitions != null) && !restore) ? definitions.lookup(petFile) : null;
+                cached = (lookup != null) ? lookup.value() : Optional.empty();
+                description = cached.isPresent() ? null : description(petFile, feedback, restore, cacheFile, lookup);
+            } catch (NoSuchFileException e) {
+                feedback.fail("Missing source file.");
+                return EXIT_INPUT;
+            } catch (IOException e) {
+                feedback.fail(e);
+                return EXIT_INPUT;
+            }
+
+            final Bundle definition;
+            if (cached.isPresent()) {
+                feedback.info("Using the cached resolution of the source file.");
+                definition = cached.get();
+            } else {
+                final VersionResolver resolver = new LoggingResolver(description, feedback::fail);
+                if (!resolver.resolve().test()) { // Resolve the versions and check they are valid
+                    feedback.fail("One or more version constraints were violated.");
+                    return EXIT_INPUT;
+                }
+
+                if (lookup != null) {
+                    lookup.store(ResolvedBundle.copyOf(description));
+                }
+
+                definition = description;
+            }
+
+            try { // Produce the output
+                final Version version = definition.version().resolution();
+
+                if (bndFile != null) {
+                    feedback.info(String.format("Generating bnd file: %s", bndFile));
+                    final Format2Bnd format = new Format2Bnd(definition, bundleVersion);
+                    format.store(bndFile);
+
+                    if (verbose) {
+                        feedback.info("Package exports:");
+                        format.exports().forEach(feedback::info);
+                        feedback.info(""); // Empty line
+                    }
+                }
+
+                if (propertiesFile != null) {
+                    feedback.info(String.format("Generating properties file: %s", propertiesFile));
+                    final Format2Map format = new Format2Map(definition);
+                    format.store(propertiesFile);
+
+                    if (verbose) { // Dump the result
+                        feedback.info("Generated properties:");
+                        format.content().forEach((n, v) -> feedback.info(String.format("%s = %s", n, v)));
+                        feedback.info(""); // Empty line
+                    }
+                }
+
+                if (restore) {
+                    feedback.info("Restoring baselines and updating the source file.");
+                    description.restore();
+                    description.store(petFile);
+
+                    if (definitions != null) {
+                        definitions.invalidate(petFile);
+                    }
+                }
+
+                if (report) {
+                    feedback.info("Dumping the target bundle version.");
+                    out.println(version);
+                }
+            } catch (IOException e) {
+                feedback.fail(e);
+                return EXIT_OUTPUT;
+            }
+
+            feedback.info("Done.");
+            return EXIT_SUCCESS;
+        } finally {
+            hold.close();
+        }
+    }
+
+    /**
+     * Updates the versions of all POMs under the given directory.
+     *
+     * @param root
+     *            the root directory. It must not be {@code null}.
+     * @param snapshot
+     *            {@code true} for updating to the snapshot versions,
+     *            {@code false} for updating to the release versions
+     * @param verbose
+     *            {@code true} if all details should be printed
+     * @param feedback
+     *            the feedback reporting interface. It must not be {@code null}.
+     *
+     * @return the return value
+     */
+    private static int updatePoms(Path root, boolean snapshot, boolean verbose, Feedback feedback) {
+        final PomUpdate update;
+
+        try { // Prepare the update completely before changing anything
+            feedback.info(String.format("Discovering POM files: %s", root));
+            final Map<Path, Optional<Path>> modules = PomUpdate.discover(root);
+            feedback.info(String.format("Preparing the update of %d POM files.", modules.size()));
+            update = PomUpdate.prepare(modules, snapshot, feedback);
         } catch (IOException e) {
             feedback.fail(e);
             return EXIT_INPUT;
         }
 
-        final VersionResolver resolver = new LoggingResolver(description, feedback::fail);
-        if (!resolver.resolve().test()) { // Resolve the versions and check they are valid
-            feedback.fail("One or more version constraints were violated.");
-            return EXIT_INPUT;
+        if (verbose) {
+            update.versions().forEach((pom, version) -> feedback.info(String.format("Target version %s: %s", version, pom)));
         }
 
-        try { // Produce the output
-            final Version version = description.version().resolution();
+        try {
+            update.changes().forEach(pom -> feedback.info(String.format("Updating POM file: %s", pom)));
+            update.commit();
+        } catch (IOException e) {
+            feedback.fail(e);
+            return EXIT_OUTPUT;
+        }
 
-            if (bndFile != null) {
-                feedback.info(String.format("Generating bnd file: %s", bndFile));
-                final Format2Bnd format = new Format2Bnd(description, bundleVersion);
-                format.store(bndFile);
+        feedback.info("Done.");
+        return EXIT_SUCCESS;
+    }
 
-                if (verbose) {
-                    feedback.info("Package exports:");
-                    format.exports().forEach(feedback::info);
-                    feedback.info(""); // Empty line
+    /**
+     * Processes the items of a batch manifest.
+     *
+     * <p>
+     * The items are processed concurrently on a bounded pool, so that reading,
+     * parsing and resolving a source and writing the outputs of an item may
+     * overlap with other items and with reading the rest of the manifest. The
+     * output of each item is buffered and printed when the item is done, in
+     * the order of the manifest. The result is the worst exit code of all
+     * items.
+     *
+     * @param manifest
+     *            the manifest to process. It must not be {@code null}.
+     * @param options
+     *            the options for all items. It must not be {@code null}.
+     * @param out
+     *            the standard output stream. It must not be {@code null}.
+     * @param err
+     *            the standard error stream. It must not be {@code null}.
+     * @param directory
+     *            the working directory to resolve relative paths against, or
+     *            {@code null} for using the paths as they are
+     * @param definitions
+     *            the cache of the definitions. It must not be {@code null}.
+     * @param feedback
+     *            the feedback reporting interface. It must not be {@code null}.
+     *
+     * @return the return value
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    private static int batch(BatchManifest manifest, List<String> options, PrintStream out, PrintStream err, Path directory, DaemonCache definitions, Feedback feedback) throws Exception {
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final int window = threads * 2; // Keep all threads busy, but limit the buffered output
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final Deque<BatchTask> pending = new ArrayDeque<>(window);
+        int status = EXIT_SUCCESS;
+        int failures = 0;
+        int items = 0;
+
+        try {
+            for (;;) {
+                final BatchManifest.Item item;
+
+                try {
+                    item = manifest.next();
+                } catch (IOException e) {
+                    feedback.fail(e);
+                    status = EXIT_INPUT;
+                    break;
                 }
-            }
 
-            if (propertiesFile != null) {
-                feedback.info(String.format("Generating properties file: %s", propertiesFile));
-                final Format2Map format = new Format2Map(description);
-                format.store(propertiesFile);
+                if (item == null) {
+                    break;
+                }
 
-                if (verbose) { // Dump the result
-                    feedback.info("Generated properties:");
-                    format.content().forEach((n, v) -> feedback.info(String.format("%s = %s", n, v)));
-                    feedback.info(""); // Empty line
+                if (pending.size() == window) {
+                    final int result = pending.removeFirst().finish(out, err, feedback);
+                    failures += (result != EXIT_SUCCESS) ? 1 : 0;
+                    status = Math.max(status, result);
                 }
-            }
 
-            if (restore) {
-                feedback.info("Restoring baselines and updating the source file.");
-                description.restore();
-                description.store(petFile);
+                final List<String> arguments = new ArrayList<>(options);
+                arguments.addAll(item.arguments());
+                pending.addLast(new BatchTask(item, executor, (o, e) -> run(arguments, o, e, directory, Context.BATCH_ITEM, definitions)));
+                ++items;
             }
 
-            if (report) {
-                feedback.info("Dumping the target bundle version.");
-                System.out.println(version);
+            while (!pending.isEmpty()) {
+                final int result = pending.removeFirst().finish(out, err, feedback);
+                failures += (result != EXIT_SUCCESS) ? 1 : 0;
+                status = Math.max(status, result);
             }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        feedback.info(String.format("Processed %d batch items, %d failed.", items, failures));
+        return status;
+    }
+
+    /**
+     * Runs the daemon until the process terminates.
+     *
+     * @param descriptor
+     *            the path of the daemon descriptor. It must not be
+     *            {@code null}.
+     * @param feedback
+     *            the feedback reporting interface. It must not be {@code null}.
+     *
+     * @return the return value
+     */
+    private static int serve(Path descriptor, Feedback feedback) {
+        final Daemon daemon;
+
+        try {
+            daemon = Daemon.start(descriptor, Runtime.getRuntime().availableProcessors(), request -> {
+                return run(request.arguments(), request.out(), request.err(), request.directory(), Context.DAEMON_REQUEST, request.definitions());
+            });
         } catch (IOException e) {
             feedback.fail(e);
             return EXIT_OUTPUT;
         }
 
-        feedback.info("Done.");
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+        feedback.info(String.format("Daemon listening on port %d: %s", daemon.port(), daemon.descriptor()));
+
+        try {
+            daemon.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            daemon.close();
+        }
+
+        feedback.info(String.format("Daemon closed: %s", daemon.statistics()));
         return EXIT_SUCCESS;
     }
 
+    /**
+     * Forwards the arguments following the daemon descriptor to the daemon.
+     *
+     * @param args
+     *            the command line arguments, starting with the option and the
+     *            daemon descriptor. It must not be {@code null}.
+     * @param out
+     *            the standard output stream. It must not be {@code null}.
+     * @param err
+     *            the standard error stream. It must not be {@code null}.
+     * @param directory
+     *            the working directory, or {@code null} for the current
+     *            directory
+     *
+     * @return the return value
+     */
+    private static int connect(List<String> args, PrintStream out, PrintStream err, Path directory) {
+        if (args.size() < 2) {
+            err.println(String.format("Missing argument for option '%s'.", args.get(0)));
+            return EXIT_SYNTAX;
+        }
+
+        final Path descriptor;
+        final Path workingDirectory;
+
+        try {
+            descriptor = path(directory, args.get(1));
+            workingDirectory = (directory != null) ? directory : Paths.get("").toAbsolutePath();
+        } catch (InvalidPathException e) {
+            err.format("Unable to convert the argument to a file path.%n%s%n", e.getMessage());
+            return EXIT_SYNTAX;
+        }
+
+        try {
+            return DaemonClient.execute(descriptor, args.subList(2, args.size()), workingDirectory, out, err);
+        } catch (IOException e) {
+            err.format("[ERROR] Could not use the daemon: %s%n", e.getMessage());
+            return EXIT_DAEMON;
+        }
+    }
+
+    /**
+     * Converts an argument to a path.
+     *
+     * @param directory
+     *            the working directory to resolve the path against, or
+     *            {@code null} for leaving the path as it is
+     * @param argument
+     *            the argument to convert. It must not be {@code null}.
+     *
+     * @return the path
+     *
+     * @throws InvalidPathException
+     *             if the argument could not be converted
+     */
+    private static Path path(Path directory, String argument) {
+        return (directory != null) ? directory.resolve(argument) : Paths.get(argument);
+    }
+
     /**
      * Creates a new instance.
      *
@@ -253,12 +661,33 @@ public final class Main {
      *            the source path. It must not be {@code null}.
      * @param feedback
      *            the feedback reporting interface. It must not be {@code null}.
+     * @param lossless
+     *            {@code true} if the description must retain its
+     *            representation in order to be stored
+     * @param snapshot
+     *            the path to the snapshot to use if the description need not
+     *            be lossless, or {@code null} if no snapshot shall be used
+     * @param lookup
+     *            the lookup of the daemon cache to discard on warnings, or
+     *            {@code null} if none
+     *
+     * @return the description
      *
      * @throws IOException
      *             if the input processing failed
      */
-    private static PetFormat description(Path source, Feedback feedback) throws IOException {
-        final PetParser parser = PetFormat.parse(source, feedback);
+    private static PetFormat description(Path source, Feedback feedback, boolean lossless, Path snapshot, DaemonCache.Lookup lookup) throws IOException {
+        final byte[] key = ((snapshot != null) && !lossless) ? PetSnapshot.key(source) : null;
+
+        if (key != null) {
+            final Optional<PetFormat> cached = PetSnapshot.load(snapshot, key);
+            if (cached.isPresent()) {
+                feedback.info(String.format("Using the snapshot: %s", snapshot));
+                return cached.get();
+            }
+        }
+
+        final PetParser parser = lossless ? PetFormat.parse(source, feedback) : PetFormat.read(source, feedback);
 
         if (parser.errorCount() > 0) {
             throw new IOException("Errors encountered when parsing the definition file.");
@@ -266,11 +695,22 @@ public final class Main {
 
         if (parser.warningCount() > 0) {
             feedback.warn("Warnings encountered when parsing the definition file. Build might not be stable.");
+
+            if (lookup != null) { // Let the next request report the warnings as well
+                lookup.discard();
+            }
         }
 
-        return parser.result().orElseThrow(() -> {
+        final PetFormat result = parser.result().orElseThrow(() -> {
             return new IOException("Failed to parse the definition file.");
         });
+
+        if ((key != null) && (parser.warningCount() == 0)) {
+            feedback.info(String.format("Storing the snapshot: %s", snapshot));
+            PetSnapshot.store(snapshot, key, result);
+        }
+
+        return result;
     }
 
     /**
@@ -278,10 +718,12 @@ public final class Main {
      *
      * @param debug
      *            {@code true} if exceptions should be dumped
+     * @param err
+     *            the stream for the output. It must not be {@code null}.
      *
      * @return the feedback interface
      */
-    private static Feedback newFeedback(boolean debug) {
+    private static Feedback newFeedback(boolean debug, PrintStream err) {
         return new Feedback() {
 
             /**
@@ -289,11 +731,11 @@ public final class Main {
              *      java.lang.Throwable)
              */
             public void fail(String message, Throwable t) {
-                System.err.format("[ERROR] %s%n", Objects.requireNonNull(message));
+                err.format("[ERROR] %s%n", Objects.requireNonNull(message));
 
                 if (debug && (t != null)) {
-                    System.err.println("[DEBUG] Error details:");
-                    t.printStackTrace(System.err);
+                    err.println("[DEBUG] Error details:");
+                    t.printStackTrace(err);
                 }
             }
 
@@ -302,11 +744,11 @@ public final class Main {
              *      java.lang.Throwable)
              */
             public void warn(String message, Throwable t) {
-                System.err.format("[WARNING] %s%n", Objects.requireNonNull(message));
+                err.format("[WARNING] %s%n", Objects.requireNonNull(message));
 
                 if (debug && (t != null)) {
-                    System.err.println("[DEBUG] Warning details:");
-                    t.printStackTrace(System.err);
+                    err.println("[DEBUG] Warning details:");
+                    t.printStackTrace(err);
                 }
             }
 
@@ -314,7 +756,7 @@ public final class Main {
              * @see net.yetamine.pet4bnd.feedback.Feedback#info(java.lang.String)
              */
             public void info(String message) {
-                System.err.println(Objects.requireNonNull(message));
+                err.println(Objects.requireNonNull(message));
             }
         };
     }
@@ -348,10 +790,11 @@ public final class Main {
 
     /**
      * Print the help.
+     *
+     * @param out
+     *            the stream for the output. It must not be {@code null}.
      */
-    private static void printHelpContent() {
-        final PrintStream out = System.out;
-
+    private static void printHelpContent(PrintStream out) {
         try (InputStream is = RESOURCE_MANIFEST.inputStream()) {
             out.println("Package exports tracker for bnd");
             out.println("-------------------------------");
@@ -373,4 +816,158 @@ public final class Main {
             throw new AssertionError("Missing HELP resource.", e);
         }
     }
+
+    /**
+     * Context of an execution.
+     */
+    private enum Context {
+
+        /** Execution of the command line of the process. */
+        COMMAND_LINE("on the command line"),
+
+        /** Execution of a request of a daemon client. */
+        DAEMON_REQUEST("in a request to the daemon"),
+
+        /** Execution of an item of a batch. */
+        BATCH_ITEM("in a batch item");
+
+        /** Description of the context for messages. */
+        private final String description;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param contextDescription
+         *            the description of the context for messages. It must not
+         *            be {@code null}.
+         */
+        private Context(String contextDescription) {
+            description = Objects.requireNonNull(contextDescription);
+        }
+
+        /**
+         * Returns the description of the context for messages.
+         *
+         * @return the description of the context
+         */
+        public String description() {
+            return description;
+        }
+
+        /**
+         * Formats the message about an option that is not available in this
+         * context.
+         *
+         * @param option
+         *            the option. It must not be {@code null}.
+         *
+         * @return the message
+         */
+        public String unavailable(String option) {
+            return String.format("The %s option can't be used %s.", option, description);
+        }
+    }
+
+    /**
+     * Represents an item of a batch being processed.
+     */
+    private static final class BatchTask {
+
+        /** Item of the manifest. */
+        private final BatchManifest.Item item;
+        /** Buffer of the standard output. */
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        /** Buffer of the standard error output. */
+        private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        /** Result of the processing. */
+        private final Future<Integer> result;
+
+        /**
+         * Creates a new instance and submits the item for processing.
+         *
+         * @param manifestItem
+         *            the item of the manifest. It must not be {@code null}.
+         * @param executor
+         *            the executor to use. It must not be {@code null}.
+         * @param command
+         *            the command to process the item. It must not be
+         *            {@code null}.
+         */
+        public BatchTask(BatchManifest.Item manifestItem, ExecutorService executor, Command command) {
+            item = Objects.requireNonNull(manifestItem);
+            Objects.requireNonNull(command);
+
+            result = executor.submit(() -> {
+                try (PrintStream o = new PrintStream(out, true, "UTF-8"); PrintStream e = new PrintStream(err, true, "UTF-8")) {
+                    if (item.error().isPresent()) {
+                        e.println(item.error().get());
+                        return EXIT_SYNTAX;
+                    }
+
+                    return command.run(o, e);
+                }
+            });
+        }
+
+        /**
+         * Waits for the result and prints the output of the item.
+         *
+         * @param stdout
+         *            the standard output stream. It must not be {@code null}.
+         * @param stderr
+         *            the standard error stream. It must not be {@code null}.
+         * @param feedback
+         *            the feedback reporting interface. It must not be
+         *            {@code null}.
+         *
+         * @return the exit code of the item
+         *
+         * @throws Exception
+         *             if the processing failed unexpectedly
+         */
+        public int finish(PrintStream stdout, PrintStream stderr, Feedback feedback) throws Exception {
+            final int exitCode;
+
+            try {
+                exitCode = result.get();
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                throw (cause instanceof Exception) ? (Exception) cause : e;
+            }
+
+            feedback.info(String.format("Batch item at line %d:", item.line()));
+            stderr.print(new String(err.toByteArray(), StandardCharsets.UTF_8));
+            stdout.print(new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+            if (exitCode != EXIT_SUCCESS) {
+                feedback.fail(String.format("Batch item at line %d failed.", item.line()));
+            }
+
+            return exitCode;
+        }
+
+        /**
+         * Processes an item with the given output streams.
+         */
+        @FunctionalInterface
+        interface Command {
+
+            /**
+             * Processes the item.
+             *
+             * @param out
+             *            the standard output stream. It must not be
+             *            {@code null}.
+             * @param err
+             *            the standard error stream. It must not be
+             *            {@code null}.
+             *
+             * @return the exit code
+             *
+             * @throws Exception
+             *             if something goes wrong
+             */
+            int run(PrintStream out, PrintStream err) throws Exception;
+        }
+    }
 }
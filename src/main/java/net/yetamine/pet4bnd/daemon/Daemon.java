@@ -0,0 +1,492 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Serves the requests of clients in a resident process.
+ *
+ * <p>
+ * The daemon listens on the loopback interface and publishes its port and
+ * secret in a descriptor file (see {@link DaemonProtocol}). Each connection
+ * carries a single request, which a fixed pool of threads executes, so that
+ * the requests may run concurrently, while streaming the output back to the
+ * client. The daemon registers its {@link DaemonStatistics} in the platform
+ * MBean server under {@code net.yetamine.pet4bnd:type=Daemon,port=PORT}.
+ *
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public final class Daemon implements AutoCloseable {
+
+    /** Domain of the management object names. */
+    private static final String MANAGEMENT_DOMAIN = "net.yetamine.pet4bnd";
+    /** Backlog of the server socket. */
+    private static final int BACKLOG = 64;
+    /** Timeout for receiving a request in milliseconds. */
+    private static final int REQUEST_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(30);
+    /** Timeout for finishing the running requests when closing in seconds. */
+    private static final long SHUTDOWN_TIMEOUT = 10;
+
+    /** Path of the descriptor. */
+    private final Path descriptor;
+    /** Secret of this daemon. */
+    private final String secret = DaemonProtocol.secret();
+    /** Command to execute the requests. */
+    private final DaemonCommand command;
+    /** Cache of the definitions shared by the requests. */
+    private final DaemonCache definitions = new DaemonCache();
+    /** Statistics of this daemon. */
+    private final DaemonStatistics statistics = new DaemonStatistics(definitions);
+    /** Socket accepting the connections. */
+    private final ServerSocket server;
+    /** Executor of the requests. */
+    private final ExecutorService executor;
+    /** Name of the registered statistics, or {@code null} if not registered. */
+    private ObjectName management;
+    /** Flag indicating that the daemon is closed. */
+    private final AtomicBoolean closed = new AtomicBoolean();
+    /** Signal of the termination of this daemon. */
+    private final CountDownLatch termination = new CountDownLatch(1);
+
+    /**
+     * Creates a new instance.
+     *
+     * @param descriptorPath
+     *            the path of the descriptor. It must not be {@code null}.
+     * @param threads
+     *            the number of the threads to execute the requests. It must
+     *            be positive.
+     * @param daemonCommand
+     *            the command to execute the requests. It must not be
+     *            {@code null}.
+     *
+     * @throws IOException
+     *             if the socket could not be opened
+     */
+    private Daemon(Path descriptorPath, int threads, DaemonCommand daemonCommand) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive.");
+        }
+
+        descriptor = descriptorPath.toAbsolutePath().normalize();
+        command = Objects.requireNonNull(daemonCommand);
+        server = new ServerSocket(0, BACKLOG, InetAddress.getLoopbackAddress());
+        executor = Executors.newFixedThreadPool(threads, threadFactory("pet4bnd-daemon-"));
+    }
+
+    /**
+     * Starts a new daemon.
+     *
+     * @param descriptor
+     *            the path of the descriptor, which the daemon shall write. It
+     *            must not be {@code null}.
+     * @param threads
+     *            the number of the threads to execute the requests. It must
+     *            be positive.
+     * @param command
+     *            the command to execute the requests. It must not be
+     *            {@code null}.
+     *
+     * @return the daemon
+     *
+     * @throws IOException
+     *             if the daemon could not be started
+     */
+    public static Daemon start(Path descriptor, int threads, DaemonCommand command) throws IOException {
+        final Daemon result = new Daemon(descriptor, threads, command);
+
+        try {
+            result.register();
+            DaemonProtocol.writeDescriptor(result.descriptor, result.port(), result.secret);
+            final Thread acceptor = new Thread(result::accept, "pet4bnd-daemon-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            return result;
+        } catch (IOException | RuntimeException e) {
+            result.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("Daemon[port=%d, descriptor=%s]", port(), descriptor);
+    }
+
+    /**
+     * Returns the port that this daemon listens on.
+     *
+     * @return the port
+     */
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Returns the path of the descriptor.
+     *
+     * @return the path of the descriptor
+     */
+    public Path descriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Returns the statistics of this daemon.
+     *
+     * @return the statistics
+     */
+    public DaemonStatistics statistics() {
+        return statistics;
+    }
+
+    /**
+     * Waits until this daemon is closed.
+     *
+     * @throws InterruptedException
+     *             if the thread has been interrupted
+     */
+    public void await() throws InterruptedException {
+        termination.await();
+    }
+
+    /**
+     * Closes this daemon.
+     *
+     * <p>
+     * The daemon stops accepting connections, waits a while for the requests
+     * being executed, removes the descriptor (unless another daemon has taken
+     * it over meanwhile) and unregisters its statistics.
+     *
+     * @see java.lang.AutoCloseable#close()
+     */
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            server.close();
+        } catch (IOException e) {
+            // Ignore, nothing to do
+        }
+
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            if (DaemonProtocol.matches(secret, DaemonProtocol.readDescriptor(descriptor).secret())) {
+                Files.deleteIfExists(descriptor);
+            }
+        } catch (IOException e) {
+            // Missing or foreign descriptor, leave it
+        }
+
+        unregister();
+        termination.countDown();
+    }
+
+    /**
+     * Accepts the connections until the socket is closed.
+     */
+    private void accept() {
+        while (!server.isClosed()) {
+            final Socket socket;
+
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                continue; // Closed or failed, the loop condition decides
+            }
+
+            try {
+                executor.execute(() -> serve(socket));
+            } catch (RejectedExecutionException e) {
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    /**
+     * Serves a connection.
+     *
+     * @param socket
+     *            the socket of the connection. It must not be {@code null}.
+     */
+    private void serve(Socket socket) {
+        try (Socket connection = socket) {
+            connection.setSoTimeout(REQUEST_TIMEOUT);
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+
+            if (input.readInt() != DaemonProtocol.MAGIC) {
+                statistics.rejected();
+                return;
+            }
+
+            final String token = input.readUTF();
+            if (!DaemonProtocol.matches(secret, token)) {
+                statistics.rejected();
+                return;
+            }
+
+            final Path directory = Paths.get(input.readUTF());
+            final int count = input.readInt();
+            if ((count < 0) || (DaemonProtocol.MAX_ARGUMENTS < count) || !directory.isAbsolute()) {
+                statistics.rejected();
+                return;
+            }
+
+            final List<String> arguments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                arguments.add(input.readUTF());
+            }
+
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            execute(new DaemonRequest(arguments, directory, stream(output, DaemonProtocol.FRAME_OUT), stream(output, DaemonProtocol.FRAME_ERR), definitions), output);
+        } catch (IOException | InvalidPathException e) {
+            statistics.rejected(); // Broken connection or request
+        }
+    }
+
+    /**
+     * Executes a request and sends the exit code.
+     *
+     * @param request
+     *            the request. It must not be {@code null}.
+     * @param output
+     *            the output of the connection. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the exit code could not be sent
+     */
+    private void execute(DaemonRequest request, DataOutputStream output) throws IOException {
+        final long start = System.nanoTime();
+        statistics.started();
+        boolean completed = false;
+        int status = 0;
+
+        try {
+            status = command.execute(request);
+            completed = true;
+        } catch (Exception e) {
+            e.printStackTrace(request.err()); // The client recognizes the failure by the missing exit code
+        } finally {
+            request.out().flush();
+            request.err().flush();
+            // Record before the exit code, so that the client sees the statistics updated
+            statistics.finished(System.nanoTime() - start, completed && (status == 0));
+        }
+
+        if (completed) {
+            synchronized (output) {
+                output.writeByte(DaemonProtocol.FRAME_EXIT);
+                output.writeInt(status);
+                output.flush();
+            }
+        }
+    }
+
+    /**
+     * Registers the statistics in the platform MBean server.
+     *
+     * @throws IOException
+     *             if the registration failed
+     */
+    private void register() throws IOException {
+        try {
+            final ObjectName name = new ObjectName(MANAGEMENT_DOMAIN + ":type=Daemon,port=" + port());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, name);
+            management = name;
+        } catch (JMException e) {
+            throw new IOException("Could not register the daemon statistics.", e);
+        }
+    }
+
+    /**
+     * Unregisters the statistics if registered.
+     */
+    private void unregister() {
+        if (management == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(management);
+        } catch (JMException e) {
+            assert false; // Should not happen, nothing to do anyway
+        }
+
+        management = null;
+    }
+
+    /**
+     * Makes a stream that sends the written content in frames.
+     *
+     * @param output
+     *            the output of the connection. It must not be {@code null}.
+     * @param frame
+     *            the type of the frames
+     *
+     * @return the stream
+     */
+    private static PrintStream stream(DataOutputStream output, int frame) {
+        try { // Flush on every line, so that the client gets the output continuously
+            return new PrintStream(new BufferedOutputStream(new FrameOutputStream(output, frame)), true, "UTF-8");
+        } catch (IOException e) {
+            throw new AssertionError(e); // UTF-8 is always supported
+        }
+    }
+
+    /**
+     * Makes a thread factory for daemon threads.
+     *
+     * @param prefix
+     *            the prefix of the thread names. It must not be {@code null}.
+     *
+     * @return the thread factory
+     */
+    private static ThreadFactory threadFactory(String prefix) {
+        final AtomicInteger counter = new AtomicInteger();
+
+        return runnable -> {
+            final Thread result = new Thread(runnable, prefix + counter.incrementAndGet());
+            result.setDaemon(true);
+            return result;
+        };
+    }
+
+    /**
+     * Closes a socket and ignores any failure.
+     *
+     * @param socket
+     *            the socket to close. It must not be {@code null}.
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore, nothing to do
+        }
+    }
+
+    /**
+     * An output stream that writes the content in frames of a connection.
+     */
+    private static final class FrameOutputStream extends OutputStream {
+
+        /** Output of the connection. */
+        private final DataOutputStream output;
+        /** Type of the frames. */
+        private final int frame;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param connectionOutput
+         *            the output of the connection. It must not be
+         *            {@code null}.
+         * @param frameType
+         *            the type of the frames
+         */
+        public FrameOutputStream(DataOutputStream connectionOutput, int frameType) {
+            output = Objects.requireNonNull(connectionOutput);
+            frame = frameType;
+        }
+
+        /**
+         * @see java.io.OutputStream#write(int)
+         */
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        /**
+         * @see java.io.OutputStream#write(byte[], int, int)
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (int offset = off, end = off + len; offset < end;) {
+                final int length = Math.min(end - offset, DaemonProtocol.MAX_FRAME_LENGTH);
+
+                synchronized (output) {
+                    output.writeByte(frame);
+                    output.writeInt(length);
+                    output.write(b, offset, length);
+                }
+
+                offset += length;
+            }
+        }
+
+        /**
+         * @see java.io.OutputStream#flush()
+         */
+        @Override
+        public void flush() throws IOException {
+            synchronized (output) {
+                output.flush();
+            }
+        }
+
+        /**
+         * @see java.io.OutputStream#close()
+         */
+        @Override
+        public void close() throws IOException {
+            flush(); // The connection remains open
+        }
+    }
+}
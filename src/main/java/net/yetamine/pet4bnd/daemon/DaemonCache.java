@@ -0,0 +1,264 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.daemon;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.yetamine.pet4bnd.model.ResolvedBundle;
+
+/**
+ * Caches resolved definitions for the requests of a daemon, so that repeated
+ * requests for the same definition file skip parsing and resolving the file.
+ *
+ * <p>
+ * The entries are keyed by the normalized absolute path of the definition file
+ * and they remember the size, the modification time and the file key (if the
+ * file system provides any) of the file, so that an entry for a changed file is
+ * never used. Because a modification within the resolution of the modification
+ * time could go unnoticed, files modified just recently are not cached. Unlike
+ * the cache of the Maven goals, which lives just for a build and may afford to
+ * digest the content of a file, this cache lives long and validates its entries
+ * on every request, therefore it relies on the file attributes only. The cached
+ * definitions are immutable, therefore the requests may use them concurrently.
+ *
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public final class DaemonCache {
+
+    /** Minimal age of a file to be cached in milliseconds. */
+    private static final long MINIMAL_AGE = TimeUnit.SECONDS.toMillis(2);
+
+    /** Entries of this cache. */
+    private final ConcurrentMap<Path, Entry> entries = new ConcurrentHashMap<>();
+    /** Number of the lookups that found a valid entry. */
+    private final LongAdder hits = new LongAdder();
+    /** Number of the lookups that found no valid entry. */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a new instance.
+     */
+    public DaemonCache() {
+        // Default constructor
+    }
+
+    /**
+     * Looks up the resolved definition for the given file.
+     *
+     * <p>
+     * The lookup captures the state of the file, so that the definition, which
+     * is loaded when the lookup finds no valid entry, can be stored for the
+     * state that it has been loaded for.
+     *
+     * @param path
+     *            the path to the definition file. It must not be {@code null}.
+     *
+     * @return the lookup
+     *
+     * @throws IOException
+     *             if the file state could not be read, e.g., because the file
+     *             does not exist
+     */
+    public Lookup lookup(Path path) throws IOException {
+        final Path file = path.toAbsolutePath().normalize();
+        final Entry state = new Entry(Files.readAttributes(file, BasicFileAttributes.class), null);
+        final Entry current = entries.get(file);
+
+        if ((current != null) && current.matches(state)) {
+            hits.increment();
+            return new Lookup(file, current);
+        }
+
+        misses.increment();
+        return new Lookup(file, state);
+    }
+
+    /**
+     * Discards the entry for the given file.
+     *
+     * @param path
+     *            the path to the definition file. It must not be {@code null}.
+     */
+    public void invalidate(Path path) {
+        entries.remove(path.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Returns the number of the cached definitions.
+     *
+     * @return the number of the cached definitions
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of the lookups that found a valid entry.
+     *
+     * @return the number of the lookups that found a valid entry
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of the lookups that found no valid entry.
+     *
+     * @return the number of the lookups that found no valid entry
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Represents the result of a lookup.
+     */
+    public final class Lookup {
+
+        /** Normalized path of the file. */
+        private final Path file;
+        /** Entry with the state of the file and possibly with the value. */
+        private final Entry entry;
+        /** Flag indicating that the lookup must not store any value. */
+        private boolean discarded;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param normalizedPath
+         *            the normalized path of the file. It must not be
+         *            {@code null}.
+         * @param fileEntry
+         *            the entry with the state of the file. It must not be
+         *            {@code null}.
+         */
+        Lookup(Path normalizedPath, Entry fileEntry) {
+            file = Objects.requireNonNull(normalizedPath);
+            entry = Objects.requireNonNull(fileEntry);
+        }
+
+        /**
+         * Returns the cached definition.
+         *
+         * @return the cached definition, or an empty container if the cache
+         *         has no valid entry
+         */
+        public Optional<ResolvedBundle> value() {
+            return Optional.ofNullable(entry.value);
+        }
+
+        /**
+         * Prevents this lookup from storing any value, e.g., because loading
+         * the definition produced warnings, which should not be hidden by
+         * using the cached definition next time.
+         */
+        public void discard() {
+            discarded = true;
+        }
+
+        /**
+         * Stores the loaded definition for the state of the file that this
+         * lookup captured.
+         *
+         * <p>
+         * Nothing is stored when the lookup has been discarded, when it found
+         * a valid entry already, or when the file has been modified just
+         * recently.
+         *
+         * @param value
+         *            the definition to store. It must not be {@code null}.
+         */
+        public void store(ResolvedBundle value) {
+            Objects.requireNonNull(value);
+
+            if (discarded || (entry.value != null) || (System.currentTimeMillis() - entry.modified < MINIMAL_AGE)) {
+                return;
+            }
+
+            entries.put(file, new Entry(entry, value));
+        }
+    }
+
+    /**
+     * An entry of the cache.
+     */
+    private static final class Entry {
+
+        /** Size of the file. */
+        final long size;
+        /** Modification time of the file in milliseconds. */
+        final long modified;
+        /** File key if available. */
+        final Object key;
+        /** Resolved definition, or {@code null} if none. */
+        final ResolvedBundle value;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param attributes
+         *            the attributes of the file. It must not be {@code null}.
+         * @param definition
+         *            the resolved definition, or {@code null} if none
+         */
+        public Entry(BasicFileAttributes attributes, ResolvedBundle definition) {
+            size = attributes.size();
+            modified = attributes.lastModifiedTime().toMillis();
+            key = attributes.fileKey();
+            value = definition;
+        }
+
+        /**
+         * Creates a new instance.
+         *
+         * @param state
+         *            the entry with the state of the file. It must not be
+         *            {@code null}.
+         * @param definition
+         *            the resolved definition, or {@code null} if none
+         */
+        public Entry(Entry state, ResolvedBundle definition) {
+            size = state.size;
+            modified = state.modified;
+            key = state.key;
+            value = definition;
+        }
+
+        /**
+         * Indicates whether this entry has the same state of the file as the
+         * other entry.
+         *
+         * @param other
+         *            the other entry. It must not be {@code null}.
+         *
+         * @return {@code true} if the entries have the same state of the file
+         */
+        public boolean matches(Entry other) {
+            return (size == other.size) && (modified == other.modified) && Objects.equals(key, other.key);
+        }
+    }
+}
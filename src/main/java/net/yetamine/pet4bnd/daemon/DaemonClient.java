@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Forwards requests to a daemon.
+ */
+public final class DaemonClient {
+
+    /**
+     * Prevents creating instances of this class.
+     */
+    private DaemonClient() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Executes a request by the daemon and copies its output to the given
+     * streams as the output comes.
+     *
+     * @param descriptor
+     *            the path of the daemon descriptor. It must not be
+     *            {@code null}.
+     * @param arguments
+     *            the arguments of the request. It must not be {@code null}.
+     * @param directory
+     *            the working directory, which the daemon shall resolve the
+     *            relative paths against. It must not be {@code null}.
+     * @param out
+     *            the stream for the standard output of the request. It must
+     *            not be {@code null}.
+     * @param err
+     *            the stream for the standard error output of the request. It
+     *            must not be {@code null}.
+     *
+     * @return the exit code of the request
+     *
+     * @throws IOException
+     *             if the request could not be executed, e.g., because the
+     *             daemon is not available, or the daemon failed to complete
+     *             the request
+     */
+    public static int execute(Path descriptor, List<String> arguments, Path directory, OutputStream out, OutputStream err) throws IOException {
+        Objects.requireNonNull(out);
+        Objects.requireNonNull(err);
+
+        if (DaemonProtocol.MAX_ARGUMENTS < arguments.size()) {
+            throw new IOException("Too many arguments for the daemon.");
+        }
+
+        final DaemonProtocol.Descriptor daemon = DaemonProtocol.readDescriptor(descriptor);
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.port())) {
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.writeInt(DaemonProtocol.MAGIC);
+            output.writeUTF(daemon.secret());
+            output.writeUTF(directory.toAbsolutePath().toString());
+            output.writeInt(arguments.size());
+            for (String argument : arguments) {
+                output.writeUTF(argument);
+            }
+
+            output.flush();
+
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final byte[] buffer = new byte[8192];
+
+            for (;;) {
+                final int frame = input.read();
+
+                switch (frame) {
+                    case DaemonProtocol.FRAME_EXIT:
+                        return input.readInt();
+
+                    case DaemonProtocol.FRAME_OUT:
+                        copy(input, out, buffer);
+                        break;
+
+                    case DaemonProtocol.FRAME_ERR:
+                        copy(input, err, buffer);
+                        break;
+
+                    case -1:
+                        throw new EOFException("The daemon failed to complete the request.");
+
+                    default:
+                        throw new IOException(String.format("Unknown frame received from the daemon: %d", frame));
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the content of a frame.
+     *
+     * @param input
+     *            the input of the connection. It must not be {@code null}.
+     * @param target
+     *            the target stream. It must not be {@code null}.
+     * @param buffer
+     *            the buffer to use. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the copying failed
+     */
+    private static void copy(DataInputStream input, OutputStream target, byte[] buffer) throws IOException {
+        final int length = input.readInt();
+        if ((length < 0) || (DaemonProtocol.MAX_FRAME_LENGTH < length)) {
+            throw new IOException(String.format("Invalid frame length received from the daemon: %d", length));
+        }
+
+        for (int remaining = length; remaining > 0;) {
+            final int count = Math.min(remaining, buffer.length);
+            input.readFully(buffer, 0, count);
+            target.write(buffer, 0, count);
+            remaining -= count;
+        }
+
+        target.flush();
+    }
+}
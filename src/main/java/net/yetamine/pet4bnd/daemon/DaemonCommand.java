@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.daemon;
+
+/**
+ * Executes the requests that a daemon receives.
+ */
+@FunctionalInterface
+public interface DaemonCommand {
+
+    /**
+     * Executes the request.
+     *
+     * <p>
+     * The implementation may be invoked concurrently for different requests.
+     *
+     * @param request
+     *            the request to execute. It must not be {@code null}.
+     *
+     * @return the exit code for the client
+     *
+     * @throws Exception
+     *             if the request could not be executed; the client gets the
+     *             details, but no exit code then
+     */
+    int execute(DaemonRequest request) throws Exception;
+}
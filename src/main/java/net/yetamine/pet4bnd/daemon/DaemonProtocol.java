@@ -0,0 +1,223 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.daemon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Defines the protocol between a daemon and its clients.
+ *
+ * <p>
+ * The daemon listens on the loopback interface only and it publishes its port
+ * and a random secret in a descriptor file, which is readable for the owner
+ * only (if the file system supports it), so that only the clients having the
+ * access to the file can use the daemon.
+ *
+ * <p>
+ * A client connects and sends a request: {@link #MAGIC}, the secret, its
+ * working directory, the number of the arguments and the arguments, all
+ * strings in the modified UTF-8 encoding of {@link java.io.DataOutput}. The
+ * daemon responds with frames: {@link #FRAME_OUT} and {@link #FRAME_ERR} carry
+ * the length and the bytes written to the respective stream, and the last frame
+ * {@link #FRAME_EXIT} carries the exit code. The daemon closes the connection
+ * after the last frame, or without the last frame if the request failed.
+ */
+final class DaemonProtocol {
+
+    /** Magic number of a request, which identifies the protocol version. */
+    public static final int MAGIC = 0x70657431; // "pet1"
+
+    /** Frame with the exit code. */
+    public static final int FRAME_EXIT = 0;
+    /** Frame with the content for the standard output. */
+    public static final int FRAME_OUT = 1;
+    /** Frame with the content for the standard error output. */
+    public static final int FRAME_ERR = 2;
+
+    /** Maximal number of the arguments of a request. */
+    public static final int MAX_ARGUMENTS = 4096;
+    /** Maximal length of a frame. */
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+
+    /** Descriptor property with the port. */
+    private static final String PROPERTY_PORT = "port";
+    /** Descriptor property with the secret. */
+    private static final String PROPERTY_SECRET = "secret";
+    /** Number of the random bytes of a secret. */
+    private static final int SECRET_LENGTH = 32;
+
+    /**
+     * Prevents creating instances of this class.
+     */
+    private DaemonProtocol() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Generates a new secret.
+     *
+     * @return the secret
+     */
+    public static String secret() {
+        final byte[] bytes = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Compares two secrets in constant time.
+     *
+     * @param expected
+     *            the expected secret. It must not be {@code null}.
+     * @param actual
+     *            the actual secret. It must not be {@code null}.
+     *
+     * @return {@code true} if the secrets are equal
+     */
+    public static boolean matches(String expected, String actual) {
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), actual.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a descriptor.
+     *
+     * <p>
+     * The descriptor is written to a temporary file, which is readable for the
+     * owner only on file systems with POSIX permissions, and then moved to its
+     * place, so that no client can read an incomplete descriptor.
+     *
+     * @param path
+     *            the path of the descriptor. It must not be {@code null}.
+     * @param port
+     *            the port of the daemon
+     * @param secret
+     *            the secret of the daemon. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the descriptor could not be written
+     */
+    public static void writeDescriptor(Path path, int port, String secret) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(PROPERTY_PORT, Integer.toString(port));
+        properties.setProperty(PROPERTY_SECRET, secret);
+
+        final Path target = path.toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        final Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+
+        try {
+            try (OutputStream os = Files.newOutputStream(temporary)) {
+                properties.store(os, "pet4bnd daemon");
+            }
+
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads a descriptor.
+     *
+     * @param path
+     *            the path of the descriptor. It must not be {@code null}.
+     *
+     * @return the descriptor
+     *
+     * @throws IOException
+     *             if the descriptor could not be read or it is not valid
+     */
+    public static Descriptor readDescriptor(Path path) throws IOException {
+        final Properties properties = new Properties();
+
+        try (InputStream is = Files.newInputStream(path)) {
+            properties.load(is);
+        }
+
+        final String secret = properties.getProperty(PROPERTY_SECRET);
+
+        try {
+            final int port = Integer.parseInt(properties.getProperty(PROPERTY_PORT));
+
+            if (secret != null) {
+                return new Descriptor(port, secret);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("Invalid daemon descriptor: %s", path), e);
+        }
+
+        throw new IOException(String.format("Invalid daemon descriptor: %s", path));
+    }
+
+    /**
+     * Represents the content of a descriptor.
+     */
+    public static final class Descriptor {
+
+        /** Port of the daemon. */
+        private final int port;
+        /** Secret of the daemon. */
+        private final String secret;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param daemonPort
+         *            the port of the daemon
+         * @param daemonSecret
+         *            the secret of the daemon. It must not be {@code null}.
+         */
+        public Descriptor(int daemonPort, String daemonSecret) {
+            secret = Objects.requireNonNull(daemonSecret);
+            port = daemonPort;
+        }
+
+        /**
+         * Returns the port of the daemon.
+         *
+         * @return the port of the daemon
+         */
+        public int port() {
+            return port;
+        }
+
+        /**
+         * Returns the secret of the daemon.
+         *
+         * @return the secret of the daemon
+         */
+        public String secret() {
+            return secret;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.daemon;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Represents a request of a client, which a daemon executes.
+ */
+public final class DaemonRequest {
+
+    /** Arguments of the request. */
+    private final List<String> arguments;
+    /** Working directory of the client. */
+    private final Path directory;
+    /** Standard output stream of the client. */
+    private final PrintStream out;
+    /** Standard error stream of the client. */
+    private final PrintStream err;
+    /** Cache of the definitions shared by the requests. */
+    private final DaemonCache definitions;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param requestArguments
+     *            the arguments of the request. It must not be {@code null}.
+     * @param workingDirectory
+     *            the working directory of the client. It must not be
+     *            {@code null}.
+     * @param outputStream
+     *            the standard output stream of the client. It must not be
+     *            {@code null}.
+     * @param errorStream
+     *            the standard error stream of the client. It must not be
+     *            {@code null}.
+     * @param definitionCache
+     *            the cache of the definitions. It must not be {@code null}.
+     */
+    DaemonRequest(List<String> requestArguments, Path workingDirectory, PrintStream outputStream, PrintStream errorStream, DaemonCache definitionCache) {
+        arguments = Collections.unmodifiableList(requestArguments);
+        directory = Objects.requireNonNull(workingDirectory);
+        out = Objects.requireNonNull(outputStream);
+        err = Objects.requireNonNull(errorStream);
+        definitions = Objects.requireNonNull(definitionCache);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("DaemonRequest[arguments=%s, directory=%s]", arguments, directory);
+    }
+
+    /**
+     * Returns the arguments of the request, which are the command line
+     * arguments that the client forwarded.
+     *
+     * @return the arguments of the request
+     */
+    public List<String> arguments() {
+        return arguments;
+    }
+
+    /**
+     * Returns the working directory of the client, which relative paths in
+     * the arguments should be resolved against.
+     *
+     * @return the working directory of the client
+     */
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Returns the standard output stream of the client.
+     *
+     * @return the standard output stream of the client
+     */
+    public PrintStream out() {
+        return out;
+    }
+
+    /**
+     * Returns the standard error stream of the client.
+     *
+     * @return the standard error stream of the client
+     */
+    public PrintStream err() {
+        return err;
+    }
+
+    /**
+     * Returns the cache of the definitions, which the daemon shares among all
+     * requests.
+     *
+     * @return the cache of the definitions
+     */
+    public DaemonCache definitions() {
+        return definitions;
+    }
+}
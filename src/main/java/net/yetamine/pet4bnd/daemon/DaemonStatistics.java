@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.daemon;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the statistics of a daemon.
+ *
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public final class DaemonStatistics implements DaemonStatisticsMBean {
+
+    /** Number of nanoseconds in a millisecond. */
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** Cache of the definitions. */
+    private final DaemonCache definitions;
+    /** Number of the executed requests. */
+    private final LongAdder requests = new LongAdder();
+    /** Number of the failed requests. */
+    private final LongAdder failures = new LongAdder();
+    /** Number of the rejected connections. */
+    private final LongAdder rejections = new LongAdder();
+    /** Total latency of the executed requests in nanoseconds. */
+    private final LongAdder latency = new LongAdder();
+    /** Maximal latency of the executed requests in nanoseconds. */
+    private final AtomicLong maximalLatency = new AtomicLong();
+    /** Number of the requests being executed. */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param definitionCache
+     *            the cache of the definitions. It must not be {@code null}.
+     */
+    DaemonStatistics(DaemonCache definitionCache) {
+        definitions = Objects.requireNonNull(definitionCache);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        final String f = "DaemonStatistics[requests=%d, failed=%d, rejected=%d, active=%d, latency=%.2f/%.2f ms, cache=%d/%d]";
+        return String.format(f, getRequestCount(), getFailedRequestCount(), getRejectedConnectionCount(), getActiveRequestCount(), getAverageLatency(), getMaximalLatency(), getCacheHitCount(), getCacheMissCount());
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.daemon.DaemonStatisticsMBean#getRequestCount()
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.daemon.DaemonStatisticsMBean#getFailedRequestCount()
+     */
+    public long getFailedRequestCount() {
+        return failures.sum();
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.daemon.DaemonStatisticsMBean#getRejectedConnectionCount()
+     */
+    public long getRejectedConnectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.daemon.DaemonStatisticsMBean#getActiveRequestCount()
+     */
+    public int getActiveRequestCount() {
+        return active.get();
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.daemon.DaemonStatisticsMBean#getAverageLatency()
+     */
+    public double getAverageLatency() {
+        final long count = requests.sum();
+        return (count > 0) ? latency.sum() / NANOS_PER_MILLI / count : 0.0;
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.daemon.DaemonStatisticsMBean#getMaximalLatency()
+     */
+    public double getMaximalLatency() {
+        return maximalLatency.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.daemon.DaemonStatisticsMBean#getCachedDefinitionCount()
+     */
+    public int getCachedDefinitionCount() {
+        return definitions.size();
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.daemon.DaemonStatisticsMBean#getCacheHitCount()
+     */
+    public long getCacheHitCount() {
+        return definitions.hitCount();
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.daemon.DaemonStatisticsMBean#getCacheMissCount()
+     */
+    public long getCacheMissCount() {
+        return definitions.missCount();
+    }
+
+    /**
+     * Records the start of a request.
+     */
+    void started() {
+        active.incrementAndGet();
+    }
+
+    /**
+     * Records the end of a request.
+     *
+     * @param nanos
+     *            the latency of the request in nanoseconds
+     * @param succeeded
+     *            {@code true} if the request succeeded
+     */
+    void finished(long nanos, boolean succeeded) {
+        latency.add(nanos);
+        maximalLatency.accumulateAndGet(nanos, Math::max);
+        requests.increment();
+
+        if (!succeeded) {
+            failures.increment();
+        }
+
+        active.decrementAndGet();
+    }
+
+    /**
+     * Records a rejected connection.
+     */
+    void rejected() {
+        rejections.increment();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.daemon;
+
+/**
+ * Management interface of the statistics of a daemon.
+ */
+public interface DaemonStatisticsMBean {
+
+    /**
+     * Returns the number of the executed requests.
+     *
+     * @return the number of the executed requests
+     */
+    long getRequestCount();
+
+    /**
+     * Returns the number of the executed requests that failed or finished
+     * with a non-zero exit code.
+     *
+     * @return the number of the failed requests
+     */
+    long getFailedRequestCount();
+
+    /**
+     * Returns the number of the rejected connections, which did not provide a
+     * valid request.
+     *
+     * @return the number of the rejected connections
+     */
+    long getRejectedConnectionCount();
+
+    /**
+     * Returns the number of the requests being executed.
+     *
+     * @return the number of the requests being executed
+     */
+    int getActiveRequestCount();
+
+    /**
+     * Returns the average latency of the executed requests.
+     *
+     * @return the average latency in milliseconds
+     */
+    double getAverageLatency();
+
+    /**
+     * Returns the maximal latency of the executed requests.
+     *
+     * @return the maximal latency in milliseconds
+     */
+    double getMaximalLatency();
+
+    /**
+     * Returns the number of the cached definitions.
+     *
+     * @return the number of the cached definitions
+     */
+    int getCachedDefinitionCount();
+
+    /**
+     * Returns the number of the definition lookups that found a valid entry.
+     *
+     * @return the number of the cache hits
+     */
+    long getCacheHitCount();
+
+    /**
+     * Returns the number of the definition lookups that found no valid entry.
+     *
+     * @return the number of the cache misses
+     */
+    long getCacheMissCount();
+}
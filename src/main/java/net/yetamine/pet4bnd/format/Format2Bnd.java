@@ -19,16 +19,22 @@ package net.yetamine.pet4bnd.format;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Clock;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.function.Consumer;
+import java.util.RandomAccess;
 
 import net.yetamine.pet4bnd.model.Bundle;
 import net.yetamine.pet4bnd.model.PackageExport;
@@ -37,6 +43,11 @@ import net.yetamine.pet4bnd.version.Version;
 
 /**
  * Formats a definition to the <i>bnd</i> format.
+ *
+ * <p>
+ * The instance captures just the parts of the exports that make the lines, so
+ * that the alignment of the lines is known without formatting them; the lines
+ * are formatted while persisting, directly to the output.
  */
 public final class Format2Bnd implements Persistable {
 
@@ -44,6 +55,8 @@ public final class Format2Bnd implements Persistable {
     private static final String BUNDLE_VERSION_HEADER = "Bundle-Version:";
     /** Export header literal. */
     private static final String EXPORT_PACKAGE_HEADER = "Export-Package:";
+    /** Version directive literal preceding the version of an export. */
+    private static final String VERSION_DIRECTIVE = ";version=\"";
 
     /** Comment to include in the generated files. */
     private static final String COMMENT_GENERATOR = "# Generated by the pet4bnd tool";
@@ -55,10 +68,25 @@ public final class Format2Bnd implements Persistable {
     /** Size of the indentation for generated files. */
     private static final int INDENTATION_SIZE = INDENTATION_TEXT.length();
 
+    /** Line separator, which {@link BufferedWriter#newLine()} uses as well. */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    /** Spaces for padding the lines in bulk. */
+    private static final char[] SPACES = new char[256];
+    static {
+        Arrays.fill(SPACES, ' ');
+    }
+
+    /** Maximal size of the output buffer. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     /** Export bundle version. */
     private final Version bundleVersion;
-    /** Content to format on demand. */
-    private final List<String> exports;
+    /** Names of the exported packages. */
+    private final String[] packageNames;
+    /** Versions of the exports, sharing the strings of equal versions. */
+    private final String[] versions;
+    /** Attributes of the exports, {@code null} for none. */
+    private final String[] attributes;
     /** Line length for formatting. */
     private final int lineLength;
     /** Timestamp source. */
@@ -74,10 +102,28 @@ public final class Format2Bnd implements Persistable {
      *            version shall be exported
      */
     public Format2Bnd(Bundle definition, Version bundleVersionOverride) {
-        final Collection<PackageExport> packageExports = definition.exports().values();
-        final List<String> lines = new ArrayList<>(packageExports.size());
-        lineLength = formatExports(packageExports, lines::add);
-        exports = Collections.unmodifiableList(lines);
+        final int size = definition.exports().size();
+        packageNames = new String[size];
+        versions = new String[size];
+        attributes = new String[size];
+
+        // Capture the parts of the lines and compute their length for pretty formatting
+        final Map<Version, String> versionStrings = new HashMap<>();
+        int length = EXPORT_PACKAGE_HEADER.length();
+        int index = 0;
+        for (PackageExport packageExport : definition.exports().values()) {
+            final String packageName = packageExport.packageName();
+            final String version = versionStrings.computeIfAbsent(packageExport.version().resolution(), Version::toString);
+            final String attribute = packageExport.attributes().filter(a -> !a.isEmpty()).orElse(null);
+
+            packageNames[index] = packageName;
+            versions[index] = version;
+            attributes[index] = attribute;
+            length = Math.max(length, lineLength(packageName, version, attribute));
+            ++index;
+        }
+
+        lineLength = length;
         bundleVersion = bundleVersionOverride;
         timestamp = Clock.systemUTC();
     }
@@ -93,8 +139,10 @@ public final class Format2Bnd implements Persistable {
      */
     private Format2Bnd(Format2Bnd source, Clock clock) {
         bundleVersion = source.bundleVersion;
+        packageNames = source.packageNames;
+        versions = source.versions;
+        attributes = source.attributes;
         lineLength = source.lineLength;
-        exports = source.exports;
         timestamp = clock;
     }
 
@@ -137,10 +185,13 @@ public final class Format2Bnd implements Persistable {
     /**
      * Provides a read-only view on the lines with the exports.
      *
+     * <p>
+     * The view formats the lines on demand.
+     *
      * @return the lines with the exports
      */
     public List<String> exports() {
-        return exports;
+        return new Lines();
     }
 
     /**
@@ -153,6 +204,62 @@ public final class Format2Bnd implements Persistable {
      *             if storing the object fails
      */
     public void persist(BufferedWriter sink) throws IOException {
+        persist(new WriterOutput(sink));
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.model.Persistable#persist(java.io.OutputStream)
+     */
+    public void persist(OutputStream sink) throws IOException {
+        try (WritableByteChannel channel = Channels.newChannel(sink)) {
+            persist(channel);
+        }
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.model.Persistable#store(java.nio.file.Path)
+     */
+    public void store(Path path) throws IOException {
+        // @formatter:off
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            // @formatter:on
+            persist(channel);
+        }
+    }
+
+    /**
+     * Stores the encapsulated object in the given channel, encoding it in
+     * UTF-8.
+     *
+     * @param sink
+     *            the channel to store the data to. It must not be
+     *            {@code null}.
+     *
+     * @throws IOException
+     *             if storing the object fails
+     */
+    public void persist(WritableByteChannel sink) throws IOException {
+        // Estimate the size to avoid allocating the whole buffer for small outputs
+        final long estimate = (long) (packageNames.length + 1) * (lineLength + 2 * INDENTATION_SIZE + 2) + 256;
+        final ChannelOutput output = new ChannelOutput(sink, (int) Math.min(estimate, BUFFER_SIZE));
+        persist(output);
+        output.flush();
+    }
+
+    /**
+     * Stores the encapsulated object in the given output.
+     *
+     * @param sink
+     *            the output to store the data to. It must not be
+     *            {@code null}.
+     *
+     * @throws IOException
+     *             if storing the object fails
+     */
+    private void persist(Output sink) throws IOException {
         Objects.requireNonNull(sink);
 
         // Generate the bnd file
@@ -169,88 +276,319 @@ public final class Format2Bnd implements Persistable {
 
         if (bundleVersion != null) {
             sink.write(BUNDLE_VERSION_HEADER);
-            sink.write(' ');
+            sink.write(" ");
             sink.write(bundleVersion.toString());
             sink.newLine();
             sink.newLine();
         }
 
-        if (exports.isEmpty()) {
+        if (packageNames.length == 0) {
             return;
         }
 
         sink.write(EXPORT_PACKAGE_HEADER);
         // Compute the line end position: include indentation + trailing space to the backslash
         final int lineJoinOffset = lineLength + INDENTATION_SIZE - (lineLength % INDENTATION_SIZE);
-        for (int i = lineJoinOffset - EXPORT_PACKAGE_HEADER.length() + INDENTATION_SIZE; i > 0; i--) {
-            sink.append(' ');
-        }
-
-        sink.write('\\');
+        sink.pad(lineJoinOffset - EXPORT_PACKAGE_HEADER.length() + INDENTATION_SIZE);
+        sink.write("\\");
         sink.newLine();
 
         // Having the header, continue with the exports
-        final int last = exports.size() - 1;
+        final int last = packageNames.length - 1;
         for (int i = 0; i < last; i++) {
             sink.write(INDENTATION_TEXT);
-            final String export = exports.get(i);
-            sink.write(export);
-            sink.write(',');
+            write(sink, i);
+            sink.write(",");
 
             // Fill the remaining part to the joining (subtract one more for the comma!)
-            for (int remaining = lineJoinOffset - export.length(); --remaining > 0;) {
-                sink.append(' ');
-            }
+            sink.pad(lineJoinOffset - lineLength(packageNames[i], versions[i], attributes[i]) - 1);
 
             // End the line
-            sink.write('\\');
+            sink.write("\\");
             sink.newLine();
         }
 
         // The last export is solved separately to avoid a useless comma
         sink.write(INDENTATION_TEXT);
-        sink.write(exports.get(last));
+        write(sink, last);
         sink.newLine();
         sink.newLine(); // Make a blank line for the case of any continuation
     }
 
     /**
-     * @see net.yetamine.pet4bnd.model.Persistable#persist(java.io.OutputStream)
+     * Writes the line of an export.
+     *
+     * @param sink
+     *            the output to write to. It must not be {@code null}.
+     * @param index
+     *            the index of the export
+     *
+     * @throws IOException
+     *             if writing fails
      */
-    public void persist(OutputStream sink) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(sink, StandardCharsets.UTF_8))) {
-            persist(writer);
+    private void write(Output sink, int index) throws IOException {
+        sink.write(packageNames[index]);
+        sink.write(VERSION_DIRECTIVE);
+        sink.write(versions[index]);
+        sink.write("\"");
+
+        final String attribute = attributes[index];
+        if (attribute != null) {
+            sink.write(";");
+            sink.write(attribute);
+        }
+    }
+
+    /**
+     * Formats the line of an export.
+     *
+     * @param index
+     *            the index of the export
+     *
+     * @return the line
+     */
+    private String line(int index) {
+        final String packageName = packageNames[index];
+        final String version = versions[index];
+        final String attribute = attributes[index];
+
+        final StringBuilder result = new StringBuilder(lineLength(packageName, version, attribute));
+        result.append(packageName).append(VERSION_DIRECTIVE).append(version).append('"');
+        if (attribute != null) {
+            result.append(';').append(attribute);
         }
+
+        return result.toString();
     }
 
     /**
-     * Formats the exports into a line sequence.
+     * Computes the length of the line of an export.
      *
-     * @param packageExports
-     *            the exports to process. It must not be {@code null}.
-     * @param lines
-     *            the consumer of the lines. It must not be {@code null}.
+     * @param packageName
+     *            the name of the package. It must not be {@code null}.
+     * @param version
+     *            the version. It must not be {@code null}.
+     * @param attribute
+     *            the attributes, or {@code null} if none
      *
-     * @return the maximal length of the lines
+     * @return the length of the line
+     */
+    private static int lineLength(String packageName, String version, String attribute) {
+        final int result = packageName.length() + VERSION_DIRECTIVE.length() + version.length() + 1;
+        return (attribute != null) ? result + 1 + attribute.length() : result;
+    }
+
+    /**
+     * A read-only view on the lines with the exports.
+     */
+    private final class Lines extends AbstractList<String> implements RandomAccess {
+
+        /**
+         * Creates a new instance.
+         */
+        public Lines() {
+            // Default constructor
+        }
+
+        /**
+         * @see java.util.AbstractList#get(int)
+         */
+        @Override
+        public String get(int index) {
+            return line(index);
+        }
+
+        /**
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size() {
+            return packageNames.length;
+        }
+    }
+
+    /**
+     * A text output for persisting.
      */
-    private static int formatExports(Iterable<PackageExport> packageExports, Consumer<? super String> lines) {
-        // Format the packages into lines to capture their length for pretty formatting
-        int result = EXPORT_PACKAGE_HEADER.length();
-
-        for (PackageExport packageExport : packageExports) {
-            // Build the line with this package's export
-            final StringBuilder builder = new StringBuilder(packageExport.packageName()).append(';');
-            builder.append("version=\"").append(packageExport.version().resolution()).append('"');
-            packageExport.attributes().filter(a -> !a.isEmpty()).ifPresent(a -> {
-                builder.append(';').append(a);
-            });
-
-            // Record the line and its length
-            final String export = builder.toString();
-            result = Math.max(result, export.length());
-            lines.accept(export);
+    private interface Output {
+
+        /**
+         * Writes a string.
+         *
+         * @param value
+         *            the string to write. It must not be {@code null}.
+         *
+         * @throws IOException
+         *             if writing fails
+         */
+        void write(String value) throws IOException;
+
+        /**
+         * Writes the given number of spaces.
+         *
+         * @param count
+         *            the number of spaces; nothing is written if not positive
+         *
+         * @throws IOException
+         *             if writing fails
+         */
+        void pad(int count) throws IOException;
+
+        /**
+         * Writes the line separator.
+         *
+         * @throws IOException
+         *             if writing fails
+         */
+        void newLine() throws IOException;
+    }
+
+    /**
+     * An output writing to a {@link BufferedWriter}.
+     */
+    private static final class WriterOutput implements Output {
+
+        /** Underlying writer. */
+        private final BufferedWriter writer;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param sink
+         *            the writer to write to. It must not be {@code null}.
+         */
+        public WriterOutput(BufferedWriter sink) {
+            writer = Objects.requireNonNull(sink);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.format.Format2Bnd.Output#write(java.lang.String)
+         */
+        public void write(String value) throws IOException {
+            writer.write(value);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.format.Format2Bnd.Output#pad(int)
+         */
+        public void pad(int count) throws IOException {
+            for (int remaining = count; remaining > 0; remaining -= SPACES.length) {
+                writer.write(SPACES, 0, Math.min(remaining, SPACES.length));
+            }
         }
 
-        return result;
+        /**
+         * @see net.yetamine.pet4bnd.format.Format2Bnd.Output#newLine()
+         */
+        public void newLine() throws IOException {
+            writer.newLine();
+        }
+    }
+
+    /**
+     * An output encoding the text in UTF-8 into a reusable buffer, which it
+     * writes to a channel whenever it gets full.
+     */
+    private static final class ChannelOutput implements Output {
+
+        /** Spaces for padding the lines in bulk. */
+        private static final byte[] SPACE_BYTES = new String(SPACES).getBytes(StandardCharsets.US_ASCII);
+        /** Encoded line separator. */
+        private static final byte[] LINE_SEPARATOR_BYTES = LINE_SEPARATOR.getBytes(StandardCharsets.UTF_8);
+
+        /** Underlying channel. */
+        private final WritableByteChannel channel;
+        /** Buffer for the encoded output. */
+        private final ByteBuffer buffer;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param sink
+         *            the channel to write to. It must not be {@code null}.
+         * @param capacity
+         *            the capacity of the buffer. It must be positive.
+         */
+        public ChannelOutput(WritableByteChannel sink, int capacity) {
+            channel = Objects.requireNonNull(sink);
+            buffer = ByteBuffer.allocate(capacity);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.format.Format2Bnd.Output#write(java.lang.String)
+         */
+        public void write(String value) throws IOException {
+            final int length = value.length();
+            for (int i = 0; i < length; i++) {
+                final char c = value.charAt(i);
+
+                if (c >= 0x80) { // Leave the rest on the encoder, which handles surrogates as well
+                    final byte[] bytes = value.substring(i).getBytes(StandardCharsets.UTF_8);
+                    put(bytes, bytes.length);
+                    return;
+                }
+
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+
+                buffer.put((byte) c);
+            }
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.format.Format2Bnd.Output#pad(int)
+         */
+        public void pad(int count) throws IOException {
+            for (int remaining = count; remaining > 0; remaining -= SPACE_BYTES.length) {
+                put(SPACE_BYTES, Math.min(remaining, SPACE_BYTES.length));
+            }
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.format.Format2Bnd.Output#newLine()
+         */
+        public void newLine() throws IOException {
+            put(LINE_SEPARATOR_BYTES, LINE_SEPARATOR_BYTES.length);
+        }
+
+        /**
+         * Writes the buffered output to the channel.
+         *
+         * @throws IOException
+         *             if writing fails
+         */
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            buffer.clear();
+        }
+
+        /**
+         * Puts bytes in the buffer, writing the buffer to the channel whenever
+         * it gets full.
+         *
+         * @param bytes
+         *            the bytes to put. It must not be {@code null}.
+         * @param length
+         *            the number of the bytes from the beginning of the array
+         *
+         * @throws IOException
+         *             if writing fails
+         */
+        private void put(byte[] bytes, int length) throws IOException {
+            for (int offset = 0; offset < length;) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+
+                final int count = Math.min(length - offset, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                offset += count;
+            }
+        }
     }
 }
@@ -16,18 +16,24 @@
 
 package net.yetamine.pet4bnd.format;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 
 import net.yetamine.pet4bnd.model.Bundle;
 import net.yetamine.pet4bnd.model.Persistable;
+import net.yetamine.pet4bnd.support.FileUpdate;
 
 /**
  * Formats a definition to a {@link Map}.
@@ -38,9 +44,13 @@ public final class Format2Map implements Persistable {
     private static final String SUFFIX_XML = ".xml";
     /** Comment to include in the generated files. */
     private static final String COMMENT = "Generated by the pet4bnd tool";
+    /** Format of the timestamp, like {@link java.util.Date#toString()}, but in UTC. */
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.ROOT).withZone(ZoneId.of("UTC"));
 
     /** Content to format on demand. */
     private final Map<String, String> content;
+    /** Timestamp source. */
+    private final Clock timestamp;
 
     /**
      * Creates a new instance.
@@ -59,6 +69,39 @@ public final class Format2Map implements Persistable {
 
         view.put("$bundle", definition.version().resolution().toString());
         content = Collections.unmodifiableMap(view);
+        timestamp = Clock.systemUTC();
+    }
+
+    /**
+     * Creates a new instance from the given instance.
+     *
+     * @param source
+     *            the source instance. It must not be {@code null}.
+     * @param clock
+     *            the clock for the timestamp. It may be {@code null} for no
+     *            timestamp
+     */
+    private Format2Map(Format2Map source, Clock clock) {
+        content = source.content;
+        timestamp = clock;
+    }
+
+    /**
+     * Returns a new instance based on this instance that uses the given clock
+     * for the timestamp.
+     *
+     * <p>
+     * The timestamp is the date comment of the properties format, the XML
+     * format has no timestamp.
+     *
+     * @param clock
+     *            the clock for the timestamp. It may be {@code null} for no
+     *            timestamp
+     *
+     * @return the new instance
+     */
+    public Format2Map timestamp(Clock clock) {
+        return new Format2Map(this, clock);
     }
 
     /**
@@ -85,28 +128,100 @@ public final class Format2Map implements Persistable {
      * @see net.yetamine.pet4bnd.model.Persistable#persist(java.io.OutputStream)
      */
     public void persist(OutputStream sink) throws IOException {
-        toProperties().store(sink, COMMENT);
+        persist(sink, false);
     }
 
     /**
      * @see net.yetamine.pet4bnd.model.Persistable#store(java.nio.file.Path)
      */
     public void store(Path path) throws IOException {
+        final boolean xml = isXml(path);
+        try (OutputStream sink = Files.newOutputStream(path)) {
+            persist(sink, xml);
+        }
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.model.Persistable#update(java.nio.file.Path)
+     */
+    public boolean update(Path path) throws IOException {
+        final boolean xml = isXml(path);
+        return FileUpdate.update(path, sink -> persist(sink, xml));
+    }
+
+    /**
+     * Stores the encapsulated object in the given sink.
+     *
+     * @param sink
+     *            the sink to store the data to. It must not be {@code null}.
+     * @param xml
+     *            {@code true} for the XML format
+     *
+     * @throws IOException
+     *             if storing the object fails
+     */
+    private void persist(OutputStream sink, boolean xml) throws IOException {
+        final Properties properties = toProperties();
+
+        if (xml) {
+            properties.storeToXML(sink, COMMENT, StandardCharsets.UTF_8.toString());
+            return;
+        }
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        properties.store(buffer, COMMENT);
+        final byte[] bytes = buffer.toByteArray();
+
+        // Replace the date line, which follows the comment line, with the timestamp
+        final int dateLine = nextLine(bytes, 0);
+        final int entries = nextLine(bytes, dateLine);
+        sink.write(bytes, 0, dateLine);
+
+        if (timestamp != null) {
+            // Use a fixed zone, so that the output does not depend on the machine
+            final String date = "#" + DATE_FORMAT.format(timestamp.instant()) + System.lineSeparator();
+            sink.write(date.getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        sink.write(bytes, entries, bytes.length - entries);
+    }
+
+    /**
+     * Tests if the file should use the XML format.
+     *
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     *
+     * @return {@code true} if the file should use the XML format
+     */
+    private static boolean isXml(Path path) {
         final Path file = path.getFileName();
         if (file == null) { // Might be null for some paths (e.g., "c:")
             throw new IllegalArgumentException("Missing file name in the path: " + path);
         }
 
-        try (OutputStream sink = Files.newOutputStream(path)) {
-            final Properties properties = toProperties();
-            final String fileName = file.toString();
+        final String fileName = file.toString();
+        return (fileName.length() > SUFFIX_XML.length()) && fileName.endsWith(SUFFIX_XML);
+    }
 
-            if ((fileName.length() > SUFFIX_XML.length()) && fileName.endsWith(SUFFIX_XML)) {
-                properties.storeToXML(sink, COMMENT, StandardCharsets.UTF_8.toString());
-                return;
+    /**
+     * Finds the beginning of the next line.
+     *
+     * @param bytes
+     *            the bytes to search. It must not be {@code null}.
+     * @param offset
+     *            the offset of the current line
+     *
+     * @return the offset of the next line, or the length of the bytes if there
+     *         is no next line
+     */
+    private static int nextLine(byte[] bytes, int offset) {
+        for (int i = offset; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                return i + 1;
             }
-
-            properties.store(sink, COMMENT);
         }
+
+        return bytes.length;
     }
 }
@@ -22,6 +22,8 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
+import net.yetamine.pet4bnd.support.FileUpdate;
+
 /**
  * A persistable object.
  */
@@ -53,6 +55,23 @@ public interface Persistable {
         }
     }
 
+    /**
+     * Stores the encapsulated object in the given file unless the file contains
+     * the same data already, so that an up-to-date file remains untouched.
+     *
+     * @param path
+     *            the path to store the data to. It must not be {@code null}.
+     *
+     * @return {@code true} if the file was written, {@code false} if the file
+     *         was up to date
+     *
+     * @throws IOException
+     *             if storing the object fails
+     */
+    default boolean update(Path path) throws IOException {
+        return FileUpdate.update(path, this::persist);
+    }
+
     /**
      * Persists this instance to a byte array.
      *
@@ -0,0 +1,556 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import net.yetamine.pet4bnd.version.Version;
+import net.yetamine.pet4bnd.version.VersionVariance;
+
+/**
+ * An immutable snapshot of a resolved bundle.
+ *
+ * <p>
+ * The snapshot captures the state of all statements of a bundle, including the
+ * resolutions and the version groups that the exports inherit from, at the
+ * moment of its creation. All fields of the snapshot and of its parts are final
+ * and the exports are kept in a sorted array, which makes an unmodifiable map,
+ * so that the snapshot can be shared among threads without any locks or
+ * defensive copies, even when published without synchronization. The methods
+ * that would modify the snapshot, including {@link #restore()}, throw
+ * {@link UnsupportedOperationException}.
+ *
+ * <p>
+ * Use {@link VersionResolver#snapshot()} to get a snapshot of a resolved bundle.
+ */
+public final class ResolvedBundle implements Bundle {
+
+    /** Bundle version. */
+    private final BundleVersion version;
+    /** Package exports. */
+    private final Map<String, PackageExport> exports;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bundleVersion
+     *            the bundle version. It must not be {@code null}.
+     * @param packageExports
+     *            the package exports sorted by their names. It must not be
+     *            {@code null}.
+     */
+    private ResolvedBundle(BundleVersion bundleVersion, Export[] packageExports) {
+        version = Objects.requireNonNull(bundleVersion);
+        exports = new Exports(packageExports);
+    }
+
+    /**
+     * Makes a snapshot of the given bundle.
+     *
+     * <p>
+     * The snapshot captures the current resolutions, hence the bundle should be
+     * resolved already. The exports may inherit only from the bundle version or
+     * from the version groups.
+     *
+     * @param bundle
+     *            the bundle. It must not be {@code null}.
+     *
+     * @return the snapshot
+     *
+     * @throws IllegalArgumentException
+     *             if an export inherits from an unsupported statement
+     */
+    public static ResolvedBundle copyOf(Bundle bundle) {
+        final Map<VersionStatement, Statement> copies = new IdentityHashMap<>();
+        final BundleVersion bundleVersion = new ResolvedBundleVersion(bundle.version());
+        copies.put(bundle.version(), (Statement) bundleVersion);
+
+        final Export[] exports = bundle.exports().values().stream().map(export -> {
+            final PackageVersion version = export.version();
+            final Statement source = version.inheritance().map(s -> copy(s, copies)).orElse(null);
+            return new Export(export.packageName(), new ResolvedPackageVersion(version, source), export.attributes());
+        }).toArray(Export[]::new);
+
+        Arrays.sort(exports, Comparator.comparing(Export::packageName));
+        return new ResolvedBundle(bundleVersion, exports);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("ResolvedBundle[version=%s, exports=%d]", version.resolution(), exports.size());
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.model.Bundle#version()
+     */
+    public BundleVersion version() {
+        return version;
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.model.Bundle#exports()
+     */
+    public Map<String, PackageExport> exports() {
+        return exports;
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.model.Bundle#restore()
+     */
+    public void restore() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Copies a statement that an export inherits from, including its sources.
+     *
+     * @param statement
+     *            the statement to copy. It must not be {@code null}.
+     * @param copies
+     *            the map of the copied statements. It must not be {@code null}.
+     *
+     * @return the copy
+     *
+     * @throws IllegalArgumentException
+     *             if the statement is not supported
+     */
+    private static Statement copy(VersionStatement statement, Map<VersionStatement, Statement> copies) {
+        final Statement known = copies.get(statement);
+        if (known != null) {
+            return known;
+        }
+
+        if (!(statement instanceof VersionGroup)) {
+            throw new IllegalArgumentException("Unsupported inheritance source: " + statement);
+        }
+
+        final VersionGroup group = (VersionGroup) statement;
+        final Statement source = group.inheritance().map(s -> copy(s, copies)).orElse(null);
+        final Statement result = new ResolvedVersionGroup(group, source);
+        copies.put(statement, result);
+        return result;
+    }
+
+    /**
+     * An immutable version statement.
+     */
+    private abstract static class Statement implements VersionStatement {
+
+        /** Version resolution. */
+        private final Version resolution;
+        /** Version baseline. */
+        private final Version baseline;
+        /** Version constraint, or {@code null} if none. */
+        private final Version constraint;
+        /** Version variance, or {@code null} if none. */
+        private final VersionVariance variance;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param statement
+         *            the statement to copy. It must not be {@code null}.
+         */
+        protected Statement(VersionStatement statement) {
+            resolution = Objects.requireNonNull(statement.resolution());
+            baseline = Objects.requireNonNull(statement.baseline());
+            constraint = statement.constraint().orElse(null);
+            variance = statement.variance().orElse(null);
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            final StringBuilder result = new StringBuilder(baseline.toString());
+            constraint().ifPresent(o -> result.append(" < ").append(o));
+            variance().ifPresent(o -> result.append(" @ ").append(o));
+            return result.append(" # ").append(resolution).toString();
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#restore()
+         */
+        public final void restore() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#resolve(net.yetamine.pet4bnd.version.Version)
+         */
+        public final void resolve(Version value) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#resolution()
+         */
+        public final Version resolution() {
+            return resolution;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#baseline()
+         */
+        public final Version baseline() {
+            return baseline;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#baseline(net.yetamine.pet4bnd.version.Version)
+         */
+        public final void baseline(Version value) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#constraint()
+         */
+        public final Optional<Version> constraint() {
+            return Optional.ofNullable(constraint);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#constraint(net.yetamine.pet4bnd.version.Version)
+         */
+        public final void constraint(Version value) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#variance()
+         */
+        public final Optional<VersionVariance> variance() {
+            return Optional.ofNullable(variance);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#variance(net.yetamine.pet4bnd.version.VersionVariance)
+         */
+        public final void variance(VersionVariance value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * An immutable inheriting version statement.
+     */
+    private abstract static class InheritingStatement extends Statement implements InheritingVersion {
+
+        /** Inheritance source, or {@code null} if none. */
+        private final Statement inheritance;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param statement
+         *            the statement to copy. It must not be {@code null}.
+         * @param source
+         *            the copy of the inheritance source, or {@code null} if
+         *            none
+         */
+        protected InheritingStatement(VersionStatement statement, Statement source) {
+            super(statement);
+            inheritance = source;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.InheritingVersion#inheritance()
+         */
+        public final Optional<VersionStatement> inheritance() {
+            return Optional.ofNullable(inheritance);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.InheritingVersion#inherit(net.yetamine.pet4bnd.model.VersionStatement)
+         */
+        public final void inherit(VersionStatement source) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * An immutable bundle version.
+     */
+    private static final class ResolvedBundleVersion extends Statement implements BundleVersion {
+
+        /**
+         * Creates a new instance.
+         *
+         * @param statement
+         *            the statement to copy. It must not be {@code null}.
+         */
+        public ResolvedBundleVersion(BundleVersion statement) {
+            super(statement);
+        }
+    }
+
+    /**
+     * An immutable version group.
+     */
+    private static final class ResolvedVersionGroup extends InheritingStatement implements VersionGroup {
+
+        /** Identifier of the group. */
+        private final String identifier;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param statement
+         *            the statement to copy. It must not be {@code null}.
+         * @param source
+         *            the copy of the inheritance source, or {@code null} if
+         *            none
+         */
+        public ResolvedVersionGroup(VersionGroup statement, Statement source) {
+            super(statement, source);
+            identifier = Objects.requireNonNull(statement.identifier());
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionGroup#identifier()
+         */
+        public String identifier() {
+            return identifier;
+        }
+    }
+
+    /**
+     * An immutable package version.
+     */
+    private static final class ResolvedPackageVersion extends InheritingStatement implements PackageVersion {
+
+        /**
+         * Creates a new instance.
+         *
+         * @param statement
+         *            the statement to copy. It must not be {@code null}.
+         * @param source
+         *            the copy of the inheritance source, or {@code null} if
+         *            none
+         */
+        public ResolvedPackageVersion(PackageVersion statement, Statement source) {
+            super(statement, source);
+        }
+    }
+
+    /**
+     * An immutable package export.
+     */
+    private static final class Export implements PackageExport {
+
+        /** Name of the package. */
+        private final String packageName;
+        /** Version of the export. */
+        private final PackageVersion version;
+        /** Attributes of the export, or {@code null} if none. */
+        private final String attributes;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param exportName
+         *            the name of the package. It must not be {@code null}.
+         * @param exportVersion
+         *            the version of the export. It must not be {@code null}.
+         * @param exportAttributes
+         *            the attributes of the export. It must not be {@code null}.
+         */
+        public Export(String exportName, PackageVersion exportVersion, Optional<String> exportAttributes) {
+            packageName = Objects.requireNonNull(exportName);
+            version = Objects.requireNonNull(exportVersion);
+            attributes = exportAttributes.orElse(null);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.PackageExport#packageName()
+         */
+        public String packageName() {
+            return packageName;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.PackageExport#version()
+         */
+        public PackageVersion version() {
+            return version;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.PackageExport#attributes()
+         */
+        public Optional<String> attributes() {
+            return Optional.ofNullable(attributes);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.PackageExport#restore()
+         */
+        public void restore() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * An unmodifiable map of the exports backed by a sorted array.
+     */
+    private static final class Exports extends AbstractMap<String, PackageExport> {
+
+        /** Names of the exports in the ascending order. */
+        private final String[] names;
+        /** Exports in the order of their names. */
+        private final Export[] exports;
+        /** View of the entries. */
+        private final Set<Map.Entry<String, PackageExport>> entries;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param sortedExports
+         *            the exports sorted by their names. It must not be
+         *            {@code null}.
+         */
+        public Exports(Export[] sortedExports) {
+            exports = sortedExports;
+            names = Arrays.stream(exports).map(Export::packageName).toArray(String[]::new);
+            entries = new Entries(names, exports);
+        }
+
+        /**
+         * @see java.util.AbstractMap#size()
+         */
+        @Override
+        public int size() {
+            return exports.length;
+        }
+
+        /**
+         * @see java.util.AbstractMap#containsKey(java.lang.Object)
+         */
+        @Override
+        public boolean containsKey(Object key) {
+            return (indexOf(key) >= 0);
+        }
+
+        /**
+         * @see java.util.AbstractMap#get(java.lang.Object)
+         */
+        @Override
+        public PackageExport get(Object key) {
+            final int index = indexOf(key);
+            return (index >= 0) ? exports[index] : null;
+        }
+
+        /**
+         * @see java.util.AbstractMap#entrySet()
+         */
+        @Override
+        public Set<Map.Entry<String, PackageExport>> entrySet() {
+            return entries;
+        }
+
+        /**
+         * Returns the index of an export.
+         *
+         * @param name
+         *            the name of the export
+         *
+         * @return the index of the export, or a negative number if not found
+         */
+        private int indexOf(Object name) {
+            return (name instanceof String) ? Arrays.binarySearch(names, name) : -1;
+        }
+    }
+
+    /**
+     * An unmodifiable view of the entries of the exports.
+     */
+    private static final class Entries extends AbstractSet<Map.Entry<String, PackageExport>> {
+
+        /** Names of the exports in the ascending order. */
+        private final String[] names;
+        /** Exports in the order of their names. */
+        private final Export[] exports;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param exportNames
+         *            the names of the exports. It must not be {@code null}.
+         * @param sortedExports
+         *            the exports sorted by their names. It must not be
+         *            {@code null}.
+         */
+        public Entries(String[] exportNames, Export[] sortedExports) {
+            names = exportNames;
+            exports = sortedExports;
+        }
+
+        /**
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size() {
+            return exports.length;
+        }
+
+        /**
+         * @see java.util.AbstractCollection#iterator()
+         */
+        @Override
+        public Iterator<Map.Entry<String, PackageExport>> iterator() {
+            return new Iterator<Map.Entry<String, PackageExport>>() {
+
+                /** Index of the next export. */
+                private int next;
+
+                /**
+                 * @see java.util.Iterator#hasNext()
+                 */
+                public boolean hasNext() {
+                    return (next < exports.length);
+                }
+
+                /**
+                 * @see java.util.Iterator#next()
+                 */
+                public Map.Entry<String, PackageExport> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    final int index = next++;
+                    return new AbstractMap.SimpleImmutableEntry<>(names[index], exports[index]);
+                }
+            };
+        }
+    }
+}
@@ -18,8 +18,11 @@ package net.yetamine.pet4bnd.model;
 
 /**
  * Represents a version group.
+ *
+ * <p>
+ * A group may inherit from another group or from the bundle version.
  */
-public interface VersionGroup extends VersionStatement {
+public interface VersionGroup extends InheritingVersion {
 
     /**
      * Returns the identifier of this group.
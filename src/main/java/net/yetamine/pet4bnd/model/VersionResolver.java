@@ -16,19 +16,57 @@
 
 package net.yetamine.pet4bnd.model;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
+import net.yetamine.pet4bnd.version.Version;
 import net.yetamine.pet4bnd.version.VersionVariance;
 
 /**
  * The default variance resolution strategy with no feedback.
+ *
+ * <p>
+ * The resolver builds the dependency graph of the bundle version, the exports
+ * and the groups that they inherit from, directly or through other groups, and
+ * orders it topologically. The effective variance of a statement is the
+ * maximum of its own variance and of the effective variances of the statements
+ * that inherit from it; the bundle version takes the variances of all exports
+ * in account as well. Then a statement that inherits from another one shares
+ * its resolution, otherwise its resolution is its baseline with the effective
+ * variance applied.
+ *
+ * <p>
+ * Every statement is resolved once and the resolver remembers the results, so
+ * that after changing some statements and invalidating them, resolving again
+ * updates only the variances of the statements that the changed ones inherit
+ * from and the resolutions which actually change.
  */
 public class VersionResolver {
 
+    /** Shared table of the variances. */
+    private static final VersionVariance[] VARIANCES = VersionVariance.values();
+
     /** Target bundle. */
     private final Bundle bundle;
+    /** Nodes of the graph in the topological order, starting with the bundle version. */
+    private Node[] graph;
+    /** Nodes of the graph by their statements, which may be equal views. */
+    private Map<VersionStatement, Node> nodes;
+    /** Own variance of the bundle version, or {@code null} if not known yet. */
+    private VersionVariance bundleVariance;
+    /** Number of the exports for each variance. */
+    private final int[] exportVariances = new int[VARIANCES.length];
+    /** Indices of the nodes with pending variance updates. */
+    private final BitSet pendingVariances = new BitSet();
+    /** Indices of the nodes with pending resolution updates. */
+    private final BitSet pendingResolutions = new BitSet();
 
     /**
      * Creates a new instance.
@@ -45,69 +83,132 @@ public class VersionResolver {
      *
      * @param bundle
      *            the bundle to resolve. It must not be {@code null}.
+     *
+     * @throws IllegalStateException
+     *             if the inheritance of the versions makes a cycle
      */
     public static void resolve(Bundle bundle) {
-        final BundleVersion bundleVersion = bundle.version();
+        new VersionResolver(bundle).resolve();
+    }
 
-        // Get the variance for resolving the bundle at first
-        VersionVariance resolutionVariance = bundleVersion.variance().orElse(VersionVariance.NONE);
-        // If the variance is not the maximum, it must be found out precisely
-        if (resolutionVariance != VersionVariance.MAJOR) {
-            for (PackageExport export : bundle.exports().values()) {
-                final VersionVariance variance = export.version().variance().orElse(VersionVariance.NONE);
-
-                if (resolutionVariance.compareTo(variance) < 0) {
-                    resolutionVariance = variance; // Get the maximum of them
-                    if (resolutionVariance == VersionVariance.MAJOR) {
-                        break; // Short-circuit evaluation
-                    }
-                }
-            }
-        }
+    /**
+     * Returns the bundle to resolve.
+     *
+     * @return the bundle to resolve
+     */
+    public final Bundle bundle() {
+        return bundle;
+    }
 
-        // Resolve the bundle version
-        bundleVersion.resolve(resolutionVariance.apply(bundleVersion.baseline()));
-        if (bundleVersion.variance() != null) { // Clear it, but if necessary only
-            bundleVersion.variance(VersionVariance.NONE);
+    /**
+     * Resolves the versions of the bundle and all packages.
+     *
+     * <p>
+     * When resolving for the first time, or after invalidating the whole
+     * bundle, all statements are resolved. Otherwise only the statements
+     * affected by the invalidated ones are resolved again.
+     *
+     * <p>
+     * Resolving applies the variance of the bundle version, therefore the
+     * variance is reset to {@link VersionVariance#NONE} afterwards; however,
+     * the resolver remembers the original variance for resolving again.
+     *
+     * @return this instance
+     *
+     * @throws IllegalStateException
+     *             if the inheritance of the versions makes a cycle
+     */
+    public final VersionResolver resolve() {
+        if (graph == null) {
+            build();
         }
 
-        // Record the inheritance sources and the effective variances for them
-        final Map<VersionStatement, VersionVariance> sources = new HashMap<>();
-        // Force default resolution for all exports and get their inheritance sources
-        bundle.exports().values().stream().map(PackageExport::version).forEach(version -> {
-            version.inheritance().filter(source -> (source != bundleVersion)).ifPresent(source -> {
-                // Remember the source, if not done already, with its current variance
-                final VersionVariance current = sources.computeIfAbsent(source, v -> {
-                    return v.variance().orElse(VersionVariance.NONE);
-                });
+        // Propagate the variances from the dependent statements to their sources
+        for (int i = pendingVariances.length() - 1; 0 <= i; i = pendingVariances.previousSetBit(i - 1)) {
+            pendingVariances.clear(i);
+            updateVariance(graph[i]);
+        }
 
-                // If there is any variance, greater than the current one, update the record
-                version.variance().filter(v -> current.compareTo(v) < 0).ifPresent(v -> sources.put(source, v));
-            });
+        // Propagate the resolutions from the sources to their dependent statements
+        for (int i = pendingResolutions.nextSetBit(0); 0 <= i; i = pendingResolutions.nextSetBit(i + 1)) {
+            pendingResolutions.clear(i);
+            updateResolution(graph[i]);
+        }
 
-            version.resolve(null);
-        });
+        bundle.version().variance(VersionVariance.NONE);
+        return this;
+    }
 
-        // Force the resolution for the sources then
-        sources.forEach((source, variance) -> source.resolve(variance.apply(source.baseline())));
+    /**
+     * Resolves the versions if needed and makes an immutable snapshot of the
+     * result, which can be shared among threads safely.
+     *
+     * @return the snapshot of the resolved bundle
+     *
+     * @throws IllegalStateException
+     *             if the inheritance of the versions makes a cycle
+     */
+    public final ResolvedBundle snapshot() {
+        return ResolvedBundle.copyOf(resolve().bundle());
     }
 
     /**
-     * Returns the bundle to resolve.
+     * Invalidates the given statement, so that resolving again takes its
+     * current baseline and variance.
      *
-     * @return the bundle to resolve
+     * <p>
+     * If the statement is not known to the resolver or if its inheritance
+     * changed, the whole bundle is invalidated. Because resolving resets the
+     * variance of the bundle version, invalidating the bundle version takes the
+     * variance that the bundle version has at the moment.
+     *
+     * @param statement
+     *            the statement to invalidate. It must not be {@code null}.
+     *
+     * @return this instance
      */
-    public final Bundle bundle() {
-        return bundle;
+    public final VersionResolver invalidate(VersionStatement statement) {
+        Objects.requireNonNull(statement);
+
+        if (graph == null) {
+            if (statement == bundle.version()) { // Building the graph takes the remembered variance
+                bundleVariance = statement.variance().orElse(VersionVariance.NONE);
+            }
+
+            return this;
+        }
+
+        final Node node = nodes.get(statement);
+        if ((node == null) || !Objects.equals(sourceOf(statement), (node.source != null) ? node.source.statement : null)) {
+            return invalidate(); // The source may be even unknown to the resolver yet
+        }
+
+        final VersionVariance variance = statement.variance().orElse(VersionVariance.NONE);
+        if (node.index == 0) {
+            bundleVariance = variance;
+        }
+
+        if (node.export) { // Update the variance statistics for the bundle
+            --exportVariances[node.variance.ordinal()];
+            ++exportVariances[variance.ordinal()];
+            pendingVariances.set(0);
+        }
+
+        node.variance = variance;
+        pendingVariances.set(node.index);
+        pendingResolutions.set(node.index);
+        return this;
     }
 
     /**
-     * Resolves the versions of the bundle and all packages.
+     * Invalidates the whole bundle, which is necessary when adding or removing
+     * exports or changing the inheritance.
      *
      * @return this instance
      */
-    public final VersionResolver resolve() {
-        resolve(bundle);
+    public final VersionResolver invalidate() {
+        graph = null;
+        nodes = null;
         return this;
     }
 
@@ -174,4 +275,233 @@ public class VersionResolver {
     protected void constraintViolated() {
         // Do nothing
     }
+
+    /**
+     * Notifies that resolving changed the resolution of a statement.
+     *
+     * <p>
+     * The default implementation does nothing, but the method may be overridden
+     * to track the changes of incremental resolving; resolving the whole bundle
+     * notifies about all statements. The method must not modify the bundle.
+     *
+     * @param statement
+     *            the statement with the changed resolution. It must not be
+     *            {@code null}.
+     */
+    protected void resolutionChanged(VersionStatement statement) {
+        // Do nothing
+    }
+
+    /**
+     * Builds the graph of the statements and schedules all of them for
+     * updating.
+     *
+     * @throws IllegalStateException
+     *             if the inheritance of the versions makes a cycle
+     */
+    private void build() {
+        final Map<VersionStatement, Node> map = new HashMap<>();
+        final List<Node> list = new ArrayList<>();
+        Arrays.fill(exportVariances, 0);
+
+        // The bundle version is a root, so it may be the first
+        final BundleVersion bundleVersion = bundle.version();
+        if (bundleVariance == null) { // Remember the variance before resetting it
+            bundleVariance = bundleVersion.variance().orElse(VersionVariance.NONE);
+        }
+
+        node(map, list, bundleVersion).variance = bundleVariance;
+
+        final List<VersionStatement> chain = new ArrayList<>();
+        final Set<VersionStatement> visited = new HashSet<>();
+        for (PackageExport export : bundle.exports().values()) {
+            final PackageVersion version = export.version();
+
+            // Find the inheritance chain up to a known node, then add the sources before their dependents
+            for (VersionStatement s = version; (s != null) && !map.containsKey(s); s = sourceOf(s)) {
+                if (!visited.add(s)) {
+                    final String f = "Cyclic version inheritance found for '%s'.";
+                    throw new IllegalStateException(String.format(f, export.packageName()));
+                }
+
+                chain.add(s);
+            }
+
+            for (int i = chain.size(); 0 < i--;) {
+                node(map, list, chain.get(i));
+            }
+
+            chain.clear();
+            visited.clear();
+
+            final Node node = map.get(version);
+            if (!node.export) {
+                node.export = true;
+                ++exportVariances[node.variance.ordinal()];
+            }
+        }
+
+        graph = list.toArray(new Node[list.size()]);
+        nodes = map;
+        pendingVariances.clear();
+        pendingVariances.set(0, graph.length);
+        pendingResolutions.clear();
+        pendingResolutions.set(0, graph.length);
+    }
+
+    /**
+     * Adds a new node for the given statement, which sources must have nodes
+     * already.
+     *
+     * @param map
+     *            the map of the nodes. It must not be {@code null}.
+     * @param list
+     *            the list of the nodes. It must not be {@code null}.
+     * @param statement
+     *            the statement. It must not be {@code null}.
+     *
+     * @return the node
+     */
+    private static Node node(Map<VersionStatement, Node> map, List<Node> list, VersionStatement statement) {
+        final VersionStatement source = sourceOf(statement);
+        final Node node = new Node(statement, list.size(), (source != null) ? map.get(source) : null);
+        map.put(statement, node);
+        list.add(node);
+
+        if (node.source != null) {
+            node.source.dependents.add(node);
+        }
+
+        return node;
+    }
+
+    /**
+     * Updates the effective variance of a node and schedules the updates that
+     * the change requires.
+     *
+     * @param node
+     *            the node to update. It must not be {@code null}.
+     */
+    private void updateVariance(Node node) {
+        int effective = Math.max(node.variance.ordinal(), highest(node.contributions));
+        if (node.index == 0) { // The bundle version
+            effective = Math.max(effective, highest(exportVariances));
+        }
+
+        final VersionVariance result = VARIANCES[effective];
+        if (result == node.effective) {
+            return;
+        }
+
+        final Node source = node.source;
+        if (source != null) {
+            if (node.effective != null) {
+                --source.contributions[node.effective.ordinal()];
+            }
+
+            ++source.contributions[effective];
+            pendingVariances.set(source.index);
+        }
+
+        node.effective = result;
+        pendingResolutions.set(node.index);
+    }
+
+    /**
+     * Updates the resolution of a node and schedules the updates of the
+     * dependent nodes if the resolution changes.
+     *
+     * @param node
+     *            the node to update. It must not be {@code null}.
+     */
+    private void updateResolution(Node node) {
+        final VersionStatement statement = node.statement;
+        final Node source = node.source;
+
+        final Version result = (source != null) ? source.resolution : node.effective.apply(statement.baseline());
+        statement.resolve(result);
+
+        if (result.equals(node.resolution)) {
+            return;
+        }
+
+        node.resolution = result;
+        for (Node dependent : node.dependents) {
+            pendingResolutions.set(dependent.index);
+        }
+
+        resolutionChanged(statement);
+    }
+
+    /**
+     * Returns the ordinal of the highest variance with a non-zero count.
+     *
+     * @param counts
+     *            the counts of the variances. It must not be {@code null}.
+     *
+     * @return the ordinal of the highest variance
+     */
+    private static int highest(int[] counts) {
+        for (int i = counts.length; 0 < i--;) {
+            if (counts[i] != 0) {
+                return i;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns the inheritance source of a statement.
+     *
+     * @param statement
+     *            the statement. It must not be {@code null}.
+     *
+     * @return the inheritance source, or {@code null} if none
+     */
+    private static VersionStatement sourceOf(VersionStatement statement) {
+        return (statement instanceof InheritingVersion) ? ((InheritingVersion) statement).inheritance().orElse(null) : null;
+    }
+
+    /**
+     * A node of the dependency graph.
+     */
+    private static final class Node {
+
+        /** Statement of the node. */
+        final VersionStatement statement;
+        /** Index of the node in the topological order. */
+        final int index;
+        /** Source of the inheritance, or {@code null} if none. */
+        final Node source;
+        /** Nodes inheriting from this node. */
+        final List<Node> dependents = new ArrayList<>(0);
+        /** Number of the dependent nodes for each effective variance. */
+        final int[] contributions = new int[VARIANCES.length];
+        /** Own variance of the statement. */
+        VersionVariance variance;
+        /** Effective variance, or {@code null} if not computed yet. */
+        VersionVariance effective;
+        /** Resolution, or {@code null} if not computed yet. */
+        Version resolution;
+        /** Indicates that the statement is a version of an export. */
+        boolean export;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param nodeStatement
+         *            the statement. It must not be {@code null}.
+         * @param nodeIndex
+         *            the index of the node
+         * @param nodeSource
+         *            the source of the inheritance, or {@code null} if none
+         */
+        public Node(VersionStatement nodeStatement, int nodeIndex, Node nodeSource) {
+            statement = nodeStatement;
+            index = nodeIndex;
+            source = nodeSource;
+            variance = nodeStatement.variance().orElse(VersionVariance.NONE);
+        }
+    }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.format;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Records the problems found by parsing in a compact form.
+ *
+ * <p>
+ * Each diagnostic consists of the problem, the line number, the column and the
+ * argument of the problem message, so that recording a diagnostic costs a few
+ * array stores and the message is formatted only when requested.
+ */
+public final class Diagnostics {
+
+    /** Number of integers per diagnostic. */
+    private static final int RECORD_SIZE = 3;
+    /** Initial capacity. */
+    private static final int INITIAL_CAPACITY = 16;
+    /** Shared table of the problems. */
+    private static final Problem[] PROBLEMS = Problem.values();
+
+    /** Problems, lines and columns of the diagnostics. */
+    private int[] records = new int[0];
+    /** Arguments of the diagnostics. */
+    private String[] arguments = new String[0];
+    /** Number of the diagnostics. */
+    private int size;
+
+    /**
+     * Creates a new instance.
+     */
+    Diagnostics() {
+        // Default constructor
+    }
+
+    /**
+     * Adds a diagnostic.
+     *
+     * @param problem
+     *            the problem. It must not be {@code null}.
+     * @param line
+     *            the line number, starting from 1, or 0 if not related to a
+     *            line
+     * @param column
+     *            the column, starting from 0, or -1 if not known
+     * @param argument
+     *            the argument of the problem message if any
+     */
+    void add(Problem problem, int line, int column, String argument) {
+        Objects.requireNonNull(problem);
+
+        if (size == arguments.length) {
+            final int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            records = Arrays.copyOf(records, capacity * RECORD_SIZE);
+            arguments = Arrays.copyOf(arguments, capacity);
+        }
+
+        final int offset = size * RECORD_SIZE;
+        records[offset] = problem.ordinal();
+        records[offset + 1] = line;
+        records[offset + 2] = column;
+        arguments[size++] = argument;
+    }
+
+    /**
+     * Returns the number of the diagnostics.
+     *
+     * @return the number of the diagnostics
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the problem of the given diagnostic.
+     *
+     * @param index
+     *            the index of the diagnostic
+     *
+     * @return the problem
+     *
+     * @throws IndexOutOfBoundsException
+     *             if the index is out of the bounds
+     */
+    public Problem problem(int index) {
+        return PROBLEMS[records[offset(index)]];
+    }
+
+    /**
+     * Returns the line number of the given diagnostic.
+     *
+     * @param index
+     *            the index of the diagnostic
+     *
+     * @return the line number, starting from 1, or 0 if not related to a line
+     *
+     * @throws IndexOutOfBoundsException
+     *             if the index is out of the bounds
+     */
+    public int line(int index) {
+        return records[offset(index) + 1];
+    }
+
+    /**
+     * Returns the column of the given diagnostic.
+     *
+     * @param index
+     *            the index of the diagnostic
+     *
+     * @return the column, starting from 0, or -1 if not known
+     *
+     * @throws IndexOutOfBoundsException
+     *             if the index is out of the bounds
+     */
+    public int column(int index) {
+        return records[offset(index) + 2];
+    }
+
+    /**
+     * Returns the argument of the problem message of the given diagnostic.
+     *
+     * @param index
+     *            the index of the diagnostic
+     *
+     * @return the argument, or {@code null} if none
+     *
+     * @throws IndexOutOfBoundsException
+     *             if the index is out of the bounds
+     */
+    public String argument(int index) {
+        offset(index); // Check the index
+        return arguments[index];
+    }
+
+    /**
+     * Formats the message of the given diagnostic.
+     *
+     * @param index
+     *            the index of the diagnostic
+     *
+     * @return the message
+     *
+     * @throws IndexOutOfBoundsException
+     *             if the index is out of the bounds
+     */
+    public String message(int index) {
+        return problem(index).message(arguments[index]);
+    }
+
+    /**
+     * Returns the offset of the record for the given diagnostic.
+     *
+     * @param index
+     *            the index of the diagnostic
+     *
+     * @return the offset of the record
+     *
+     * @throws IndexOutOfBoundsException
+     *             if the index is out of the bounds
+     */
+    private int offset(int index) {
+        if ((index < 0) || (size <= index)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        return index * RECORD_SIZE;
+    }
+}
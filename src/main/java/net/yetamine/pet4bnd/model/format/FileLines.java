@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Splits a UTF-8 encoded file into lines while working on the bytes of the
+ * file.
+ *
+ * <p>
+ * The bytes are read in chunks into a heap buffer and lines consisting of ASCII
+ * characters only are turned in strings directly, which is cheaper than
+ * decoding them; other lines are decoded as usual. The line splitting follows
+ * the same rules as {@link Files#lines(Path)}.
+ *
+ * <p>
+ * The file is not mapped in the memory, because a mapping stays alive until
+ * the garbage collector releases it and some platforms (notably Windows) do not
+ * allow truncating or replacing a file with a live mapping, which restoring the
+ * source right after parsing it requires.
+ */
+final class FileLines {
+
+    /** Default size of a chunk. */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Prevents creating instances of this class.
+     */
+    private FileLines() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Passes all lines of the given file to the consumer.
+     *
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     * @param consumer
+     *            the consumer of the lines. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if an I/O operation failed
+     */
+    public static void forEach(Path path, Consumer<? super String> consumer) throws IOException {
+        Objects.requireNonNull(consumer);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Fit a small file in a single chunk, one byte more for detecting the end
+            final long size = Files.isRegularFile(path) ? channel.size() : CHUNK_SIZE;
+            forEach(channel, (int) Math.min(CHUNK_SIZE, size + 1), consumer);
+        }
+    }
+
+    /**
+     * Passes all remaining lines of the given channel to the consumer.
+     *
+     * @param channel
+     *            the channel with the content. It must not be {@code null}.
+     * @param chunkSize
+     *            the initial size of a chunk. It must be positive.
+     * @param consumer
+     *            the consumer of the lines. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the content could not be read or decoded
+     */
+    static void forEach(ReadableByteChannel channel, int chunkSize, Consumer<? super String> consumer) throws IOException {
+        CharsetDecoder decoder = null; // Make only when necessary
+        byte[] chunk = new byte[chunkSize];
+        int filled = 0;
+
+        while (true) {
+            final ByteBuffer target = ByteBuffer.wrap(chunk, filled, chunk.length - filled);
+
+            boolean last = false;
+            while (target.hasRemaining()) {
+                if (channel.read(target) < 0) {
+                    last = true;
+                    break;
+                }
+            }
+
+            filled = target.position();
+            int start = 0;
+
+            while (start < filled) {
+                boolean ascii = true;
+
+                // Find the end of the line and check if the line is pure ASCII
+                int end = start;
+                for (byte b; (end < filled) && ((b = chunk[end]) != '\n') && (b != '\r'); end++) {
+                    ascii &= (0 <= b);
+                }
+
+                // Need more data to find the line end or to find out if CR is followed by LF
+                if (!last && ((filled <= end) || ((chunk[end] == '\r') && (filled <= end + 1)))) {
+                    break;
+                }
+
+                if (ascii) {
+                    consumer.accept(new String(chunk, start, end - start, StandardCharsets.ISO_8859_1));
+                } else {
+                    if (decoder == null) { // Use the same rules as Files.lines()
+                        decoder = StandardCharsets.UTF_8.newDecoder();
+                        decoder.onMalformedInput(CodingErrorAction.REPORT);
+                        decoder.onUnmappableCharacter(CodingErrorAction.REPORT);
+                    }
+
+                    consumer.accept(decoder.decode(ByteBuffer.wrap(chunk, start, end - start)).toString());
+                }
+
+                // Skip the line terminator, which may be CR, LF or CR LF
+                if ((end < filled) && (chunk[end] == '\r')) {
+                    ++end;
+                }
+
+                if ((end < filled) && (chunk[end] == '\n')) {
+                    ++end;
+                }
+
+                start = end;
+            }
+
+            if (last) {
+                return;
+            }
+
+            // Keep the incomplete line and make room for more data
+            filled -= start;
+            if (start == 0) { // The line is too long for the chunk
+                chunk = Arrays.copyOf(chunk, chunk.length * 2);
+            } else {
+                System.arraycopy(chunk, start, chunk, 0, filled);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.format;
+
+import java.text.ParseException;
+import java.util.Objects;
+
+/**
+ * Signals a syntax failure of a line.
+ *
+ * <p>
+ * The failure is a mere carrier of the problem and of its argument, which
+ * {@link LineToken} takes over; therefore it has no stack trace and it formats
+ * the message only on demand, which makes it cheap even for sources with many
+ * malformed lines.
+ */
+final class LineFailure extends ParseException {
+
+    /** Serializable version: 1 */
+    private static final long serialVersionUID = 1L;
+
+    /** Problem of the line. */
+    private final Problem problem;
+    /** Argument of the problem message. */
+    private final String argument;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param lineProblem
+     *            the problem. It must not be {@code null}.
+     * @param problemArgument
+     *            the argument of the problem message if any
+     * @param position
+     *            the position of the failure
+     */
+    public LineFailure(Problem lineProblem, String problemArgument, int position) {
+        super(null, position);
+        problem = Objects.requireNonNull(lineProblem);
+        argument = problemArgument;
+    }
+
+    /**
+     * Returns the problem.
+     *
+     * @return the problem
+     */
+    public Problem problem() {
+        return problem;
+    }
+
+    /**
+     * Returns the argument of the problem message.
+     *
+     * @return the argument of the problem message, or {@code null} if none
+     */
+    public String argument() {
+        return argument;
+    }
+
+    /**
+     * @see java.lang.Throwable#getMessage()
+     */
+    @Override
+    public String getMessage() {
+        return problem.message(argument);
+    }
+
+    /**
+     * @see java.lang.Throwable#fillInStackTrace()
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this; // Stackless
+    }
+}
@@ -17,24 +17,41 @@
 package net.yetamine.pet4bnd.model.format;
 
 import java.text.ParseException;
-import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import net.yetamine.pet4bnd.version.Version;
 import net.yetamine.pet4bnd.version.VersionVariance;
 
 /**
  * A parser for a line processing.
+ *
+ * <p>
+ * The parser scans the line from the left to the right and examines every
+ * character at most a constant number of times, no matter what the content is;
+ * in other words, analyzing a line takes linear time in the length of the line.
+ * Any change of the parser must keep this guarantee, so that even long lines,
+ * e.g., generated attributes padded with whitespace, can't slow the parsing
+ * down. The recognized syntax follows the grammar of the format exactly as the
+ * former regular expression patterns did, including the notion of whitespace
+ * ({@code [ \t\n\x0B\f\r]}), digits ({@code [0-9]}) and the end of the input
+ * which may precede the final line terminator.
  */
 final class LineParser {
 
+    /** Shared table of the variances. */
+    private static final VersionVariance[] VARIANCES = VersionVariance.values();
+
     /** Line being parsed. */
     private final CharSequence line;
+    /** Length of the line. */
+    private final int length;
     /** Line representation for reconstruction. */
-    private final TextLine text;
+    private final TextLine.Builder text;
     /** Current parsing position. */
     private int position;
+    /** Start of the last whitespace skipped. */
+    private int whitespaceStart = -1;
+    /** End of the last whitespace skipped. */
+    private int whitespaceEnd;
 
     /**
      * Creates a new instance.
@@ -45,8 +62,9 @@ final class LineParser {
      *            the position to start with
      */
     public LineParser(CharSequence source, int startPosition) {
-        position = Math.min(Math.max(0, startPosition), source.length());
-        text = new TextLine();
+        length = source.length();
+        position = Math.min(Math.max(0, startPosition), length);
+        text = new TextLine.Builder(source.toString());
         line = source;
     }
 
@@ -72,84 +90,108 @@ final class LineParser {
     /**
      * Returns the line text representation.
      *
+     * @param formatter
+     *            the formatter of the version slots. It must not be
+     *            {@code null} if any version has been parsed.
+     *
      * @return the line text representation
      */
-    public TextLine text() {
-        return text;
+    public TextLine text(TextLine.Formatter formatter) {
+        return text.build(formatter);
+    }
+
+    /**
+     * Returns the current parsing position.
+     *
+     * @return the current parsing position
+     */
+    public int position() {
+        return position;
     }
 
     // Failure handling
 
     /**
-     * Returns a {@link ParseException} with the given message and cause at the
-     * current parsing position.
+     * Returns a {@link ParseException} for the given problem at the current
+     * parsing position.
+     *
+     * <p>
+     * The exception is a stackless {@link LineFailure}, which is cheap to make.
      *
-     * @param message
-     *            the message to use
-     * @param cause
-     *            the cause exception if any
+     * @param problem
+     *            the problem. It must not be {@code null}.
+     * @param argument
+     *            the argument of the problem message if any
      *
      * @return the exception to throw
      */
-    public ParseException failure(String message, Throwable cause) {
-        final ParseException result = new ParseException(message, position);
-        result.initCause(cause);
-        return result;
+    public ParseException failure(Problem problem, String argument) {
+        return new LineFailure(problem, argument, position);
     }
 
     /**
-     * Returns a {@link ParseException} with the given message at the current
+     * Returns a {@link ParseException} for the given problem at the current
      * parsing position.
      *
-     * @param message
-     *            the message to use
+     * @param problem
+     *            the problem. It must not be {@code null}.
      *
      * @return the exception to throw
      */
-    public ParseException failure(String message) {
-        return new ParseException(message, position);
+    public ParseException failure(Problem problem) {
+        return failure(problem, null);
     }
 
     // Parse attributes
 
-    /** Pattern for an attribute specification. */
-    private static final Pattern PATTERN_ATTRIBUTES // @formatter:break
-            = Pattern.compile("\\s*\\+\\s*(?<value>.*?)\\s*$");
-
     /**
      * Parses an attribute specification.
      *
      * @return the attribute specification, or {@code null} if none
      */
     public String attributes() {
-        final Matcher matcher = PATTERN_ATTRIBUTES.matcher(line);
+        final int plus = skipWhitespace(position);
+        if ((length <= plus) || (line.charAt(plus) != '+')) {
+            return null;
+        }
 
-        if (parse(matcher)) {
-            text.append(matcher.group());
-            position = matcher.end();
-            return matcher.group("value");
+        final int value = skipWhitespace(plus + 1);
+        // The value can't span over a line terminator
+        final int limit = findLineTerminator(value);
+
+        // The shortest value, which is followed just by whitespace to the end,
+        // ends before the whitespace preceding the earliest end of the input
+        int inputEnd = Math.max(value, length - 2);
+        while (!isInputEnd(inputEnd)) {
+            ++inputEnd;
         }
 
-        return null;
+        final int valueEnding = skipWhitespaceBackward(inputEnd, value);
+        if (limit < valueEnding) {
+            return null;
+        }
+
+        // Having the value, take as much of the trailing whitespace as possible,
+        // which is all up to the input end and maybe some after it
+        final int end = lastInputEnd(skipWhitespace(inputEnd));
+        omitRemaining(end);
+        position = end;
+        return substring(value, valueEnding);
     }
 
     // Parse comments and blank lines
 
-    /** Pattern for a non-significant line (comments and blank lines). */
-    private static final Pattern PATTERN_IGNORABLE // @formatter:break
-            = Pattern.compile("\\s*(#.*)?$");
-
     /**
      * Parses an ignorable fragment.
      *
      * @return {@code true} if parsing successful
      */
     public boolean ignorable() {
-        final Matcher matcher = PATTERN_IGNORABLE.matcher(line);
+        final int end = ignorableEnd(position);
 
-        if (parse(matcher)) {
-            text.append(matcher.group());
-            position = matcher.end();
+        if (end != -1) {
+            omitRemaining(end);
+            position = end;
             return true;
         }
 
@@ -164,17 +206,12 @@ final class LineParser {
      */
     public boolean trailing() {
         // Check the trailing string (but do not store useless whitespace)
-        final String trailing = line.subSequence(position, line.length()).toString();
-        text.append(trailing); // Store trailing always
-        return PATTERN_IGNORABLE.matcher(trailing).matches();
+        final int comment = skipWhitespace(position); // The trailing part remains always
+        return (comment == length) || ((line.charAt(comment) == '#') && (findLineTerminator(comment) == length));
     }
 
     // Parse export declarations
 
-    /** Pattern for finding the name of a definition. */
-    private static final Pattern PATTERN_DECLARATION_EXPORT // @formatter:break
-            = Pattern.compile("\\s*(?<value>[^\\s$:=<@#]+)\\s*:\\s*");
-
     /**
      * Parses an export declaration.
      *
@@ -182,15 +219,12 @@ final class LineParser {
      *         not stand at a valid declaration
      */
     public String exportDeclaration() {
-        return constant(PATTERN_DECLARATION_EXPORT, "value");
+        final int start = skipWhitespace(position);
+        return declaration(start, start);
     }
 
     // Parse group declarations
 
-    /** Pattern for finding the inheritance. */
-    private static final Pattern PATTERN_DECLARATION_GROUP // @formatter:break
-            = Pattern.compile("\\s*(?<value>\\$[^\\s$:=<@#]+)\\s*:\\s*");
-
     /**
      * Parses a group declaration.
      *
@@ -198,225 +232,590 @@ final class LineParser {
      *         not stand at a valid declaration
      */
     public String groupDeclaration() {
-        return constant(PATTERN_DECLARATION_GROUP, "value");
+        final int start = skipWhitespace(position);
+        return ((start < length) && (line.charAt(start) == '$')) ? declaration(start, start + 1) : null;
     }
 
     // Parse group references
 
-    /** Pattern for finding the group reference. */
-    private static final Pattern PATTERN_DEFINITION_REFERENCE // @formatter:break
-            = Pattern.compile("(?<value>\\$[^\\s$:=<@#]+)");
-
     /**
-     * Parses a group reference.
-     *
-     * @param formatter
-     *            the formatter of the representation placeholder. It must not
-     *            be {@code null}.
+     * Parses a group reference, which occupies the {@link TextLine#BASELINE}
+     * slot of the representation.
      *
      * @return the identifier of the group, or {@code null} if the parser does
      *         not stand at a valid reference
      */
-    public String groupReference(TextFragment formatter) {
-        Objects.requireNonNull(formatter);
-
-        final Matcher matcher = PATTERN_DEFINITION_REFERENCE.matcher(line);
+    public String groupReference() {
+        if ((length <= position) || (line.charAt(position) != '$')) {
+            return null;
+        }
 
-        if (parse(matcher)) {
-            final String result = matcher.group("value");
-            position = matcher.end();
-            text.append(formatter);
-            return result;
+        final int end = skipName(position + 1);
+        if (end == position + 1) {
+            return null;
         }
 
-        return null;
+        final String result = substring(position, end);
+        text.edit(position, end - position, TextLine.BASELINE, 0);
+        position = end;
+        return result;
     }
 
     // Parse version baseline
 
-    /** Pattern for finding the version baseline. */
-    private static final Pattern PATTERN_DEFINITION_BASELINE = Pattern
-            .compile("(?<value>\\d+(\\.\\d+)?(\\.\\d+)?(\\.[^\\s:=<@#]+)?)");
-
     /**
-     * Parses the version baseline.
-     *
-     * @param formatter
-     *            the formatter of the representation placeholder. It must not
-     *            be {@code null}.
+     * Parses the version baseline, which occupies the {@link TextLine#BASELINE}
+     * slot of the representation.
      *
      * @return the version baseline
      *
      * @throws ParseException
      *             if the parsing fails
      */
-    public Version baseline(TextFragment formatter) throws ParseException {
-        Objects.requireNonNull(formatter);
-
-        if (line.length() <= position) { // Match the version baseline
-            throw failure("Missing version baseline.");
+    public Version baseline() throws ParseException {
+        if (length <= position) { // Match the version baseline
+            throw failure(Problem.MISSING_BASELINE);
         }
 
-        final Matcher matcher = PATTERN_DEFINITION_BASELINE.matcher(line);
+        final int end = skipVersion(position);
 
-        if (parse(matcher)) {
-            final Version result = version(matcher.group("value"));
-            position = matcher.end();
-            text.append(formatter);
+        if (end != position) {
+            final Version result = version(position, end);
+            text.edit(position, end - position, TextLine.BASELINE, 0);
+            position = end;
             return result;
         }
 
-        throw failure("Version baseline invalid.");
+        throw failure(Problem.INVALID_BASELINE);
     }
 
     // Parse constraints
 
-    /** Pattern for finding the version constraint. */
-    private static final Pattern PATTERN_DEFINITION_CONSTRAINT // @formatter:break
-            = Pattern.compile("(?<prefix>\\s*<\\s*)(?<value>\\d+(\\.\\d+)?(\\.\\d+)?(\\.[^\\s:=<@#]+)?)");
-
     /**
-     * Parses the version constraint.
-     *
-     * @param formatter
-     *            the formatter of the representation placeholder. It must not
-     *            be {@code null}.
+     * Parses the version constraint, which occupies the
+     * {@link TextLine#CONSTRAINT} slot of the representation.
      *
      * @return the version constraint, or {@code null} if none
      *
      * @throws ParseException
      *             if the parsing fails
      */
-    public Version constraint(TextFragment formatter) throws ParseException {
-        Objects.requireNonNull(formatter);
+    public Version constraint() throws ParseException {
+        final int operator = skipWhitespace(position);
+        if ((operator < length) && (line.charAt(operator) == '<')) {
+            final int start = skipWhitespace(operator + 1);
+            final int end = skipVersion(start);
+
+            if (end != start) {
+                final Version result = version(start, end);
+                text.edit(position, end - position, TextLine.CONSTRAINT, start - position);
+                position = end;
+                return result;
+            }
+        }
 
-        final Matcher matcher = PATTERN_DEFINITION_CONSTRAINT.matcher(line);
+        text.edit(position, 0, TextLine.CONSTRAINT, TextLine.DEFAULT_PREFIX);
+        return null;
+    }
+
+    // Parse version variances
 
-        if (parse(matcher)) {
-            final Version result = version(matcher.group("value"));
-            final String prefix = matcher.group("prefix");
+    /**
+     * Parses the version variance, which occupies the {@link TextLine#VARIANCE}
+     * slot of the representation.
+     *
+     * @return the version variance, or an empty container if none available
+     *
+     * @throws ParseException
+     *             if the parsing fails
+     */
+    public VersionVariance variance() throws ParseException {
+        final int operator = skipWhitespace(position);
+        if ((operator < length) && (line.charAt(operator) == '@')) {
+            final int start = skipWhitespace(operator + 1);
+            int end = start;
+            while ((end < length) && isLetter(line.charAt(end))) {
+                ++end;
+            }
 
-            text.append(() -> {
-                final String value = formatter.format();
-                return (value != null) ? prefix + value : null;
-            });
+            if (end != start) {
+                final String name = substring(start, end).toUpperCase();
+                final VersionVariance result = varianceOf(name);
+                if (result == null) {
+                    throw failure(Problem.INVALID_VARIANCE, name);
+                }
 
-            position = matcher.end();
-            return result;
+                text.edit(position, end - position, TextLine.VARIANCE, start - position);
+                position = end;
+                return result;
+            }
         }
 
-        text.append(() -> {
-            final String value = formatter.format();
-            return (value != null) ? " < " + value : null;
-        });
-
+        text.edit(position, 0, TextLine.VARIANCE, TextLine.DEFAULT_PREFIX);
         return null;
     }
 
-    // Parse version variances
+    // Scanning support
 
-    /** Pattern for finding the version variance. */
-    private static final Pattern PATTERN_DEFINITION_VARIANCE // @formatter:break
-            = Pattern.compile("(?<prefix>\\s*@\\s*)(?<value>[A-Za-z]+)");
+    /**
+     * Parses a declaration, i.e., a name followed by a colon, starting at the
+     * given position, which must be after the leading whitespace.
+     *
+     * @param start
+     *            the position of the declared identifier
+     * @param name
+     *            the position of the name within the identifier
+     *
+     * @return the identifier, or {@code null} if not matching
+     */
+    private String declaration(int start, int name) {
+        final int end = skipName(name);
+        if (end == name) {
+            return null;
+        }
+
+        final int colon = skipWhitespace(end);
+        if ((length <= colon) || (line.charAt(colon) != ':')) {
+            return null;
+        }
+
+        final String result = substring(start, end);
+        position = skipWhitespace(colon + 1);
+        return result;
+    }
 
     /**
-     * Parses the version variance.
+     * Omits the remaining part of the line, starting at the given position, from
+     * the representation.
      *
-     * @param formatter
-     *            the formatter of the representation placeholder. It must not
-     *            be {@code null}.
+     * @param end
+     *            the end of the represented part
+     */
+    private void omitRemaining(int end) {
+        if (end < length) {
+            text.edit(end, length - end, TextLine.OMITTED, 0);
+        }
+    }
+
+    /**
+     * Finds the end of an ignorable fragment (i.e., optional whitespace and an
+     * optional comment up to the end of the input).
      *
-     * @return the version variance, or an empty container if none available
+     * @param start
+     *            the position to start at
      *
-     * @throws ParseException
-     *             if the parsing fails
+     * @return the end of the fragment, or -1 if no such fragment found
      */
-    public VersionVariance variance(TextFragment formatter) throws ParseException {
-        Objects.requireNonNull(formatter);
+    private int ignorableEnd(int start) {
+        final int result = skipWhitespace(start);
+
+        if ((result < length) && (line.charAt(result) == '#')) {
+            final int end = findLineTerminator(result);
+            return isInputEnd(end) ? end : -1;
+        }
+
+        return isInputEnd(result) ? result : -1;
+    }
 
-        final Matcher matcher = PATTERN_DEFINITION_VARIANCE.matcher(line);
+    /**
+     * Skips a version literal, i.e., {@code major(.minor(.micro)?)?(.qualifier)?}.
+     *
+     * @param start
+     *            the position to start at
+     *
+     * @return the end of the literal, or the starting position if there is no
+     *         version literal
+     */
+    private int skipVersion(int start) {
+        int result = skipDigits(start);
+        if (result == start) {
+            return start;
+        }
 
-        if (parse(matcher)) {
-            final VersionVariance result;
-            try { // Parse the variance safely
-                result = VersionVariance.valueOf(matcher.group("value").toUpperCase());
-            } catch (IllegalArgumentException e) {
-                throw failure(e.getMessage(), e);
+        // Minor and micro version numbers
+        for (int i = 0; i < 2; i++) {
+            if ((result < length) && (line.charAt(result) == '.')) {
+                final int next = skipDigits(result + 1);
+                if (next != result + 1) {
+                    result = next;
+                    continue;
+                }
             }
 
-            final String prefix = matcher.group("prefix");
+            break;
+        }
 
-            text.append(() -> {
-                final String value = formatter.format();
-                return (value != null) ? prefix + value : null;
-            });
+        // Qualifier
+        if ((result < length) && (line.charAt(result) == '.')) {
+            final int next = skipQualifier(result + 1);
+            if (next != result + 1) {
+                result = next;
+            }
+        }
 
-            position = matcher.end();
-            return result;
+        return result;
+    }
+
+    /**
+     * Skips digits.
+     *
+     * @param start
+     *            the position to start at
+     *
+     * @return the position of the first non-digit character
+     */
+    private int skipDigits(int start) {
+        int result = start;
+        while ((result < length) && isDigit(line.charAt(result))) {
+            ++result;
         }
 
-        text.append(() -> {
-            final String value = formatter.format();
-            return (value != null) ? " @ " + value : null;
-        });
+        return result;
+    }
 
-        return null;
+    /**
+     * Skips a qualifier.
+     *
+     * @param start
+     *            the position to start at
+     *
+     * @return the position of the first character not belonging to the
+     *         qualifier
+     */
+    private int skipQualifier(int start) {
+        int result = start;
+        while ((result < length) && isQualifierCharacter(line.charAt(result))) {
+            ++result;
+        }
+
+        return result;
     }
 
     /**
-     * Parses the input with the given matcher.
+     * Skips a name (of a group, excluding the leading dollar, or of a package).
      *
-     * @param matcher
-     *            the matcher. It must not be {@code null}.
+     * @param start
+     *            the position to start at
      *
-     * @return {@code true} if the matcher finds the match at the current
-     *         position
+     * @return the position of the first character not belonging to the name
      */
-    private boolean parse(Matcher matcher) {
-        return matcher.find(position) && (matcher.start() == position);
+    private int skipName(int start) {
+        int result = start;
+        while ((result < length) && isNameCharacter(line.charAt(result))) {
+            ++result;
+        }
+
+        return result;
     }
 
     /**
-     * Parses a constant with the given pattern if possible.
+     * Skips whitespace.
+     *
+     * <p>
+     * Several alternatives start with skipping the same whitespace, therefore
+     * the last result is remembered, so that the whitespace is scanned once.
      *
-     * @param pattern
-     *            the pattern to use. It must not be {@code null}.
-     * @param value
-     *            the name of the group to provide the value. It must not be
-     *            {@code null}.
+     * @param start
+     *            the position to start at
      *
-     * @return the text provided by the given group of the pattern, or
-     *         {@code null} if not matching
+     * @return the position of the first non-whitespace character
      */
-    private String constant(Pattern pattern, String value) {
-        final Matcher matcher = pattern.matcher(line);
+    private int skipWhitespace(int start) {
+        if (start == whitespaceStart) {
+            return whitespaceEnd;
+        }
 
-        if (matcher.find(position)) {
-            final String result = matcher.group(value);
-            text.append(matcher.group());
-            position = matcher.end();
-            return result;
+        int result = start;
+        while ((result < length) && isWhitespace(line.charAt(result))) {
+            ++result;
         }
 
-        return null;
+        whitespaceStart = start;
+        whitespaceEnd = result;
+        return result;
     }
 
     /**
-     * Parses a version string.
+     * Skips whitespace backwards.
      *
-     * @param value
-     *            the value to parse. It must not be {@code null}.
+     * @param start
+     *            the position to start at (exclusive)
+     * @param limit
+     *            the lowest position to reach
+     *
+     * @return the position just after the last non-whitespace character
+     */
+    private int skipWhitespaceBackward(int start, int limit) {
+        int result = start;
+        while ((limit < result) && isWhitespace(line.charAt(result - 1))) {
+            --result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds the first line terminator.
+     *
+     * @param start
+     *            the position to start at
+     *
+     * @return the position of the first line terminator, or the length of the
+     *         input if there is no line terminator
+     */
+    private int findLineTerminator(int start) {
+        int result = start;
+        while ((result < length) && !isLineTerminator(line.charAt(result))) {
+            ++result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds the last position, not less than the given one, at which the input
+     * may end.
+     *
+     * @param start
+     *            the position to start at, it must be the end of the input
+     *            already or followed just by whitespace
+     *
+     * @return the last position of the input end
+     */
+    private int lastInputEnd(int start) {
+        for (int result = start; length - 2 <= result; result--) {
+            if (isInputEnd(result)) {
+                return result;
+            }
+        }
+
+        return start;
+    }
+
+    /**
+     * Tests if the given position is the end of the input, which is either the
+     * end of the line, or the position of the final line terminator.
+     *
+     * @param index
+     *            the position to test
+     *
+     * @return {@code true} if the position is the end of the input
+     */
+    private boolean isInputEnd(int index) {
+        if (index == length) {
+            return true;
+        }
+
+        if (index == length - 2) {
+            return (line.charAt(index) == '\r') && (line.charAt(index + 1) == '\n');
+        }
+
+        if (index == length - 1) {
+            final char c = line.charAt(index);
+            return (c == '\n') ? ((index == 0) || (line.charAt(index - 1) != '\r')) : isLineTerminator(c);
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns a substring of the input.
+     *
+     * @param start
+     *            the starting index (inclusive)
+     * @param end
+     *            the ending index (exclusive)
+     *
+     * @return the substring
+     */
+    private String substring(int start, int end) {
+        return line.subSequence(start, end).toString();
+    }
+
+    /**
+     * Makes a version from the given part of the input.
+     *
+     * @param start
+     *            the starting index (inclusive) of a valid version literal
+     * @param end
+     *            the ending index (exclusive) of a valid version literal
      *
      * @return the version
      *
      * @throws ParseException
-     *             if the parsing fails
+     *             if the version could not be made
      */
-    private Version version(String value) throws ParseException {
+    private Version version(int start, int end) throws ParseException {
         try {
-            return Version.valueOf(value);
+            final int majorEnd = skipDigits(start);
+            final int major = number(start, majorEnd);
+
+            int minor = 0;
+            int micro = 0;
+            int next = majorEnd;
+            if ((next < end) && isDigit(line.charAt(next + 1))) {
+                final int minorEnd = skipDigits(next + 1);
+                minor = number(next + 1, minorEnd);
+                next = minorEnd;
+
+                if ((next < end) && isDigit(line.charAt(next + 1))) {
+                    final int microEnd = skipDigits(next + 1);
+                    micro = number(next + 1, microEnd);
+                    next = microEnd;
+                }
+            }
+
+            final String qualifier = (next < end) ? substring(next + 1, end) : null;
+            return Version.of(major, minor, micro, qualifier);
         } catch (IllegalArgumentException e) {
-            throw failure(e.getMessage(), e);
+            throw failure(Problem.INVALID_VERSION, e.getMessage());
         }
     }
+
+    /**
+     * Converts a string representation of a version number.
+     *
+     * @param start
+     *            the starting index (inclusive) of the digits
+     * @param end
+     *            the ending index (exclusive) of the digits
+     *
+     * @return the version number
+     *
+     * @throws ParseException
+     *             if the number is out of the range
+     */
+    private int number(int start, int end) throws ParseException {
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            result = result * 10 + (line.charAt(i) - '0');
+
+            if (Integer.MAX_VALUE < result) {
+                throw failure(Problem.INVALID_NUMBER, substring(start, end));
+            }
+        }
+
+        return (int) result;
+    }
+
+    /**
+     * Finds the variance with the given name.
+     *
+     * @param name
+     *            the name of the variance. It must not be {@code null}.
+     *
+     * @return the variance, or {@code null} if no such variance exists
+     */
+    private static VersionVariance varianceOf(String name) {
+        for (VersionVariance variance : VARIANCES) {
+            if (variance.name().equals(name)) {
+                return variance;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Tests if the character is a whitespace character as the format defines.
+     *
+     * @param c
+     *            the character to test
+     *
+     * @return {@code true} if the character is a whitespace character
+     */
+    private static boolean isWhitespace(char c) {
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\u000B':
+            case '\f':
+            case '\r':
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Tests if the character is a line terminator.
+     *
+     * @param c
+     *            the character to test
+     *
+     * @return {@code true} if the character is a line terminator
+     */
+    private static boolean isLineTerminator(char c) {
+        switch (c) {
+            case '\n':
+            case '\r':
+            case '\u0085':
+            case '\u2028':
+            case '\u2029':
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Tests if the character may appear in a version qualifier.
+     *
+     * @param c
+     *            the character to test
+     *
+     * @return {@code true} if the character may appear in a version qualifier
+     */
+    private static boolean isQualifierCharacter(char c) {
+        switch (c) {
+            case ':':
+            case '=':
+            case '<':
+            case '@':
+            case '#':
+                return false;
+
+            default:
+                return !isWhitespace(c);
+        }
+    }
+
+    /**
+     * Tests if the character may appear in a name.
+     *
+     * @param c
+     *            the character to test
+     *
+     * @return {@code true} if the character may appear in a name
+     */
+    private static boolean isNameCharacter(char c) {
+        return (c != '$') && isQualifierCharacter(c);
+    }
+
+    /**
+     * Tests if the character is a decimal digit.
+     *
+     * @param c
+     *            the character to test
+     *
+     * @return {@code true} if the character is a decimal digit
+     */
+    private static boolean isDigit(char c) {
+        return ('0' <= c) && (c <= '9');
+    }
+
+    /**
+     * Tests if the character is an ASCII letter.
+     *
+     * @param c
+     *            the character to test
+     *
+     * @return {@code true} if the character is an ASCII letter
+     */
+    private static boolean isLetter(char c) {
+        return (('a' <= c) && (c <= 'z')) || (('A' <= c) && (c <= 'Z'));
+    }
 }
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.format;
+
+import java.text.ParseException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import net.yetamine.pet4bnd.model.BundleVersion;
+import net.yetamine.pet4bnd.model.InheritingVersion;
+import net.yetamine.pet4bnd.model.PackageVersion;
+import net.yetamine.pet4bnd.model.VersionGroup;
+import net.yetamine.pet4bnd.model.VersionStatement;
+import net.yetamine.pet4bnd.model.support.BundleVersionDefinition;
+import net.yetamine.pet4bnd.model.support.PackageGroupDefinition;
+import net.yetamine.pet4bnd.model.support.PackageVersionDefinition;
+import net.yetamine.pet4bnd.version.Version;
+import net.yetamine.pet4bnd.version.VersionVariance;
+
+/**
+ * Represents the result of the syntactic analysis of a single line.
+ *
+ * <p>
+ * The analysis of a line does not depend on any other line, therefore it can
+ * run on any thread and in any order. Everything that depends on the context,
+ * i.e., on the preceding lines, is left on {@link PetParser}, which consumes
+ * the tokens in the source order.
+ */
+final class LineToken implements TextLine.Formatter {
+
+    /** Name of the group representing the bundle version statement. */
+    static final String BUNDLE_VERSION_STATEMENT = "$bundle";
+
+    /**
+     * Kinds of the lines.
+     */
+    enum Kind {
+
+        /** A comment or a blank line. */
+        IGNORABLE,
+
+        /** Attributes of the preceding export. */
+        ATTRIBUTES,
+
+        /** A group declaration. */
+        GROUP,
+
+        /** An export declaration. */
+        EXPORT,
+
+        /** An unknown construct. */
+        INVALID;
+    }
+
+    /** Source line. */
+    private final String line;
+    /** Line representation for reconstruction. */
+    private final TextLine text;
+    /** Kind of the line. */
+    private Kind kind;
+    /** Identifier of the declaration, or the attributes. */
+    private String value;
+    /** Version baseline of the declaration if any. */
+    private Version baseline;
+    /** Version constraint of the declaration if any. */
+    private Version constraint;
+    /** Version variance of the declaration if any. */
+    private VersionVariance variance;
+    /** Version statement bound to the representation. */
+    private VersionStatement statement;
+    /** Referenced group if any. */
+    private String reference;
+    /** Position for reporting a failure found in the context. */
+    private int position;
+    /** Syntax failure if any. */
+    private Problem failure;
+    /** Argument of the syntax failure message if any. */
+    private String failureArgument;
+    /** Position of the syntax failure. */
+    private int failurePosition;
+    /** Indicates that the trailing part contains unexpected characters. */
+    private boolean unexpectedTrailing;
+
+    /**
+     * Creates a new instance by analyzing the given line.
+     *
+     * @param source
+     *            the line to analyze. It must not be {@code null}.
+     */
+    private LineToken(String source) {
+        final LineParser parser = new LineParser(source);
+        line = source;
+
+        try {
+            analyze(parser);
+        } catch (ParseException e) {
+            final LineFailure f = (LineFailure) e; // Nothing else could come
+            failureArgument = f.argument();
+            failurePosition = f.getErrorOffset();
+            failure = f.problem();
+        }
+
+        text = (failure == null) ? parser.text(this) : TextLine.of(source);
+    }
+
+    /**
+     * Analyzes the given line.
+     *
+     * <p>
+     * This method is thread-safe.
+     *
+     * @param line
+     *            the line to analyze. It must not be {@code null}.
+     *
+     * @return the token for the line
+     */
+    public static LineToken scan(CharSequence line) {
+        return new LineToken(line.toString());
+    }
+
+    /**
+     * Analyzes the given lines.
+     *
+     * @param lines
+     *            the lines to analyze. It must not be {@code null}.
+     * @param parallel
+     *            {@code true} for analyzing the lines on the common fork-join
+     *            pool
+     *
+     * @return the tokens for the lines in the same order
+     */
+    public static List<LineToken> scan(List<? extends CharSequence> lines, boolean parallel) {
+        final Stream<? extends CharSequence> source = parallel ? lines.parallelStream() : lines.stream();
+        return source.map(LineToken::scan).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the source line.
+     *
+     * @return the source line
+     */
+    public String line() {
+        return line;
+    }
+
+    /**
+     * Returns the line text representation.
+     *
+     * <p>
+     * The representation is complete only if the line has no failure.
+     *
+     * @return the line text representation
+     */
+    public TextLine text() {
+        return text;
+    }
+
+    /**
+     * Returns the kind of the line.
+     *
+     * @return the kind of the line
+     */
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * Returns the identifier of the declared group or export, or the
+     * attributes.
+     *
+     * @return the value of the line, or {@code null} for other kinds
+     */
+    public String value() {
+        return value;
+    }
+
+    /**
+     * Returns the statement of a declaration which is currently bound to the
+     * representation of the line.
+     *
+     * @return the statement, or {@code null} if none bound
+     */
+    public VersionStatement statement() {
+        return statement;
+    }
+
+    /**
+     * Makes a new statement of a successfully parsed declaration and binds it
+     * to the representation of the line.
+     *
+     * <p>
+     * Every binding makes a new statement with the parsed values, so that the
+     * changes of the previous statement, e.g., by resolving the versions, do
+     * not affect the new one. For exports, the statement is always a
+     * {@link PackageVersion} instance and for groups, except for the bundle
+     * version, a {@link VersionGroup} instance; neither inherits from the
+     * group reference yet. For the bundle version declaration, the statement is
+     * always a {@link BundleVersionDefinition} instance.
+     *
+     * @return the new statement
+     */
+    public VersionStatement bind() {
+        assert (failure == null);
+
+        final VersionStatement result;
+        if (kind == Kind.EXPORT) {
+            result = new PackageVersionDefinition();
+        } else {
+            assert (kind == Kind.GROUP);
+
+            if (BUNDLE_VERSION_STATEMENT.equals(value)) {
+                result = new BundleVersionDefinition();
+            } else {
+                // If not a reserved name, make a new definition
+                result = new PackageGroupDefinition(value);
+            }
+        }
+
+        return rebind(result);
+    }
+
+    /**
+     * Binds an existing statement of a declaration to the representation of
+     * the line and updates the statement with the parsed values.
+     *
+     * <p>
+     * This method allows replacing a declaration without the need of updating
+     * all statements that inherit from it and all structures that refer to it.
+     * The inheritance of the statement remains, hence the statement must have
+     * the same group reference, and the resolution is reset.
+     *
+     * @param target
+     *            the statement to bind. It must be the statement of the same
+     *            declaration.
+     *
+     * @return the statement
+     */
+    public VersionStatement rebind(VersionStatement target) {
+        assert (failure == null) && ((kind == Kind.GROUP) || (kind == Kind.EXPORT));
+
+        if (reference == null) {
+            target.baseline(baseline);
+        }
+
+        target.constraint(constraint);
+        target.variance(variance);
+        target.resolve(null);
+        statement = target;
+        return target;
+    }
+
+    /**
+     * Returns the group referenced by an export or by a group.
+     *
+     * @return the referenced group, or {@code null} if none
+     */
+    public String reference() {
+        return reference;
+    }
+
+    /**
+     * Returns the syntax failure of the line.
+     *
+     * <p>
+     * For groups and exports, the failure may come after the declaration has
+     * been parsed successfully, so that the kind and the value are available.
+     *
+     * @return the syntax failure, or {@code null} if none
+     */
+    public Problem failure() {
+        return failure;
+    }
+
+    /**
+     * Returns the argument of the syntax failure message.
+     *
+     * @return the argument of the syntax failure message, or {@code null} if
+     *         none
+     */
+    public String failureArgument() {
+        return failureArgument;
+    }
+
+    /**
+     * Returns the position of the syntax failure.
+     *
+     * @return the position of the syntax failure
+     */
+    public int failurePosition() {
+        return failurePosition;
+    }
+
+    /**
+     * Indicates whether the trailing part contains unexpected characters.
+     *
+     * @return {@code true} if the trailing part contains unexpected characters
+     */
+    public boolean unexpectedTrailing() {
+        return unexpectedTrailing;
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.model.format.TextLine.Formatter#format(int)
+     */
+    public String format(int slot) {
+        switch (slot) {
+            case TextLine.BASELINE:
+                return formatBaseline();
+
+            case TextLine.CONSTRAINT:
+                return statement.constraint().map(Object::toString).orElse(null);
+
+            case TextLine.VARIANCE:
+                return statement.variance().map(Object::toString).map(String::toLowerCase).orElse(null);
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Formats the version baseline of the bound statement, or the group
+     * reference if the statement inherits from a group.
+     *
+     * @return the formatted value
+     */
+    private String formatBaseline() {
+        if (!(statement instanceof InheritingVersion)) {
+            return statement.baseline().toString();
+        }
+
+        final InheritingVersion version = (InheritingVersion) statement;
+        return version.inheritance().map(s -> {
+            if (s instanceof BundleVersion) {
+                return BUNDLE_VERSION_STATEMENT;
+            }
+
+            if (s instanceof VersionGroup) {
+                return ((VersionGroup) s).identifier();
+            }
+
+            final String f = "Unable to format reference of class '%s'.";
+            throw new IllegalArgumentException(String.format(f, s.getClass()));
+        }).orElseGet(() -> version.baseline().toString());
+    }
+
+    /**
+     * Returns the position for a failure found in the context of the line,
+     * i.e., for attributes without a preceding export or for a reference to an
+     * undefined group.
+     *
+     * @return the position for a failure found in the context
+     */
+    public int contextPosition() {
+        return position;
+    }
+
+    /**
+     * Analyzes the line with the given parser.
+     *
+     * @param parser
+     *            the parser to use for processing the source. It must not be
+     *            {@code null}.
+     *
+     * @throws ParseException
+     *             if parsing the source fails
+     */
+    private void analyze(LineParser parser) throws ParseException {
+        // Parse comments and blank lines
+        if (parser.ignorable()) {
+            kind = Kind.IGNORABLE;
+            return;
+        }
+
+        // Parse attributes for a pending export
+        final String attributes = parser.attributes();
+
+        if (attributes != null) {
+            kind = Kind.ATTRIBUTES;
+            value = attributes;
+            position = parser.position();
+            return;
+        }
+
+        // Parse a group declaration
+        final String group = parser.groupDeclaration();
+
+        if (group != null) { // It is a group
+            kind = Kind.GROUP;
+            value = group;
+
+            if (BUNDLE_VERSION_STATEMENT.equals(group)) {
+                baseline = parser.baseline(); // The bundle version can't inherit
+            } else {
+                versionBaseline(parser);
+            }
+
+            versionDetails(parser);
+            return;
+        }
+
+        // Parse an export declaration
+        final String export = parser.exportDeclaration();
+        if (export == null) { // Which is mandatory as the last option left
+            kind = Kind.INVALID;
+            throw parser.failure(Problem.UNKNOWN_CONSTRUCT);
+        }
+
+        kind = Kind.EXPORT;
+        value = export;
+        versionBaseline(parser);
+        versionDetails(parser);
+    }
+
+    /**
+     * Parses a version baseline.
+     *
+     * @param parser
+     *            the parser to use. It must not be {@code null}.
+     *
+     * @throws ParseException
+     *             if the parsing fails
+     */
+    private void versionBaseline(LineParser parser) throws ParseException {
+        // Parse the baseline as a group reference
+        reference = parser.groupReference();
+        if (reference == null) { // If no reference, the version baseline must be here
+            baseline = parser.baseline();
+            return;
+        }
+
+        // The reference can be resolved only in the context
+        position = parser.position();
+    }
+
+    /**
+     * Parses the version details (common for group and export definitions).
+     *
+     * @param parser
+     *            the parser to use. It must not be {@code null}.
+     *
+     * @throws ParseException
+     *             if the parsing fails
+     */
+    private void versionDetails(LineParser parser) throws ParseException {
+        constraint = parser.constraint();
+        variance = parser.variance();
+        // Record the trailing part, hence it may just warn
+        unexpectedTrailing = !parser.trailing();
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.format;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.VersionStatement;
+
+/**
+ * Keeps the analyzed lines of a definition file for parsing the file again
+ * after changing some of its lines.
+ *
+ * <p>
+ * Changing the lines analyzes only the new lines, the other lines keep their
+ * analysis. Parsing the document then just merges the analyzed lines, which is
+ * much cheaper than parsing the whole text again. Moreover, when the document
+ * had no errors and no warnings and a line changes only its versions, e.g., a
+ * baseline of an export or of a group, the last result is updated directly:
+ * only the line and the statement that it declares are updated.
+ *
+ * <p>
+ * The results of parsing share the representation of the lines with the
+ * document, so that an earlier result becomes invalid when the document
+ * changes and parsing may return the same, but updated instance again. Any
+ * changes of the result, e.g., by resolving or restoring the versions, stay
+ * in the result until the affected lines change or until the document must
+ * be parsed again completely. Instances of this class are not thread-safe.
+ */
+public final class PetDocument {
+
+    /** Tokens of the lines. */
+    private final List<LineToken> tokens;
+    /** Last result without errors and warnings that is up to date. */
+    private PetParser parsed;
+    /** Resolver for the last result. */
+    private VersionResolver resolver;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param lines
+     *            the initial lines. It must not be {@code null}.
+     */
+    public PetDocument(List<? extends CharSequence> lines) {
+        tokens = new ArrayList<>(LineToken.scan(lines, PetFormat.parallel(lines.size())));
+    }
+
+    /**
+     * Creates a new instance.
+     */
+    public PetDocument() {
+        tokens = new ArrayList<>();
+    }
+
+    /**
+     * Loads the specified definition file.
+     *
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     *
+     * @return the document with the content of the file
+     *
+     * @throws IOException
+     *             if an I/O operation failed
+     */
+    public static PetDocument load(Path path) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        FileLines.forEach(path, lines::add);
+        return new PetDocument(lines);
+    }
+
+    /**
+     * Returns the number of lines.
+     *
+     * @return the number of lines
+     */
+    public int lineCount() {
+        return tokens.size();
+    }
+
+    /**
+     * Returns the given line.
+     *
+     * @param index
+     *            the index of the line, starting from zero
+     *
+     * @return the line
+     *
+     * @throws IndexOutOfBoundsException
+     *             if the index is out of the bounds
+     */
+    public String line(int index) {
+        return tokens.get(index).line();
+    }
+
+    /**
+     * Replaces a range of lines with the given lines.
+     *
+     * <p>
+     * Only the given lines are analyzed. The range and the lines may have
+     * different sizes, so that lines can be inserted, removed or replaced.
+     *
+     * @param start
+     *            the index of the first line to replace
+     * @param end
+     *            the index of the line after the last line to replace
+     * @param lines
+     *            the lines to put in the range. It must not be {@code null}.
+     *
+     * @return this instance
+     *
+     * @throws IndexOutOfBoundsException
+     *             if the range is out of the bounds
+     */
+    public PetDocument replace(int start, int end, List<? extends CharSequence> lines) {
+        Objects.requireNonNull(lines);
+
+        if ((end - start == 1) && (lines.size() == 1)) {
+            return replace(start, lines.get(0));
+        }
+
+        final List<LineToken> range = tokens.subList(start, end);
+        range.clear();
+        resolver = null;
+        parsed = null;
+        range.addAll(LineToken.scan(lines, PetFormat.parallel(lines.size())));
+        return this;
+    }
+
+    /**
+     * Replaces a single line.
+     *
+     * @param index
+     *            the index of the line
+     * @param line
+     *            the new line. It must not be {@code null}.
+     *
+     * @return this instance
+     *
+     * @throws IndexOutOfBoundsException
+     *             if the index is out of the bounds
+     */
+    public PetDocument replace(int index, CharSequence line) {
+        final LineToken token = LineToken.scan(line);
+        final LineToken previous = tokens.set(index, token);
+
+        if (parsed == null) {
+            return this;
+        }
+
+        if (!parsed.replace(index, previous, token)) {
+            resolver = null;
+            parsed = null;
+            return this;
+        }
+
+        final VersionStatement statement = token.statement();
+        if ((resolver != null) && (statement != null)) {
+            resolver.invalidate(statement);
+        }
+
+        return this;
+    }
+
+    /**
+     * Parses the current content of the document.
+     *
+     * <p>
+     * The implementation uses the given feedback to report the lines where an
+     * error or warning occurs, the same way as {@link PetFormat#parse(Path, Feedback)}.
+     * If the last result had no errors and no warnings and it is up to date, it
+     * is returned again without any feedback (as there would be none).
+     *
+     * @param feedback
+     *            the parser feedback to use. It must not be {@code null}.
+     *
+     * @return the parser containing the result of parsing and error statistics
+     */
+    public PetParser parse(Feedback feedback) {
+        Objects.requireNonNull(feedback);
+
+        if (parsed != null) {
+            return parsed;
+        }
+
+        final PetParser result = PetFormat.merge(tokens, feedback);
+        if ((result.errorCount() == 0) && (result.warningCount() == 0)) {
+            parsed = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the resolver for the result of parsing the current content.
+     *
+     * <p>
+     * The resolver follows the changes that update the last result directly,
+     * so that resolving again after such changes resolves only the affected
+     * statements. When the content must be parsed again completely, a new
+     * resolver comes for the new result.
+     *
+     * @return the resolver, or an empty container if parsing the content yields
+     *         any errors or warnings
+     */
+    public Optional<VersionResolver> resolver() {
+        final PetParser result = parse(Feedback.none());
+        if (result != parsed) { // Not clean
+            return Optional.empty();
+        }
+
+        final PetFormat bundle = result.result().get();
+        if ((resolver == null) || (resolver.bundle() != bundle)) {
+            resolver = new VersionResolver(bundle);
+        }
+
+        return Optional.of(resolver);
+    }
+}
@@ -21,14 +21,14 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
-import java.util.stream.Stream;
 
 import net.yetamine.pet4bnd.feedback.Feedback;
 import net.yetamine.pet4bnd.model.Bundle;
@@ -41,6 +41,9 @@ import net.yetamine.pet4bnd.model.Persistable;
  */
 public final class PetFormat implements Bundle, Persistable {
 
+    /** Number of lines for parsing a file in the parallel mode. */
+    private static final int PARALLEL_THRESHOLD = 10_000;
+
     /** Packages that the bundle exports. */
     private final Map<String, PackageExport> exports;
     /** Bundle version description. */
@@ -60,6 +63,20 @@ public final class PetFormat implements Bundle, Persistable {
         version = parser.bundleVersion();
     }
 
+    /**
+     * Creates a new instance that does not retain any representation.
+     *
+     * @param bundleVersion
+     *            the bundle version. It must not be {@code null}.
+     * @param bundleExports
+     *            the package exports. It must not be {@code null}.
+     */
+    PetFormat(BundleVersion bundleVersion, Map<String, PackageExport> bundleExports) {
+        exports = Collections.unmodifiableMap(bundleExports);
+        version = Objects.requireNonNull(bundleVersion);
+        representation = null;
+    }
+
     /**
      * @see net.yetamine.pet4bnd.model.Bundle#version()
      */
@@ -79,7 +96,9 @@ public final class PetFormat implements Bundle, Persistable {
      *
      * <p>
      * The implementation uses the given feedback to report the lines where an
-     * error or warning occurs.
+     * error or warning occurs. The lines are streamed through the parser; only
+     * the lines of a large file beyond the parallel threshold are collected to
+     * be analyzed in the parallel mode (if the common pool allows it).
      *
      * @param path
      *            the path to the file. It must not be {@code null}.
@@ -92,19 +111,147 @@ public final class PetFormat implements Bundle, Persistable {
      *             if an I/O operation failed
      */
     public static PetParser parse(Path path, Feedback feedback) throws IOException {
-        try (Stream<String> lines = Files.lines(path, StandardCharsets.UTF_8)) {
-            final ParsingFeedback logger = new ParsingFeedback(feedback);
-            final PetParser parser = new PetParser().feedback(logger);
-
-            lines.forEach(line -> {
-                logger.record(line);
-                parser.accept(line);
-            });
-
-            // No line now
-            logger.record(null, 0);
-            return parser.finish();
+        final ParsingFeedback logger = new ParsingFeedback(feedback);
+        final PetParser parser = new PetParser().feedback(logger.sink());
+        final boolean parallel = parallel(PARALLEL_THRESHOLD);
+        final List<String> remaining = new ArrayList<>();
+
+        FileLines.forEach(path, line -> {
+            if (parallel && (PARALLEL_THRESHOLD <= logger.position())) {
+                remaining.add(line);
+                return;
+            }
+
+            logger.record(line);
+            parser.accept(line);
+        });
+
+        // Analyze the rest of a large file in parallel, merge in the source order
+        LineToken.scan(remaining, true).forEach(token -> {
+            logger.record(token.line());
+            parser.accept(token);
+        });
+
+        // No line now
+        logger.record(null, 0);
+        return parser.finish();
+    }
+
+    /**
+     * Reads the specified definition file for the semantic model only.
+     *
+     * <p>
+     * Unlike {@link #parse(Path, Feedback)}, this method streams the lines of
+     * the file through the parser and retains neither the lines, nor their
+     * representation, so that the memory requirements are proportional to the
+     * number of exports rather than to the file size. The result therefore can
+     * be neither formatted, nor persisted; use it when the definition shall be
+     * just resolved or exported.
+     *
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     * @param feedback
+     *            the parser feedback to use. It must not be {@code null}.
+     *
+     * @return the parser containing the result of parsing and error statistics
+     *
+     * @throws IOException
+     *             if an I/O operation failed
+     */
+    public static PetParser read(Path path, Feedback feedback) throws IOException {
+        final ParsingFeedback logger = new ParsingFeedback(feedback);
+        final PetParser parser = new PetParser().lossless(false).feedback(logger.sink());
+
+        FileLines.forEach(path, line -> {
+            logger.record(line);
+            parser.accept(line);
+        });
+
+        // No line now
+        logger.record(null, 0);
+        return parser.finish();
+    }
+
+    /**
+     * Indicates whether the given number of lines should be analyzed in the
+     * parallel mode.
+     *
+     * @param lineCount
+     *            the number of lines
+     *
+     * @return {@code true} if the parallel mode should be used
+     */
+    static boolean parallel(int lineCount) {
+        return (PARALLEL_THRESHOLD <= lineCount) && (1 < ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Parses the given lines.
+     *
+     * <p>
+     * The parallel mode analyzes the lines on the common fork-join pool and then
+     * merges the results in the source order, which yields the same result and
+     * the same feedback as the sequential mode.
+     *
+     * @param lines
+     *            the lines to parse. It must not be {@code null}.
+     * @param feedback
+     *            the parser feedback to use. It must not be {@code null}.
+     * @param parallel
+     *            {@code true} for analyzing the lines in parallel
+     *
+     * @return the parser containing the result of parsing and error statistics
+     */
+    static PetParser parse(List<String> lines, Feedback feedback, boolean parallel) {
+        if (parallel) {
+            return merge(LineToken.scan(lines, true), feedback);
         }
+
+        final ParsingFeedback logger = new ParsingFeedback(feedback);
+        final PetParser parser = new PetParser().feedback(logger.sink());
+
+        lines.forEach(line -> {
+            logger.record(line);
+            parser.accept(line);
+        });
+
+        // No line now
+        logger.record(null, 0);
+        return parser.finish();
+    }
+
+    /**
+     * Merges the given tokens.
+     *
+     * @param tokens
+     *            the tokens to merge. It must not be {@code null}.
+     * @param feedback
+     *            the parser feedback to use. It must not be {@code null}.
+     *
+     * @return the parser containing the result of parsing and error statistics
+     */
+    static PetParser merge(List<LineToken> tokens, Feedback feedback) {
+        final ParsingFeedback logger = new ParsingFeedback(feedback);
+        final PetParser parser = new PetParser().feedback(logger.sink());
+
+        tokens.forEach(token -> {
+            logger.record(token.line());
+            parser.accept(token);
+        });
+
+        // No line now
+        logger.record(null, 0);
+        return parser.finish();
+    }
+
+    /**
+     * Indicates whether this instance retains the representation of the parsed
+     * content, which is necessary for formatting and persisting it.
+     *
+     * @return {@code true} if this instance retains the representation
+     */
+    public boolean lossless() {
+        return (representation != null);
     }
 
     /**
@@ -113,10 +260,13 @@ public final class PetFormat implements Bundle, Persistable {
      * @param sink
      *            the sink to accept lines of the representation. It must not be
      *            {@code null}.
+     *
+     * @throws IllegalStateException
+     *             if this instance does not retain the representation
      */
     public void format(Consumer<? super String> sink) {
         Objects.requireNonNull(sink);
-        representation.forEach(line -> sink.accept(line.toString()));
+        representation().forEach(line -> sink.accept(line.toString()));
     }
 
     /**
@@ -127,9 +277,11 @@ public final class PetFormat implements Bundle, Persistable {
      *
      * @throws IOException
      *             if storing the object fails
+     * @throws IllegalStateException
+     *             if this instance does not retain the representation
      */
     public void persist(BufferedWriter sink) throws IOException {
-        for (TextLine line : representation) {
+        for (TextLine line : representation()) {
             sink.write(line.toString());
             sink.newLine();
         }
@@ -144,6 +296,22 @@ public final class PetFormat implements Bundle, Persistable {
         }
     }
 
+    /**
+     * Returns the representation of the parsed content.
+     *
+     * @return the representation
+     *
+     * @throws IllegalStateException
+     *             if this instance does not retain the representation
+     */
+    private List<TextLine> representation() {
+        if (representation == null) {
+            throw new IllegalStateException("The representation of the content has not been retained.");
+        }
+
+        return representation;
+    }
+
     /**
      * Input tracking feedback.
      */
@@ -167,6 +335,17 @@ public final class PetFormat implements Bundle, Persistable {
             feedback = Objects.requireNonNull(backing);
         }
 
+        /**
+         * Returns the feedback for the parser.
+         *
+         * @return this instance, or {@link Feedback#none()} if the underlying
+         *         feedback is {@link Feedback#none()}, so that the parser need
+         *         not format any messages
+         */
+        public Feedback sink() {
+            return (feedback == Feedback.none()) ? feedback : this;
+        }
+
         /**
          * Stores the line for the next messages.
          *
@@ -180,6 +359,15 @@ public final class PetFormat implements Bundle, Persistable {
             input = line;
         }
 
+        /**
+         * Returns the number of the current line.
+         *
+         * @return the number of the current line
+         */
+        public int position() {
+            return position;
+        }
+
         /**
          * Stores the next line for the next messages, i.e., increments the line
          * number.
@@ -16,7 +16,6 @@
 
 package net.yetamine.pet4bnd.model.format;
 
-import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -34,8 +33,6 @@ import net.yetamine.pet4bnd.model.VersionGroup;
 import net.yetamine.pet4bnd.model.VersionStatement;
 import net.yetamine.pet4bnd.model.support.BundleVersionDefinition;
 import net.yetamine.pet4bnd.model.support.PackageExportDefinition;
-import net.yetamine.pet4bnd.model.support.PackageGroupDefinition;
-import net.yetamine.pet4bnd.model.support.PackageVersionDefinition;
 
 /**
  * A parser for the {@link PetFormat} class.
@@ -43,21 +40,23 @@ import net.yetamine.pet4bnd.model.support.PackageVersionDefinition;
 public final class PetParser implements Consumer<CharSequence> {
 
     /** Name of the group representing the bundle version statement. */
-    private static final String BUNDLE_VERSION_STATEMENT = "$bundle";
+    private static final String BUNDLE_VERSION_STATEMENT = LineToken.BUNDLE_VERSION_STATEMENT;
 
     /** Parsed bundle version statement. */
-    private final BundleVersionDefinition bundleVersion = new BundleVersionDefinition();
+    private BundleVersionDefinition bundleVersion = new BundleVersionDefinition();
     /** Known version groups (including {@link #bundleVersion()} when found). */
     private final Map<String, VersionStatement> versionGroups = new HashMap<>();
     /** Parsed package exports (except for the pending one). */
     private final Map<String, PackageExport> bundleExports = new TreeMap<>();
-    /** Full line representation to reconstruct the original. */
-    private final List<TextLine> representation = new ArrayList<>();
+    /** Full line representation to reconstruct the original if retained. */
+    private List<TextLine> representation = new ArrayList<>();
 
     /** Export version for {@link #pendingExportIdentifier}. */
     private PackageVersion pendingExportVersion;
     /** Pending package export identifier. */
     private String pendingExportIdentifier;
+    /** Line number of {@link #pendingExportIdentifier}. */
+    private int pendingExportLine;
 
     /** Feedback instance. */
     private Feedback feedback = Feedback.none();
@@ -65,6 +64,10 @@ public final class PetParser implements Consumer<CharSequence> {
     private int warningCount;
     /** Number of errors. */
     private int errorCount;
+    /** Diagnostics of the errors and warnings. */
+    private final Diagnostics diagnostics = new Diagnostics();
+    /** Number of the accepted lines. */
+    private int lineNumber;
     /** Complete result. */
     private Optional<PetFormat> result = Optional.empty();
 
@@ -97,6 +100,47 @@ public final class PetParser implements Consumer<CharSequence> {
         return feedback;
     }
 
+    /**
+     * Sets whether the parser retains the full representation of the lines,
+     * which is necessary for reconstructing the original or persisting the
+     * result, e.g., after restoring the versions.
+     *
+     * <p>
+     * The parser retains the representation by default. Without it, the parser
+     * retains only the parsed statements, so that the memory requirements are
+     * proportional to the number of exports rather than to the source size.
+     *
+     * @param value
+     *            {@code true} if the representation should be retained
+     *
+     * @return this instance
+     *
+     * @throws IllegalStateException
+     *             if the parser has accepted some lines already
+     */
+    public PetParser lossless(boolean value) {
+        if (value == lossless()) {
+            return this;
+        }
+
+        if (finished() || ((representation != null) && !representation.isEmpty()) || (errorCount + warningCount > 0)) {
+            throw new IllegalStateException();
+        }
+
+        representation = value ? new ArrayList<>() : null;
+        return this;
+    }
+
+    /**
+     * Indicates whether the parser retains the full representation of the
+     * lines.
+     *
+     * @return {@code true} if the parser retains the full representation
+     */
+    public boolean lossless() {
+        return (representation != null);
+    }
+
     /**
      * Accepts next line of the data to parse.
      *
@@ -117,12 +161,7 @@ public final class PetParser implements Consumer<CharSequence> {
     public void accept(CharSequence line) {
         checkNotFinished();
 
-        try {
-            accept(new LineParser(line));
-        } catch (ParseException e) {
-            saveLine(line);
-            error(e);
-        }
+        accept(LineToken.scan(line));
     }
 
     /**
@@ -145,8 +184,7 @@ public final class PetParser implements Consumer<CharSequence> {
         closePendingExport(null);
 
         if (!versionGroups.containsKey(BUNDLE_VERSION_STATEMENT)) {
-            final String f = "The %s declaration required, but missing.";
-            error(String.format(f, BUNDLE_VERSION_STATEMENT), null);
+            report(Problem.MISSING_BUNDLE_VERSION, 0, -1, null);
         }
 
         result = Optional.of(new PetFormat(this));
@@ -191,12 +229,25 @@ public final class PetParser implements Consumer<CharSequence> {
         return errorCount;
     }
 
+    /**
+     * Returns the diagnostics of the errors and warnings so far.
+     *
+     * <p>
+     * The diagnostics are recorded regardless of the feedback, which formats
+     * the messages only if it is not {@link Feedback#none()}.
+     *
+     * @return the diagnostics
+     */
+    public Diagnostics diagnostics() {
+        return diagnostics;
+    }
+
     // Interface for clients
 
     /**
      * Provides the representation details.
      *
-     * @return the representation details
+     * @return the representation details, or {@code null} if not retained
      */
     List<TextLine> representation() {
         return representation;
@@ -220,6 +271,58 @@ public final class PetParser implements Consumer<CharSequence> {
         return bundleVersion;
     }
 
+    /**
+     * Replaces the token of a line in the finished result if the replacement
+     * does not change anything else than the versions of the line.
+     *
+     * <p>
+     * The replacement is possible only if the result has no errors and no
+     * warnings, and the new token has the same kind, declares the same name
+     * and refers to the same group as the previous token, so that parsing the
+     * whole content again would yield no errors and no warnings as well. Then
+     * only the line and the statement that it declares are updated.
+     *
+     * @param index
+     *            the index of the line
+     * @param previous
+     *            the previous token of the line. It must not be {@code null}.
+     * @param token
+     *            the new token of the line. It must not be {@code null}.
+     *
+     * @return {@code true} if the replacement succeeded, {@code false} if the
+     *         whole content must be parsed again
+     */
+    boolean replace(int index, LineToken previous, LineToken token) {
+        if (!finished() || !lossless() || (errorCount != 0) || (warningCount != 0)) {
+            return false;
+        }
+
+        if ((token.failure() != null) || token.unexpectedTrailing() || (previous.kind() != token.kind())) {
+            return false;
+        }
+
+        if (!Objects.equals(previous.value(), token.value()) || !Objects.equals(previous.reference(), token.reference())) {
+            return false;
+        }
+
+        switch (token.kind()) {
+            case IGNORABLE:
+            case ATTRIBUTES:
+                break;
+
+            case GROUP: // Update the statement, so that the dependent statements need no update
+            case EXPORT: // The same reference, so the inheritance remains
+                token.rebind(previous.statement());
+                break;
+
+            default:
+                return false;
+        }
+
+        representation.set(index, token.text());
+        return true;
+    }
+
     /**
      * Checks if this parser has not finished yet.
      */
@@ -242,6 +345,7 @@ public final class PetParser implements Consumer<CharSequence> {
         assert (pendingExportVersion == null);
         pendingExportIdentifier = identifier;
         pendingExportVersion = version;
+        pendingExportLine = lineNumber;
         assert (pendingExportVersion != null);
         assert (pendingExportIdentifier != null);
     }
@@ -268,8 +372,7 @@ public final class PetParser implements Consumer<CharSequence> {
 
         // Check the name availability
         if (bundleExports.containsKey(exportIdentifier)) {
-            final String f = "Duplicated definition for '%s'. Using only the first occurrence.";
-            warn(String.format(f, exportIdentifier));
+            report(Problem.DUPLICATE_EXPORT, pendingExportLine, -1, exportIdentifier);
             return true;
         }
 
@@ -281,38 +384,80 @@ public final class PetParser implements Consumer<CharSequence> {
     }
 
     /**
-     * Reports an error.
+     * Reports a problem.
      *
-     * @param message
-     *            the message. It must not be {@code null}.
-     * @param t
-     *            the related exception if available
+     * <p>
+     * The problem is recorded in the diagnostics and passed to the feedback,
+     * unless the feedback is {@link Feedback#none()}, so that the message is
+     * formatted only when it may be emitted.
+     *
+     * @param problem
+     *            the problem. It must not be {@code null}.
+     * @param line
+     *            the line number, or 0 if not related to a line
+     * @param column
+     *            the column, or -1 if not known
+     * @param argument
+     *            the argument of the problem message if any
      */
-    private void error(String message, Throwable t) {
+    private void report(Problem problem, int line, int column, String argument) {
+        diagnostics.add(problem, line, column, argument);
+        final boolean emitting = (feedback != Feedback.none());
+
+        if (problem.warning()) {
+            ++warningCount;
+
+            if (emitting) {
+                feedback.warn(problem.message(argument));
+            }
+
+            return;
+        }
+
         ++errorCount;
-        feedback.fail(message, t);
+
+        if (emitting) {
+            feedback.fail(problem.message(argument));
+        }
     }
 
     /**
-     * Reports an error.
+     * Rejects the line of the token due to a problem.
      *
-     * @param t
-     *            the related exception. It must not be {@code null}.
+     * @param token
+     *            the token to reject. It must not be {@code null}.
+     * @param problem
+     *            the problem. It must not be {@code null}.
+     * @param column
+     *            the column of the problem
+     * @param argument
+     *            the argument of the problem message if any
      */
-    private void error(Throwable t) {
-        ++errorCount;
-        feedback.fail(t);
+    private void reject(LineToken token, Problem problem, int column, String argument) {
+        saveLine(token.line());
+        report(problem, lineNumber, column, argument);
     }
 
     /**
-     * Reports an error.
+     * Rejects the line of the token due to its syntax failure.
      *
-     * @param message
-     *            the message
+     * @param token
+     *            the token to reject. It must not be {@code null}.
      */
-    private void warn(String message) {
-        ++warningCount;
-        feedback.warn(message);
+    private void reject(LineToken token) {
+        reject(token, token.failure(), token.failurePosition(), token.failureArgument());
+    }
+
+    /**
+     * Adds the representation of the token in the {@link #representation()}.
+     *
+     * @param token
+     *            the token to add. It must not be {@code null}.
+     */
+    private void represent(LineToken token) {
+        if (representation != null) {
+            representation.add(token.text());
+        }
     }
 
     /**
@@ -322,149 +467,131 @@ public final class PetParser implements Consumer<CharSequence> {
      *            the line to record. It must not be {@code null}.
      */
     private void saveLine(CharSequence line) {
-        representation.add(new TextLine().append(line.toString()));
+        if (representation != null) {
+            representation.add(TextLine.of(line.toString()));
+        }
     }
 
     /**
-     * Accepts the source fragment with the given parser.
+     * Accepts the token of the next line.
+     *
+     * <p>
+     * This method performs the part of the parsing which depends on the context
+     * of the preceding lines, i.e., pairing exports with their attributes and
+     * resolving group references. Tokens must be therefore supplied in the
+     * source order.
      *
-     * @param parser
-     *            the parser to use for processing the source. It must not be
-     *            {@code null}.
+     * @param token
+     *            the token to accept. It must not be {@code null}.
      *
-     * @throws ParseException
-     *             if parsing the source fails
+     * @throws IllegalStateException
+     *             if the parser is not parsing
      */
-    private void accept(LineParser parser) throws ParseException {
-        // Parse comments and blank lines
-        if (parser.ignorable()) {
-            representation.add(parser.text());
-            return;
-        }
+    void accept(LineToken token) {
+        checkNotFinished();
 
-        // Parse attributes for a pending export
-        final String attributes = parser.attributes();
+        ++lineNumber;
+        merge(token);
+    }
 
-        if (attributes != null) {
-            if (closePendingExport(attributes)) {
-                representation.add(parser.text());
+    /**
+     * Merges the token in the current state.
+     *
+     * @param token
+     *            the token to merge. It must not be {@code null}.
+     */
+    private void merge(LineToken token) {
+        switch (token.kind()) {
+            case IGNORABLE:
+                represent(token);
                 return;
-            }
 
-            // Valid source, but not semantically (must follow an export)
-            throw parser.failure("Export attribute definition missing preceding package export.");
+            case ATTRIBUTES:
+                if (closePendingExport(token.value())) {
+                    represent(token);
+                    return;
+                }
+
+                // Valid source, but not semantically (must follow an export)
+                reject(token, Problem.ORPHANED_ATTRIBUTES, token.contextPosition(), null);
+                return;
+
+            default:
+                break;
         }
 
         closePendingExport(null); // Nothing like attributes, close the pending export if any
 
-        // Parse a group declaration
-        final String group = parser.groupDeclaration();
+        if (token.kind() == LineToken.Kind.GROUP) {
+            final String group = token.value();
 
-        if (group != null) { // It is a group
             if (versionGroups.containsKey(group)) {
-                saveLine(parser.line()); // Save before warning (might throw)
-                final String f = "Declaration of '%s' duplicated. Using the first occurrence.";
-                warn(String.format(f, group));
+                saveLine(token.line()); // Save before warning (might throw)
+                report(Problem.DUPLICATE_GROUP, lineNumber, 0, group);
+                return;
+            }
+
+            final String reference = token.reference();
+            final VersionStatement inheritance = (reference != null) ? versionGroups.get(reference) : null;
+
+            if ((reference != null) && (inheritance == null)) {
+                reject(token, Problem.UNDEFINED_GROUP, token.contextPosition(), reference);
                 return;
             }
 
-            final VersionStatement statement;
+            if (token.failure() != null) {
+                reject(token);
+                return;
+            }
+
+            final VersionStatement statement = token.bind();
             if (BUNDLE_VERSION_STATEMENT.equals(group)) {
-                statement = bundleVersion;
-            } else {
-                // If not a reserved name, make a new definition
-                statement = new PackageGroupDefinition(group);
+                bundleVersion = (BundleVersionDefinition) statement;
+            } else { // Groups may inherit from the groups defined before, which excludes cycles
+                ((VersionGroup) statement).inherit(inheritance);
             }
 
-            statement.baseline(parser.baseline(() -> statement.baseline().toString()));
-            versionDetails(parser, statement);
+            trailing(token);
             versionGroups.put(group, statement);
-            representation.add(parser.text());
+            represent(token);
             return;
         }
 
-        // Parse an export declaration
-        final String export = parser.exportDeclaration();
-        if (export == null) { // Which is mandatory as the last option left
-            throw parser.failure("Unknown construct found.");
+        if (token.kind() != LineToken.Kind.EXPORT) { // Which is mandatory as the last option left
+            reject(token);
+            return;
         }
 
-        final PackageVersion version = new PackageVersionDefinition();
-        versionBaseline(parser, version);
-        versionDetails(parser, version);
-        createPendingExport(export, version);
-        representation.add(parser.text());
-    }
-
-    /**
-     * Parses a version baseline.
-     *
-     * @param parser
-     *            the parser to use. It must not be {@code null}.
-     * @param version
-     *            the version object to fill with the data. It must not be
-     *            {@code null}.
-     *
-     * @throws ParseException
-     *             if the parsing fails
-     */
-    private void versionBaseline(LineParser parser, PackageVersion version) throws ParseException {
-        // Make the formater for the version baseline
-        final TextFragment baselineFormatter = () -> {
-            return version.inheritance().map(s -> {
-                if (s instanceof BundleVersion) {
-                    return BUNDLE_VERSION_STATEMENT;
-                }
-
-                if (s instanceof VersionGroup) {
-                    return ((VersionGroup) s).identifier();
-                }
-
-                final String f = "Unable to format reference of class '%s'.";
-                throw new IllegalArgumentException(String.format(f, s.getClass()));
-            }).orElseGet(() -> version.baseline().toString());
-        };
+        final String reference = token.reference();
+        final VersionStatement inheritance = (reference != null) ? versionGroups.get(reference) : null;
 
-        // Parse the baseline as a group reference
-        final String reference = parser.groupReference(baselineFormatter);
-        if (reference == null) { // If no reference, the version baseline must be here
-            version.baseline(parser.baseline(baselineFormatter));
+        if ((reference != null) && (inheritance == null)) {
+            reject(token, Problem.UNDEFINED_GROUP, token.contextPosition(), reference);
             return;
         }
 
-        final VersionStatement statement = versionGroups.get(reference);
-
-        if (statement == null) {
-            final String f = "Reference to undefined group '%s'.";
-            throw parser.failure(String.format(f, reference));
+        if (token.failure() != null) {
+            reject(token);
+            return;
         }
 
-        version.inherit(statement);
+        final PackageVersion version = (PackageVersion) token.bind();
+        version.inherit(inheritance);
+
+        trailing(token);
+        createPendingExport(token.value(), version);
+        represent(token);
     }
 
     /**
-     * Parses the version details (common for group and export definitions).
+     * Warns about an unknown trailing construct if the token has any.
      *
-     * @param parser
-     *            the parser to use. It must not be {@code null}.
-     * @param statement
-     *            the statement to fill with the data. It must not be
-     *            {@code null}.
-     *
-     * @throws ParseException
-     *             if the parsing fails
+     * @param token
+     *            the token to check. It must not be {@code null}.
      */
-    private void versionDetails(LineParser parser, VersionStatement statement) throws ParseException {
-        statement.constraint(parser.constraint(() -> {
-            return statement.constraint().map(Object::toString).orElse(null);
-        }));
-
-        statement.variance(parser.variance(() -> {
-            return statement.variance().map(Object::toString).map(String::toLowerCase).orElse(null);
-        }));
-
-        if (!parser.trailing()) { // Record the trailing part, hence it may just warn
-            warn("Unknown construct found at the end of the line.");
+    private void trailing(LineToken token) {
+        if (token.unexpectedTrailing()) {
+            report(Problem.UNEXPECTED_TRAILING, lineNumber, -1, null);
         }
     }
 }
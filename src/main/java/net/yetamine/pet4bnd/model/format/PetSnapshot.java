@@ -0,0 +1,640 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.format;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import net.yetamine.pet4bnd.model.Bundle;
+import net.yetamine.pet4bnd.model.BundleVersion;
+import net.yetamine.pet4bnd.model.InheritingVersion;
+import net.yetamine.pet4bnd.model.PackageExport;
+import net.yetamine.pet4bnd.model.PackageVersion;
+import net.yetamine.pet4bnd.model.VersionGroup;
+import net.yetamine.pet4bnd.model.VersionStatement;
+import net.yetamine.pet4bnd.model.support.BundleVersionDefinition;
+import net.yetamine.pet4bnd.model.support.PackageExportDefinition;
+import net.yetamine.pet4bnd.model.support.PackageGroupDefinition;
+import net.yetamine.pet4bnd.model.support.PackageVersionDefinition;
+import net.yetamine.pet4bnd.version.Version;
+import net.yetamine.pet4bnd.version.VersionVariance;
+
+/**
+ * Stores parsed definitions in a compact binary snapshot, which can be loaded
+ * without parsing the source again as long as the source does not change.
+ *
+ * <p>
+ * A snapshot is identified by a key, which is a digest of the source content,
+ * of the snapshot format and of the version of this implementation, so that a
+ * snapshot made from a different source or by a different implementation is
+ * never used. A snapshot contains the unresolved definition: the bundle version,
+ * the groups used by the exports (including the groups they inherit from) and
+ * the exports with their attributes. Equal versions and attributes are stored
+ * just once and the names of the exports, which are sorted, share their common
+ * prefixes. The result of loading a snapshot equals the result
+ * of {@link PetFormat#read(Path, net.yetamine.pet4bnd.feedback.Feedback)} for
+ * the same source, therefore it must be resolved as usual and it can't be
+ * persisted.
+ *
+ * <p>
+ * Snapshots serve as a cache: a snapshot that is missing, corrupted or that has
+ * a different key is just not loaded.
+ */
+public final class PetSnapshot {
+
+    /** Magic number of a snapshot file. */
+    private static final int MAGIC = 0x50455443; // "PETC"
+    /** Version of the snapshot format. */
+    private static final int FORMAT = 2;
+    /** Digest algorithm for the keys. */
+    private static final String DIGEST = "SHA-256";
+    /** Size of the buffer for reading the source. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Reference value for no inheritance. */
+    private static final int NO_REFERENCE = -2;
+    /** Reference value for inheriting from the bundle version. */
+    private static final int BUNDLE_REFERENCE = -1;
+    /** Index or length for a missing value. */
+    private static final int NO_VALUE = -1;
+    /** Value for a missing variance. */
+    private static final byte NO_VARIANCE = -1;
+
+    /**
+     * Prevents creating instances of this class.
+     */
+    private PetSnapshot() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Computes the key for the given source.
+     *
+     * @param source
+     *            the path to the source. It must not be {@code null}.
+     *
+     * @return the key
+     *
+     * @throws IOException
+     *             if reading the source failed
+     */
+    public static byte[] key(Path source) throws IOException {
+        final MessageDigest digest = digest();
+        digest.update(String.format("%d:%s:", FORMAT, implementationVersion()).getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Loads the snapshot if it exists and has the given key.
+     *
+     * @param snapshot
+     *            the path to the snapshot. It must not be {@code null}.
+     * @param key
+     *            the key of the source. It must not be {@code null}.
+     *
+     * @return the definition, or an empty container if the snapshot does not
+     *         exist, is corrupted or does not have the given key
+     *
+     * @throws IOException
+     *             if reading the snapshot failed
+     */
+    public static Optional<PetFormat> load(Path snapshot, byte[] key) throws IOException {
+        Objects.requireNonNull(key);
+
+        final ByteBuffer input;
+        try {
+            input = ByteBuffer.wrap(Files.readAllBytes(snapshot));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+
+        try {
+            if ((input.getInt() != MAGIC) || (input.getInt() != FORMAT)) {
+                return Optional.empty();
+            }
+
+            final byte[] found = new byte[input.getShort() & 0xFFFF];
+            input.get(found);
+            if (!Arrays.equals(found, key)) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new Decoder(input).decode());
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            return Optional.empty(); // Corrupted content
+        }
+    }
+
+    /**
+     * Stores the snapshot of the given definition.
+     *
+     * <p>
+     * The definition should be stored before resolving, so that the snapshot
+     * contains the same definition as the source. The snapshot is written in a
+     * temporary file first, which then replaces the snapshot atomically if
+     * possible, hence concurrent readers never see an incomplete snapshot.
+     *
+     * @param snapshot
+     *            the path to the snapshot. It must not be {@code null}.
+     * @param key
+     *            the key of the source. It must not be {@code null}.
+     * @param definition
+     *            the definition to store. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if writing the snapshot failed
+     */
+    public static void store(Path snapshot, byte[] key, Bundle definition) throws IOException {
+        Objects.requireNonNull(definition);
+
+        final Path directory = snapshot.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        final Path temporary = Files.createTempFile(directory, snapshot.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT);
+                output.writeShort(key.length);
+                output.write(key);
+                new Encoder(output).encode(definition);
+            }
+
+            try {
+                Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Returns a new digest instance for computing the keys.
+     *
+     * @return the digest instance
+     */
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance(DIGEST);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform must support the algorithm
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the version of this implementation.
+     *
+     * @return the version of this implementation, or an empty string if not
+     *         available
+     */
+    private static String implementationVersion() {
+        final Package p = PetSnapshot.class.getPackage();
+        final String result = (p != null) ? p.getImplementationVersion() : null;
+        return (result != null) ? result : "";
+    }
+
+    /**
+     * Encodes a definition.
+     */
+    private static final class Encoder {
+
+        /** Output to write to. */
+        private final DataOutputStream output;
+        /** Indices of the stored versions. */
+        private final Map<Version, Integer> versions = new HashMap<>();
+        /** Indices of the stored attributes. */
+        private final Map<String, Integer> attributes = new HashMap<>();
+        /** Indices of the stored groups. */
+        private final Map<VersionStatement, Integer> groups = new IdentityHashMap<>();
+        /** Encoded name of the last export. */
+        private byte[] lastName = new byte[0];
+
+        /**
+         * Creates a new instance.
+         *
+         * @param sink
+         *            the output to write to. It must not be {@code null}.
+         */
+        public Encoder(DataOutputStream sink) {
+            output = Objects.requireNonNull(sink);
+        }
+
+        /**
+         * Encodes the definition.
+         *
+         * @param definition
+         *            the definition to encode. It must not be {@code null}.
+         *
+         * @throws IOException
+         *             if writing failed
+         */
+        public void encode(Bundle definition) throws IOException {
+            final BundleVersion bundle = definition.version();
+            final List<PackageExport> exports = new ArrayList<>(definition.exports().values());
+
+            // Collect the tables at first
+            final List<Version> versionTable = new ArrayList<>();
+            final List<String> attributeTable = new ArrayList<>();
+            final List<VersionGroup> groupTable = new ArrayList<>();
+
+            record(versionTable, bundle);
+            exports.forEach(export -> {
+                final PackageVersion version = export.version();
+                version.inheritance().ifPresent(s -> record(groupTable, versionTable, s, bundle));
+                record(versionTable, version);
+                export.attributes().ifPresent(a -> {
+                    if (attributes.putIfAbsent(a, attributes.size()) == null) {
+                        attributeTable.add(a);
+                    }
+                });
+            });
+
+            output.writeInt(versionTable.size());
+            for (Version version : versionTable) {
+                output.writeInt(version.major());
+                output.writeInt(version.minor());
+                output.writeInt(version.micro());
+                writeString(version.qualifier());
+            }
+
+            output.writeInt(attributeTable.size());
+            for (String value : attributeTable) {
+                writeString(value);
+            }
+
+            writeStatement(bundle, bundle.baseline());
+
+            output.writeInt(groupTable.size());
+            for (VersionGroup group : groupTable) {
+                writeString(group.identifier());
+                writeInheriting(group, bundle);
+            }
+
+            output.writeInt(exports.size());
+            for (PackageExport export : exports) {
+                writeName(export.packageName());
+                output.writeInt(export.attributes().map(attributes::get).orElse(NO_VALUE));
+                writeInheriting(export.version(), bundle);
+            }
+        }
+
+        /**
+         * Records the group, after the groups that it inherits from, in the
+         * table if not recorded yet.
+         *
+         * @param groupTable
+         *            the table of the groups. It must not be {@code null}.
+         * @param versionTable
+         *            the table of the versions. It must not be {@code null}.
+         * @param source
+         *            the inheritance source to record. It must not be
+         *            {@code null}.
+         * @param bundle
+         *            the bundle version, which is not recorded. It must not be
+         *            {@code null}.
+         */
+        private void record(List<VersionGroup> groupTable, List<Version> versionTable, VersionStatement source, BundleVersion bundle) {
+            if ((source == bundle) || groups.containsKey(source)) {
+                return;
+            }
+
+            final VersionGroup group = (VersionGroup) source;
+            group.inheritance().ifPresent(s -> record(groupTable, versionTable, s, bundle));
+            groups.put(group, groups.size());
+            groupTable.add(group);
+            record(versionTable, group);
+        }
+
+        /**
+         * Records the versions of the statement in the table if not recorded
+         * yet.
+         *
+         * @param table
+         *            the table of the versions. It must not be {@code null}.
+         * @param statement
+         *            the statement to record. It must not be {@code null}.
+         */
+        private void record(List<Version> table, VersionStatement statement) {
+            record(table, statement.baseline());
+            statement.constraint().ifPresent(v -> record(table, v));
+        }
+
+        /**
+         * Records the version in the table if not recorded yet.
+         *
+         * @param table
+         *            the table of the versions. It must not be {@code null}.
+         * @param version
+         *            the version to record. It must not be {@code null}.
+         */
+        private void record(List<Version> table, Version version) {
+            if (versions.putIfAbsent(version, table.size()) == null) {
+                table.add(version);
+            }
+        }
+
+        /**
+         * Writes the inheritance source and the properties of the statement.
+         *
+         * @param statement
+         *            the statement to write. It must not be {@code null}.
+         * @param bundle
+         *            the bundle version. It must not be {@code null}.
+         *
+         * @throws IOException
+         *             if writing failed
+         */
+        private void writeInheriting(InheritingVersion statement, BundleVersion bundle) throws IOException {
+            final Optional<VersionStatement> inheritance = statement.inheritance();
+
+            if (inheritance.isPresent()) {
+                final VersionStatement source = inheritance.get();
+                output.writeInt((source == bundle) ? BUNDLE_REFERENCE : groups.get(source));
+                writeStatement(statement, null);
+            } else {
+                output.writeInt(NO_REFERENCE);
+                writeStatement(statement, statement.baseline());
+            }
+        }
+
+        /**
+         * Writes the properties of the statement.
+         *
+         * @param statement
+         *            the statement to write. It must not be {@code null}.
+         * @param baseline
+         *            the baseline to write, or {@code null} if none
+         *
+         * @throws IOException
+         *             if writing failed
+         */
+        private void writeStatement(VersionStatement statement, Version baseline) throws IOException {
+            output.writeInt((baseline != null) ? versions.get(baseline) : NO_VALUE);
+            output.writeInt(statement.constraint().map(versions::get).orElse(NO_VALUE));
+            output.writeByte(statement.variance().map(v -> (byte) v.ordinal()).orElse(NO_VARIANCE));
+        }
+
+        /**
+         * Writes the name of an export as the length of the prefix shared with
+         * the name of the previous export and the remaining suffix.
+         *
+         * @param name
+         *            the name to write. It must not be {@code null}.
+         *
+         * @throws IOException
+         *             if writing failed
+         */
+        private void writeName(String name) throws IOException {
+            final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            final int limit = Math.min(bytes.length, lastName.length);
+
+            int prefix = 0;
+            while ((prefix < limit) && (bytes[prefix] == lastName[prefix])) {
+                ++prefix;
+            }
+
+            output.writeInt(prefix);
+            output.writeInt(bytes.length - prefix);
+            output.write(bytes, prefix, bytes.length - prefix);
+            lastName = bytes;
+        }
+
+        /**
+         * Writes a string.
+         *
+         * @param value
+         *            the value to write, or {@code null} if none
+         *
+         * @throws IOException
+         *             if writing failed
+         */
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                output.writeInt(NO_VALUE);
+                return;
+            }
+
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Decodes a definition.
+     */
+    private static final class Decoder {
+
+        /** Input to read from. */
+        private final ByteBuffer input;
+        /** Table of the versions. */
+        private Version[] versions;
+        /** Buffer with the encoded name of the last export. */
+        private byte[] name = new byte[256];
+
+        /**
+         * Creates a new instance.
+         *
+         * @param source
+         *            the input to read from. It must not be {@code null}.
+         */
+        public Decoder(ByteBuffer source) {
+            input = Objects.requireNonNull(source);
+        }
+
+        /**
+         * Decodes the definition.
+         *
+         * @return the definition
+         */
+        public PetFormat decode() {
+            versions = new Version[checkSize(input.getInt())];
+            for (int i = 0; i < versions.length; i++) {
+                versions[i] = Version.of(input.getInt(), input.getInt(), input.getInt(), readString());
+            }
+
+            final String[] attributes = new String[checkSize(input.getInt())];
+            for (int i = 0; i < attributes.length; i++) {
+                attributes[i] = readString();
+            }
+
+            final BundleVersion bundle = readStatement(new BundleVersionDefinition());
+
+            // The groups come after the groups they inherit from
+            final VersionStatement[] groups = new VersionStatement[checkSize(input.getInt())];
+            for (int i = 0; i < groups.length; i++) {
+                final PackageGroupDefinition group = new PackageGroupDefinition(readString());
+                groups[i] = readInheriting(group, bundle, groups, i);
+            }
+
+            // The exports come sorted, so that the insertion order is sufficient
+            final int count = checkSize(input.getInt());
+            final Map<String, PackageExport> exports = new LinkedHashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                final String packageName = readName();
+                final int attribute = input.getInt();
+                final PackageVersionDefinition version = readInheriting(new PackageVersionDefinition(), bundle, groups, groups.length);
+
+                final String value = (attribute != NO_VALUE) ? attributes[attribute] : null;
+                exports.put(packageName, new PackageExportDefinition(packageName, version, value));
+            }
+
+            return new PetFormat(bundle, exports);
+        }
+
+        /**
+         * Reads the inheritance source and the properties of a statement.
+         *
+         * @param <T>
+         *            the type of the statement
+         * @param statement
+         *            the statement to update. It must not be {@code null}.
+         * @param bundle
+         *            the bundle version. It must not be {@code null}.
+         * @param groups
+         *            the table of the groups. It must not be {@code null}.
+         * @param limit
+         *            the number of the groups read so far, which the statement
+         *            may inherit from
+         *
+         * @return the statement
+         */
+        private <T extends InheritingVersion> T readInheriting(T statement, BundleVersion bundle, VersionStatement[] groups, int limit) {
+            final int reference = input.getInt();
+            if ((reference < NO_REFERENCE) || (limit <= reference)) {
+                throw new IllegalArgumentException();
+            }
+
+            readStatement(statement);
+            if (reference != NO_REFERENCE) {
+                statement.inherit((reference == BUNDLE_REFERENCE) ? bundle : groups[reference]);
+            }
+
+            return statement;
+        }
+
+        /**
+         * Reads the properties of a statement.
+         *
+         * @param <T>
+         *            the type of the statement
+         * @param statement
+         *            the statement to update. It must not be {@code null}.
+         *
+         * @return the statement
+         */
+        private <T extends VersionStatement> T readStatement(T statement) {
+            final int baseline = input.getInt();
+            if (baseline != NO_VALUE) {
+                statement.baseline(versions[baseline]);
+            }
+
+            final int constraint = input.getInt();
+            statement.constraint((constraint != NO_VALUE) ? versions[constraint] : null);
+            final byte variance = input.get();
+            statement.variance((variance != NO_VARIANCE) ? VersionVariance.values()[variance] : null);
+            return statement;
+        }
+
+        /**
+         * Reads the name of an export.
+         *
+         * @return the name
+         */
+        private String readName() {
+            final int prefix = input.getInt();
+            final int length = prefix + checkSize(input.getInt());
+            if (name.length < length) {
+                name = Arrays.copyOf(name, Math.max(length, name.length * 2));
+            }
+
+            input.get(name, prefix, length - prefix);
+            return new String(name, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Reads a string.
+         *
+         * @return the string, or {@code null} if none
+         */
+        private String readString() {
+            final int length = input.getInt();
+            if (length == NO_VALUE) {
+                return null;
+            }
+
+            final int offset = input.position();
+            input.position(offset + checkSize(length)); // Checks the range as well
+            return new String(input.array(), input.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Checks that a size can be satisfied by the remaining input, which
+         * prevents huge allocations for corrupted content.
+         *
+         * @param size
+         *            the size to check
+         *
+         * @return the size
+         *
+         * @throws IllegalArgumentException
+         *             if the size is not valid
+         */
+        private int checkSize(int size) {
+            if ((size < 0) || (input.remaining() < size)) {
+                throw new IllegalArgumentException();
+            }
+
+            return size;
+        }
+    }
+}
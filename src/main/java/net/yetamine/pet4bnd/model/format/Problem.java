@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.format;
+
+/**
+ * Enumerates the problems that parsing a definition may report.
+ *
+ * <p>
+ * Each problem has a message format with at most one argument, so that the
+ * diagnostics can record just the problem and the argument and the message is
+ * formatted only when needed.
+ */
+public enum Problem {
+
+    // @formatter:off
+    /** A line does not match any construct. */
+    UNKNOWN_CONSTRUCT(false, "Unknown construct found."),
+    /** A declaration lacks the version baseline. */
+    MISSING_BASELINE(false, "Missing version baseline."),
+    /** A declaration has an invalid version baseline. */
+    INVALID_BASELINE(false, "Version baseline invalid."),
+    /** A version number is out of the range; the argument is the number. */
+    INVALID_NUMBER(false, "For input string: \"%s\""),
+    /** A version is invalid; the argument is the reason. */
+    INVALID_VERSION(false, "%s"),
+    /** A variance is unknown; the argument is the variance in upper case. */
+    INVALID_VARIANCE(false, "No enum constant net.yetamine.pet4bnd.version.VersionVariance.%s"),
+    /** Attributes do not follow any export. */
+    ORPHANED_ATTRIBUTES(false, "Export attribute definition missing preceding package export."),
+    /** An export refers to an undefined group; the argument is the group. */
+    UNDEFINED_GROUP(false, "Reference to undefined group '%s'."),
+    /** The bundle version declaration is missing. */
+    MISSING_BUNDLE_VERSION(false, "The " + LineToken.BUNDLE_VERSION_STATEMENT + " declaration required, but missing."),
+    /** A group is declared again; the argument is the group. */
+    DUPLICATE_GROUP(true, "Declaration of '%s' duplicated. Using the first occurrence."),
+    /** An export is declared again; the argument is the export. */
+    DUPLICATE_EXPORT(true, "Duplicated definition for '%s'. Using only the first occurrence."),
+    /** A declaration is followed by an unknown construct. */
+    UNEXPECTED_TRAILING(true, "Unknown construct found at the end of the line.");
+    // @formatter:on
+
+    /** Indicates a warning rather than an error. */
+    private final boolean warning;
+    /** Format of the message. */
+    private final String format;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param isWarning
+     *            {@code true} for a warning, {@code false} for an error
+     * @param messageFormat
+     *            the format of the message. It must not be {@code null}.
+     */
+    Problem(boolean isWarning, String messageFormat) {
+        warning = isWarning;
+        format = messageFormat;
+    }
+
+    /**
+     * Indicates whether the problem is just a warning.
+     *
+     * @return {@code true} for a warning, {@code false} for an error
+     */
+    public boolean warning() {
+        return warning;
+    }
+
+    /**
+     * Formats the message of the problem.
+     *
+     * @param argument
+     *            the argument of the message, or {@code null} if the problem
+     *            has no argument
+     *
+     * @return the message
+     */
+    public String message(String argument) {
+        return (argument != null) ? String.format(format, argument) : format;
+    }
+}
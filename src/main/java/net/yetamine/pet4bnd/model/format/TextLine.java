@@ -16,24 +16,76 @@
 
 package net.yetamine.pet4bnd.model.format;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
- * Provides a line representation which consists of multiple fragments.
+ * Provides a line representation which consists of the source line and edits
+ * that replace parts of the source with current values.
+ *
+ * <p>
+ * Each edit is a quadruple of integers: the offset and the length of the part
+ * of the source to replace, the slot that provides the value for the part and
+ * the length of the prefix that precedes the value in the source. A prefix
+ * length of {@link #DEFAULT_PREFIX} means that the edit inserts a value that
+ * is missing in the source and the default prefix of the slot shall be used.
+ * When a slot provides no value, the whole part, including the prefix, is
+ * omitted. Lines without any edits just refer to the source.
  */
-final class TextLine implements TextFragment {
+final class TextLine {
+
+    /** Slot for the version baseline or for the group reference. */
+    public static final int BASELINE = 0;
+    /** Slot for the version constraint. */
+    public static final int CONSTRAINT = 1;
+    /** Slot for the version variance. */
+    public static final int VARIANCE = 2;
+    /** Slot that never provides a value, hence it removes a part. */
+    public static final int OMITTED = 3;
+
+    /** Prefix length indicating that the default prefix should be used. */
+    public static final int DEFAULT_PREFIX = -1;
 
-    /** Fragments of this line. */
-    private final List<TextFragment> fragments = new ArrayList<>();
+    /** Number of integers per edit. */
+    private static final int EDIT_SIZE = 4;
+    /** Default prefixes for the slots. */
+    private static final String[] DEFAULT_PREFIXES = { "", " < ", " @ ", "" };
+    /** Shared array with no edits. */
+    private static final int[] NO_EDITS = new int[0];
+
+    /** Source of the line. */
+    private final String source;
+    /** Edits of the source. */
+    private final int[] edits;
+    /** Formatter of the slots. */
+    private final Formatter formatter;
 
     /**
      * Creates a new instance.
+     *
+     * @param line
+     *            the source of the line. It must not be {@code null}.
+     * @param changes
+     *            the edits. It must not be {@code null}.
+     * @param slots
+     *            the formatter of the slots
      */
-    public TextLine() {
-        // Default constructor
+    private TextLine(String line, int[] changes, Formatter slots) {
+        source = Objects.requireNonNull(line);
+        formatter = slots;
+        edits = changes;
+    }
+
+    /**
+     * Creates a new instance that just represents the given line.
+     *
+     * @param line
+     *            the line. It must not be {@code null}.
+     *
+     * @return the new instance
+     */
+    public static TextLine of(String line) {
+        return new TextLine(line, NO_EDITS, null);
     }
 
     /**
@@ -41,59 +93,129 @@ final class TextLine implements TextFragment {
      */
     @Override
     public String toString() {
-        switch (fragments.size()) {
-            // @formatter:off
-            case 0 : return "";
-            case 1 : return TextFragment.toString(fragments.get(0));
-            // @formatter:on
+        if (edits.length == 0) {
+            return source;
         }
 
-        return fragments.stream().map(f -> TextFragment.toString(f)).collect(Collectors.joining());
-    }
+        final StringBuilder result = new StringBuilder(source.length() + 16);
 
-    /**
-     * @see net.yetamine.pet4bnd.model.format.TextFragment#format()
-     */
-    public String format() {
-        return toString();
-    }
+        int position = 0;
+        for (int i = 0; i < edits.length; i += EDIT_SIZE) {
+            final int offset = edits[i];
+            result.append(source, position, offset);
+            position = offset + edits[i + 1];
 
-    /**
-     * Appends a fragment.
-     *
-     * @param fragment
-     *            the fragment to append. It must not be {@code null}.
-     *
-     * @return this instance
-     */
-    public TextLine append(TextFragment fragment) {
-        fragments.add(fragment);
-        return this;
+            final int slot = edits[i + 2];
+            if (slot == OMITTED) {
+                continue;
+            }
+
+            final String value = formatter.format(slot);
+            if (value == null) {
+                continue;
+            }
+
+            final int prefix = edits[i + 3];
+            if (prefix == DEFAULT_PREFIX) {
+                result.append(DEFAULT_PREFIXES[slot]);
+            } else {
+                result.append(source, offset, offset + prefix);
+            }
+
+            result.append(value);
+        }
+
+        return result.append(source, position, source.length()).toString();
     }
 
     /**
-     * Appends a fragment.
-     *
-     * @param fragment
-     *            the fragment to append. It must not be {@code null}.
-     *
-     * @return this instance
+     * Formats the values of the slots.
      */
-    public TextLine append(String fragment) {
-        Objects.requireNonNull(fragment);
-        return append(() -> fragment);
+    @FunctionalInterface
+    interface Formatter {
+
+        /**
+         * Formats the value of the given slot.
+         *
+         * @param slot
+         *            the slot to format
+         *
+         * @return the formatted value, or {@code null} if the value shall be
+         *         omitted
+         */
+        String format(int slot);
     }
 
     /**
-     * Provides the list of fragments of this line.
-     *
-     * <p>
-     * The provided list be modified to change the line representation, however,
-     * {@code null} values are not welcome and might be rejected.
-     *
-     * @return the list of fragments of this line
+     * Collects the edits of a line.
      */
-    public List<TextFragment> fragments() {
-        return fragments;
+    static final class Builder {
+
+        /** Source of the line. */
+        private final String source;
+        /** Edits collected so far. */
+        private int[] edits = NO_EDITS;
+        /** Number of used integers in {@link #edits}. */
+        private int size;
+        /** Indicates that an edit needs a formatter. */
+        private boolean formatted;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param line
+         *            the source of the line. It must not be {@code null}.
+         */
+        public Builder(String line) {
+            source = Objects.requireNonNull(line);
+        }
+
+        /**
+         * Adds an edit; edits must be added in the order of their offsets and
+         * they must not overlap.
+         *
+         * @param offset
+         *            the offset of the part to replace
+         * @param length
+         *            the length of the part to replace
+         * @param slot
+         *            the slot to provide the value
+         * @param prefix
+         *            the length of the prefix in the source, or
+         *            {@link #DEFAULT_PREFIX}
+         *
+         * @return this instance
+         */
+        public Builder edit(int offset, int length, int slot, int prefix) {
+            if (edits.length < size + EDIT_SIZE) {
+                edits = Arrays.copyOf(edits, Math.max(EDIT_SIZE * 3, edits.length * 2));
+            }
+
+            edits[size++] = offset;
+            edits[size++] = length;
+            edits[size++] = slot;
+            edits[size++] = prefix;
+            formatted |= (slot != OMITTED);
+            return this;
+        }
+
+        /**
+         * Builds the line.
+         *
+         * @param formatter
+         *            the formatter of the slots. It must not be {@code null} if
+         *            any edit uses a slot with a value, otherwise it is not
+         *            retained.
+         *
+         * @return the line
+         */
+        public TextLine build(Formatter formatter) {
+            if (formatted) {
+                Objects.requireNonNull(formatter);
+            }
+
+            final int[] result = (size == edits.length) ? edits : Arrays.copyOf(edits, size);
+            return new TextLine(source, result, formatted ? formatter : null);
+        }
     }
 }
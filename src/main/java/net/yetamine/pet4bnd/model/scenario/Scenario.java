@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.scenario;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import net.yetamine.pet4bnd.version.Version;
+import net.yetamine.pet4bnd.version.VersionVariance;
+
+/**
+ * Represents a set of hypothetical changes of a bundle definition.
+ *
+ * <p>
+ * A scenario names the changed statements like a definition file does: the
+ * package name for an export, the identifier of a group, e.g., {@code $api}, or
+ * {@code $bundle} for the bundle version. Instances of this class are immutable
+ * and persistent: adding a change makes a new scenario, which shares all the
+ * former changes with the original scenario, so that deriving many scenarios
+ * from a common one costs a single small object per change. When a statement
+ * changes several times, the last change of each kind applies.
+ *
+ * <p>
+ * Use {@link ScenarioResolver} to evaluate a scenario.
+ */
+public final class Scenario {
+
+    /** Name of the bundle version statement. */
+    public static final String BUNDLE_VERSION = "$bundle";
+
+    /** Scenario with no change. */
+    private static final Scenario EMPTY = new Scenario();
+
+    /** Scenario with the former changes, or {@code null} for the empty one. */
+    private final Scenario parent;
+    /** Name of the changed statement. */
+    private final String name;
+    /** Indicates that this change sets the variance. */
+    private final boolean varianceChange;
+    /** New variance. */
+    private final VersionVariance variance;
+    /** New baseline, or {@code null} if this change sets the variance. */
+    private final Version baseline;
+    /** Number of the changes. */
+    private final int size;
+
+    /**
+     * Creates a new empty instance.
+     */
+    private Scenario() {
+        parent = null;
+        name = null;
+        varianceChange = false;
+        variance = null;
+        baseline = null;
+        size = 0;
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param formerChanges
+     *            the scenario with the former changes. It must not be
+     *            {@code null}.
+     * @param statementName
+     *            the name of the changed statement. It must not be
+     *            {@code null}.
+     * @param newVariance
+     *            the new variance if changing the variance
+     * @param newBaseline
+     *            the new baseline, or {@code null} if changing the variance
+     */
+    private Scenario(Scenario formerChanges, String statementName, VersionVariance newVariance, Version newBaseline) {
+        parent = formerChanges;
+        name = Objects.requireNonNull(statementName);
+        varianceChange = (newBaseline == null);
+        variance = newVariance;
+        baseline = newBaseline;
+        size = formerChanges.size + 1;
+    }
+
+    /**
+     * Returns the scenario with no change.
+     *
+     * @return the scenario with no change
+     */
+    public static Scenario empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("Scenario[changes=%d]", size);
+    }
+
+    /**
+     * Makes a scenario with an additional change of a variance.
+     *
+     * @param statement
+     *            the name of the statement. It must not be {@code null}.
+     * @param value
+     *            the new variance. It may be {@code null} for fixing the
+     *            baseline.
+     *
+     * @return the new scenario
+     */
+    public Scenario variance(String statement, VersionVariance value) {
+        return new Scenario(this, statement, value, null);
+    }
+
+    /**
+     * Makes a scenario with an additional change of a baseline.
+     *
+     * <p>
+     * Changing the baseline of a statement that inherits its version makes the
+     * statement have an own version.
+     *
+     * @param statement
+     *            the name of the statement. It must not be {@code null}.
+     * @param value
+     *            the new baseline. It must not be {@code null}.
+     *
+     * @return the new scenario
+     */
+    public Scenario baseline(String statement, Version value) {
+        return new Scenario(this, statement, null, Objects.requireNonNull(value));
+    }
+
+    /**
+     * Returns the number of the changes.
+     *
+     * @return the number of the changes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Indicates whether this scenario has no change.
+     *
+     * @return {@code true} if this scenario has no change
+     */
+    public boolean isEmpty() {
+        return (size == 0);
+    }
+
+    /**
+     * Collects the effective changes of this scenario.
+     *
+     * @return the effective changes by the names of the statements
+     */
+    Map<String, Change> changes() {
+        final Map<String, Change> result = new LinkedHashMap<>();
+
+        // Walk from the latest change, so that the latest changes win
+        for (Scenario s = this; s.parent != null; s = s.parent) {
+            final Change change = result.computeIfAbsent(s.name, k -> new Change());
+
+            if (s.varianceChange) {
+                if (!change.varianceChange) {
+                    change.varianceChange = true;
+                    change.variance = s.variance;
+                }
+            } else if (change.baseline == null) {
+                change.baseline = s.baseline;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The effective change of a statement.
+     */
+    static final class Change {
+
+        /** Indicates that the variance changes. */
+        boolean varianceChange;
+        /** New variance. */
+        VersionVariance variance;
+        /** New baseline, or {@code null} if not changed. */
+        Version baseline;
+
+        /**
+         * Creates a new instance.
+         */
+        public Change() {
+            // Default constructor
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.scenario;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import net.yetamine.pet4bnd.model.Bundle;
+import net.yetamine.pet4bnd.model.InheritingVersion;
+import net.yetamine.pet4bnd.model.PackageExport;
+import net.yetamine.pet4bnd.model.ResolvedBundle;
+import net.yetamine.pet4bnd.model.VersionGroup;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.VersionStatement;
+import net.yetamine.pet4bnd.model.support.CompactBundle;
+import net.yetamine.pet4bnd.version.Version;
+import net.yetamine.pet4bnd.version.VersionVariance;
+
+/**
+ * Evaluates scenarios for a bundle.
+ *
+ * <p>
+ * The resolver keeps a private copy of the bundle together with its resolver.
+ * Evaluating a scenario applies the changes to the copy, resolves only the
+ * statements affected by the changes, records the changed resolutions and
+ * reverts the changes, so that the cost of a scenario depends on the number of
+ * its changes and of the statements they affect rather than on the size of the
+ * bundle. The results share the immutable snapshot of the unchanged bundle.
+ *
+ * <p>
+ * Instances of this class are not thread-safe, but they do not modify the
+ * original bundle and the results are immutable.
+ */
+public final class ScenarioResolver {
+
+    /** Private copy of the bundle. */
+    private final Bundle bundle;
+    /** Resolver for the copy. */
+    private final RecordingResolver resolver;
+    /** Snapshot of the resolved copy. */
+    private final ResolvedBundle base;
+    /** Variance of the bundle version before resolving. */
+    private final VersionVariance bundleVariance;
+    /** Groups of the copy by their identifiers. */
+    private final Map<String, VersionGroup> groups = new HashMap<>();
+    /** Resolutions of the groups of the copy by their identifiers. */
+    private final Map<String, Version> groupResolutions = new HashMap<>();
+    /** Names of the export versions of the copy. */
+    private final Map<VersionStatement, String> names = new HashMap<>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param definition
+     *            the bundle to evaluate the scenarios for. It must not be
+     *            {@code null}.
+     *
+     * @throws IllegalArgumentException
+     *             if an export inherits from an unsupported statement
+     * @throws IllegalStateException
+     *             if the inheritance of the versions makes a cycle
+     */
+    public ScenarioResolver(Bundle definition) {
+        bundle = CompactBundle.copyOf(definition);
+        bundleVariance = bundle.version().variance().orElse(null);
+        resolver = new RecordingResolver(bundle);
+        resolver.resolve();
+        base = resolver.snapshot();
+
+        for (Map.Entry<String, PackageExport> entry : bundle.exports().entrySet()) {
+            final InheritingVersion version = entry.getValue().version();
+            names.put(version, entry.getKey());
+
+            Optional<VersionStatement> source = version.inheritance();
+            while (source.isPresent() && (source.get() instanceof VersionGroup)) {
+                final VersionGroup group = (VersionGroup) source.get();
+                if (groups.putIfAbsent(group.identifier(), group) != null) {
+                    break; // Known already with its sources
+                }
+
+                groupResolutions.put(group.identifier(), group.resolution());
+                source = group.inheritance();
+            }
+        }
+    }
+
+    /**
+     * Returns the snapshot of the bundle without any change.
+     *
+     * @return the snapshot of the bundle without any change
+     */
+    public ResolvedBundle base() {
+        return base;
+    }
+
+    /**
+     * Evaluates a scenario.
+     *
+     * @param scenario
+     *            the scenario to evaluate. It must not be {@code null}.
+     *
+     * @return the result of the scenario
+     *
+     * @throws IllegalArgumentException
+     *             if the scenario changes an unknown statement
+     */
+    public ScenarioResult resolve(Scenario scenario) {
+        final Map<String, Scenario.Change> changes = scenario.changes();
+        final List<Runnable> reverts = new ArrayList<>(changes.size());
+
+        try {
+            changes.forEach((name, change) -> reverts.add(apply(statement(name), change)));
+            resolver.record(true);
+            resolver.resolve();
+
+            final Map<String, Version> result = new HashMap<>();
+            for (VersionStatement statement : resolver.changes()) {
+                final String name = name(statement);
+                final Version resolution = statement.resolution();
+                if (!resolution.equals(baseResolution(name))) {
+                    result.put(name, resolution);
+                }
+            }
+
+            return new ScenarioResult(scenario, base, result);
+        } finally {
+            resolver.record(false);
+            for (int i = reverts.size(); 0 < i--;) {
+                reverts.get(i).run();
+            }
+
+            resolver.resolve();
+        }
+    }
+
+    /**
+     * Returns the statement of the copy with the given name.
+     *
+     * @param name
+     *            the name of the statement. It must not be {@code null}.
+     *
+     * @return the statement
+     *
+     * @throws IllegalArgumentException
+     *             if the statement is unknown
+     */
+    private VersionStatement statement(String name) {
+        if (Scenario.BUNDLE_VERSION.equals(name)) {
+            return bundle.version();
+        }
+
+        final VersionStatement group = groups.get(name);
+        if (group != null) {
+            return group;
+        }
+
+        final PackageExport export = bundle.exports().get(name);
+        if (export != null) {
+            return export.version();
+        }
+
+        throw new IllegalArgumentException(String.format("Unknown statement '%s'.", name));
+    }
+
+    /**
+     * Returns the name of a statement of the copy.
+     *
+     * @param statement
+     *            the statement. It must not be {@code null}.
+     *
+     * @return the name of the statement
+     */
+    private String name(VersionStatement statement) {
+        if (statement instanceof VersionGroup) {
+            return ((VersionGroup) statement).identifier();
+        }
+
+        final String result = names.get(statement);
+        return (result != null) ? result : Scenario.BUNDLE_VERSION;
+    }
+
+    /**
+     * Returns the resolution of a statement without any change.
+     *
+     * @param name
+     *            the name of the statement. It must not be {@code null}.
+     *
+     * @return the resolution of the statement
+     */
+    private Version baseResolution(String name) {
+        if (Scenario.BUNDLE_VERSION.equals(name)) {
+            return base.version().resolution();
+        }
+
+        final Version result = groupResolutions.get(name);
+        return (result != null) ? result : base.exports().get(name).version().resolution();
+    }
+
+    /**
+     * Applies a change to a statement.
+     *
+     * @param statement
+     *            the statement to change. It must not be {@code null}.
+     * @param change
+     *            the change to apply. It must not be {@code null}.
+     *
+     * @return the action that reverts the change
+     */
+    private Runnable apply(VersionStatement statement, Scenario.Change change) {
+        // Resolving resets the variance of the bundle version, so use the original one
+        final boolean bundleVersion = (statement == bundle.version());
+        final VersionVariance variance = bundleVersion ? bundleVariance : statement.variance().orElse(null);
+        final Version baseline = statement.baseline();
+        final VersionStatement source = (statement instanceof InheritingVersion) // @formatter:break
+                ? ((InheritingVersion) statement).inheritance().orElse(null)
+                : null;
+
+        if (change.baseline != null) {
+            statement.baseline(change.baseline);
+        }
+
+        statement.variance(change.varianceChange ? change.variance : variance);
+        resolver.invalidate(statement);
+
+        return () -> {
+            statement.baseline(baseline);
+            if (source != null) {
+                ((InheritingVersion) statement).inherit(source);
+            }
+
+            statement.variance(variance);
+            resolver.invalidate(statement);
+        };
+    }
+
+    /**
+     * A resolver recording the statements with changed resolutions.
+     */
+    private static final class RecordingResolver extends VersionResolver {
+
+        /** Statements with changed resolutions. */
+        private final List<VersionStatement> changes = new ArrayList<>();
+        /** Indicates whether to record the changes. */
+        private boolean recording;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param resolutionTarget
+         *            the bundle to resolve. It must not be {@code null}.
+         */
+        public RecordingResolver(Bundle resolutionTarget) {
+            super(resolutionTarget);
+        }
+
+        /**
+         * Starts or stops recording; starting clears the recorded changes.
+         *
+         * @param value
+         *            {@code true} to start recording
+         */
+        public void record(boolean value) {
+            if (value) {
+                changes.clear();
+            }
+
+            recording = value;
+        }
+
+        /**
+         * Returns the recorded changes.
+         *
+         * @return the recorded changes
+         */
+        public List<VersionStatement> changes() {
+            return changes;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionResolver#resolutionChanged(net.yetamine.pet4bnd.model.VersionStatement)
+         */
+        @Override
+        protected void resolutionChanged(VersionStatement statement) {
+            if (recording) {
+                changes.add(Objects.requireNonNull(statement));
+            }
+        }
+    }
+}
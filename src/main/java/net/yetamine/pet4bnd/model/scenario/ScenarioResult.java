@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.scenario;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+import net.yetamine.pet4bnd.model.PackageExport;
+import net.yetamine.pet4bnd.model.ResolvedBundle;
+import net.yetamine.pet4bnd.version.Version;
+
+/**
+ * Represents the result of a scenario.
+ *
+ * <p>
+ * The result records just the resolutions that the scenario changed and takes
+ * the other resolutions from the snapshot of the bundle without any change,
+ * which all results of the same {@link ScenarioResolver} share. Instances of
+ * this class are immutable.
+ */
+public final class ScenarioResult {
+
+    /** Evaluated scenario. */
+    private final Scenario scenario;
+    /** Snapshot of the bundle without any change. */
+    private final ResolvedBundle base;
+    /** Changed resolutions by the names of the statements. */
+    private final Map<String, Version> changes;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param evaluatedScenario
+     *            the evaluated scenario. It must not be {@code null}.
+     * @param baseBundle
+     *            the snapshot of the bundle without any change. It must not be
+     *            {@code null}.
+     * @param changedResolutions
+     *            the changed resolutions. It must not be {@code null}.
+     */
+    ScenarioResult(Scenario evaluatedScenario, ResolvedBundle baseBundle, Map<String, Version> changedResolutions) {
+        scenario = Objects.requireNonNull(evaluatedScenario);
+        base = Objects.requireNonNull(baseBundle);
+        changes = Collections.unmodifiableMap(changedResolutions);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("ScenarioResult[version=%s, changes=%d]", version(), changes.size());
+    }
+
+    /**
+     * Returns the evaluated scenario.
+     *
+     * @return the evaluated scenario
+     */
+    public Scenario scenario() {
+        return scenario;
+    }
+
+    /**
+     * Returns the snapshot of the bundle without any change.
+     *
+     * @return the snapshot of the bundle without any change
+     */
+    public ResolvedBundle base() {
+        return base;
+    }
+
+    /**
+     * Returns the resolutions that the scenario changed.
+     *
+     * @return the changed resolutions by the names of the statements, including
+     *         the groups and the bundle version
+     */
+    public Map<String, Version> changes() {
+        return changes;
+    }
+
+    /**
+     * Returns the resolution of the bundle version.
+     *
+     * @return the resolution of the bundle version
+     */
+    public Version version() {
+        final Version result = changes.get(Scenario.BUNDLE_VERSION);
+        return (result != null) ? result : base.version().resolution();
+    }
+
+    /**
+     * Returns the resolution of an export.
+     *
+     * @param packageName
+     *            the name of the exported package. It must not be
+     *            {@code null}.
+     *
+     * @return the resolution of the export
+     *
+     * @throws IllegalArgumentException
+     *             if the export does not exist
+     */
+    public Version resolution(String packageName) {
+        final Version result = changes.get(packageName);
+        if (result != null) {
+            return result;
+        }
+
+        final PackageExport export = base.exports().get(packageName);
+        if (export == null) {
+            throw new IllegalArgumentException(String.format("Unknown export '%s'.", packageName));
+        }
+
+        return export.version().resolution();
+    }
+
+    /**
+     * Tests if the resolutions satisfy the constraints of the bundle version
+     * and of the exports.
+     *
+     * @return {@code true} if the resolutions satisfy the constraints
+     */
+    public boolean test() {
+        if (!base.version().test(version())) {
+            return false;
+        }
+
+        return base.exports().values().stream().allMatch(export -> {
+            final Version resolution = changes.get(export.packageName());
+            return (resolution != null) ? export.version().test(resolution) : export.version().test();
+        });
+    }
+}
@@ -0,0 +1,686 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.support;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import net.yetamine.pet4bnd.model.Bundle;
+import net.yetamine.pet4bnd.model.BundleVersion;
+import net.yetamine.pet4bnd.model.InheritingVersion;
+import net.yetamine.pet4bnd.model.PackageExport;
+import net.yetamine.pet4bnd.model.PackageVersion;
+import net.yetamine.pet4bnd.model.VersionGroup;
+import net.yetamine.pet4bnd.model.VersionStatement;
+import net.yetamine.pet4bnd.version.Version;
+import net.yetamine.pet4bnd.version.VersionVariance;
+
+/**
+ * A bundle storing its exports in parallel primitive arrays.
+ *
+ * <p>
+ * While {@link PackageExportDefinition} and {@link PackageVersionDefinition}
+ * need a few objects per export, this implementation keeps just a few array
+ * elements per export: the versions in their packed form, the variance as a
+ * byte and the constraint and the inheritance source as indices in small
+ * tables of the distinct values; the names of the exports make a sorted table,
+ * which serves for the lookup as well, and equal attributes are shared. The exports and their versions are
+ * provided as flyweight views, which are equal when they represent the same
+ * export of the same bundle, and which read and modify the arrays directly.
+ *
+ * <p>
+ * The bundle version and the version groups remain ordinary definitions, since
+ * there are just a few of them. Instances of this class are not thread-safe,
+ * like the definitions.
+ */
+public final class CompactBundle implements Bundle {
+
+    /** Shared table of the variances. */
+    private static final VersionVariance[] VARIANCES = VersionVariance.values();
+    /** Stored form of a missing version. */
+    private static final long NO_VERSION = -1L;
+    /** Stored form of a missing index. */
+    private static final int NO_INDEX = -1;
+
+    /** Names of the exports in the ascending order. */
+    private final String[] names;
+    /** Attributes of the exports, or {@code null} elements if none. */
+    private final String[] attributes;
+    /** Baselines of the exports. */
+    private final long[] baselines;
+    /** Resolutions of the exports, or {@link #NO_VERSION} for the default. */
+    private final long[] resolutions;
+    /** Indices of the constraints of the exports, or {@link #NO_INDEX}. */
+    private final int[] constraints;
+    /** Variance ordinals of the exports plus one, or zero if none. */
+    private final byte[] variances;
+    /** Indices of the inheritance sources of the exports, or {@link #NO_INDEX}. */
+    private final int[] sources;
+
+    /** Table of the versions without any packed form. */
+    private final VersionTable unpacked = new VersionTable();
+    /** Table of the constraints. */
+    private final VersionTable constraintTable = new VersionTable();
+    /** Table of the inheritance sources. */
+    private final List<VersionStatement> sourceTable = new ArrayList<>();
+    /** Indices of the inheritance sources. */
+    private final Map<VersionStatement, Integer> sourceIndices = new HashMap<>();
+
+    /** Bundle version. */
+    private final BundleVersion version;
+    /** View of the exports. */
+    private final Map<String, PackageExport> exports = new Exports();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bundleVersion
+     *            the bundle version. It must not be {@code null}.
+     * @param exportNames
+     *            the names of the exports in the ascending order. It must not
+     *            be {@code null}.
+     */
+    private CompactBundle(BundleVersion bundleVersion, String[] exportNames) {
+        version = Objects.requireNonNull(bundleVersion);
+        names = exportNames;
+
+        final int count = names.length;
+        attributes = new String[count];
+        baselines = new long[count];
+        resolutions = new long[count];
+        constraints = new int[count];
+        variances = new byte[count];
+        sources = new int[count];
+
+        Arrays.fill(resolutions, NO_VERSION);
+        Arrays.fill(constraints, NO_INDEX);
+        Arrays.fill(sources, NO_INDEX);
+    }
+
+    /**
+     * Makes a copy of the given bundle.
+     *
+     * <p>
+     * The copy has the same definitions, including the version groups, which
+     * are copied as well, but no resolutions, hence it must be resolved again.
+     * The exports may inherit only from the bundle version or from the version
+     * groups.
+     *
+     * @param bundle
+     *            the bundle to copy. It must not be {@code null}.
+     *
+     * @return the copy
+     *
+     * @throws IllegalArgumentException
+     *             if an export inherits from an unsupported statement
+     */
+    public static CompactBundle copyOf(Bundle bundle) {
+        final BundleVersion sourceVersion = bundle.version();
+        final BundleVersionDefinition targetVersion = new BundleVersionDefinition();
+        copy(sourceVersion, targetVersion);
+
+        final Map<String, PackageExport> sourceExports = bundle.exports();
+        final String[] names = sourceExports.keySet().toArray(new String[sourceExports.size()]);
+        Arrays.sort(names);
+
+        final CompactBundle result = new CompactBundle(targetVersion, names);
+        // Map the copied statements, the bundle version is the first source
+        final Map<VersionStatement, VersionStatement> copies = new HashMap<>();
+        copies.put(sourceVersion, targetVersion);
+        // Share equal attributes, which typically repeat
+        final Map<String, String> attributes = new HashMap<>();
+
+        for (int i = 0; i < names.length; i++) {
+            final PackageExport export = sourceExports.get(names[i]);
+            final PackageVersion exportVersion = export.version();
+
+            result.attributes[i] = export.attributes().map(a -> attributes.computeIfAbsent(a, k -> k)).orElse(null);
+            result.constraints[i] = exportVersion.constraint().map(result.constraintTable::index).orElse(NO_INDEX);
+            result.variances[i] = exportVersion.variance().map(v -> (byte) (v.ordinal() + 1)).orElse((byte) 0);
+
+            final Optional<VersionStatement> inheritance = exportVersion.inheritance();
+            if (inheritance.isPresent()) {
+                result.sources[i] = result.source(copy(inheritance.get(), copies));
+            } else {
+                result.baselines[i] = result.encode(exportVersion.baseline());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.model.Bundle#version()
+     */
+    public BundleVersion version() {
+        return version;
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.model.Bundle#exports()
+     */
+    public Map<String, PackageExport> exports() {
+        return exports;
+    }
+
+    /**
+     * Copies a statement that an export inherits from, including its sources.
+     *
+     * @param statement
+     *            the statement to copy. It must not be {@code null}.
+     * @param copies
+     *            the map of the copied statements. It must not be {@code null}.
+     *
+     * @return the copy
+     *
+     * @throws IllegalArgumentException
+     *             if the statement is not supported
+     */
+    private static VersionStatement copy(VersionStatement statement, Map<VersionStatement, VersionStatement> copies) {
+        final VersionStatement known = copies.get(statement);
+        if (known != null) {
+            return known;
+        }
+
+        if (!(statement instanceof VersionGroup)) {
+            throw new IllegalArgumentException("Unsupported inheritance source: " + statement);
+        }
+
+        final VersionGroup group = (VersionGroup) statement;
+        final PackageGroupDefinition result = new PackageGroupDefinition(group.identifier());
+        copy(group, result);
+
+        final Optional<VersionStatement> inheritance = group.inheritance();
+        if (inheritance.isPresent()) { // Parsed groups can't make a cycle
+            result.inherit(copy(inheritance.get(), copies));
+        }
+
+        copies.put(statement, result);
+        return result;
+    }
+
+    /**
+     * Copies the properties of a statement except for the inheritance.
+     *
+     * @param source
+     *            the source statement. It must not be {@code null}.
+     * @param target
+     *            the target statement. It must not be {@code null}.
+     */
+    private static void copy(VersionStatement source, VersionStatement target) {
+        if (!((source instanceof InheritingVersion) && ((InheritingVersion) source).inheriting())) {
+            target.baseline(source.baseline());
+        }
+
+        target.constraint(source.constraint().orElse(null));
+        target.variance(source.variance().orElse(null));
+    }
+
+    /**
+     * Returns the index of an inheritance source, adding it if necessary.
+     *
+     * @param statement
+     *            the statement. It must not be {@code null}.
+     *
+     * @return the index of the source
+     */
+    private int source(VersionStatement statement) {
+        final Integer known = sourceIndices.get(statement);
+        if (known != null) {
+            return known;
+        }
+
+        final int result = sourceTable.size();
+        sourceTable.add(statement);
+        sourceIndices.put(statement, result);
+        return result;
+    }
+
+    /**
+     * Encodes a version.
+     *
+     * @param value
+     *            the version to encode. It must not be {@code null}.
+     *
+     * @return the stored form
+     */
+    private long encode(Version value) {
+        final long result = value.packed();
+        // Negative values other than NO_VERSION refer to the unpacked versions
+        return (result >= 0) ? result : -2L - unpacked.index(value);
+    }
+
+    /**
+     * Decodes a version.
+     *
+     * @param value
+     *            the stored form, which must not be {@link #NO_VERSION}
+     *
+     * @return the version
+     */
+    private Version decode(long value) {
+        assert (value != NO_VERSION);
+        return (value >= 0) ? Version.unpack(value) : unpacked.get((int) (-2L - value));
+    }
+
+    /**
+     * Returns the index of an export.
+     *
+     * @param name
+     *            the name of the export
+     *
+     * @return the index of the export, or a negative number if not found
+     */
+    private int indexOf(Object name) {
+        return (name instanceof String) ? Arrays.binarySearch(names, name) : NO_INDEX;
+    }
+
+    /**
+     * A table of distinct versions.
+     */
+    private static final class VersionTable {
+
+        /** Versions by their indices. */
+        private final List<Version> versions = new ArrayList<>();
+        /** Indices of the versions. */
+        private final Map<Version, Integer> indices = new HashMap<>();
+
+        /**
+         * Creates a new instance.
+         */
+        public VersionTable() {
+            // Default constructor
+        }
+
+        /**
+         * Returns the index of a version, adding it if necessary.
+         *
+         * @param version
+         *            the version. It must not be {@code null}.
+         *
+         * @return the index of the version
+         */
+        public int index(Version version) {
+            final Integer known = indices.get(version);
+            if (known != null) {
+                return known;
+            }
+
+            final int result = versions.size();
+            versions.add(version);
+            indices.put(version, result);
+            return result;
+        }
+
+        /**
+         * Returns the version for the given index.
+         *
+         * @param index
+         *            the index of the version
+         *
+         * @return the version
+         */
+        public Version get(int index) {
+            return versions.get(index);
+        }
+    }
+
+    /**
+     * The view of the exports.
+     */
+    private final class Exports extends AbstractMap<String, PackageExport> {
+
+        /** View of the entries. */
+        private final Set<Map.Entry<String, PackageExport>> entries = new Entries();
+
+        /**
+         * Creates a new instance.
+         */
+        public Exports() {
+            // Default constructor
+        }
+
+        /**
+         * @see java.util.AbstractMap#size()
+         */
+        @Override
+        public int size() {
+            return names.length;
+        }
+
+        /**
+         * @see java.util.AbstractMap#containsKey(java.lang.Object)
+         */
+        @Override
+        public boolean containsKey(Object key) {
+            return (indexOf(key) >= 0);
+        }
+
+        /**
+         * @see java.util.AbstractMap#get(java.lang.Object)
+         */
+        @Override
+        public PackageExport get(Object key) {
+            final int index = indexOf(key);
+            return (index >= 0) ? new ExportView(index) : null;
+        }
+
+        /**
+         * @see java.util.AbstractMap#entrySet()
+         */
+        @Override
+        public Set<Map.Entry<String, PackageExport>> entrySet() {
+            return entries;
+        }
+    }
+
+    /**
+     * The view of the entries of the exports.
+     */
+    private final class Entries extends AbstractSet<Map.Entry<String, PackageExport>> {
+
+        /**
+         * Creates a new instance.
+         */
+        public Entries() {
+            // Default constructor
+        }
+
+        /**
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size() {
+            return names.length;
+        }
+
+        /**
+         * @see java.util.AbstractCollection#iterator()
+         */
+        @Override
+        public Iterator<Map.Entry<String, PackageExport>> iterator() {
+            return new Iterator<Map.Entry<String, PackageExport>>() {
+
+                /** Index of the next export. */
+                private int next;
+
+                /**
+                 * @see java.util.Iterator#hasNext()
+                 */
+                public boolean hasNext() {
+                    return (next < names.length);
+                }
+
+                /**
+                 * @see java.util.Iterator#next()
+                 */
+                public Map.Entry<String, PackageExport> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    final int index = next++;
+                    return new AbstractMap.SimpleImmutableEntry<>(names[index], new ExportView(index));
+                }
+            };
+        }
+    }
+
+    /**
+     * The view of an export.
+     */
+    private final class ExportView implements PackageExport {
+
+        /** Index of the export. */
+        private final int index;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param exportIndex
+         *            the index of the export
+         */
+        public ExportView(int exportIndex) {
+            index = exportIndex;
+        }
+
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof ExportView) {
+                final ExportView o = (ExportView) obj;
+                return (index == o.index) && (bundle() == o.bundle());
+            }
+
+            return false;
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return bundle().hashCode() * 31 + index;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.PackageExport#packageName()
+         */
+        public String packageName() {
+            return names[index];
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.PackageExport#version()
+         */
+        public PackageVersion version() {
+            return new VersionView(index);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.PackageExport#attributes()
+         */
+        public Optional<String> attributes() {
+            return Optional.ofNullable(attributes[index]);
+        }
+
+        /**
+         * Returns the owning bundle.
+         *
+         * @return the owning bundle
+         */
+        private CompactBundle bundle() {
+            return CompactBundle.this;
+        }
+    }
+
+    /**
+     * The view of an export version.
+     */
+    private final class VersionView implements PackageVersion {
+
+        /** Index of the export. */
+        private final int index;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param exportIndex
+         *            the index of the export
+         */
+        public VersionView(int exportIndex) {
+            index = exportIndex;
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            final StringBuilder result = new StringBuilder(baseline().toString());
+            constraint().ifPresent(o -> result.append(" < ").append(o));
+            variance().ifPresent(o -> result.append(" @ ").append(o));
+            return result.append(" # ").append(resolution()).toString();
+        }
+
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof VersionView) {
+                final VersionView o = (VersionView) obj;
+                return (index == o.index) && (bundle() == o.bundle());
+            }
+
+            return false;
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return bundle().hashCode() * 31 + index;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#resolve(net.yetamine.pet4bnd.version.Version)
+         */
+        public void resolve(Version value) {
+            resolutions[index] = (value != null) ? encode(value) : NO_VERSION;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#resolution()
+         */
+        public Version resolution() {
+            final long resolution = resolutions[index];
+            if (resolution != NO_VERSION) {
+                return decode(resolution);
+            }
+
+            final int source = sources[index];
+            if (source != NO_INDEX) {
+                return sourceTable.get(source).resolution();
+            }
+
+            final Version result = baseline();
+            final int variance = variances[index];
+            return (variance != 0) ? VARIANCES[variance - 1].apply(result) : result;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#baseline()
+         */
+        public Version baseline() {
+            return decode(baselines[index]);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#baseline(net.yetamine.pet4bnd.version.Version)
+         */
+        public void baseline(Version value) {
+            baselines[index] = encode(Objects.requireNonNull(value));
+            sources[index] = NO_INDEX;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#constraint()
+         */
+        public Optional<Version> constraint() {
+            final int constraint = constraints[index];
+            return (constraint != NO_INDEX) ? Optional.of(constraintTable.get(constraint)) : Optional.empty();
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#constraint(net.yetamine.pet4bnd.version.Version)
+         */
+        public void constraint(Version value) {
+            constraints[index] = (value != null) ? constraintTable.index(value) : NO_INDEX;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#variance()
+         */
+        public Optional<VersionVariance> variance() {
+            final int variance = variances[index];
+            return (variance != 0) ? Optional.of(VARIANCES[variance - 1]) : Optional.empty();
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.VersionStatement#variance(net.yetamine.pet4bnd.version.VersionVariance)
+         */
+        public void variance(VersionVariance value) {
+            variances[index] = (value != null) ? (byte) (value.ordinal() + 1) : 0;
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.InheritingVersion#inheritance()
+         */
+        public Optional<VersionStatement> inheritance() {
+            final int source = sources[index];
+            return (source != NO_INDEX) ? Optional.of(sourceTable.get(source)) : Optional.empty();
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.model.InheritingVersion#inherit(net.yetamine.pet4bnd.model.VersionStatement)
+         */
+        public void inherit(VersionStatement source) {
+            if (source != null) {
+                for (VersionStatement s = source; s instanceof InheritingVersion;) {
+                    if (equals(s)) {
+                        throw new IllegalArgumentException("Cyclic inheritance not allowed.");
+                    }
+
+                    s = ((InheritingVersion) s).inheritance().orElse(null);
+                }
+
+                sources[index] = source(source);
+                return;
+            }
+
+            final int current = sources[index];
+            if (current != NO_INDEX) {
+                final VersionStatement inheritance = sourceTable.get(current);
+                resolve(inheritance.resolution());
+                baseline(inheritance.baseline());
+            }
+        }
+
+        /**
+         * Returns the owning bundle.
+         *
+         * @return the owning bundle
+         */
+        private CompactBundle bundle() {
+            return CompactBundle.this;
+        }
+    }
+}
@@ -23,9 +23,9 @@ import net.yetamine.pet4bnd.model.VersionGroup;
 /**
  * Represents a version group for packages.
  */
-public final class PackageGroupDefinition extends VersionDefinition implements VersionGroup {
+public final class PackageGroupDefinition extends InheritingVersionDefinition implements VersionGroup {
 
-    /** Inheritance source. */
+    /** Identifier of the group. */
     private final String identifier;
 
     /**
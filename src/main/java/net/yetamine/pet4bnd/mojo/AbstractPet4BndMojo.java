@@ -17,21 +17,37 @@
 package net.yetamine.pet4bnd.mojo;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.sonatype.plexus.build.incremental.BuildContext;
 
 import net.yetamine.pet4bnd.feedback.Feedback;
 import net.yetamine.pet4bnd.model.Bundle;
 import net.yetamine.pet4bnd.model.LoggingResolver;
+import net.yetamine.pet4bnd.model.Persistable;
+import net.yetamine.pet4bnd.model.ResolvedBundle;
 import net.yetamine.pet4bnd.model.format.PetFormat;
 import net.yetamine.pet4bnd.model.format.PetParser;
+import net.yetamine.pet4bnd.model.format.PetSnapshot;
+import net.yetamine.pet4bnd.support.PathLocks;
+import net.yetamine.pet4bnd.workspace.Workspace;
 
 /**
  * A base for Mojo implementations with common utilities.
@@ -42,8 +58,32 @@ public abstract class AbstractPet4BndMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
     private MavenProject project;
 
+    /** Build session, which scopes the shared cache of the definitions. */
+    @Parameter(defaultValue = "${session}", readonly = true, required = false)
+    private Object session;
+
+    /** Location of the snapshot of the parsed definition file. */
+    @Parameter(defaultValue = "${project.build.directory}/pet4bnd/exports.petc", property = "pet4bnd.cache", required = false)
+    private String cache;
+
+    /** Location of the fingerprints of the goal executions. */
+    @Parameter(defaultValue = "${project.build.directory}/pet4bnd", property = "pet4bnd.fingerprints", required = false)
+    private String fingerprints;
+
+    /** Build context for incremental builds. */
+    @Component
+    private BuildContext buildContext;
+
+    /** Requiring deterministic output, which leaves up-to-date files untouched. */
+    @Parameter(defaultValue = "false", property = "pet4bnd.deterministic", required = false)
+    private boolean deterministic;
+
+    /** Timestamp for deterministic output, in the format of Maven. */
+    @Parameter(defaultValue = "${project.build.outputTimestamp}", property = "pet4bnd.outputTimestamp", required = false)
+    private String outputTimestamp;
+
     /** Parser feedback instance. */
-    private Feedback feedback;
+    private final Feedback feedback = new LogFeedback();
 
     /**
      * Prepares a new instance.
@@ -69,7 +109,70 @@ public abstract class AbstractPet4BndMojo extends AbstractMojo {
      * @return the default source path
      */
     public final Path getDefaultSourcePath() {
-        return project.getBasedir().toPath().resolve("exports.pet");
+        return getDefaultSourcePath(project);
+    }
+
+    /**
+     * Returns the default source path for the given project.
+     *
+     * @param project
+     *            the project. It must not be {@code null}.
+     *
+     * @return the default source path
+     */
+    protected static Path getDefaultSourcePath(MavenProject project) {
+        return project.getBasedir().toPath().resolve(Workspace.DEFAULT_SOURCE_NAME);
+    }
+
+    /**
+     * Returns if the Bundle-Version directive shall be generated for the given
+     * project.
+     *
+     * @param directive
+     *            the bundle version directive, e.g., {@code release}. It must
+     *            not be {@code null}.
+     * @param project
+     *            the project. It must not be {@code null}.
+     *
+     * @return {@code true} if the directive and the project settings shall
+     *         result in generating the Bundle-Version directive
+     */
+    protected final boolean isBundleVersionRequired(String directive, MavenProject project) {
+        switch (directive.toLowerCase()) {
+            case "always":
+            case "true":
+            case "yes":
+                return true;
+
+            case "snapshot":
+                return isSnapshot(project);
+
+            default:
+                getLog().warn(String.format("Unknown bundle version directive '%s'.", directive));
+                // Fall through
+
+            case "release": // This is the usual default
+                return !isSnapshot(project);
+
+            case "never":
+            case "false":
+            case "no":
+                return false;
+
+        }
+    }
+
+    /**
+     * Tests if the project's version is a SNAPSHOT.
+     *
+     * @param project
+     *            the project. It must not be {@code null}.
+     *
+     * @return {@code true} if the project's version is a SNAPSHOT
+     */
+    private static boolean isSnapshot(MavenProject project) {
+        final String version = project.getVersion();
+        return ((version != null) && version.endsWith("-SNAPSHOT"));
     }
 
     // General utilities
@@ -115,57 +218,315 @@ public abstract class AbstractPet4BndMojo extends AbstractMojo {
     }
 
     /**
-     * Provides the feedback callback that uses the Mojo's log.
+     * Returns the clock for the timestamps of the generated files.
      *
-     * @return the feedback callback
+     * <p>
+     * Unless deterministic output is required, the clock is the system clock.
+     * Otherwise the clock is fixed to the output timestamp if configured, which
+     * may be either an ISO-8601 date-time with an offset or the number of
+     * seconds since the epoch, the same as the output timestamp of Maven; the
+     * values shorter than two characters mean no timestamp as with Maven.
+     *
+     * @return the clock for the timestamps, or {@code null} for no timestamps
+     *
+     * @throws MojoExecutionException
+     *             if the output timestamp is invalid
      */
-    protected final Feedback getFeedback() {
-        if (feedback == null) {
-            feedback = new Feedback() {
-
-                /**
-                 * @see net.yetamine.pet4bnd.feedback.Feedback#fail(java.lang.String,
-                 *      java.lang.Throwable)
-                 */
-                public void fail(String message, Throwable t) {
-                    getLog().error(Objects.requireNonNull(message), t);
-                }
+    protected final Clock getOutputClock() throws MojoExecutionException {
+        if (!deterministic) {
+            return Clock.systemUTC();
+        }
 
-                /**
-                 * @see net.yetamine.pet4bnd.feedback.Feedback#warn(java.lang.String,
-                 *      java.lang.Throwable)
-                 */
-                public void warn(String message, Throwable t) {
-                    getLog().warn(Objects.requireNonNull(message), t);
-                }
+        if ((outputTimestamp == null) || (outputTimestamp.length() < 2)) {
+            return null;
+        }
+
+        try {
+            final Instant instant = outputTimestamp.chars().allMatch(Character::isDigit) // @formatter:break
+                    ? Instant.ofEpochSecond(Long.parseLong(outputTimestamp))
+                    : OffsetDateTime.parse(outputTimestamp).toInstant();
+
+            return Clock.fixed(instant, ZoneOffset.UTC);
+        } catch (DateTimeException | NumberFormatException e) {
+            throw new MojoExecutionException(String.format("Invalid output timestamp: %s", outputTimestamp), e);
+        }
+    }
 
-                /**
-                 * @see net.yetamine.pet4bnd.feedback.Feedback#info(java.lang.String)
-                 */
-                public void info(String message) {
-                    getLog().info(Objects.requireNonNull(message));
+    /**
+     * Stores the output in the given file.
+     *
+     * <p>
+     * When deterministic output is required, the file remains untouched if its
+     * content is the same already.
+     *
+     * @param output
+     *            the output to store. It must not be {@code null}.
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     *
+     * @throws MojoExecutionException
+     *             if storing the output fails
+     */
+    protected final void storeOutput(Persistable output, Path path) throws MojoExecutionException {
+        try {
+            final boolean written = writing(path, () -> {
+                if (!deterministic) {
+                    output.store(path);
+                    return true;
                 }
-            };
+
+                return output.update(path);
+            });
+
+            if (!written) {
+                getLog().info(String.format("Output file up to date: %s", path));
+                return;
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+
+        if (buildContext != null) { // Let the IDE know about the change
+            buildContext.refresh(path.toFile());
+        }
+    }
+
+    /**
+     * Makes the fingerprint of a goal execution.
+     *
+     * <p>
+     * The fingerprint covers the source, the plugin version, the output
+     * location, the output timestamp settings and the given parameters, which
+     * shall include everything else that affects the output.
+     *
+     * @param goal
+     *            the name of the goal. It must not be {@code null}.
+     * @param source
+     *            the path to the source. It must not be {@code null}.
+     * @param output
+     *            the path to the output. It must not be {@code null}.
+     * @param parameters
+     *            the other parameters affecting the output
+     *
+     * @return the fingerprint, or {@code null} if no fingerprints shall be used
+     *         or the source is not available
+     *
+     * @throws MojoExecutionException
+     *             if the location of the fingerprints is invalid
+     */
+    final Fingerprint fingerprint(String goal, Path source, Path output, Object... parameters) throws MojoExecutionException {
+        if ((fingerprints == null) || fingerprints.isEmpty() || !Files.isRegularFile(source)) {
+            return null;
+        }
+
+        final Path target = output.toAbsolutePath();
+        final String name = String.format("%s-%08x.fingerprint", goal, target.toString().hashCode());
+        final Path path = requirePath(fingerprints).resolve(name);
+
+        final List<Object> inputs = new ArrayList<>();
+        inputs.add(goal);
+        inputs.add(target);
+        inputs.add(deterministic);
+        inputs.add(deterministic ? outputTimestamp : null);
+        inputs.addAll(Arrays.asList(parameters));
+
+        try {
+            return new Fingerprint(path, source, output, inputs);
+        } catch (IOException e) {
+            getLog().warn(String.format("Unable to make the fingerprint: %s", path), e);
+            return null;
+        }
+    }
+
+    /**
+     * Tests if the output is up to date, so that the goal execution may be
+     * skipped.
+     *
+     * <p>
+     * The output is up to date if the incremental build of an IDE does not
+     * include the source in its delta, or if the fingerprint matches.
+     *
+     * @param source
+     *            the path to the source. It must not be {@code null}.
+     * @param output
+     *            the path to the output. It must not be {@code null}.
+     * @param fingerprint
+     *            the fingerprint of the execution, or {@code null} if none
+     *
+     * @return {@code true} if the output is up to date
+     */
+    final boolean isUpToDate(Path source, Path output, Fingerprint fingerprint) {
+        if ((buildContext != null) && buildContext.isIncremental() && Files.isRegularFile(output)) {
+            if (!buildContext.hasDelta(source.toFile())) {
+                return true;
+            }
+        }
+
+        try {
+            return (fingerprint != null) && fingerprint.matches();
+        } catch (IOException e) {
+            getLog().warn(String.format("Unable to check the fingerprint: %s", fingerprint), e);
+            return false;
+        }
+    }
+
+    /**
+     * Stores the fingerprint after producing the output.
+     *
+     * @param fingerprint
+     *            the fingerprint to store, or {@code null} if none
+     */
+    final void storeFingerprint(Fingerprint fingerprint) {
+        if (fingerprint == null) {
+            return;
+        }
+
+        try {
+            fingerprint.store();
+        } catch (IOException e) {
+            getLog().warn(String.format("Unable to store the fingerprint: %s", fingerprint), e);
+        }
+    }
+
+    /**
+     * Performs an operation that reads the given file, holding the read lock of
+     * the file, so that no other goal execution in the build writes the file
+     * meanwhile.
+     *
+     * @param <T>
+     *            the type of the result
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     * @param operation
+     *            the operation to perform. It must not be {@code null}.
+     *
+     * @return the result of the operation
+     *
+     * @throws IOException
+     *             if the operation failed due to I/O
+     * @throws MojoExecutionException
+     *             if the operation failed otherwise
+     */
+    protected static <T> T reading(Path path, FileOperation<? extends T> operation) throws IOException, MojoExecutionException {
+        final PathLocks.Hold hold = PathLocks.reading(path);
+        try {
+            return operation.run();
+        } finally {
+            hold.close();
+        }
+    }
+
+    /**
+     * Performs an operation that writes the given file, holding the write lock
+     * of the file, so that no other goal execution in the build reads or writes
+     * the file meanwhile.
+     *
+     * @param <T>
+     *            the type of the result
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     * @param operation
+     *            the operation to perform. It must not be {@code null}.
+     *
+     * @return the result of the operation
+     *
+     * @throws IOException
+     *             if the operation failed due to I/O
+     * @throws MojoExecutionException
+     *             if the operation failed otherwise
+     */
+    protected static <T> T writing(Path path, FileOperation<? extends T> operation) throws IOException, MojoExecutionException {
+        final PathLocks.Hold hold = PathLocks.writing(path);
+        try {
+            return operation.run();
+        } finally {
+            hold.close();
         }
+    }
 
+    /**
+     * Provides the feedback callback that uses the Mojo's log.
+     *
+     * @return the feedback callback
+     */
+    protected final Feedback getFeedback() {
         return feedback;
     }
 
     /**
      * Parses the specified definition file.
      *
+     * <p>
+     * Unless the lossless definition is required, the definition is loaded from
+     * the snapshot in the {@code cache} location if the snapshot matches the
+     * file; otherwise the file is parsed and the snapshot is updated if the
+     * file has no errors and no warnings.
+     *
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     * @param lossless
+     *            {@code true} if the definition must retain its representation
+     *            in order to be stored, {@code false} when the definition will
+     *            be just resolved or exported
+     *
+     * @return the definition
+     *
+     * @throws MojoExecutionException
+     *             if there is any error
+     */
+    protected final PetFormat parseSource(Path path, boolean lossless) throws MojoExecutionException {
+        return parseSource(path, lossless, lossless ? null : getSnapshotPath(), null);
+    }
+
+    /**
+     * Returns the location of the snapshot of the definition file.
+     *
+     * @return the location of the snapshot, or {@code null} if no snapshot
+     *         shall be used
+     *
+     * @throws MojoExecutionException
+     *             if the location is invalid
+     */
+    protected final Path getSnapshotPath() throws MojoExecutionException {
+        return ((cache == null) || cache.isEmpty()) ? null : requirePath(cache);
+    }
+
+    /**
+     * Parses the specified definition file, using the given snapshot.
+     *
      * @param path
      *            the path to the file. It must not be {@code null}.
+     * @param lossless
+     *            {@code true} if the definition must retain its representation
+     * @param snapshot
+     *            the path to the snapshot, or {@code null} if no snapshot shall
+     *            be used. It must be {@code null} for a lossless definition.
+     * @param warned
+     *            the callback to invoke when parsing reported warnings, or
+     *            {@code null} if not needed
      *
      * @return the definition
      *
      * @throws MojoExecutionException
      *             if there is any error
      */
-    protected final PetFormat parseSource(Path path) throws MojoExecutionException {
+    private PetFormat parseSource(Path path, boolean lossless, Path snapshot, Runnable warned) throws MojoExecutionException {
+        assert !(lossless && (snapshot != null));
+        final PathLocks.Hold hold = PathLocks.reading(path);
+
         try {
             final Feedback report = getFeedback();
-            final PetParser parser = PetFormat.parse(path, report);
+            final byte[] key = (snapshot != null) ? PetSnapshot.key(path) : null;
+
+            if (key != null) {
+                final Optional<PetFormat> cached = loadSnapshot(snapshot, key);
+                if (cached.isPresent()) {
+                    getLog().debug(String.format("Using the snapshot of the definition file: %s", snapshot));
+                    return cached.get();
+                }
+            }
+
+            final PetParser parser = lossless ? PetFormat.parse(path, report) : PetFormat.read(path, report);
 
             if (parser.errorCount() > 0) {
                 throw new MojoExecutionException("Errors encountered when parsing the definition file.");
@@ -173,16 +534,124 @@ public abstract class AbstractPet4BndMojo extends AbstractMojo {
 
             if (parser.warningCount() > 0) {
                 report.warn("Warnings encountered when parsing the definition file. Build might not be stable.");
+
+                if (warned != null) {
+                    warned.run();
+                }
             }
 
-            return parser.result().orElseThrow(() -> {
+            final PetFormat result = parser.result().orElseThrow(() -> {
                 return new MojoExecutionException("Failed to parse the definition file.");
             });
+
+            if ((key != null) && (parser.warningCount() == 0)) {
+                storeSnapshot(snapshot, key, result);
+            }
+
+            return result;
         } catch (IOException e) {
             throw new MojoExecutionException(String.format("Unable to read the definition file: %s", path), e);
+        } finally {
+            hold.close();
         }
     }
 
+    /**
+     * Loads the snapshot of a definition file.
+     *
+     * @param snapshot
+     *            the path to the snapshot. It must not be {@code null}.
+     * @param key
+     *            the key of the definition file. It must not be {@code null}.
+     *
+     * @return the definition, or an empty container if not available
+     */
+    private Optional<PetFormat> loadSnapshot(Path snapshot, byte[] key) {
+        try {
+            return PetSnapshot.load(snapshot, key);
+        } catch (IOException e) {
+            getLog().warn(String.format("Unable to read the snapshot: %s", snapshot), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the snapshot of a definition file.
+     *
+     * @param snapshot
+     *            the path to the snapshot. It must not be {@code null}.
+     * @param key
+     *            the key of the definition file. It must not be {@code null}.
+     * @param definition
+     *            the definition to store. It must not be {@code null}.
+     */
+    private void storeSnapshot(Path snapshot, byte[] key, PetFormat definition) {
+        try {
+            PetSnapshot.store(snapshot, key, definition);
+        } catch (IOException e) {
+            getLog().warn(String.format("Unable to store the snapshot: %s", snapshot), e);
+        }
+    }
+
+    /**
+     * Loads and resolves the specified definition file, sharing the result with
+     * the other executions in the same build session. A definition with parse
+     * warnings is not shared, so that each execution reports the warnings.
+     *
+     * <p>
+     * The result is immutable and it is the same as resolving the result of
+     * {@link #parseSource(Path, boolean)} for a definition that need not be
+     * lossless.
+     *
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     *
+     * @return the resolved definition
+     *
+     * @throws MojoExecutionException
+     *             if there is any error
+     */
+    protected final ResolvedBundle loadDefinition(Path path) throws MojoExecutionException {
+        return loadDefinition(path, getSnapshotPath());
+    }
+
+    /**
+     * Loads and resolves the specified definition file like
+     * {@link #loadDefinition(Path)}, but using the given snapshot.
+     *
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     * @param snapshot
+     *            the path to the snapshot, or {@code null} if no snapshot shall
+     *            be used
+     *
+     * @return the resolved definition
+     *
+     * @throws MojoExecutionException
+     *             if there is any error
+     */
+    protected final ResolvedBundle loadDefinition(Path path, Path snapshot) throws MojoExecutionException {
+        try {
+            return reading(path, () -> DefinitionCache.forSession(session).get(path, discard -> {
+                // Let the other modules report the warnings as well
+                return ResolvedBundle.copyOf(resolveDefinition(parseSource(path, false, snapshot, discard)));
+            }));
+        } catch (IOException e) {
+            throw new MojoExecutionException(String.format("Unable to read the definition file: %s", path), e);
+        }
+    }
+
+    /**
+     * Discards the shared result of loading the specified definition file,
+     * which is necessary after changing the file.
+     *
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     */
+    protected final void invalidateDefinition(Path path) {
+        DefinitionCache.forSession(session).invalidate(path);
+    }
+
     /**
      * Performs the complete resolution.
      *
@@ -203,4 +672,62 @@ public abstract class AbstractPet4BndMojo extends AbstractMojo {
 
         throw new MojoExecutionException("One or more version constraints were violated.");
     }
+
+    /**
+     * An operation on a file.
+     *
+     * @param <T>
+     *            the type of the result
+     */
+    @FunctionalInterface
+    protected interface FileOperation<T> {
+
+        /**
+         * Performs the operation.
+         *
+         * @return the result of the operation
+         *
+         * @throws IOException
+         *             if the operation failed due to I/O
+         * @throws MojoExecutionException
+         *             if the operation failed otherwise
+         */
+        T run() throws IOException, MojoExecutionException;
+    }
+
+    /**
+     * A feedback callback that uses the Mojo's log.
+     */
+    private final class LogFeedback implements Feedback {
+
+        /**
+         * Creates a new instance.
+         */
+        public LogFeedback() {
+            // Default constructor
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.feedback.Feedback#fail(java.lang.String,
+         *      java.lang.Throwable)
+         */
+        public void fail(String message, Throwable t) {
+            getLog().error(Objects.requireNonNull(message), t);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.feedback.Feedback#warn(java.lang.String,
+         *      java.lang.Throwable)
+         */
+        public void warn(String message, Throwable t) {
+            getLog().warn(Objects.requireNonNull(message), t);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.feedback.Feedback#info(java.lang.String)
+         */
+        public void info(String message) {
+            getLog().info(Objects.requireNonNull(message));
+        }
+    }
 }
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.mojo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import net.yetamine.pet4bnd.format.Format2Bnd;
+import net.yetamine.pet4bnd.format.Format2Map;
+import net.yetamine.pet4bnd.model.Bundle;
+
+/**
+ * Generates the export directives and the properties files of all modules of
+ * the reactor in a single execution.
+ *
+ * <p>
+ * The modules are configured with the same properties as for the
+ * {@code generate} and {@code export} goals: {@code pet4bnd.source} (or the
+ * default {@code exports.pet} in the module directory), {@code pet4bnd.output}
+ * and {@code pet4bnd.export}. A module with no output, or without the
+ * definition file, is skipped. The snapshot of the definition file is stored in
+ * the location given by the {@code pet4bnd.cache} property of the module (an
+ * empty value disables it), or in the default location in the build directory
+ * of the module unless the snapshots are disabled for this goal. The modules
+ * are processed in parallel and the modules sharing a definition file load the
+ * file just once.
+ */
+@Mojo(name = "aggregate", aggregator = true, defaultPhase = LifecyclePhase.VALIDATE, threadSafe = true)
+public final class AggregateMojo extends AbstractPet4BndMojo {
+
+    /** Name of the property with the location of the source file. */
+    private static final String SOURCE_PROPERTY = "pet4bnd.source";
+    /** Name of the property with the location of the output file. */
+    private static final String OUTPUT_PROPERTY = "pet4bnd.output";
+    /** Name of the property with the location of the target file. */
+    private static final String EXPORT_PROPERTY = "pet4bnd.export";
+    /** Name of the property with the location of the snapshot. */
+    private static final String CACHE_PROPERTY = "pet4bnd.cache";
+
+    /** Projects of the reactor. */
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+    private List<MavenProject> reactorProjects;
+
+    /** Bundle version generation policy for all modules. */
+    @Parameter(defaultValue = "release", required = false)
+    private String bundleVersion;
+
+    /** Number of threads; the number of processors if not positive. */
+    @Parameter(defaultValue = "0", property = "pet4bnd.threads", required = false)
+    private int threads;
+
+    /**
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    public void execute() throws MojoExecutionException {
+        final Log log = getLog();
+
+        final List<Module> modules = new ArrayList<>();
+        for (MavenProject project : reactorProjects) {
+            final Module module = module(project);
+            if (module != null) {
+                modules.add(module);
+            }
+        }
+
+        if (modules.isEmpty()) {
+            log.info("No module with outputs specified, nothing will be generated.");
+            return;
+        }
+
+        final Clock clock = getOutputClock();
+        final int parallelism = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+        log.info(String.format("Processing %d modules with %d threads.", modules.size(), parallelism));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, modules.size()));
+        try {
+            final List<Future<?>> futures = new ArrayList<>(modules.size());
+            for (Module module : modules) {
+                futures.add(executor.submit(() -> {
+                    process(module, clock);
+                    return null;
+                }));
+            }
+
+            int failures = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    log.error(String.format("Processing module %s failed.", modules.get(i)), e.getCause());
+                    ++failures;
+                }
+            }
+
+            if (failures > 0) {
+                throw new MojoExecutionException(String.format("Failed to process %d of %d modules.", failures, modules.size()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Processing the modules interrupted.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        log.debug("Processing the modules finished successfully.");
+    }
+
+    /**
+     * Processes a module.
+     *
+     * @param module
+     *            the module to process. It must not be {@code null}.
+     * @param clock
+     *            the clock for the timestamps, or {@code null} for no
+     *            timestamps
+     *
+     * @throws MojoExecutionException
+     *             if the processing failed
+     */
+    private void process(Module module, Clock clock) throws MojoExecutionException {
+        final Log log = getLog();
+        Bundle definition = null;
+
+        if (module.output != null) {
+            final boolean bundleVersionRequired = isBundleVersionRequired(bundleVersion, module.project);
+            final Fingerprint fingerprint = fingerprint("generate", module.source, module.output, bundleVersionRequired);
+            if (isUpToDate(module.source, module.output, fingerprint)) {
+                log.info(String.format("Generated bnd file up to date: %s", module.output));
+            } else {
+                definition = loadDefinition(module.source, module.snapshot);
+                log.info(String.format("Generating bnd file: %s", module.output));
+                createParent(module.output);
+                storeOutput(new Format2Bnd(definition, bundleVersionRequired).timestamp(clock), module.output);
+                storeFingerprint(fingerprint);
+            }
+        }
+
+        if (module.export != null) {
+            final Fingerprint fingerprint = fingerprint("export", module.source, module.export);
+            if (isUpToDate(module.source, module.export, fingerprint)) {
+                log.info(String.format("Generated properties file up to date: %s", module.export));
+            } else {
+                if (definition == null) {
+                    definition = loadDefinition(module.source, module.snapshot);
+                }
+
+                log.info(String.format("Generating properties file: %s", module.export));
+                createParent(module.export);
+                storeOutput(new Format2Map(definition).timestamp(clock), module.export);
+                storeFingerprint(fingerprint);
+            }
+        }
+    }
+
+    /**
+     * Creates the parent directory of an output file, which may be missing in
+     * the early phases of the build.
+     *
+     * @param path
+     *            the path to the output file. It must not be {@code null}.
+     *
+     * @throws MojoExecutionException
+     *             if the directory could not be created
+     */
+    private static void createParent(Path path) throws MojoExecutionException {
+        final Path parent = path.toAbsolutePath().getParent();
+
+        try {
+            Files.createDirectories(parent);
+        } catch (IOException e) {
+            throw new MojoExecutionException(String.format("Unable to create the directory: %s", parent), e);
+        }
+    }
+
+    /**
+     * Makes the description of a module to process.
+     *
+     * @param project
+     *            the project of the module. It must not be {@code null}.
+     *
+     * @return the module, or {@code null} if the module shall be skipped
+     *
+     * @throws MojoExecutionException
+     *             if the configuration of the module is invalid
+     */
+    private Module module(MavenProject project) throws MojoExecutionException {
+        final Path basedir = project.getBasedir().toPath();
+        final Path output = modulePath(project, basedir, OUTPUT_PROPERTY);
+        final Path export = modulePath(project, basedir, EXPORT_PROPERTY);
+        if ((output == null) && (export == null)) {
+            getLog().debug(String.format("No output file specified for module %s.", project.getId()));
+            return null;
+        }
+
+        final Path specified = modulePath(project, basedir, SOURCE_PROPERTY);
+        final Path source = (specified != null) ? specified : getDefaultSourcePath(project);
+        if (!Files.isRegularFile(source)) {
+            getLog().debug(String.format("No definition file for module %s: %s", project.getId(), source));
+            return null;
+        }
+
+        return new Module(project, source, output, export, moduleSnapshot(project, basedir));
+    }
+
+    /**
+     * Resolves the location of the snapshot for a module.
+     *
+     * <p>
+     * The module may specify the location with the same property as for the
+     * single-module goals, otherwise the default location in the build
+     * directory of the module applies, unless this goal uses no snapshots.
+     *
+     * @param project
+     *            the project of the module. It must not be {@code null}.
+     * @param basedir
+     *            the directory of the module to resolve relative paths. It
+     *            must not be {@code null}.
+     *
+     * @return the location of the snapshot, or {@code null} if no snapshot
+     *         shall be used
+     *
+     * @throws MojoExecutionException
+     *             if the location is invalid
+     */
+    private Path moduleSnapshot(MavenProject project, Path basedir) throws MojoExecutionException {
+        if (project.getProperties().containsKey(CACHE_PROPERTY)) { // An empty value disables the snapshot
+            return modulePath(project, basedir, CACHE_PROPERTY);
+        }
+
+        final Build build = project.getBuild();
+        final boolean snapshots = (getSnapshotPath() != null) && (build != null) && (build.getDirectory() != null);
+        return snapshots ? Paths.get(build.getDirectory(), "pet4bnd", "exports.petc") : null;
+    }
+
+    /**
+     * Resolves a path specified by a property of a module.
+     *
+     * @param project
+     *            the project of the module. It must not be {@code null}.
+     * @param basedir
+     *            the directory of the module to resolve relative paths. It
+     *            must not be {@code null}.
+     * @param property
+     *            the name of the property. It must not be {@code null}.
+     *
+     * @return the path, or {@code null} if not specified
+     *
+     * @throws MojoExecutionException
+     *             if the path is invalid
+     */
+    private static Path modulePath(MavenProject project, Path basedir, String property) throws MojoExecutionException {
+        final String value = project.getProperties().getProperty(property);
+        if ((value == null) || value.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return basedir.resolve(value);
+        } catch (InvalidPathException e) {
+            final String f = "Invalid path specified by %s for module %s: %s";
+            throw new MojoExecutionException(String.format(f, property, project.getId(), value), e);
+        }
+    }
+
+    /**
+     * Describes a module to process.
+     */
+    private static final class Module {
+
+        /** Project of the module. */
+        final MavenProject project;
+        /** Location of the source file. */
+        final Path source;
+        /** Location of the output file if specified. */
+        final Path output;
+        /** Location of the target file if specified. */
+        final Path export;
+        /** Location of the snapshot if any. */
+        final Path snapshot;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param moduleProject
+         *            the project of the module. It must not be {@code null}.
+         * @param sourcePath
+         *            the location of the source file. It must not be
+         *            {@code null}.
+         * @param outputPath
+         *            the location of the output file if specified
+         * @param exportPath
+         *            the location of the target file if specified
+         * @param snapshotPath
+         *            the location of the snapshot if any
+         */
+        public Module(MavenProject moduleProject, Path sourcePath, Path outputPath, Path exportPath, Path snapshotPath) {
+            project = Objects.requireNonNull(moduleProject);
+            source = Objects.requireNonNull(sourcePath);
+            output = outputPath;
+            export = exportPath;
+            snapshot = snapshotPath;
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return project.getId();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.mojo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import net.yetamine.pet4bnd.model.ResolvedBundle;
+import net.yetamine.pet4bnd.model.format.PetSnapshot;
+
+/**
+ * Caches resolved definitions for a build session, so that the modules of a
+ * reactor, which share a definition file, load the file just once.
+ *
+ * <p>
+ * The entries are keyed by the normalized absolute path of the definition file
+ * and they remember the size, the modification time and the content digest of
+ * the file, so that an entry for a changed file is never used. The cached
+ * definitions are immutable, therefore the modules may use them concurrently.
+ * When more modules load the same file at once, only one of them loads it and
+ * the others wait for the result; if loading fails, each of them tries on its
+ * own, so that all of them report the failure properly. The same applies when
+ * the loader discards its result, which it does when loading the definition
+ * reported warnings: a cached definition would make only the first module
+ * report the warnings, depending on the timing in parallel builds.
+ *
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+final class DefinitionCache {
+
+    /** Caches for the build sessions, released with the sessions. */
+    private static final Map<Object, DefinitionCache> SESSIONS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** Entries of this cache. */
+    private final ConcurrentMap<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance.
+     */
+    DefinitionCache() {
+        // Default constructor
+    }
+
+    /**
+     * Returns the cache for the given build session.
+     *
+     * @param session
+     *            the build session, or {@code null} if not available, which
+     *            results in a new cache that is not shared
+     *
+     * @return the cache
+     */
+    public static DefinitionCache forSession(Object session) {
+        return (session != null) ? SESSIONS.computeIfAbsent(session, s -> new DefinitionCache()) : new DefinitionCache();
+    }
+
+    /**
+     * Returns the resolved definition for the given file, loading it if the
+     * cache has no valid entry.
+     *
+     * @param path
+     *            the path to the definition file. It must not be {@code null}.
+     * @param loader
+     *            the loader of the definition. It must not be {@code null}.
+     *
+     * @return the resolved definition, which is shared with the other callers
+     *         unless the loader discarded it
+     *
+     * @throws MojoExecutionException
+     *             if the loader failed
+     * @throws IOException
+     *             if the file could not be read for computing its key
+     */
+    public ResolvedBundle get(Path path, Loader loader) throws MojoExecutionException, IOException {
+        Objects.requireNonNull(loader);
+        final Path file = path.toAbsolutePath().normalize();
+        final Key key = new Key(file);
+
+        for (;;) {
+            final Entry current = entries.get(file);
+
+            if ((current != null) && current.key.equals(key)) {
+                final ResolvedBundle result = current.value.join();
+                if (result != null) {
+                    return result;
+                }
+
+                entries.remove(file, current); // Failed, try on our own
+                continue;
+            }
+
+            final Entry created = new Entry(key);
+            final boolean owner = (current == null) // @formatter:break
+                    ? (entries.putIfAbsent(file, created) == null)
+                    : entries.replace(file, current, created);
+
+            if (!owner) { // Somebody else was faster
+                continue;
+            }
+
+            boolean shared = false;
+            try {
+                final ResolvedBundle result = loader.load(created::discard);
+                if (!created.discarded) {
+                    created.value.complete(result);
+                    shared = true;
+                }
+
+                return result;
+            } finally {
+                if (!shared) {
+                    entries.remove(file, created);
+                    created.value.complete(null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards the entry for the given file.
+     *
+     * @param path
+     *            the path to the definition file. It must not be {@code null}.
+     */
+    public void invalidate(Path path) {
+        entries.remove(path.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Loads a resolved definition.
+     */
+    @FunctionalInterface
+    interface Loader {
+
+        /**
+         * Loads the resolved definition.
+         *
+         * @param discard
+         *            the callback to invoke when the result must not be shared
+         *            with the other callers, e.g., because loading reported
+         *            warnings, which the other callers must report as well
+         *
+         * @return the resolved definition
+         *
+         * @throws MojoExecutionException
+         *             if loading failed
+         */
+        ResolvedBundle load(Runnable discard) throws MojoExecutionException;
+    }
+
+    /**
+     * Identifies the state of a file.
+     */
+    private static final class Key {
+
+        /** Size of the file. */
+        private final long size;
+        /** Modification time of the file in milliseconds. */
+        private final long modified;
+        /** Digest of the content of the file. */
+        private final byte[] digest;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param file
+         *            the file. It must not be {@code null}.
+         *
+         * @throws IOException
+         *             if the file could not be read
+         */
+        public Key(Path file) throws IOException {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            size = attributes.size();
+            modified = attributes.lastModifiedTime().toMillis();
+            digest = PetSnapshot.key(file);
+        }
+
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj instanceof Key) {
+                final Key o = (Key) obj;
+                return (size == o.size) && (modified == o.modified) && Arrays.equals(digest, o.digest);
+            }
+
+            return false;
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(digest);
+        }
+    }
+
+    /**
+     * An entry of the cache.
+     */
+    private static final class Entry {
+
+        /** Key of the file. */
+        final Key key;
+        /** Resolved definition, or {@code null} if not shared. */
+        final CompletableFuture<ResolvedBundle> value = new CompletableFuture<>();
+        /** Indicates that the loader discarded the result. */
+        boolean discarded;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param fileKey
+         *            the key of the file. It must not be {@code null}.
+         */
+        public Entry(Key fileKey) {
+            key = Objects.requireNonNull(fileKey);
+        }
+
+        /**
+         * Marks the result as not to be shared; only the loading thread may
+         * invoke this method.
+         */
+        public void discard() {
+            discarded = true;
+        }
+    }
+}
@@ -16,7 +16,6 @@
 
 package net.yetamine.pet4bnd.mojo;
 
-import java.io.IOException;
 import java.nio.file.Path;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -31,7 +30,7 @@ import net.yetamine.pet4bnd.model.Bundle;
 /**
  * Dumps the version information of the definition elements.
  */
-@Mojo(name = "export", defaultPhase = LifecyclePhase.VALIDATE)
+@Mojo(name = "export", defaultPhase = LifecyclePhase.VALIDATE, threadSafe = true)
 public final class ExportMojo extends AbstractPet4BndMojo {
 
     /** Location of the target file if specified. */
@@ -60,17 +59,19 @@ public final class ExportMojo extends AbstractPet4BndMojo {
         final Path outputPath = requirePath(export);
         final Path sourcePath = resolvePath(source).orElseGet(this::getDefaultSourcePath);
 
-        log.info(String.format("Loading definition file: %s", sourcePath));
-        final Bundle definition = resolveDefinition(parseSource(sourcePath));
-        final Format2Map format = new Format2Map(definition);
-
-        try {
-            log.info(String.format("Generating properties file: %s", outputPath));
-            format.store(outputPath);
-        } catch (IOException e) {
-            throw new MojoExecutionException(e.getMessage(), e);
+        final Fingerprint fingerprint = fingerprint("export", sourcePath, outputPath);
+        if (isUpToDate(sourcePath, outputPath, fingerprint)) {
+            log.info(String.format("Generated properties file up to date: %s", outputPath));
+            return;
         }
 
+        log.info(String.format("Loading definition file: %s", sourcePath));
+        final Bundle definition = loadDefinition(sourcePath);
+        final Format2Map format = new Format2Map(definition).timestamp(getOutputClock());
+        log.info(String.format("Generating properties file: %s", outputPath));
+        storeOutput(format, outputPath);
+        storeFingerprint(fingerprint);
+
         log.debug("Storing the properties file finished successfully.");
         // Inform about the target version as the last common information
         log.info(String.format("Target bundle version: %s", definition.version().resolution()));
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.mojo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import net.yetamine.pet4bnd.model.format.PetSnapshot;
+
+/**
+ * Records the inputs and the output of a goal execution, so that the execution
+ * can be skipped when neither changes.
+ *
+ * <p>
+ * The fingerprint file contains two lines: the digest of the inputs, i.e., of
+ * the source and of the plugin version (see {@link PetSnapshot#key(Path)}) and
+ * of the parameters of the goal, and the digest of the output.
+ */
+final class Fingerprint {
+
+    /** Name of the digest algorithm. */
+    private static final String DIGEST = "SHA-256";
+    /** Size of the buffer for reading the output. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Path to the fingerprint file. */
+    private final Path path;
+    /** Path to the output. */
+    private final Path output;
+    /** Digest of the inputs. */
+    private final String inputs;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param fingerprint
+     *            the path to the fingerprint file. It must not be
+     *            {@code null}.
+     * @param source
+     *            the path to the source. It must not be {@code null}.
+     * @param target
+     *            the path to the output. It must not be {@code null}.
+     * @param parameters
+     *            the parameters of the goal. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the source could not be read
+     */
+    public Fingerprint(Path fingerprint, Path source, Path target, List<?> parameters) throws IOException {
+        path = Objects.requireNonNull(fingerprint);
+        output = Objects.requireNonNull(target);
+
+        final MessageDigest digest = digest();
+        digest.update(PetSnapshot.key(source));
+        for (Object parameter : parameters) {
+            digest.update(String.valueOf(parameter).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0); // Separate the parameters
+        }
+
+        inputs = hex(digest.digest());
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("Fingerprint[%s: %s]", path, inputs);
+    }
+
+    /**
+     * Tests if the fingerprint file records the same inputs and the output
+     * exists with the recorded content.
+     *
+     * @return {@code true} if the execution of the goal can be skipped
+     *
+     * @throws IOException
+     *             if reading the files failed
+     */
+    public boolean matches() throws IOException {
+        if (!Files.isRegularFile(path) || !Files.isRegularFile(output)) {
+            return false;
+        }
+
+        final List<String> lines = Files.readAllLines(path, StandardCharsets.US_ASCII);
+        return (lines.size() == 2) && lines.get(0).equals(inputs) && lines.get(1).equals(outputDigest());
+    }
+
+    /**
+     * Stores the fingerprint with the digest of the current output.
+     *
+     * @throws IOException
+     *             if writing the fingerprint file failed
+     */
+    public void store() throws IOException {
+        final Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        final Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, Arrays.asList(inputs, outputDigest()), StandardCharsets.US_ASCII);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Computes the digest of the output.
+     *
+     * @return the digest of the output
+     *
+     * @throws IOException
+     *             if reading the output failed
+     */
+    private String outputDigest() throws IOException {
+        final MessageDigest digest = digest();
+        try (InputStream source = Files.newInputStream(output)) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            for (int length; (length = source.read(buffer)) != -1;) {
+                digest.update(buffer, 0, length);
+            }
+        }
+
+        return hex(digest.digest());
+    }
+
+    /**
+     * Formats bytes as a hexadecimal string.
+     *
+     * @param bytes
+     *            the bytes to format. It must not be {@code null}.
+     *
+     * @return the hexadecimal string
+     */
+    private static String hex(byte[] bytes) {
+        final StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Returns a new digest instance.
+     *
+     * @return the digest instance
+     */
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance(DIGEST);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform must support the algorithm
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -16,7 +16,6 @@
 
 package net.yetamine.pet4bnd.mojo;
 
-import java.io.IOException;
 import java.nio.file.Path;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -31,7 +30,7 @@ import net.yetamine.pet4bnd.model.Bundle;
 /**
  * Generates the export directive.
  */
-@Mojo(name = "generate", defaultPhase = LifecyclePhase.PREPARE_PACKAGE)
+@Mojo(name = "generate", defaultPhase = LifecyclePhase.PREPARE_PACKAGE, threadSafe = true)
 public final class GenerateMojo extends AbstractPet4BndMojo {
 
     /** Location of the output file. */
@@ -64,18 +63,20 @@ public final class GenerateMojo extends AbstractPet4BndMojo {
         final Path outputPath = requirePath(output);
         final Path sourcePath = resolvePath(source).orElseGet(this::getDefaultSourcePath);
 
-        log.info(String.format("Loading definition file: %s", sourcePath));
-        final Bundle definition = resolveDefinition(parseSource(sourcePath));
-        final boolean bundleVersionRequired = isBundleVersionRequired();
-        final Format2Bnd format = new Format2Bnd(definition, bundleVersionRequired);
-
-        try {
-            log.info(String.format("Generating bnd file: %s", outputPath));
-            format.store(outputPath);
-        } catch (IOException e) {
-            throw new MojoExecutionException(e.getMessage(), e);
+        final boolean bundleVersionRequired = isBundleVersionRequired(bundleVersion, getProject());
+        final Fingerprint fingerprint = fingerprint("generate", sourcePath, outputPath, bundleVersionRequired);
+        if (isUpToDate(sourcePath, outputPath, fingerprint)) {
+            log.info(String.format("Generated bnd file up to date: %s", outputPath));
+            return;
         }
 
+        log.info(String.format("Loading definition file: %s", sourcePath));
+        final Bundle definition = loadDefinition(sourcePath);
+        final Format2Bnd format = new Format2Bnd(definition, bundleVersionRequired).timestamp(getOutputClock());
+        log.info(String.format("Generating bnd file: %s", outputPath));
+        storeOutput(format, outputPath);
+        storeFingerprint(fingerprint);
+
         log.debug("Storing bnd file finished successfully.");
 
         if (verbose) {
@@ -93,45 +94,4 @@ public final class GenerateMojo extends AbstractPet4BndMojo {
             log.info("Target bundle version omitted from the output as requested.");
         }
     }
-
-    /**
-     * Returns if the project should generate the Bundle-Version directive.
-     *
-     * @return {@code true} if the project settings shall result in generating
-     *         the Bundle-Version directive
-     */
-    private boolean isBundleVersionRequired() {
-        switch (bundleVersion.toLowerCase()) {
-            case "always":
-            case "true":
-            case "yes":
-                return true;
-
-            case "snapshot":
-                return isProjectVersionSnapshot();
-
-            default:
-                getLog().warn(String.format("Unknown bundle version directive '%s'.", bundleVersion));
-                // Fall through
-
-            case "release": // This is the usual default
-                return !isProjectVersionSnapshot();
-
-            case "never":
-            case "false":
-            case "no":
-                return false;
-
-        }
-    }
-
-    /**
-     * Tests if the project's version is a SNAPSHOT.
-     *
-     * @return {@code true} if the project's version is a SNAPSHOT
-     */
-    private boolean isProjectVersionSnapshot() {
-        final String version = getProject().getVersion();
-        return ((version != null) && version.endsWith("-SNAPSHOT"));
-    }
 }
@@ -26,12 +26,13 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
 import net.yetamine.pet4bnd.model.Bundle;
+import net.yetamine.pet4bnd.pom.PomVersionEditor;
 import net.yetamine.pet4bnd.version.Version;
 
 /**
  * Updates the POM version to the bundle target version.
  */
-@Mojo(name = "release", requiresDirectInvocation = true)
+@Mojo(name = "release", requiresDirectInvocation = true, threadSafe = true)
 public final class ReleaseMojo extends AbstractPet4BndMojo {
 
     /** Location of the source file. */
@@ -50,14 +51,17 @@ public final class ReleaseMojo extends AbstractPet4BndMojo {
 
         final Log log = getLog();
         log.info(String.format("Loading definition file: %s", sourcePath));
-        final Bundle definition = resolveDefinition(parseSource(sourcePath));
+        final Bundle definition = loadDefinition(sourcePath);
         final Version version = definition.version().resolution();
         log.info(String.format("Target bundle version: %s", version));
 
         try {
             final Path pomPath = pom.toPath();
             log.info(String.format("Updating POM file: %s", pomPath));
-            new PomVersionEditor(pomPath).version(version.toString()).store(pomPath);
+            writing(pomPath, () -> { // Keep other executions off the file meanwhile
+                new PomVersionEditor(pomPath).version(version.toString()).store(pomPath);
+                return null;
+            });
         } catch (IOException e) {
             throw new MojoExecutionException(e.getMessage(), e);
         }
@@ -29,7 +29,7 @@ import net.yetamine.pet4bnd.model.format.PetFormat;
 /**
  * Restores the baselines and resets the change information in the source file.
  */
-@Mojo(name = "restore", requiresDirectInvocation = true)
+@Mojo(name = "restore", requiresDirectInvocation = true, threadSafe = true)
 public final class RestoreMojo extends AbstractPet4BndMojo {
 
     /** Location of the source file. */
@@ -44,13 +44,19 @@ public final class RestoreMojo extends AbstractPet4BndMojo {
 
         final Log log = getLog();
         log.info(String.format("Updating definition file: %s", sourcePath));
-        final PetFormat definition = resolveDefinition(parseSource(sourcePath));
 
-        try {
-            definition.restore();
-            definition.store(sourcePath);
+        final PetFormat definition;
+        try { // Keep other executions off the file until it is restored
+            definition = writing(sourcePath, () -> {
+                final PetFormat result = resolveDefinition(parseSource(sourcePath, true));
+                result.restore();
+                result.store(sourcePath);
+                return result;
+            });
         } catch (IOException e) {
             throw new MojoExecutionException(e.getMessage(), e);
+        } finally { // Even a failure could change the file
+            invalidateDefinition(sourcePath);
         }
 
         log.info(String.format("Target bundle version: %s", definition.version().resolution()));
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.mojo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import net.yetamine.pet4bnd.pom.PomUpdate;
+
+/**
+ * Updates the POM versions of all modules of the reactor at once, either to
+ * the release versions like {@code release}, or to the snapshot versions like
+ * {@code refresh}, including the references among the modules.
+ */
+@Mojo(name = "update", aggregator = true, requiresDirectInvocation = true, threadSafe = true)
+public final class UpdateMojo extends AbstractPet4BndMojo {
+
+    /** Name of the property with the location of the source file. */
+    private static final String SOURCE_PROPERTY = "pet4bnd.source";
+
+    /** Projects of the reactor. */
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+    private List<MavenProject> reactorProjects;
+
+    /** Kind of the versions to set: release or refresh (for snapshots). */
+    @Parameter(defaultValue = "release", property = "pet4bnd.update", required = true)
+    private String update;
+
+    /**
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    public void execute() throws MojoExecutionException {
+        final boolean snapshot = isSnapshotUpdate();
+
+        final Log log = getLog();
+        final Map<Path, Optional<Path>> modules = new LinkedHashMap<>();
+        for (MavenProject project : reactorProjects) {
+            if (project.getFile() == null) {
+                continue;
+            }
+
+            final Path basedir = project.getBasedir().toPath();
+            final String specified = project.getProperties().getProperty(SOURCE_PROPERTY);
+            final Path source = ((specified != null) && !specified.isEmpty()) ? basedir.resolve(specified) : getDefaultSourcePath(project);
+            modules.put(project.getFile().toPath(), Files.isRegularFile(source) ? Optional.of(source) : Optional.empty());
+        }
+
+        final PomUpdate pomUpdate;
+        try {
+            log.info(String.format("Preparing the update of %d POM files.", modules.size()));
+            pomUpdate = PomUpdate.prepare(modules, snapshot, getFeedback());
+        } catch (IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+
+        pomUpdate.versions().forEach((pom, version) -> log.info(String.format("Target version %s: %s", version, pom)));
+        if (pomUpdate.changes().isEmpty()) {
+            log.info("All POM files up to date.");
+            return;
+        }
+
+        try {
+            pomUpdate.changes().forEach(pom -> log.info(String.format("Updating POM file: %s", pom)));
+            pomUpdate.commit();
+        } catch (IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns if the update sets the snapshot versions.
+     *
+     * @return {@code true} if the update sets the snapshot versions,
+     *         {@code false} if it sets the release versions
+     *
+     * @throws MojoExecutionException
+     *             if the kind of the update is unknown
+     */
+    private boolean isSnapshotUpdate() throws MojoExecutionException {
+        switch (update.toLowerCase()) {
+            case "release":
+                return false;
+
+            case "refresh":
+            case "snapshot":
+                return true;
+
+            default:
+                throw new MojoExecutionException(String.format("Unknown update '%s'.", update));
+        }
+    }
+}
@@ -0,0 +1,578 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.pom;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import net.yetamine.pet4bnd.model.Persistable;
+
+/**
+ * An editor for the versions of the project, of its parent and of its
+ * dependencies in a POM file designed to preserve the file content intact as
+ * much as possible.
+ *
+ * <p>
+ * Unlike {@link PomVersionEditor}, this editor parses the whole file in order
+ * to find all references, but it splices the new versions into the original
+ * bytes in the same way.
+ */
+public final class PomEditor implements Persistable {
+
+    /** Name of the group identifier element. */
+    private static final String GROUP_ID_ELEMENT = "groupId";
+    /** Name of the artifact identifier element. */
+    private static final String ARTIFACT_ID_ELEMENT = "artifactId";
+
+    /** Original content. */
+    private final byte[] content;
+    /** Charset of the input. */
+    private final Charset charset;
+    /** Coordinates of the project. */
+    private final Reference project;
+    /** Reference to the parent if any. */
+    private final Reference parent;
+    /** References to the dependencies. */
+    private final List<Reference> dependencies;
+    /** Versions to store. */
+    private final Map<Reference, String> edits = new IdentityHashMap<>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param source
+     *            the source of the input. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the input could not be processed
+     */
+    public PomEditor(Path source) throws IOException {
+        this(Files.readAllBytes(source));
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param source
+     *            the source of the input. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the input could not be processed
+     */
+    public PomEditor(InputStream source) throws IOException {
+        this(PomVersionEditor.readBytes(source));
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param source
+     *            the bytes of the input. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the input could not be processed
+     */
+    private PomEditor(byte[] source) throws IOException {
+        content = source;
+
+        final int bom = PomVersionEditor.byteOrderMark(source);
+        charset = PomVersionEditor.charset(source, bom);
+
+        final PomVersionEditor.RecordingReader recording = new PomVersionEditor.RecordingReader(PomVersionEditor.newReader(source, bom, charset));
+        final Scanner scanner = new Scanner();
+
+        try (Reader reader = recording) {
+            final XMLStreamReader xml = PomVersionEditor.createReader(reader);
+
+            try {
+                scanner.scan(xml);
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw PomVersionEditor.failure(e, charset);
+        }
+
+        if (scanner.project.artifactId == null) {
+            throw new IOException("Could not locate the proper <artifactId> element.");
+        }
+
+        final String text = recording.toString();
+        project = scanner.project;
+        parent = scanner.parent;
+        dependencies = Collections.unmodifiableList(scanner.dependencies);
+
+        // Resolve the ranges of the versions to edit and translate them to the byte offsets
+        final List<Reference> references = new ArrayList<>();
+        references.add(project);
+        if (parent != null) {
+            references.add(parent);
+        }
+
+        references.addAll(dependencies);
+        references.forEach(reference -> reference.resolve(text));
+        references.removeIf(reference -> reference.characterOffset < 0);
+        references.sort(Comparator.comparingInt(reference -> reference.characterOffset));
+
+        int characters = 0;
+        int bytes = bom;
+        for (Reference reference : references) {
+            bytes += PomVersionEditor.encodedLength(charset, text, characters, reference.characterOffset);
+            reference.versionOffset = bytes;
+            bytes += PomVersionEditor.encodedLength(charset, text, reference.characterOffset, reference.characterEnding);
+            reference.versionEnding = bytes;
+            characters = reference.characterEnding;
+        }
+    }
+
+    /**
+     * Returns the group identifier of the project, which may be inherited from
+     * the parent.
+     *
+     * @return the group identifier of the project
+     */
+    public Optional<String> groupId() {
+        final Optional<String> result = project.groupId();
+        return (result.isPresent() || (parent == null)) ? result : parent.groupId();
+    }
+
+    /**
+     * Returns the artifact identifier of the project.
+     *
+     * @return the artifact identifier of the project
+     */
+    public String artifactId() {
+        return project.artifactId;
+    }
+
+    /**
+     * Returns the version of the project as specified in the input, which may
+     * be inherited from the parent.
+     *
+     * @return the version of the project
+     */
+    public Optional<String> version() {
+        final Optional<String> result = project.version();
+        return (result.isPresent() || (parent == null)) ? result : parent.version();
+    }
+
+    /**
+     * Indicates whether the project specifies its own version, which can be
+     * edited then.
+     *
+     * @return {@code true} if the project specifies its own version
+     */
+    public boolean hasVersion() {
+        return project.editable();
+    }
+
+    /**
+     * Sets the version of the project to store.
+     *
+     * @param value
+     *            the version string. It must not be {@code null}.
+     *
+     * @return this instance
+     *
+     * @throws IllegalStateException
+     *             if the project does not specify its own version
+     */
+    public PomEditor version(String value) {
+        if (!project.editable()) {
+            throw new IllegalStateException("Could not locate the proper <version> element.");
+        }
+
+        edits.put(project, Objects.requireNonNull(value));
+        return this;
+    }
+
+    /**
+     * Returns the reference to the parent.
+     *
+     * @return the reference to the parent
+     */
+    public Optional<Reference> parent() {
+        return Optional.ofNullable(parent);
+    }
+
+    /**
+     * Returns the references to the dependencies, including the managed
+     * dependencies and the dependencies of the plugins and profiles.
+     *
+     * @return the references to the dependencies
+     */
+    public List<Reference> dependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Sets the version of the given reference to store.
+     *
+     * @param reference
+     *            the reference to edit. It must be the parent or a dependency
+     *            of this instance.
+     * @param value
+     *            the version string. It must not be {@code null}.
+     *
+     * @return this instance
+     *
+     * @throws IllegalArgumentException
+     *             if the reference does not belong to this instance or if it
+     *             has no version to edit
+     */
+    public PomEditor version(Reference reference, String value) {
+        if ((reference == project) || !((reference == parent) || dependencies.contains(reference))) {
+            throw new IllegalArgumentException("Unknown reference.");
+        }
+
+        if (!reference.editable()) {
+            throw new IllegalArgumentException(String.format("No version to edit for %s.", reference));
+        }
+
+        edits.put(reference, Objects.requireNonNull(value));
+        return this;
+    }
+
+    /**
+     * Indicates whether storing this instance changes the content.
+     *
+     * @return {@code true} if storing this instance changes the content
+     */
+    public boolean modified() {
+        return edits.entrySet().stream().anyMatch(edit -> !edit.getValue().equals(edit.getKey().version));
+    }
+
+    /**
+     * Returns a copy of the original content.
+     *
+     * @return the original content
+     */
+    byte[] original() {
+        return content.clone();
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.model.Persistable#persist(java.io.OutputStream)
+     */
+    public void persist(OutputStream sink) throws IOException {
+        final List<Reference> references = new ArrayList<>(edits.keySet());
+        references.sort(Comparator.comparingInt(reference -> reference.versionOffset));
+
+        int position = 0;
+        for (Reference reference : references) {
+            sink.write(content, position, reference.versionOffset - position);
+            sink.write(edits.get(reference).getBytes(charset));
+            position = reference.versionEnding;
+        }
+
+        sink.write(content, position, content.length - position);
+        sink.flush();
+    }
+
+    /**
+     * Represents the coordinates of a project or of an artifact it refers to.
+     */
+    public static final class Reference {
+
+        /** Group identifier if specified. */
+        String groupId;
+        /** Artifact identifier if specified. */
+        String artifactId;
+        /** Version if specified. */
+        String version;
+
+        /** Location of the version end as reported by the parser. */
+        int locationEnding = -1;
+        /** Starting character offset of the version if editable. */
+        int characterOffset = -1;
+        /** Ending character offset of the version if editable. */
+        int characterEnding = -1;
+        /** Starting byte offset of the version if editable. */
+        int versionOffset = -1;
+        /** Ending byte offset of the version if editable. */
+        int versionEnding = -1;
+
+        /**
+         * Creates a new instance.
+         */
+        Reference() {
+            // Default constructor
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return String.format("%s:%s:%s", groupId, artifactId, version);
+        }
+
+        /**
+         * Returns the group identifier.
+         *
+         * @return the group identifier
+         */
+        public Optional<String> groupId() {
+            return Optional.ofNullable(groupId);
+        }
+
+        /**
+         * Returns the artifact identifier.
+         *
+         * @return the artifact identifier
+         */
+        public Optional<String> artifactId() {
+            return Optional.ofNullable(artifactId);
+        }
+
+        /**
+         * Returns the version.
+         *
+         * @return the version
+         */
+        public Optional<String> version() {
+            return Optional.ofNullable(version);
+        }
+
+        /**
+         * Indicates whether the version can be edited.
+         *
+         * @return {@code true} if the version can be edited
+         */
+        boolean editable() {
+            return (0 <= characterOffset);
+        }
+
+        /**
+         * Resolves the character offsets of the version from the parser
+         * location of the version end.
+         *
+         * <p>
+         * The version is editable only if it is plain text, so that the text
+         * between the start and the end tag equals the parsed value.
+         *
+         * @param text
+         *            the text of the input. It must not be {@code null}.
+         */
+        void resolve(String text) {
+            if (locationEnding < 0) {
+                return;
+            }
+
+            final int ending = PomVersionEditor.versionEnding(text, locationEnding);
+            final int beginning = (0 < ending) ? text.lastIndexOf('>', ending - 1) : -1;
+            final int tag = (0 < beginning) ? text.lastIndexOf('<', beginning) : -1;
+            if ((tag < 0) || !isVersionTag(text.substring(tag + 1, beginning))) {
+                return;
+            }
+
+            final int offset = beginning + 1;
+            final String value = text.substring(offset, ending);
+            if ((value.indexOf('<') < 0) && value.trim().equals(version)) { // Edit plain text only
+                characterOffset = offset;
+                characterEnding = ending;
+            }
+        }
+
+        /**
+         * Indicates whether the given tag content is a version start tag.
+         *
+         * @param tag
+         *            the content of the tag between the angle brackets. It
+         *            must not be {@code null}.
+         *
+         * @return {@code true} if the tag is a version start tag
+         */
+        private static boolean isVersionTag(String tag) {
+            int end = 0;
+            while ((end < tag.length()) && !Character.isWhitespace(tag.charAt(end))) {
+                ++end;
+            }
+
+            final String name = tag.substring(0, end);
+            final String localName = name.substring(name.indexOf(':') + 1);
+            return PomVersionEditor.VERSION_ELEMENT.equals(localName) && !tag.endsWith("/");
+        }
+    }
+
+    /**
+     * Scans the input for the coordinates and references.
+     */
+    private static final class Scanner {
+
+        /** Coordinates of the project. */
+        final Reference project = new Reference();
+        /** Reference to the parent if any. */
+        Reference parent;
+        /** References to the dependencies. */
+        final List<Reference> dependencies = new ArrayList<>();
+
+        /** Names of the open elements. */
+        private final List<String> names = new ArrayList<>();
+        /** Reference being scanned. */
+        private Reference current;
+        /** Depth of the elements of the current reference. */
+        private int depth;
+        /** Name of the current element of the current reference. */
+        private String element;
+        /** Text of the current element. */
+        private final StringBuilder text = new StringBuilder();
+
+        /**
+         * Creates a new instance.
+         */
+        public Scanner() {
+            // Default constructor
+        }
+
+        /**
+         * Scans the input.
+         *
+         * @param xml
+         *            the input reader. It must not be {@code null}.
+         *
+         * @throws XMLStreamException
+         *             if the input could not be parsed
+         */
+        public void scan(XMLStreamReader xml) throws XMLStreamException {
+            while (xml.hasNext()) {
+                switch (xml.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        start(xml);
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        end(xml);
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        if (element != null) {
+                            text.append(xml.getText());
+                        }
+
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Processes the start of an element.
+         *
+         * @param xml
+         *            the input reader. It must not be {@code null}.
+         */
+        private void start(XMLStreamReader xml) {
+            final String namespace = xml.getNamespaceURI();
+            final boolean pom = (namespace == null) || namespace.isEmpty() || PomVersionEditor.VERSION_XMLNS.equals(namespace);
+            final String name = pom ? xml.getLocalName() : "";
+            final int level = names.size();
+
+            if ((level == 0) && "project".equals(name)) {
+                current = project;
+                depth = 1;
+            } else if ((level == 1) && "parent".equals(name)) {
+                current = parent = new Reference();
+                depth = 2;
+            } else if ((0 < level) && "dependency".equals(name) && "dependencies".equals(names.get(level - 1))) {
+                current = new Reference();
+                dependencies.add(current);
+                depth = level + 1;
+            } else if ((current != null) && (level == depth) && isCoordinate(name)) {
+                element = name;
+                text.setLength(0);
+            }
+
+            names.add(name);
+        }
+
+        /**
+         * Processes the end of an element.
+         *
+         * @param xml
+         *            the input reader. It must not be {@code null}.
+         */
+        private void end(XMLStreamReader xml) {
+            names.remove(names.size() - 1);
+            final int level = names.size();
+
+            if ((element != null) && (level == depth)) {
+                final String value = text.toString().trim();
+
+                switch (element) {
+                    case GROUP_ID_ELEMENT:
+                        current.groupId = value;
+                        break;
+
+                    case ARTIFACT_ID_ELEMENT:
+                        current.artifactId = value;
+                        break;
+
+                    default:
+                        current.version = value;
+                        current.locationEnding = xml.getLocation().getCharacterOffset();
+                        break;
+                }
+
+                element = null;
+                return;
+            }
+
+            if ((current != null) && (level == depth - 1)) { // End of the reference
+                final boolean nested = (current != project);
+                current = nested ? project : null;
+                depth = nested ? 1 : 0;
+            }
+        }
+
+        /**
+         * Indicates whether the element is a coordinate element.
+         *
+         * @param name
+         *            the name of the element. It must not be {@code null}.
+         *
+         * @return {@code true} if the element is a coordinate element
+         */
+        private static boolean isCoordinate(String name) {
+            // @formatter:off
+            return GROUP_ID_ELEMENT.equals(name)
+                    || ARTIFACT_ID_ELEMENT.equals(name)
+                    || PomVersionEditor.VERSION_ELEMENT.equals(name);
+            // @formatter:on
+        }
+    }
+}
@@ -0,0 +1,596 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.pom;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.Bundle;
+import net.yetamine.pet4bnd.model.BundleVersion;
+import net.yetamine.pet4bnd.support.PathLocks;
+import net.yetamine.pet4bnd.version.Version;
+import net.yetamine.pet4bnd.version.VersionVariance;
+import net.yetamine.pet4bnd.workspace.BundleResolution;
+import net.yetamine.pet4bnd.workspace.Workspace;
+import net.yetamine.pet4bnd.workspace.WorkspaceResolution;
+
+/**
+ * Updates the versions of many modules in their POM files at once.
+ *
+ * <p>
+ * The update computes the target version of each module from its definition,
+ * sets it in the POM of the module and updates all references to the module,
+ * i.e., the parent references and the dependencies with the same version as
+ * the module had, in all POMs of the update. The update is prepared completely
+ * in memory first; committing it then writes all changed POMs to temporary
+ * files in parallel and moves them over the original files at last, restoring
+ * the already moved files if a move fails, so that either all POMs are updated
+ * or none is. Committing holds the write locks of all changed POMs, see
+ * {@link PathLocks}.
+ */
+public final class PomUpdate {
+
+    /** Default name of a POM file. */
+    public static final String DEFAULT_POM_NAME = "pom.xml";
+    /** Snapshot qualifier for Maven. */
+    public static final String SNAPSHOT_QUALIFIER = "-SNAPSHOT";
+
+    /** Name of the build output directory to skip when discovering. */
+    private static final String TARGET_DIRECTORY = "target";
+
+    /** Pool for the parallel tasks. */
+    private final ForkJoinPool pool;
+    /** Target versions of the modules by their POMs. */
+    private final Map<Path, String> versions;
+    /** Editors of the changed POMs. */
+    private final Map<Path, PomEditor> changes;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param taskPool
+     *            the pool for the parallel tasks. It must not be {@code null}.
+     * @param targetVersions
+     *            the target versions of the modules. It must not be
+     *            {@code null}.
+     * @param changedPoms
+     *            the editors of the changed POMs. It must not be {@code null}.
+     */
+    private PomUpdate(ForkJoinPool taskPool, Map<Path, String> targetVersions, Map<Path, PomEditor> changedPoms) {
+        pool = Objects.requireNonNull(taskPool);
+        versions = Collections.unmodifiableMap(targetVersions);
+        changes = changedPoms;
+    }
+
+    /**
+     * Discovers all POMs under the given directory, each with the definition
+     * in the same directory if any.
+     *
+     * <p>
+     * The search skips hidden directories and the build output directories,
+     * i.e., the directories named {@code target}.
+     *
+     * @param root
+     *            the root directory to search. It must not be {@code null}.
+     *
+     * @return the discovered modules, which map the POMs to their definitions
+     *
+     * @throws IOException
+     *             if the directory could not be searched
+     */
+    public static Map<Path, Optional<Path>> discover(Path root) throws IOException {
+        final Map<Path, Optional<Path>> result = new LinkedHashMap<>();
+
+        for (Path pom : Workspace.discover(root, DEFAULT_POM_NAME).sources()) {
+            if (isBuildOutput(root.relativize(pom))) {
+                continue;
+            }
+
+            final Path definition = pom.resolveSibling(Workspace.DEFAULT_SOURCE_NAME);
+            result.put(pom, Files.isRegularFile(definition) ? Optional.of(definition) : Optional.empty());
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates whether the given file is in a build output directory.
+     *
+     * @param path
+     *            the relative path to the file. It must not be {@code null}.
+     *
+     * @return {@code true} if the file is in a build output directory
+     */
+    private static boolean isBuildOutput(Path path) {
+        for (int i = 0; i < path.getNameCount() - 1; i++) {
+            if (TARGET_DIRECTORY.equals(path.getName(i).toString())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Prepares an update using the common fork-join pool.
+     *
+     * @param modules
+     *            the modules to update, which map the POMs to their
+     *            definitions. It must not be {@code null}.
+     * @param snapshot
+     *            {@code true} for updating to the snapshot versions,
+     *            {@code false} for updating to the release versions
+     * @param feedback
+     *            the feedback for reporting the problems. It must not be
+     *            {@code null}.
+     *
+     * @return the prepared update
+     *
+     * @throws IOException
+     *             if a definition or a POM could not be processed
+     */
+    public static PomUpdate prepare(Map<Path, Optional<Path>> modules, boolean snapshot, Feedback feedback) throws IOException {
+        return prepare(modules, snapshot, feedback, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Prepares an update.
+     *
+     * <p>
+     * The definitions are resolved and the POMs are parsed in parallel. All
+     * problems are reported before failing, and nothing is changed yet.
+     *
+     * @param modules
+     *            the modules to update, which map the POMs to their
+     *            definitions. It must not be {@code null}.
+     * @param snapshot
+     *            {@code true} for updating to the snapshot versions,
+     *            {@code false} for updating to the release versions
+     * @param feedback
+     *            the feedback for reporting the problems. It must not be
+     *            {@code null}.
+     * @param pool
+     *            the pool for the parallel tasks. It must not be {@code null}.
+     *
+     * @return the prepared update
+     *
+     * @throws IOException
+     *             if a definition or a POM could not be processed
+     */
+    public static PomUpdate prepare(Map<Path, Optional<Path>> modules, boolean snapshot, Feedback feedback, ForkJoinPool pool) throws IOException {
+        Objects.requireNonNull(feedback);
+
+        // Resolve the definitions
+        final List<Path> sources = modules.values().stream() // @formatter:break
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .distinct()
+                .collect(Collectors.toList());
+
+        final WorkspaceResolution resolution = new Workspace(sources).resolve(pool);
+        if (!resolution.valid()) {
+            resolution.report(feedback);
+            throw new IOException("One or more definitions are not valid.");
+        }
+
+        final Map<Path, Bundle> bundles = new HashMap<>();
+        for (BundleResolution bundle : resolution.bundles()) {
+            bundles.put(bundle.source(), bundle.bundle().get());
+        }
+
+        // Parse the POMs
+        final List<Path> poms = new ArrayList<>(modules.keySet());
+        final List<Future<PomEditor>> tasks = new ArrayList<>(poms.size());
+        poms.forEach(pom -> tasks.add(pool.submit(() -> new PomEditor(pom))));
+
+        final List<String> problems = new ArrayList<>();
+        final Map<Path, PomEditor> editors = new LinkedHashMap<>();
+        for (int i = 0; i < poms.size(); i++) {
+            final Path pom = poms.get(i);
+
+            try {
+                editors.put(pom, await(tasks.get(i)));
+            } catch (IOException e) {
+                problems.add(String.format("%s: %s", pom, e.getMessage()));
+            }
+        }
+
+        // Compute the target versions of the modules
+        final Map<Path, String> versions = new LinkedHashMap<>();
+        final Map<String, String[]> targets = new HashMap<>(); // Coordinates -> { current version, target version }
+        editors.forEach((pom, editor) -> {
+            final Optional<Path> definition = modules.get(pom);
+            if (!definition.isPresent()) {
+                return;
+            }
+
+            final String coordinates = coordinates(editor.groupId(), Optional.of(editor.artifactId()));
+            if (coordinates == null) {
+                problems.add(String.format("%s: Could not determine the group identifier.", pom));
+                return;
+            }
+
+            final BundleVersion version = bundles.get(definition.get()).version();
+
+            try {
+                final String target = snapshot ? snapshotVersion(version) : releaseVersion(version);
+                if (targets.put(coordinates, new String[] { editor.version().orElse(null), target }) != null) {
+                    problems.add(String.format("%s: Duplicate module %s.", pom, coordinates));
+                }
+
+                versions.put(pom, target);
+            } catch (IllegalArgumentException e) {
+                problems.add(String.format("%s: %s", pom, e.getMessage()));
+            }
+        });
+
+        // Edit the versions of the modules and of the references to them
+        final Map<Path, PomEditor> changes = new LinkedHashMap<>();
+        editors.forEach((pom, editor) -> {
+            final Optional<PomEditor.Reference> parent = editor.parent();
+            parent.ifPresent(reference -> update(editor, reference, targets));
+            editor.dependencies().forEach(reference -> update(editor, reference, targets));
+
+            final String target = versions.get(pom);
+            if (target != null) {
+                if (editor.hasVersion()) {
+                    editor.version(target);
+                } else if (!target.equals(parent.map(reference -> target(reference, targets)).orElse(null))) {
+                    problems.add(String.format("%s: The version inherited from the parent can't be set to %s.", pom, target));
+                }
+            }
+
+            if (editor.modified()) {
+                changes.put(pom, editor);
+            }
+        });
+
+        if (!problems.isEmpty()) {
+            problems.forEach(feedback::fail);
+            throw new IOException(String.format("Could not prepare the update of %d POM(s).", problems.size()));
+        }
+
+        return new PomUpdate(pool, versions, changes);
+    }
+
+    /**
+     * Returns the release version for the given bundle version.
+     *
+     * @param version
+     *            the bundle version. It must not be {@code null}.
+     *
+     * @return the release version
+     */
+    public static String releaseVersion(BundleVersion version) {
+        return version.resolution().toString();
+    }
+
+    /**
+     * Returns the most suitable snapshot version for the given bundle version,
+     * which is the next snapshot version below the constraint (if any).
+     *
+     * @param version
+     *            the bundle version. It must not be {@code null}.
+     *
+     * @return the snapshot version
+     *
+     * @throws IllegalArgumentException
+     *             if the constraint does not allow to raise the version
+     *             baseline
+     */
+    public static String snapshotVersion(BundleVersion version) {
+        // Cut off the qualifier as it would be replaced anyway
+        final Version baseline = version.baseline().qualifier(null);
+        final Optional<Version> constraint = version.constraint();
+
+        if (!constraint.isPresent()) { // No constraint, use the next major version
+            return VersionVariance.MAJOR.apply(baseline) + SNAPSHOT_QUALIFIER;
+        }
+
+        final Version versionConstraint = constraint.get();
+        return Stream.of(VersionVariance.MAJOR, VersionVariance.MINOR, VersionVariance.MICRO)   // Try all adequate version changes, from the major one
+                .map(variance -> variance.apply(baseline))                                      // Apply to get the candidate version
+                .filter(candidate -> candidate.compareTo(versionConstraint) < 0)                // The candidate version must still be constrained!
+                .findFirst()
+                .map(candidate -> candidate + SNAPSHOT_QUALIFIER)
+                .orElseThrow(() -> new IllegalArgumentException("Version constraint effectively freezes the version."));
+    }
+
+    /**
+     * Returns the target versions of the modules.
+     *
+     * @return the target versions of the modules by their POMs
+     */
+    public Map<Path, String> versions() {
+        return versions;
+    }
+
+    /**
+     * Returns the POMs that the update changes.
+     *
+     * @return the POMs that the update changes
+     */
+    public List<Path> changes() {
+        return Collections.unmodifiableList(new ArrayList<>(changes.keySet()));
+    }
+
+    /**
+     * Writes all changes.
+     *
+     * <p>
+     * The changed POMs are written to temporary files in parallel and then
+     * moved over the original files. If anything fails, the original files
+     * remain or are restored. The write locks of the changed POMs are held
+     * meanwhile and the update fails if any of the POMs changed since the
+     * update was prepared.
+     *
+     * @throws IOException
+     *             if the update failed
+     */
+    public void commit() throws IOException {
+        final PathLocks.Hold hold = PathLocks.writing(changes.keySet());
+
+        try {
+            for (Map.Entry<Path, PomEditor> change : changes.entrySet()) {
+                final Path pom = change.getKey();
+                if (!Arrays.equals(Files.readAllBytes(pom), change.getValue().original())) {
+                    throw new IOException(String.format("Could not update %s: the file changed meanwhile.", pom));
+                }
+            }
+
+            write();
+        } finally {
+            hold.close();
+        }
+    }
+
+    /**
+     * Writes all changes while holding the locks.
+     *
+     * @throws IOException
+     *             if the update failed
+     */
+    private void write() throws IOException {
+        final List<Path> poms = new ArrayList<>(changes.keySet());
+        final Path[] staged = new Path[poms.size()];
+
+        try {
+            // Stage all changes
+            final List<Future<Path>> tasks = new ArrayList<>(poms.size());
+            poms.forEach(pom -> tasks.add(pool.submit(() -> stage(pom, changes.get(pom)))));
+
+            IOException failure = null;
+            for (int i = 0; i < staged.length; i++) {
+                try {
+                    staged[i] = await(tasks.get(i));
+                } catch (IOException e) {
+                    final IOException t = new IOException(String.format("Could not stage %s: %s", poms.get(i), e.getMessage()), e);
+                    if (failure == null) {
+                        failure = t;
+                    } else {
+                        failure.addSuppressed(t);
+                    }
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+
+            // Commit all changes
+            for (int i = 0; i < staged.length; i++) {
+                try {
+                    move(staged[i], poms.get(i));
+                } catch (IOException e) {
+                    final IOException t = new IOException(String.format("Could not update %s: %s", poms.get(i), e.getMessage()), e);
+                    rollback(poms.subList(0, i), t);
+                    throw t;
+                }
+            }
+        } finally {
+            for (Path path : staged) {
+                if (path != null) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores the original content of the already updated POMs.
+     *
+     * @param poms
+     *            the POMs to restore. It must not be {@code null}.
+     * @param failure
+     *            the failure to attach the problems of restoring to. It must
+     *            not be {@code null}.
+     */
+    private void rollback(List<Path> poms, IOException failure) {
+        for (Path pom : poms) {
+            try {
+                final Path temporary = Files.write(temporary(pom), changes.get(pom).original());
+
+                try {
+                    move(temporary, pom);
+                } finally {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException e) {
+                failure.addSuppressed(new IOException(String.format("Could not restore %s.", pom), e));
+            }
+        }
+    }
+
+    /**
+     * Writes a changed POM to a temporary file next to it.
+     *
+     * @param pom
+     *            the POM. It must not be {@code null}.
+     * @param editor
+     *            the editor of the POM. It must not be {@code null}.
+     *
+     * @return the temporary file
+     *
+     * @throws IOException
+     *             if the file could not be written
+     */
+    private static Path stage(Path pom, PomEditor editor) throws IOException {
+        final Path result = temporary(pom);
+
+        try {
+            editor.store(result);
+            return result;
+        } catch (IOException e) {
+            Files.deleteIfExists(result);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a temporary file next to the given file.
+     *
+     * @param path
+     *            the file. It must not be {@code null}.
+     *
+     * @return the temporary file
+     *
+     * @throws IOException
+     *             if the file could not be created
+     */
+    private static Path temporary(Path path) throws IOException {
+        return Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+    }
+
+    /**
+     * Moves a file over another one, atomically if supported.
+     *
+     * @param source
+     *            the file to move. It must not be {@code null}.
+     * @param target
+     *            the file to replace. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the file could not be moved
+     */
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Waits for the result of a task.
+     *
+     * @param <T>
+     *            the type of the result
+     * @param task
+     *            the task. It must not be {@code null}.
+     *
+     * @return the result
+     *
+     * @throws IOException
+     *             if the task failed or the waiting was interrupted
+     */
+    private static <T> T await(Future<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Updates a reference to a module if it refers to the current version of
+     * the module.
+     *
+     * @param editor
+     *            the editor with the reference. It must not be {@code null}.
+     * @param reference
+     *            the reference to update. It must not be {@code null}.
+     * @param targets
+     *            the current and the target versions of the modules. It must
+     *            not be {@code null}.
+     */
+    private static void update(PomEditor editor, PomEditor.Reference reference, Map<String, String[]> targets) {
+        final String target = target(reference, targets);
+        if ((target != null) && reference.editable()) {
+            editor.version(reference, target);
+        }
+    }
+
+    /**
+     * Returns the target version of the module that a reference refers to if
+     * the reference refers to the current version of the module.
+     *
+     * @param reference
+     *            the reference. It must not be {@code null}.
+     * @param targets
+     *            the current and the target versions of the modules. It must
+     *            not be {@code null}.
+     *
+     * @return the target version, or {@code null} if the reference does not
+     *         refer to the current version of a module
+     */
+    private static String target(PomEditor.Reference reference, Map<String, String[]> targets) {
+        final String coordinates = coordinates(reference.groupId(), reference.artifactId());
+        final String[] target = (coordinates != null) ? targets.get(coordinates) : null;
+        return ((target != null) && reference.version().equals(Optional.ofNullable(target[0]))) ? target[1] : null;
+    }
+
+    /**
+     * Makes the coordinates of an artifact.
+     *
+     * @param groupId
+     *            the group identifier. It must not be {@code null}.
+     * @param artifactId
+     *            the artifact identifier. It must not be {@code null}.
+     *
+     * @return the coordinates, or {@code null} if incomplete
+     */
+    private static String coordinates(Optional<String> groupId, Optional<String> artifactId) {
+        return (groupId.isPresent() && artifactId.isPresent()) ? groupId.get() + ':' + artifactId.get() : null;
+    }
+}
@@ -0,0 +1,556 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.pom;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import net.yetamine.pet4bnd.model.Persistable;
+
+/**
+ * An editor for the version element in a POM file designed to preserve the file
+ * content intact as much as possible.
+ *
+ * <p>
+ * The editor decodes and parses the input only until the end of the version
+ * element and it splices the new version into the original bytes, so that the
+ * rest of the file, which may be large, is just copied.
+ */
+public final class PomVersionEditor implements Persistable {
+
+    /** Buffer for reading the content. */
+    private static final int BUFFER_SIZE = 2048;
+
+    /** Name of the version element. */
+    static final String VERSION_ELEMENT = "version";
+    /** XML namespace of the version element to find. */
+    static final String VERSION_XMLNS = "http://maven.apache.org/POM/4.0.0";
+
+    /** Shared XML input processing factory; guarded by itself. */
+    private static final XMLInputFactory FACTORY = factory();
+
+    /** Original content. */
+    private final byte[] content;
+    /** Charset of the input. */
+    private final Charset charset;
+    /** Starting offset of the version in the content. */
+    private final int versionOffset;
+    /** Ending offset the version in the content. */
+    private final int versionEnding;
+    /** Version string to store. */
+    private String version;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param source
+     *            the source of the input. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the input could not be processed
+     */
+    public PomVersionEditor(Path source) throws IOException {
+        this(Files.readAllBytes(source));
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param source
+     *            the source of the input. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the input could not be processed
+     */
+    public PomVersionEditor(InputStream source) throws IOException {
+        this(readBytes(source));
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param source
+     *            the bytes of the input. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the input could not be processed
+     */
+    private PomVersionEditor(byte[] source) throws IOException {
+        content = source;
+
+        // Find out the input encoding to be precise in finding the offsets
+        final int bom = byteOrderMark(source);
+        charset = charset(source, bom);
+
+        // Find the position of the version information, decoding just the necessary part
+        final RecordingReader recording = new RecordingReader(newReader(source, bom, charset));
+
+        int offset = -1;
+        int ending = -1;
+
+        try (Reader reader = recording) {
+            final XMLStreamReader xml = createReader(reader);
+
+            try {
+                int nesting = -1;           // Nesting: let root have level of zero
+
+                while (xml.hasNext()) {
+                    final int type = xml.next();
+
+                    // Possibly found the start of the element
+                    if (type == XMLStreamConstants.START_ELEMENT) {
+                        if ((nesting++ != 0) || (0 <= offset)) {
+                            continue;
+                        }
+
+                        // Found the correct version element, mark its occurrence
+                        if (VERSION_ELEMENT.equals(xml.getLocalName()) && VERSION_XMLNS.equals(xml.getNamespaceURI())) {
+                            offset = xml.getLocation().getCharacterOffset();
+                        }
+
+                        continue;
+                    }
+
+                    // Possibly found the end of the element
+                    if (type == XMLStreamConstants.END_ELEMENT) {
+                        if ((--nesting == 0) && (0 <= offset)) {
+                            ending = xml.getLocation().getCharacterOffset();
+                            break; // Done here
+                        }
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw failure(e, charset);
+        }
+
+        if (offset == -1) {
+            throw new IOException("Could not locate the proper <version> element.");
+        }
+
+        assert (offset > 0);
+        assert (ending > offset);
+        final String prefix = recording.toString();
+        // The ending mark includes the whole ending element (and maybe more), we have to strip it off
+        final int characterEnding = versionEnding(prefix, ending);
+        if (characterEnding < 0) {
+            throw new IOException("Could not locate the end of the proper <version> element.");
+        }
+
+        assert (offset <= characterEnding);
+        assert (characterEnding <= ending);
+        // With namespaces, the offset is not right often, search for the end of the starting element
+        final int beginning = prefix.lastIndexOf('>', offset);
+        final int characterOffset = (0 <= beginning) ? beginning + 1 : 0;
+        version = prefix.substring(characterOffset, characterEnding);
+
+        // Translate the character offsets to the byte offsets
+        versionOffset = bom + encodedLength(charset, prefix, 0, characterOffset);
+        versionEnding = versionOffset + encodedLength(charset, prefix, characterOffset, characterEnding);
+    }
+
+    /**
+     * Finds the end tag of a version element.
+     *
+     * <p>
+     * The parser reports the location of an end tag after the tag, but it may
+     * read ahead, so that the location passes even the subsequent tags.
+     *
+     * @param text
+     *            the text to search. It must not be {@code null}.
+     * @param location
+     *            the location of the end tag as reported by the parser
+     *
+     * @return the offset of the end tag, or -1 if not found
+     */
+    static int versionEnding(String text, int location) {
+        for (int result = text.lastIndexOf("</", location); 0 <= result; result = text.lastIndexOf("</", result - 1)) {
+            int end = result + 2;
+            while ((end < text.length()) && (text.charAt(end) != '>') && !Character.isWhitespace(text.charAt(end))) {
+                ++end;
+            }
+
+            final String name = text.substring(result + 2, end);
+            if (VERSION_ELEMENT.equals(name.substring(name.indexOf(':') + 1))) {
+                return result;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Sets the version string to store.
+     *
+     * @param value
+     *            the version string. It must not be {@code null}.
+     *
+     * @return this instance
+     */
+    public PomVersionEditor version(String value) {
+        version = Objects.requireNonNull(value);
+        return this;
+    }
+
+    /**
+     * Gets the version string retrieved from the input.
+     *
+     * @return the version string
+     */
+    public String version() {
+        return version;
+    }
+
+    /**
+     * @see net.yetamine.pet4bnd.model.Persistable#persist(java.io.OutputStream)
+     */
+    public void persist(OutputStream sink) throws IOException {
+        sink.write(content, 0, versionOffset);
+        sink.write(version.getBytes(charset));
+        sink.write(content, versionEnding, content.length - versionEnding);
+        sink.flush();
+    }
+
+    /**
+     * Creates a reader of the given XML input using the shared factory.
+     *
+     * @param reader
+     *            the source of the input. It must not be {@code null}.
+     *
+     * @return the reader
+     *
+     * @throws XMLStreamException
+     *             if the reader could not be created
+     */
+    static XMLStreamReader createReader(Reader reader) throws XMLStreamException {
+        synchronized (FACTORY) {
+            return FACTORY.createXMLStreamReader(reader);
+        }
+    }
+
+    /**
+     * Makes the XML input processing factory.
+     *
+     * @return the factory
+     */
+    private static XMLInputFactory factory() {
+        final XMLInputFactory result = XMLInputFactory.newFactory();
+        result.setProperty(XMLInputFactory.IS_COALESCING, true);
+        result.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        result.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+        result.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        result.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        return result;
+    }
+
+    /**
+     * Returns the length of the byte order mark of the given XML file.
+     *
+     * @param bytes
+     *            the bytes of the XML file. It must not be {@code null}.
+     *
+     * @return the length of the byte order mark, zero if none
+     */
+    static int byteOrderMark(byte[] bytes) {
+        if (startsWith(bytes, 0xEF, 0xBB, 0xBF)) {
+            return 3;
+        }
+
+        return (startsWith(bytes, 0xFE, 0xFF) || startsWith(bytes, 0xFF, 0xFE)) ? 2 : 0;
+    }
+
+    /**
+     * Finds the encoding of the given XML file from its byte order mark or its
+     * declaration.
+     *
+     * @param bytes
+     *            the bytes of the XML file. It must not be {@code null}.
+     * @param bom
+     *            the length of the byte order mark
+     *
+     * @return the charset
+     *
+     * @throws IOException
+     *             if the declared encoding is not supported
+     */
+    static Charset charset(byte[] bytes, int bom) throws IOException {
+        // @formatter:off
+        if (bom == 3)                           return StandardCharsets.UTF_8;
+        if (startsWith(bytes, 0xFE, 0xFF))      return StandardCharsets.UTF_16BE;
+        if (startsWith(bytes, 0xFF, 0xFE))      return StandardCharsets.UTF_16LE;
+        if (startsWith(bytes, 0x00, '<'))       return StandardCharsets.UTF_16BE;
+        if (startsWith(bytes, '<', 0x00))       return StandardCharsets.UTF_16LE;
+        // @formatter:on
+
+        final String encoding = declaredEncoding(bytes);
+        if (encoding == null) {
+            return StandardCharsets.UTF_8;
+        }
+
+        try {
+            final Charset result = Charset.forName(encoding);
+            // Without a byte order mark, the big endian is the default
+            return StandardCharsets.UTF_16.equals(result) ? StandardCharsets.UTF_16BE : result;
+        } catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Unsupported encoding: %s", encoding), e);
+        }
+    }
+
+    /**
+     * Finds the encoding declared by the XML declaration, which must use an
+     * ASCII-compatible encoding.
+     *
+     * @param bytes
+     *            the bytes of the XML file. It must not be {@code null}.
+     *
+     * @return the declared encoding, or {@code null} if none
+     */
+    private static String declaredEncoding(byte[] bytes) {
+        if (!startsWith(bytes, '<', '?', 'x', 'm', 'l')) {
+            return null;
+        }
+
+        int end = 5;
+        while ((end < bytes.length) && (bytes[end] != '>')) {
+            ++end;
+        }
+
+        final String declaration = new String(bytes, 0, end, StandardCharsets.ISO_8859_1);
+        final int attribute = declaration.indexOf("encoding");
+        if (attribute < 0) {
+            return null;
+        }
+
+        int start = declaration.indexOf('=', attribute) + 1;
+        while ((0 < start) && (start < declaration.length()) && Character.isWhitespace(declaration.charAt(start))) {
+            ++start;
+        }
+
+        if ((start <= 0) || (declaration.length() <= start)) {
+            return null;
+        }
+
+        final char quote = declaration.charAt(start);
+        final int stop = declaration.indexOf(quote, start + 1);
+        return ((quote == '"') || (quote == '\'')) && (0 < stop) ? declaration.substring(start + 1, stop) : null;
+    }
+
+    /**
+     * Tests if the given bytes start with the given prefix.
+     *
+     * @param bytes
+     *            the bytes to test. It must not be {@code null}.
+     * @param prefix
+     *            the prefix (as unsigned values). It must not be {@code null}.
+     *
+     * @return {@code true} if the bytes start with the prefix
+     */
+    private static boolean startsWith(byte[] bytes, int... prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Makes a reader decoding the given bytes strictly.
+     *
+     * <p>
+     * The offsets in the original bytes are computed from the decoded
+     * characters, which is possible only if the characters represent the bytes
+     * exactly; therefore malformed or unmappable input must not be replaced,
+     * but rather rejected.
+     *
+     * @param bytes
+     *            the bytes to decode. It must not be {@code null}.
+     * @param offset
+     *            the offset of the first byte to decode
+     * @param charset
+     *            the charset of the bytes. It must not be {@code null}.
+     *
+     * @return the reader
+     */
+    static Reader newReader(byte[] bytes, int offset, Charset charset) {
+        final CharsetDecoder decoder = charset.newDecoder();
+        decoder.onMalformedInput(CodingErrorAction.REPORT);
+        decoder.onUnmappableCharacter(CodingErrorAction.REPORT);
+        return new InputStreamReader(new ByteArrayInputStream(bytes, offset, bytes.length - offset), decoder);
+    }
+
+    /**
+     * Translates a failure of parsing the input.
+     *
+     * @param e
+     *            the failure. It must not be {@code null}.
+     * @param charset
+     *            the charset of the input. It must not be {@code null}.
+     *
+     * @return the exception to throw
+     */
+    static IOException failure(XMLStreamException e, Charset charset) {
+        Throwable cause = e;
+        while (cause != null) {
+            if (cause instanceof CharacterCodingException) {
+                return new IOException(String.format("Malformed input for the encoding %s.", charset.name()), cause);
+            }
+
+            // The parser may report the failure of its input as a nested exception only
+            final Throwable nested = (cause instanceof XMLStreamException) ? ((XMLStreamException) cause).getNestedException() : null;
+            cause = (nested != null) ? nested : cause.getCause();
+        }
+
+        return new IOException(e);
+    }
+
+    /**
+     * Returns the length of the encoded form of the given characters.
+     *
+     * @param charset
+     *            the charset to use. It must not be {@code null}.
+     * @param chars
+     *            the characters. It must not be {@code null}.
+     * @param start
+     *            the starting index
+     * @param end
+     *            the ending index
+     *
+     * @return the length of the encoded form
+     *
+     * @throws CharacterCodingException
+     *             if the characters could not be encoded exactly
+     */
+    static int encodedLength(Charset charset, String chars, int start, int end) throws CharacterCodingException {
+        final CharsetEncoder encoder = charset.newEncoder();
+        encoder.onMalformedInput(CodingErrorAction.REPORT);
+        encoder.onUnmappableCharacter(CodingErrorAction.REPORT);
+        return encoder.encode(CharBuffer.wrap(chars, start, end)).remaining();
+    }
+
+    /**
+     * Reads the bytes of an input into an array.
+     *
+     * @param source
+     *            the source stream. It must not be {@code null}.
+     *
+     * @return the byte array with the input content
+     *
+     * @throws IOException
+     *             if the source could not be read
+     */
+    static byte[] readBytes(InputStream source) throws IOException {
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            for (int read; ((read = source.read(buffer, 0, buffer.length)) != -1);) {
+                os.write(buffer, 0, read);
+            }
+
+            return os.toByteArray();
+        }
+    }
+
+    /**
+     * A reader that records the characters read from the underlying reader,
+     * so that the characters, which the parser has consumed, are available for
+     * finding the exact offsets.
+     */
+    static final class RecordingReader extends Reader {
+
+        /** Underlying reader. */
+        private final Reader source;
+        /** Recorded characters. */
+        private char[] buffer = new char[BUFFER_SIZE];
+        /** Number of the recorded characters. */
+        private int length;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param reader
+         *            the underlying reader. It must not be {@code null}.
+         */
+        public RecordingReader(Reader reader) {
+            source = Objects.requireNonNull(reader);
+        }
+
+        /**
+         * @see java.io.Reader#read(char[], int, int)
+         */
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            final int result = source.read(cbuf, off, len);
+
+            if (0 < result) {
+                if (buffer.length - length < result) {
+                    buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + result));
+                }
+
+                System.arraycopy(cbuf, off, buffer, length, result);
+                length += result;
+            }
+
+            return result;
+        }
+
+        /**
+         * @see java.io.Reader#close()
+         */
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+
+        /**
+         * Returns the recorded characters.
+         *
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return new String(buffer, 0, length);
+        }
+    }
+}
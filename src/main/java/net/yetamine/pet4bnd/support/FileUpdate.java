@@ -0,0 +1,351 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.support;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+
+/**
+ * Updates files only when their content changes.
+ *
+ * <p>
+ * Keeping the files with the same content untouched preserves their
+ * modification time, so that the tools which process the files need not do
+ * anything again.
+ */
+public final class FileUpdate {
+
+    /** Size of the buffer for reading the files. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Prevents creating instances of this class.
+     */
+    private FileUpdate() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Writes the content to the file unless the file contains the same content
+     * already.
+     *
+     * <p>
+     * The content is streamed and compared with the file on the fly, so that
+     * neither the content, nor the file need to be loaded in the memory. The
+     * file is not touched as long as the content matches it; when the content
+     * differs, the matching part of the file and the rest of the content are
+     * written to a temporary file, which replaces the file at last, so that
+     * the readers of the file never see it written partially. If writing the
+     * content fails, the file remains untouched.
+     *
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     * @param content
+     *            the content of the file. It must not be {@code null}.
+     *
+     * @return {@code true} if the file was written, {@code false} if the file
+     *         was up to date
+     *
+     * @throws IOException
+     *             if the file could not be read or written
+     */
+    public static boolean update(Path path, Content content) throws IOException {
+        Objects.requireNonNull(content);
+
+        final UpdatingStream sink = new UpdatingStream(path);
+        try {
+            content.writeTo(sink);
+            sink.close(); // Unless closed already by the content
+        } finally {
+            sink.release();
+        }
+
+        return sink.written();
+    }
+
+    /**
+     * Provides the content of a file.
+     */
+    @FunctionalInterface
+    public interface Content {
+
+        /**
+         * Writes the content to the given sink.
+         *
+         * @param sink
+         *            the sink to write to. It must not be {@code null}.
+         *
+         * @throws IOException
+         *             if the content could not be written
+         */
+        void writeTo(OutputStream sink) throws IOException;
+    }
+
+    /**
+     * A stream comparing the data with the file and writing a replacement of
+     * the file when the data differ.
+     */
+    private static final class UpdatingStream extends OutputStream {
+
+        /** Path to the file. */
+        private final Path path;
+        /** Buffer for reading the file. */
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        /** Index of the next byte in the buffer. */
+        private int index;
+        /** Number of the bytes in the buffer. */
+        private int limit;
+        /** Source of the file content while the data match it. */
+        private InputStream source;
+        /** Replacement of the file when the data differ. */
+        private Path temporary;
+        /** Target stream for the replacement. */
+        private OutputStream target;
+        /** Number of the bytes written so far. */
+        private long position;
+        /** Flag indicating that the stream was closed. */
+        private boolean closed;
+        /** Flag indicating that the file was written. */
+        private boolean written;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param file
+         *            the path to the file. It must not be {@code null}.
+         *
+         * @throws IOException
+         *             if the file could not be opened
+         */
+        public UpdatingStream(Path file) throws IOException {
+            path = Objects.requireNonNull(file);
+            source = Files.isRegularFile(path) ? Files.newInputStream(path) : null;
+        }
+
+        /**
+         * Indicates whether the file was written.
+         *
+         * @return {@code true} if the file was written
+         */
+        public boolean written() {
+            return written;
+        }
+
+        /**
+         * @see java.io.OutputStream#write(int)
+         */
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        /**
+         * @see java.io.OutputStream#write(byte[], int, int)
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.requireNonNull(b);
+            if ((off < 0) || (len < 0) || (b.length - off < len)) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            if (closed) {
+                throw new IOException("Stream closed.");
+            }
+
+            int offset = off;
+            int length = len;
+
+            if (target == null) {
+                final int same = compare(b, offset, length);
+                position += same;
+
+                if (same == length) {
+                    return;
+                }
+
+                diverge();
+                offset += same;
+                length -= same;
+            }
+
+            target.write(b, offset, length);
+            position += length;
+        }
+
+        /**
+         * @see java.io.OutputStream#close()
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            try {
+                // The file must not be longer than the data (or must exist at all)
+                if ((target == null) && ((source == null) || (index < limit) || (source.read() != -1))) {
+                    diverge();
+                }
+
+                if (target != null) {
+                    target.close();
+                    target = null;
+                    move(temporary, path);
+                    written = true;
+                }
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * Releases all resources without finishing the update, discarding the
+         * replacement of the file unless moved over the file already.
+         *
+         * @throws IOException
+         *             if releasing failed
+         */
+        public void release() throws IOException {
+            closed = true;
+
+            try {
+                if (source != null) {
+                    source.close();
+                    source = null;
+                }
+            } finally {
+                try {
+                    if (target != null) {
+                        target.close();
+                        target = null;
+                    }
+                } finally {
+                    if (temporary != null) {
+                        Files.deleteIfExists(temporary);
+                        temporary = null;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Compares the data with the following content of the file.
+         *
+         * @param b
+         *            the data. It must not be {@code null}.
+         * @param off
+         *            the offset of the data
+         * @param len
+         *            the length of the data
+         *
+         * @return the number of the leading bytes of the data matching the file
+         *
+         * @throws IOException
+         *             if the file could not be read
+         */
+        private int compare(byte[] b, int off, int len) throws IOException {
+            if (source == null) {
+                return 0;
+            }
+
+            int count = 0;
+            while (count < len) {
+                if (index == limit) {
+                    index = 0;
+                    limit = Math.max(source.read(buffer), 0);
+                    if (limit == 0) { // End of the file
+                        return count;
+                    }
+                }
+
+                final int available = Math.min(limit - index, len - count);
+                for (int i = 0; i < available; i++) {
+                    if (buffer[index + i] != b[off + count + i]) {
+                        index += i;
+                        return count + i;
+                    }
+                }
+
+                index += available;
+                count += available;
+            }
+
+            return count;
+        }
+
+        /**
+         * Starts writing the replacement of the file, beginning with the content
+         * of the file that matches the data.
+         *
+         * @throws IOException
+         *             if the replacement could not be written
+         */
+        private void diverge() throws IOException {
+            if (source != null) {
+                source.close();
+                source = null;
+            }
+
+            final Path file = path.toAbsolutePath();
+            temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            target = new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE);
+
+            if (position > 0) { // Copy the matching content
+                try (InputStream input = Files.newInputStream(path)) {
+                    long remaining = position;
+                    while (remaining > 0) {
+                        final int count = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                        if (count < 0) {
+                            throw new IOException(String.format("Could not update %s: the file changed meanwhile.", path));
+                        }
+
+                        target.write(buffer, 0, count);
+                        remaining -= count;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Moves a file over another file, atomically if possible.
+         *
+         * @param file
+         *            the file to move. It must not be {@code null}.
+         * @param replaced
+         *            the file to replace. It must not be {@code null}.
+         *
+         * @throws IOException
+         *             if the file could not be moved
+         */
+        private static void move(Path file, Path replaced) throws IOException {
+            try {
+                Files.move(file, replaced, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(file, replaced, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.support;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Provides the locks for the files that concurrent tasks read and write.
+ *
+ * <p>
+ * Parallel builds execute the goals of different modules concurrently in the
+ * same JVM and the modules may share the files, e.g., a definition file; the
+ * standalone version may process concurrent requests or batch items, which
+ * may share the files as well. The tasks therefore read a file with the read
+ * lock of the file and write it with the write lock of the file, so that nobody
+ * reads a half-written file and the writes do not interleave.
+ *
+ * <p>
+ * The lock of a file exists only while somebody holds it or waits for it, so
+ * that a long-running process, like the daemon, does not accumulate the locks
+ * of all files it has ever touched.
+ */
+public final class PathLocks {
+
+    /** Locks of the files by their normalized absolute paths. */
+    private static final ConcurrentMap<Path, Entry> LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * Prevents creating instances of this class.
+     */
+    private PathLocks() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Acquires the read lock of the given file.
+     *
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     *
+     * @return the hold of the lock, which releases it when closed
+     *
+     * @see #locking(Collection, Collection)
+     */
+    public static Hold reading(Path path) {
+        return locking(Collections.singleton(path), Collections.emptySet());
+    }
+
+    /**
+     * Acquires the write lock of the given file.
+     *
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     *
+     * @return the hold of the lock, which releases it when closed
+     *
+     * @see #locking(Collection, Collection)
+     */
+    public static Hold writing(Path path) {
+        return locking(Collections.emptySet(), Collections.singleton(path));
+    }
+
+    /**
+     * Acquires the write locks of all given files.
+     *
+     * @param paths
+     *            the paths to the files. It must not be {@code null}.
+     *
+     * @return the hold of the locks, which releases them when closed
+     *
+     * @see #locking(Collection, Collection)
+     */
+    public static Hold writing(Collection<? extends Path> paths) {
+        return locking(Collections.emptySet(), paths);
+    }
+
+    /**
+     * Acquires the read locks of the files to read and the write locks of the
+     * files to write; a file to both read and write gets just the write lock.
+     *
+     * <p>
+     * The locks are acquired in the order of the normalized absolute paths, so
+     * that the tasks locking overlapping sets of files can't deadlock.
+     *
+     * @param reading
+     *            the paths to the files to read. It must not be {@code null}.
+     * @param writing
+     *            the paths to the files to write. It must not be {@code null}.
+     *
+     * @return the hold of the locks, which releases them when closed for the
+     *         first time
+     */
+    public static Hold locking(Collection<? extends Path> reading, Collection<? extends Path> writing) {
+        final Set<Path> exclusive = writing.stream().map(PathLocks::key).collect(Collectors.toSet());
+        final SortedSet<Path> paths = new TreeSet<>(exclusive);
+        reading.forEach(path -> paths.add(key(path)));
+        final List<Path> keys = new ArrayList<>(paths.size());
+        final List<Lock> locks = new ArrayList<>(paths.size());
+
+        try {
+            for (Path path : paths) {
+                final ReadWriteLock lock = acquire(path);
+                keys.add(path);
+
+                final Lock acquired = exclusive.contains(path) ? lock.writeLock() : lock.readLock();
+                acquired.lock();
+                locks.add(acquired);
+            }
+        } catch (RuntimeException | Error e) {
+            release(keys, locks);
+            throw e;
+        }
+
+        final AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                release(keys, locks);
+            }
+        };
+    }
+
+    /**
+     * Returns the number of the files with a lock that somebody holds or waits
+     * for.
+     *
+     * @return the number of the files
+     */
+    static int size() {
+        return LOCKS.size();
+    }
+
+    /**
+     * Returns the key of a file.
+     *
+     * @param path
+     *            the path to the file. It must not be {@code null}.
+     *
+     * @return the key of the file
+     */
+    private static Path key(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Registers a user of the lock of a file.
+     *
+     * @param key
+     *            the key of the file. It must not be {@code null}.
+     *
+     * @return the lock of the file
+     */
+    private static ReadWriteLock acquire(Path key) {
+        return LOCKS.compute(key, (k, entry) -> {
+            final Entry result = (entry != null) ? entry : new Entry();
+            ++result.users;
+            return result;
+        }).lock;
+    }
+
+    /**
+     * Releases the given locks in the reverse order and unregisters the users
+     * of the locks, so that unused locks are removed.
+     *
+     * @param keys
+     *            the keys of the files with the registered users. It must not
+     *            be {@code null}.
+     * @param locks
+     *            the acquired locks, which may miss the last lock of the keys
+     *            when acquiring it failed. It must not be {@code null}.
+     */
+    private static void release(List<Path> keys, List<Lock> locks) {
+        for (int i = keys.size(); i-- > 0;) {
+            if (i < locks.size()) {
+                locks.get(i).unlock();
+            }
+
+            LOCKS.computeIfPresent(keys.get(i), (k, entry) -> (--entry.users > 0) ? entry : null);
+        }
+    }
+
+    /**
+     * An entry of the locks.
+     */
+    private static final class Entry {
+
+        /** Lock of the file. */
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        /** Number of the users holding or waiting for the lock. */
+        int users;
+
+        /**
+         * Creates a new instance.
+         */
+        public Entry() {
+            // Default constructor
+        }
+    }
+
+    /**
+     * Represents held locks.
+     */
+    @FunctionalInterface
+    public interface Hold extends AutoCloseable {
+
+        /**
+         * Releases the locks.
+         *
+         * @see java.lang.AutoCloseable#close()
+         */
+        void close();
+    }
+}
@@ -18,25 +18,37 @@ package net.yetamine.pet4bnd.version;
 
 import java.io.Serializable;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Represents a version.
+ *
+ * <p>
+ * Instances are immutable and the factory methods, {@link #of(int, int, int)}
+ * and {@link #of(int, int, int, String)}, share them through a small table of
+ * canonical instances, since typically many exports share just a few distinct
+ * versions. The version numbers of most versions fit in a single packed key,
+ * so that comparing such versions needs just a primitive comparison.
  */
 public final class Version implements Serializable, Comparable<Version> {
 
     /** Serializable version: 1 */
     private static final long serialVersionUID = 1L;
 
-    /** Representation of version <i>0.0.0</i>. */
-    public static final Version ZERO = new Version(0, 0, 0);
+    /** Number of bits for a version number in a packed key. */
+    private static final int PACKED_BITS = 21;
+    /** Greatest version number that fits in a packed key. */
+    private static final int PACKED_LIMIT = (1 << PACKED_BITS) - 1;
+    /** Packed key of a version with a number not fitting in it. */
+    private static final long UNPACKED = -1L;
+
+    /** Size of the table of the canonical instances, a power of two. */
+    private static final int CANONICAL_SIZE = 1 << 12;
+    /** Table of the canonical instances. */
+    private static final AtomicReferenceArray<Version> CANONICAL = new AtomicReferenceArray<>(CANONICAL_SIZE);
 
-    // @formatter:off
-    /** Pattern for parsing a version string. */
-    private static final Pattern PATTERN
-    = Pattern.compile("(?<major>\\d+)(\\.(?<minor>\\d+))?(\\.(?<micro>\\d+))?(\\.(?<qualifier>\\S+))?");
-    // @formatter:on
+    /** Representation of version <i>0.0.0</i>. */
+    public static final Version ZERO = of(0, 0, 0);
 
     /** Major version number. */
     private final int major;
@@ -47,9 +59,19 @@ public final class Version implements Serializable, Comparable<Version> {
     /** Optional qualifier. */
     private final String qualifier;
 
+    /** Packed version numbers, or {@link #UNPACKED}. */
+    private final transient long packed;
+    /** Hash code. */
+    private final transient int hash;
+    /** Cached string representation. */
+    private transient String string;
+
     /**
      * Creates a new instance.
      *
+     * <p>
+     * Prefer the factory methods, which share the instances.
+     *
      * @param maj
      *            the major version number. It must not be negative.
      * @param min
@@ -65,17 +87,9 @@ public final class Version implements Serializable, Comparable<Version> {
         minor = check(min, "Minor version must not negative.");
         micro = check(mic, "Micro version must not negative.");
 
-        if (qual != null) {
-            if (qual.isEmpty()) {
-                throw new IllegalArgumentException("Qualifier may be missing, but not empty.");
-            }
-
-            if (qual.chars().anyMatch(Character::isWhitespace)) {
-                throw new IllegalArgumentException("Qualifier may not contain whitespace characters.");
-            }
-        }
-
-        qualifier = qual;
+        qualifier = check(qual);
+        packed = pack(maj, min, mic);
+        hash = hash(maj, min, mic, qual);
     }
 
     /**
@@ -92,18 +106,74 @@ public final class Version implements Serializable, Comparable<Version> {
         this(maj, min, mic, null);
     }
 
+    /**
+     * Returns an instance with the given values.
+     *
+     * <p>
+     * This method returns a canonical instance if available, which makes it
+     * cheaper than the constructor, both for the time and memory. However, it
+     * does not guarantee that equal instances are identical.
+     *
+     * @param maj
+     *            the major version number. It must not be negative.
+     * @param min
+     *            the minor version number. It must not be negative.
+     * @param mic
+     *            the micro version number. It must not be negative.
+     * @param qual
+     *            the qualifier. It may be {@code null} (when missing), but not
+     *            empty if present.
+     *
+     * @return the version
+     */
+    public static Version of(int maj, int min, int mic, String qual) {
+        // The table is bounded: a colliding instance just replaces the former one
+        final int index = hash(maj, min, mic, qual) & (CANONICAL_SIZE - 1);
+        final Version cached = CANONICAL.get(index);
+        if ((cached != null) && cached.matches(maj, min, mic, qual)) {
+            return cached;
+        }
+
+        final Version result = new Version(maj, min, mic, qual);
+        CANONICAL.lazySet(index, result);
+        return result;
+    }
+
+    /**
+     * Returns an instance with the given values.
+     *
+     * @param maj
+     *            the major version number. It must not be negative.
+     * @param min
+     *            the minor version number. It must not be negative.
+     * @param mic
+     *            the micro version number. It must not be negative.
+     *
+     * @return the version
+     */
+    public static Version of(int maj, int min, int mic) {
+        return of(maj, min, mic, null);
+    }
+
     /**
      * @see java.lang.Object#toString()
      */
     @Override
     public String toString() {
-        final StringBuilder result = new StringBuilder();
-        result.append(major).append('.').append(minor).append('.').append(micro);
-        if (qualifier != null) { // Qualifier present
-            result.append('.').append(qualifier);
+        String result = string;
+
+        if (result == null) { // Racy, but an immutable string may be computed again safely
+            final StringBuilder builder = new StringBuilder();
+            builder.append(major).append('.').append(minor).append('.').append(micro);
+            if (qualifier != null) { // Qualifier present
+                builder.append('.').append(qualifier);
+            }
+
+            result = builder.toString();
+            string = result;
         }
 
-        return result.toString();
+        return result;
     }
 
     /**
@@ -117,7 +187,7 @@ public final class Version implements Serializable, Comparable<Version> {
 
         if (obj instanceof Version) {
             final Version o = (Version) obj;
-            return (major == o.major) && (minor == o.minor) && (micro == o.micro)
+            return (hash == o.hash) && (packed == o.packed) && ((packed != UNPACKED) || numbersEqual(o))
                     && Objects.equals(qualifier, o.qualifier);
         }
 
@@ -129,7 +199,7 @@ public final class Version implements Serializable, Comparable<Version> {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(major, minor, micro, qualifier);
+        return hash;
     }
 
     /**
@@ -141,17 +211,7 @@ public final class Version implements Serializable, Comparable<Version> {
      * @see java.lang.Comparable#compareTo(java.lang.Object)
      */
     public int compareTo(Version o) {
-        int result = Integer.compare(major, o.major);
-        if (result != 0) {
-            return result;
-        }
-
-        result = Integer.compare(minor, o.minor);
-        if (result != 0) {
-            return result;
-        }
-
-        result = Integer.compare(micro, o.micro);
+        final int result = ((packed | o.packed) < 0) ? compareNumbers(o) : Long.compare(packed, o.packed);
         if (result != 0) {
             return result;
         }
@@ -167,19 +227,101 @@ public final class Version implements Serializable, Comparable<Version> {
     /**
      * Parses the version.
      *
+     * <p>
+     * The accepted syntax is {@code major(.minor)?(.micro)?(.qualifier)?}, where
+     * the version numbers consist of decimal digits and the qualifier may take
+     * any characters except for whitespace. When a part could be both a version
+     * number and a qualifier (e.g., in {@code 1.2.}), the version numbers take
+     * as much as possible while leaving a valid qualifier.
+     *
      * @param value
      *            the value to parse. It must not be {@code null}.
      *
      * @return the version representation
      */
     public static Version valueOf(CharSequence value) {
-        final Matcher matcher = PATTERN.matcher(value);
+        final int length = value.length();
+
+        for (int i = 0; i < length; i++) { // The whitespace is never allowed
+            switch (value.charAt(i)) {
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\u000B':
+                case '\f':
+                case '\r':
+                    throw new IllegalArgumentException("Not a valid version: " + value);
+
+                default:
+                    continue;
+            }
+        }
 
-        if (matcher.matches()) {
-            return from(matcher);
+        final int majorEnd = skipDigits(value, 0);
+        if ((majorEnd == 0) || !isPartEnd(value, majorEnd)) {
+            throw new IllegalArgumentException("Not a valid version: " + value);
         }
 
-        throw new IllegalArgumentException("Not a valid version: " + value);
+        final int major = number(value, 0, majorEnd);
+        int minor = 0;
+        int micro = 0;
+        int next = majorEnd;
+
+        // The minor version is possible only with a valid continuation, then the micro version alike
+        final int minorEnd = skipDigits(value, next + 1);
+        if ((next < length) && (next + 1 < minorEnd) && isPartEnd(value, minorEnd)) {
+            minor = number(value, next + 1, minorEnd);
+            next = minorEnd;
+
+            final int microEnd = skipDigits(value, next + 1);
+            if ((next < length) && (next + 1 < microEnd) && isPartEnd(value, microEnd)) {
+                micro = number(value, next + 1, microEnd);
+                next = microEnd;
+            }
+        }
+
+        final String qualifier = (next < length) ? value.subSequence(next + 1, length).toString() : null;
+        return of(major, minor, micro, qualifier);
+    }
+
+    /**
+     * Returns the version for the given packed form.
+     *
+     * @param value
+     *            the packed form, as {@link #packed()} returns. It must not be
+     *            negative.
+     *
+     * @return the version
+     *
+     * @throws IllegalArgumentException
+     *             if the value is negative
+     */
+    public static Version unpack(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Packed version must not be negative.");
+        }
+
+        final int maj = (int) (value >>> (2 * PACKED_BITS));
+        final int min = (int) (value >>> PACKED_BITS) & PACKED_LIMIT;
+        final int mic = (int) value & PACKED_LIMIT;
+        return of(maj, min, mic);
+    }
+
+    /**
+     * Returns the packed form of this version.
+     *
+     * <p>
+     * The packed form is a non-negative number that preserves the ordering of
+     * the versions. Only a version without any qualifier and with the version
+     * numbers not exceeding 2097151 has a packed form, which covers practically
+     * all versions, so that the packed form can serve for storing versions in
+     * primitive arrays.
+     *
+     * @return the packed form, or a negative number if this version has no
+     *         packed form
+     */
+    public long packed() {
+        return (qualifier == null) ? packed : UNPACKED;
     }
 
     /**
@@ -227,7 +369,7 @@ public final class Version implements Serializable, Comparable<Version> {
      * @return the altered version
      */
     public Version major(int value) {
-        return new Version(value, minor, micro, qualifier);
+        return (value == major) ? this : of(value, minor, micro, qualifier);
     }
 
     /**
@@ -239,7 +381,7 @@ public final class Version implements Serializable, Comparable<Version> {
      * @return the altered version
      */
     public Version minor(int value) {
-        return new Version(major, value, micro, qualifier);
+        return (value == minor) ? this : of(major, value, micro, qualifier);
     }
 
     /**
@@ -251,7 +393,7 @@ public final class Version implements Serializable, Comparable<Version> {
      * @return the altered version
      */
     public Version micro(int value) {
-        return new Version(major, minor, value, qualifier);
+        return (value == micro) ? this : of(major, minor, value, qualifier);
     }
 
     /**
@@ -263,24 +405,108 @@ public final class Version implements Serializable, Comparable<Version> {
      * @return the altered version
      */
     public Version qualifier(String value) {
-        return new Version(major, minor, micro, value);
+        return Objects.equals(value, qualifier) ? this : of(major, minor, micro, value);
     }
 
     /**
-     * Constructs the version from a filled {@link Matcher} instance.
+     * Replaces a deserialized instance with a properly initialized one.
      *
-     * @param matcher
-     *            the matcher to use. It must not be {@code null}.
+     * @return the instance to use
+     */
+    private Object readResolve() {
+        return of(major, minor, micro, qualifier);
+    }
+
+    /**
+     * Tests if this instance has the given values.
      *
-     * @return the version representation
+     * @param maj
+     *            the major version number
+     * @param min
+     *            the minor version number
+     * @param mic
+     *            the micro version number
+     * @param qual
+     *            the qualifier
+     *
+     * @return {@code true} if this instance has the given values
+     */
+    private boolean matches(int maj, int min, int mic, String qual) {
+        return (major == maj) && (minor == min) && (micro == mic) && Objects.equals(qualifier, qual);
+    }
+
+    /**
+     * Tests if the version numbers of this instance and the other are equal.
+     *
+     * @param o
+     *            the other instance. It must not be {@code null}.
+     *
+     * @return {@code true} if the version numbers are equal
+     */
+    private boolean numbersEqual(Version o) {
+        return (major == o.major) && (minor == o.minor) && (micro == o.micro);
+    }
+
+    /**
+     * Compares the version numbers of this instance and the other.
+     *
+     * @param o
+     *            the other instance. It must not be {@code null}.
+     *
+     * @return the result of the comparison as {@link #compareTo(Version)}
+     *         defines
      */
-    private static Version from(Matcher matcher) {
-        final int major = Integer.parseInt(matcher.group("major"));
-        final String minor = matcher.group("minor");
-        final String micro = matcher.group("micro");
-        final String qualifier = matcher.group("qualifier");
+    private int compareNumbers(Version o) {
+        int result = Integer.compare(major, o.major);
+        if (result != 0) {
+            return result;
+        }
 
-        return new Version(major, number(minor), number(micro), qualifier);
+        result = Integer.compare(minor, o.minor);
+        if (result != 0) {
+            return result;
+        }
+
+        return Integer.compare(micro, o.micro);
+    }
+
+    /**
+     * Packs the version numbers in a key, which preserves their ordering.
+     *
+     * @param maj
+     *            the major version number
+     * @param min
+     *            the minor version number
+     * @param mic
+     *            the micro version number
+     *
+     * @return the packed key, or {@link #UNPACKED} if any number does not fit
+     */
+    private static long pack(int maj, int min, int mic) {
+        if ((maj <= PACKED_LIMIT) && (min <= PACKED_LIMIT) && (mic <= PACKED_LIMIT)) {
+            return ((long) maj << (2 * PACKED_BITS)) | ((long) min << PACKED_BITS) | mic;
+        }
+
+        return UNPACKED;
+    }
+
+    /**
+     * Computes the hash code of a version.
+     *
+     * @param maj
+     *            the major version number
+     * @param min
+     *            the minor version number
+     * @param mic
+     *            the micro version number
+     * @param qual
+     *            the qualifier
+     *
+     * @return the hash code
+     */
+    private static int hash(int maj, int min, int mic, String qual) {
+        // Equal to Objects.hash(maj, min, mic, qual), but without boxing
+        return (((31 + maj) * 31 + min) * 31 + mic) * 31 + Objects.hashCode(qual);
     }
 
     /**
@@ -304,15 +530,95 @@ public final class Version implements Serializable, Comparable<Version> {
         throw new IllegalArgumentException(message);
     }
 
+    /**
+     * Checks the qualifier.
+     *
+     * @param qualifier
+     *            the qualifier to check
+     *
+     * @return the qualifier
+     *
+     * @throws IllegalArgumentException
+     *             if the qualifier is empty or contains whitespace
+     */
+    private static String check(String qualifier) {
+        if (qualifier == null) {
+            return null;
+        }
+
+        if (qualifier.isEmpty()) {
+            throw new IllegalArgumentException("Qualifier may be missing, but not empty.");
+        }
+
+        for (int i = 0; i < qualifier.length(); i++) {
+            if (Character.isWhitespace(qualifier.charAt(i))) {
+                throw new IllegalArgumentException("Qualifier may not contain whitespace characters.");
+            }
+        }
+
+        return qualifier;
+    }
+
+    /**
+     * Skips decimal digits.
+     *
+     * @param value
+     *            the value to scan. It must not be {@code null}.
+     * @param start
+     *            the position to start at
+     *
+     * @return the position of the first non-digit character
+     */
+    private static int skipDigits(CharSequence value, int start) {
+        int result = start;
+        while ((result < value.length()) && ('0' <= value.charAt(result)) && (value.charAt(result) <= '9')) {
+            ++result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Tests if the given position may end a version number, i.e., it is the end
+     * of the value or a dot followed by another part.
+     *
+     * @param value
+     *            the value to test. It must not be {@code null}.
+     * @param index
+     *            the position to test
+     *
+     * @return {@code true} if the position may end a version number
+     */
+    private static boolean isPartEnd(CharSequence value, int index) {
+        final int length = value.length();
+        return (index == length) || ((value.charAt(index) == '.') && (index + 1 < length));
+    }
+
     /**
      * Converts a string representation of a version number.
      *
-     * @param version
-     *            the version to convert. If {@code null}, zero is returned.
+     * @param value
+     *            the value containing the digits. It must not be {@code null}.
+     * @param start
+     *            the starting index (inclusive) of the digits
+     * @param end
+     *            the ending index (exclusive) of the digits
      *
      * @return the version number
+     *
+     * @throws NumberFormatException
+     *             if the number is out of the range
      */
-    private static int number(String version) {
-        return (version != null) ? Integer.parseInt(version) : 0;
+    private static int number(CharSequence value, int start, int end) {
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            result = result * 10 + (value.charAt(i) - '0');
+
+            if (Integer.MAX_VALUE < result) {
+                throw new NumberFormatException("For input string: \"" + value.subSequence(start, end) + "\"");
+            }
+        }
+
+        return (int) result;
     }
 }
@@ -65,7 +65,7 @@ public enum VersionVariance implements UnaryOperator<Version> {
          */
         @Override
         public Version apply(Version version) {
-            return new Version(version.major(), version.minor() + 1, 0, version.qualifier());
+            return Version.of(version.major(), version.minor() + 1, 0, version.qualifier());
         }
     },
 
@@ -80,7 +80,7 @@ public enum VersionVariance implements UnaryOperator<Version> {
          */
         @Override
         public Version apply(Version version) {
-            return new Version(version.major() + 1, 0, 0, version.qualifier());
+            return Version.of(version.major() + 1, 0, 0, version.qualifier());
         }
     };
 
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.workspace;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import net.yetamine.pet4bnd.model.Bundle;
+
+/**
+ * Represents the outcome of parsing and resolving a single definition of a
+ * {@link Workspace}.
+ */
+public final class BundleResolution {
+
+    /** Source of the definition. */
+    private final Path source;
+    /** Resolved bundle if parsed successfully. */
+    private final Bundle bundle;
+    /** Errors for the definition. */
+    private final List<String> errors;
+    /** Warnings for the definition. */
+    private final List<String> warnings;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param definitionSource
+     *            the source of the definition. It must not be {@code null}.
+     * @param resolvedBundle
+     *            the resolved bundle, or {@code null} if parsing failed
+     * @param reportedErrors
+     *            the errors. It must not be {@code null}.
+     * @param reportedWarnings
+     *            the warnings. It must not be {@code null}.
+     */
+    BundleResolution(Path definitionSource, Bundle resolvedBundle, List<String> reportedErrors, List<String> reportedWarnings) {
+        errors = Collections.unmodifiableList(new ArrayList<>(reportedErrors));
+        warnings = Collections.unmodifiableList(new ArrayList<>(reportedWarnings));
+        source = Objects.requireNonNull(definitionSource);
+        bundle = resolvedBundle;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s[source=%s, valid=%s]", getClass().getSimpleName(), source, valid());
+    }
+
+    /**
+     * Returns the source of the definition.
+     *
+     * @return the source of the definition
+     */
+    public Path source() {
+        return source;
+    }
+
+    /**
+     * Returns the resolved bundle.
+     *
+     * <p>
+     * The bundle is available when the definition could be parsed, even when
+     * it violates any constraint, so that the violations can be examined.
+     *
+     * @return the resolved bundle, or an empty container if the definition
+     *         could not be read or parsed
+     */
+    public Optional<Bundle> bundle() {
+        return Optional.ofNullable(bundle);
+    }
+
+    /**
+     * Returns the errors of the definition, including the violations of the
+     * constraints.
+     *
+     * @return the errors of the definition
+     */
+    public List<String> errors() {
+        return errors;
+    }
+
+    /**
+     * Returns the warnings of the definition.
+     *
+     * @return the warnings of the definition
+     */
+    public List<String> warnings() {
+        return warnings;
+    }
+
+    /**
+     * Indicates whether the definition was resolved without any error.
+     *
+     * @return {@code true} if the definition was resolved without any error
+     */
+    public boolean valid() {
+        return (bundle != null) && errors.isEmpty();
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.workspace;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.LoggingResolver;
+import net.yetamine.pet4bnd.model.format.PetFormat;
+import net.yetamine.pet4bnd.model.format.PetParser;
+
+/**
+ * Represents a set of bundle definitions to resolve together.
+ *
+ * <p>
+ * A workspace parses and resolves its definitions in parallel on a fork-join
+ * pool, each definition as a separate task, so that a single process can
+ * handle many modules of a large project. The tasks for the largest definitions
+ * are submitted first, hence the largest definition does not start last, and
+ * since large definitions are parsed in the parallel mode on the same pool, the
+ * idle workers can help with them when the small definitions are done.
+ */
+public final class Workspace {
+
+    /** Default name of a definition file. */
+    public static final String DEFAULT_SOURCE_NAME = "exports.pet";
+
+    /** Sources of the definitions. */
+    private final List<Path> sources;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param definitionSources
+     *            the paths to the definition files. It must not be
+     *            {@code null}.
+     */
+    public Workspace(Collection<Path> definitionSources) {
+        final List<Path> paths = new ArrayList<>(definitionSources);
+        paths.forEach(Objects::requireNonNull);
+        sources = Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * Discovers all definition files with the default name under the given
+     * directory.
+     *
+     * @param root
+     *            the root directory to search. It must not be {@code null}.
+     *
+     * @return the workspace with the discovered definitions
+     *
+     * @throws IOException
+     *             if the directory could not be searched
+     */
+    public static Workspace discover(Path root) throws IOException {
+        return discover(root, DEFAULT_SOURCE_NAME);
+    }
+
+    /**
+     * Discovers all definition files with the given name under the given
+     * directory.
+     *
+     * <p>
+     * The search skips hidden directories (with the name starting with a dot),
+     * e.g., version control metadata. The discovered definitions are sorted by
+     * their paths, so that the result does not depend on the file system.
+     *
+     * @param root
+     *            the root directory to search. It must not be {@code null}.
+     * @param sourceName
+     *            the name of the definition files. It must not be {@code null}.
+     *
+     * @return the workspace with the discovered definitions
+     *
+     * @throws IOException
+     *             if the directory could not be searched
+     */
+    public static Workspace discover(Path root, String sourceName) throws IOException {
+        Objects.requireNonNull(sourceName);
+        final List<Path> result = new ArrayList<>();
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+            /**
+             * @see java.nio.file.SimpleFileVisitor#preVisitDirectory(java.lang.Object,
+             *      java.nio.file.attribute.BasicFileAttributes)
+             */
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                final Path name = dir.getFileName();
+                final boolean hidden = !dir.equals(root) && (name != null) && name.toString().startsWith(".");
+                return hidden ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            /**
+             * @see java.nio.file.SimpleFileVisitor#visitFile(java.lang.Object,
+             *      java.nio.file.attribute.BasicFileAttributes)
+             */
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                final Path name = file.getFileName();
+                if (attrs.isRegularFile() && (name != null) && sourceName.equals(name.toString())) {
+                    result.add(file);
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        Collections.sort(result);
+        return new Workspace(result);
+    }
+
+    /**
+     * Returns the sources of the definitions.
+     *
+     * @return the sources of the definitions
+     */
+    public List<Path> sources() {
+        return sources;
+    }
+
+    /**
+     * Parses and resolves all definitions on the common fork-join pool.
+     *
+     * @return the resolution of the workspace
+     */
+    public WorkspaceResolution resolve() {
+        return resolve(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses and resolves all definitions on the given pool.
+     *
+     * <p>
+     * A failure of a definition, including a failure to read it, does not
+     * affect the other definitions, but it is recorded in the resolution of
+     * the failing definition.
+     *
+     * @param pool
+     *            the pool to use. It must not be {@code null}.
+     *
+     * @return the resolution of the workspace
+     */
+    public WorkspaceResolution resolve(ForkJoinPool pool) {
+        Objects.requireNonNull(pool);
+
+        final int count = sources.size();
+        final long[] sizes = new long[count];
+        for (int i = 0; i < count; i++) {
+            sizes[i] = size(sources.get(i));
+        }
+
+        final List<ForkJoinTask<BundleResolution>> tasks = new ArrayList<>(Collections.nCopies(count, null));
+        // Submit the largest definitions first, the order of completion does not matter
+        IntStream.range(0, count).boxed().sorted(Comparator.comparingLong(i -> -sizes[i])).forEachOrdered(i -> {
+            final Path source = sources.get(i);
+            tasks.set(i, pool.submit(() -> resolve(source)));
+        });
+
+        final List<BundleResolution> result = new ArrayList<>(count);
+        tasks.forEach(task -> result.add(task.join()));
+        return new WorkspaceResolution(result);
+    }
+
+    /**
+     * Parses and resolves a definition.
+     *
+     * @param source
+     *            the source of the definition. It must not be {@code null}.
+     *
+     * @return the resolution of the definition
+     */
+    static BundleResolution resolve(Path source) {
+        final List<String> errors = new ArrayList<>();
+        final List<String> warnings = new ArrayList<>();
+
+        final Feedback feedback = new Feedback() {
+
+            /**
+             * @see net.yetamine.pet4bnd.feedback.Feedback#fail(java.lang.String,
+             *      java.lang.Throwable)
+             */
+            public void fail(String message, Throwable t) {
+                errors.add(Objects.requireNonNull(message));
+            }
+
+            /**
+             * @see net.yetamine.pet4bnd.feedback.Feedback#warn(java.lang.String,
+             *      java.lang.Throwable)
+             */
+            public void warn(String message, Throwable t) {
+                warnings.add(Objects.requireNonNull(message));
+            }
+
+            /**
+             * @see net.yetamine.pet4bnd.feedback.Feedback#info(java.lang.String)
+             */
+            public void info(String message) {
+                // Do nothing
+            }
+        };
+
+        final PetParser parser;
+        try {
+            parser = PetFormat.read(source, feedback);
+        } catch (IOException e) {
+            feedback.fail(String.format("Could not read the definition file: %s", e.getMessage()));
+            return new BundleResolution(source, null, errors, warnings);
+        }
+
+        final PetFormat bundle = parser.result().orElse(null);
+        if ((parser.errorCount() > 0) || (bundle == null)) {
+            return new BundleResolution(source, null, errors, warnings);
+        }
+
+        if (!new LoggingResolver(bundle, feedback::fail).resolve().test()) {
+            feedback.fail("One or more version constraints were violated.");
+        }
+
+        return new BundleResolution(source, bundle, errors, warnings);
+    }
+
+    /**
+     * Returns the size of a file for scheduling.
+     *
+     * @param source
+     *            the path to the file. It must not be {@code null}.
+     *
+     * @return the size of the file, or zero if not available
+     */
+    private static long size(Path source) {
+        try {
+            return Files.size(source);
+        } catch (IOException e) {
+            return 0; // The task reports the problem
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.workspace;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+
+/**
+ * Represents the outcome of parsing and resolving all definitions of a
+ * {@link Workspace}.
+ */
+public final class WorkspaceResolution {
+
+    /** Resolutions of the definitions. */
+    private final List<BundleResolution> bundles;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param resolutions
+     *            the resolutions of the definitions. It must not be
+     *            {@code null}.
+     */
+    WorkspaceResolution(List<BundleResolution> resolutions) {
+        bundles = Collections.unmodifiableList(resolutions);
+    }
+
+    /**
+     * Returns the resolutions of all definitions in the order of the sources
+     * of the workspace.
+     *
+     * @return the resolutions of all definitions
+     */
+    public List<BundleResolution> bundles() {
+        return bundles;
+    }
+
+    /**
+     * Returns the resolutions of the definitions that failed.
+     *
+     * @return the resolutions of the definitions that failed
+     */
+    public List<BundleResolution> failures() {
+        return bundles.stream().filter(bundle -> !bundle.valid()).collect(Collectors.toList());
+    }
+
+    /**
+     * Indicates whether all definitions were resolved without any error.
+     *
+     * @return {@code true} if all definitions were resolved without any error
+     */
+    public boolean valid() {
+        return bundles.stream().allMatch(BundleResolution::valid);
+    }
+
+    /**
+     * Reports the warnings and errors of all definitions, each prefixed with
+     * the source of the definition, and a summary.
+     *
+     * @param feedback
+     *            the feedback to use. It must not be {@code null}.
+     */
+    public void report(Feedback feedback) {
+        int failures = 0;
+
+        for (BundleResolution bundle : bundles) {
+            bundle.warnings().forEach(message -> feedback.warn(String.format("%s: %s", bundle.source(), message)));
+            bundle.errors().forEach(message -> feedback.fail(String.format("%s: %s", bundle.source(), message)));
+
+            if (!bundle.valid()) {
+                ++failures;
+            }
+        }
+
+        final String f = "Resolved %d definition(s), %d failed.";
+        feedback.info(String.format(f, bundles.size(), failures));
+    }
+}
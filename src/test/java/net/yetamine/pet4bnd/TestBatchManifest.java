@@ -0,0 +1,225 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.support.PathLocks;
+
+/**
+ * Tests {@link BatchManifest} and the batch mode of {@link Main}.
+ */
+public final class TestBatchManifest {
+
+    /** Temporary directory. */
+    private Path directory;
+
+    /**
+     * Creates the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pet4bnd-");
+    }
+
+    /**
+     * Removes the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Tests splitting a line into the arguments.
+     */
+    @Test
+    public void testTokenize() {
+        Assert.assertEquals(BatchManifest.tokenize("  -pet  a.pet\t-report "), Arrays.asList("-pet", "a.pet", "-report"));
+        Assert.assertEquals(BatchManifest.tokenize("-pet \"a b.pet\" \"\""), Arrays.asList("-pet", "a b.pet", ""));
+        Assert.assertEquals(BatchManifest.tokenize("\"a\\\"b\\\\c\\d\""), Collections.singletonList("a\"b\\c\\d"));
+        Assert.assertEquals(BatchManifest.tokenize("a\"b c\"d"), Collections.singletonList("ab cd"));
+        Assert.assertEquals(BatchManifest.tokenize(""), Collections.emptyList());
+
+        try {
+            BatchManifest.tokenize("-pet \"a.pet");
+            Assert.fail("Missing closing quote not detected.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(e.getMessage(), "Missing closing quote.");
+        }
+    }
+
+    /**
+     * Tests reading the items.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test
+    public void testItems() throws IOException {
+        final String content = String.join("\n",
+                // @formatter:off
+                "# Comment",
+                "-pet a.pet -report",
+                "",
+                "   # Indented comment",
+                "-pet b.pet -daemon d.properties",
+                "-pet",
+                "-bnd \"c.bnd"
+                // @formatter:on
+        );
+
+        final BatchManifest manifest = new BatchManifest(new BufferedReader(new StringReader(content)));
+
+        final BatchManifest.Item first = manifest.next();
+        Assert.assertEquals(first.line(), 2);
+        Assert.assertEquals(first.arguments(), Arrays.asList("-pet", "a.pet", "-report"));
+        Assert.assertFalse(first.error().isPresent());
+
+        final BatchManifest.Item second = manifest.next();
+        Assert.assertEquals(second.line(), 5);
+        Assert.assertEquals(second.error().get(), "Option '-daemon' can't be used in a batch item.");
+        Assert.assertTrue(second.arguments().isEmpty());
+
+        final BatchManifest.Item third = manifest.next();
+        Assert.assertEquals(third.line(), 6);
+        Assert.assertEquals(third.error().get(), "Missing argument for option '-pet'.");
+
+        final BatchManifest.Item fourth = manifest.next();
+        Assert.assertEquals(fourth.line(), 7);
+        Assert.assertEquals(fourth.error().get(), "Missing closing quote.");
+
+        Assert.assertNull(manifest.next());
+        Assert.assertNull(manifest.next());
+    }
+
+    /**
+     * Tests processing a batch.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testBatch() throws Exception {
+        final int items = 20;
+        final StringBuilder manifest = new StringBuilder();
+        for (int i = 0; i < items; i++) {
+            final String source = String.format("$bundle: %d.0.0%norg.example.p%d: 1.0.0 @ minor%n", i + 1, i);
+            Files.write(directory.resolve("m" + i + ".pet"), source.getBytes(StandardCharsets.UTF_8));
+            manifest.append(String.format("-pet \"%s\" -properties \"%s\"%n", resolve("m" + i + ".pet"), resolve("m" + i + ".properties")));
+        }
+
+        final Path batch = directory.resolve("batch.txt");
+        Files.write(batch, manifest.toString().getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(Main.main(Arrays.asList("-batch", batch.toString())), 0);
+
+        for (int i = 0; i < items; i++) {
+            final String content = new String(Files.readAllBytes(directory.resolve("m" + i + ".properties")), StandardCharsets.ISO_8859_1);
+            Assert.assertTrue(content.contains("org.example.p" + i), content);
+            Assert.assertTrue(content.contains("1.1.0"), content);
+        }
+
+        // Missing source and an invalid item make the worst exit code
+        manifest.append(String.format("-pet \"%s\"%n", resolve("missing.pet")));
+        manifest.append(String.format("-pet \"%s\" -unknown%n", resolve("m0.pet")));
+        Files.write(batch, manifest.toString().getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(Main.main(Arrays.asList("-batch", batch.toString())), 2);
+
+        Assert.assertEquals(Main.main(Arrays.asList("-batch", resolve("missing.txt"))), 2);
+        Assert.assertEquals(Main.main(Arrays.asList("-batch", batch.toString(), "-report")), 1);
+    }
+
+    /**
+     * Tests that the items sharing files wait for each other.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testLocking() throws Exception {
+        final Path source = directory.resolve("m.pet");
+        final Path target = directory.resolve("m.properties");
+        Files.write(source, "$bundle: 1.0.0\norg.example.p: 1.0.0 @ minor\n".getBytes(StandardCharsets.UTF_8));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // Reading the source along does not block
+            final PathLocks.Hold reading = PathLocks.locking(Collections.singleton(source), Collections.emptySet());
+            try {
+                final Future<Integer> item = executor.submit(() -> Main.main(Arrays.asList("-pet", source.toString(), "-properties", target.toString())));
+                Assert.assertEquals(item.get(10, TimeUnit.SECONDS).intValue(), 0);
+            } finally {
+                reading.close();
+            }
+
+            // Writing the target meanwhile blocks
+            Files.delete(target);
+            final Future<Integer> item;
+            final PathLocks.Hold writing = PathLocks.writing(Collections.singleton(target));
+            try {
+                item = executor.submit(() -> Main.main(Arrays.asList("-pet", source.toString(), "-properties", target.toString())));
+                Thread.sleep(200);
+                Assert.assertFalse(item.isDone());
+                Assert.assertFalse(Files.exists(target));
+            } finally {
+                writing.close();
+            }
+
+            Assert.assertEquals(item.get(10, TimeUnit.SECONDS).intValue(), 0);
+            Assert.assertTrue(Files.exists(target));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolves a file in the temporary directory.
+     *
+     * @param name
+     *            the name of the file. It must not be {@code null}.
+     *
+     * @return the path of the file
+     */
+    private String resolve(String name) {
+        return directory.resolve(name).toString();
+    }
+}
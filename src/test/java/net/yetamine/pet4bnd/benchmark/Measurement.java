@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.benchmark;
+
+import java.io.IOException;
+
+/**
+ * Measures operations in the benchmarks: each operation runs a number of
+ * warm-up rounds first and then a number of measured rounds, reporting the
+ * best and the average time of the measured rounds.
+ */
+final class Measurement {
+
+    /** Number of warm-up rounds. */
+    private final int warmupRounds;
+    /** Number of measured rounds. */
+    private final int measuredRounds;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param warmup
+     *            the number of warm-up rounds. It must not be negative.
+     * @param measured
+     *            the number of measured rounds. It must be positive.
+     */
+    public Measurement(int warmup, int measured) {
+        if ((warmup < 0) || (measured < 1)) {
+            throw new IllegalArgumentException();
+        }
+
+        warmupRounds = warmup;
+        measuredRounds = measured;
+    }
+
+    /**
+     * Measures an operation.
+     *
+     * @param name
+     *            the name of the operation. It must not be {@code null}.
+     * @param operation
+     *            the operation to measure. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the operation failed
+     */
+    public void measure(String name, Operation operation) throws IOException {
+        for (int i = 0; i < warmupRounds; i++) {
+            operation.run();
+        }
+
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < measuredRounds; i++) {
+            final long start = System.nanoTime();
+            operation.run();
+            final long time = System.nanoTime() - start;
+            best = Math.min(best, time);
+            total += time;
+        }
+
+        System.out.format("%s best: %.2f ms, average: %.2f ms%n", name, best / 1e6, total / 1e6 / measuredRounds);
+    }
+
+    /**
+     * An operation to measure.
+     */
+    @FunctionalInterface
+    interface Operation {
+
+        /**
+         * Runs the operation.
+         *
+         * @throws IOException
+         *             if the operation failed
+         */
+        void run() throws IOException;
+    }
+}
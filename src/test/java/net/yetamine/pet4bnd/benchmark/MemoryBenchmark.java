@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.Bundle;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.format.PetFormat;
+import net.yetamine.pet4bnd.model.support.CompactBundle;
+
+/**
+ * Measures the memory that a resolved definition retains per export.
+ *
+ * <p>
+ * This is not a test, but a standalone program to run manually (with the test
+ * classpath), e.g., {@code MemoryBenchmark 200000} for a definition with 200000
+ * package exports, which {@link ParsingBenchmark} generates. The measurement
+ * relies on {@link System#gc()}, so it is just an estimate. Both models share
+ * the names of the exports, which the benchmark measures separately.
+ */
+public final class MemoryBenchmark {
+
+    /** Number of rounds for collecting the garbage. */
+    private static final int GC_ROUNDS = 5;
+
+    /**
+     * Prevents creating instances of this class.
+     */
+    private MemoryBenchmark() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            the command line arguments: the number of exports (optional)
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    public static void main(String... args) throws Exception {
+        final int exports = (args.length > 0) ? Integer.parseInt(args[0]) : 200_000;
+        final Path source = Files.createTempFile("pet4bnd-benchmark-", ".pet");
+
+        try {
+            ParsingBenchmark.generate(source, exports);
+            System.out.format("Measuring %d exports%n", exports);
+
+            final long empty = usedMemory();
+            Bundle bundle = PetFormat.read(source, Feedback.none()).result().get();
+            new VersionResolver(bundle).resolve();
+            final long definitions = usedMemory() - empty;
+            report("Definitions", definitions, exports);
+
+            bundle = CompactBundle.copyOf(bundle);
+            new VersionResolver(bundle).resolve();
+            final long compact = usedMemory() - empty;
+            report("Compact", compact, exports);
+            System.out.format("Bundle version: %s%n", bundle.version().resolution());
+
+            // Measure the names alone, which both models share
+            final String[] names = bundle.exports().keySet().toArray(new String[exports]);
+            bundle = null;
+            final long shared = usedMemory() - empty;
+            report("Names", shared, names.length);
+            report("Definitions without names", definitions - shared, exports);
+            report("Compact without names", compact - shared, exports);
+        } finally {
+            Files.delete(source);
+        }
+    }
+
+    /**
+     * Reports the measured memory.
+     *
+     * @param name
+     *            the name of the model. It must not be {@code null}.
+     * @param bytes
+     *            the number of the bytes
+     * @param exports
+     *            the number of the exports
+     */
+    private static void report(String name, long bytes, int exports) {
+        System.out.format("%s: %.1f MB, %.1f bytes per export%n", name, bytes / 1e6, (double) bytes / exports);
+    }
+
+    /**
+     * Returns the used memory after collecting the garbage.
+     *
+     * @return the used memory
+     *
+     * @throws InterruptedException
+     *             if interrupted
+     */
+    private static long usedMemory() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.format.PetDocument;
+import net.yetamine.pet4bnd.model.format.PetFormat;
+import net.yetamine.pet4bnd.model.format.PetParser;
+
+/**
+ * Measures parsing of a large synthetic definition file.
+ *
+ * <p>
+ * This is not a test, but a standalone program to run manually (with the test
+ * classpath), e.g., {@code ParsingBenchmark 50000} for a file with 50000 package
+ * exports. With the {@code malformed} option, e.g., {@code ParsingBenchmark
+ * 50000 malformed}, every other line of the file is malformed.
+ */
+public final class ParsingBenchmark {
+
+    /** Number of warm-up rounds. */
+    private static final int WARMUP_ROUNDS = 10;
+    /** Number of measured rounds. */
+    private static final int MEASURED_ROUNDS = 20;
+
+    /**
+     * Prevents creating instances of this class.
+     */
+    private ParsingBenchmark() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            the command line arguments: the number of exports (optional)
+     *            and the {@code malformed} option (optional)
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    public static void main(String... args) throws Exception {
+        final int exports = (args.length > 0) ? Integer.parseInt(args[0]) : 50_000;
+        final boolean malformed = (args.length > 1) && "malformed".equals(args[1]);
+        final Path source = Files.createTempFile("pet4bnd-benchmark-", ".pet");
+
+        try {
+            if (malformed) {
+                generateMalformed(source, exports);
+                System.out.format("Parsing %d exports with malformed lines (%d bytes)%n", exports, Files.size(source));
+            } else {
+                generate(source, exports);
+                System.out.format("Parsing %d exports (%d bytes)%n", exports, Files.size(source));
+            }
+
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                parse(source, malformed);
+            }
+
+            long best = Long.MAX_VALUE;
+            long total = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                final long start = System.nanoTime();
+                parse(source, malformed);
+                final long time = System.nanoTime() - start;
+                best = Math.min(best, time);
+                total += time;
+            }
+
+            System.out.format("Best: %.2f ms, average: %.2f ms%n", best / 1e6, total / 1e6 / MEASURED_ROUNDS);
+
+            if (malformed) { // The document would not be clean
+                return;
+            }
+
+            // Measure parsing again after changing a single line (with the group that many exports inherit from)
+            final PetDocument document = PetDocument.load(source);
+            final int line = 2;
+            final String original = document.line(line);
+
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                reparse(document, line, original);
+            }
+
+            best = Long.MAX_VALUE;
+            total = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                final long start = System.nanoTime();
+                reparse(document, line, original);
+                final long time = System.nanoTime() - start;
+                best = Math.min(best, time);
+                total += time;
+            }
+
+            System.out.format("Incremental best: %.1f us, average: %.1f us%n", best / 1e3, total / 1e3 / MEASURED_ROUNDS);
+        } finally {
+            Files.delete(source);
+        }
+    }
+
+    /**
+     * Generates a synthetic definition file.
+     *
+     * @param path
+     *            the path of the file. It must not be {@code null}.
+     * @param exports
+     *            the number of the exports to generate
+     *
+     * @throws IOException
+     *             if the file could not be written
+     */
+    public static void generate(Path path, int exports) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("# Synthetic definition for benchmarking");
+            writer.newLine();
+            writer.write("$bundle: 1.2.3 < 3.0.0");
+            writer.newLine();
+            writer.write("$api: 2.1.0 @ minor");
+            writer.newLine();
+            writer.newLine();
+
+            for (int i = 0; i < exports; i++) {
+                final String name = String.format("net.yetamine.generated.module%d.api.pkg%d", i % 97, i);
+                switch (i % 4) {
+                    case 0:
+                        writer.write(name + ": $api");
+                        break;
+
+                    case 1:
+                        writer.write(name + ":  1." + (i % 10) + ".0 < 2.0.0 @ micro   # generated");
+                        break;
+
+                    case 2:
+                        writer.write(name + ": 3.0.1.qualifier");
+                        writer.newLine();
+                        writer.write("+ mandatory:=attribute; attribute=value");
+                        break;
+
+                    default:
+                        writer.write(name + ":\t0.9.0 @ major");
+                        break;
+                }
+
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Generates a synthetic definition file with every other line malformed.
+     *
+     * @param path
+     *            the path of the file. It must not be {@code null}.
+     * @param exports
+     *            the number of the exports to generate
+     *
+     * @throws IOException
+     *             if the file could not be written
+     */
+    public static void generateMalformed(Path path, int exports) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("$bundle: 1.2.3 < 3.0.0");
+            writer.newLine();
+            writer.write("$api: 2.1.0 @ minor");
+            writer.newLine();
+
+            for (int i = 0; i < exports; i++) {
+                final String name = String.format("net.yetamine.generated.module%d.api.pkg%d", i % 97, i);
+                writer.write(name + ": 1." + (i % 10) + ".0 @ micro");
+                writer.newLine();
+
+                switch (i % 5) {
+                    case 0:
+                        writer.write("this is not a declaration " + i);
+                        break;
+
+                    case 1:
+                        writer.write(name + ".impl: 1.0.0 @ bogus");
+                        break;
+
+                    case 2:
+                        writer.write(name + ".spi: $undefined");
+                        break;
+
+                    case 3:
+                        writer.write(name + ".util: 99999999999.0.0");
+                        break;
+
+                    default:
+                        writer.write(name + ".internal:");
+                        break;
+                }
+
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Changes a line of the document and parses it.
+     *
+     * @param document
+     *            the document to change. It must not be {@code null}.
+     * @param line
+     *            the index of the line to change
+     * @param content
+     *            the content of the line. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the parsing failed
+     */
+    private static void reparse(PetDocument document, int line, String content) throws IOException {
+        final PetParser parser = document.replace(line, content).parse(Feedback.none());
+        if ((parser.errorCount() > 0) || !parser.result().isPresent()) {
+            throw new IOException("Parsing failed.");
+        }
+    }
+
+    /**
+     * Parses the file.
+     *
+     * @param path
+     *            the path of the file. It must not be {@code null}.
+     * @param malformed
+     *            {@code true} if the file is expected to have errors
+     *
+     * @throws IOException
+     *             if the parsing failed
+     */
+    private static void parse(Path path, boolean malformed) throws IOException {
+        final PetParser parser = PetFormat.parse(path, Feedback.none());
+        if (((parser.errorCount() > 0) != malformed) || !parser.result().isPresent()) {
+            throw new IOException("Parsing failed.");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import net.yetamine.pet4bnd.pom.PomVersionEditor;
+
+/**
+ * Measures editing the version of large and small POMs.
+ *
+ * <p>
+ * This is not a test, but a standalone program to run manually (with the test
+ * classpath), e.g., {@code PomBenchmark 20000} for a POM with 20000 managed
+ * dependencies following the version element. Besides that, each round edits
+ * {@value #SMALL_POMS} small POMs.
+ */
+public final class PomBenchmark {
+
+    /** Measurement of the operations. */
+    private static final Measurement MEASUREMENT = new Measurement(20, 50);
+    /** Number of small POMs per round. */
+    private static final int SMALL_POMS = 1000;
+
+    /**
+     * Prevents creating instances of this class.
+     */
+    private PomBenchmark() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            the command line arguments: the number of managed
+     *            dependencies (optional)
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    public static void main(String... args) throws Exception {
+        final int dependencies = (args.length > 0) ? Integer.parseInt(args[0]) : 20_000;
+        final Path large = Files.write(Files.createTempFile("pet4bnd-benchmark-", ".xml"), generate(dependencies));
+        final Path small = Files.write(Files.createTempFile("pet4bnd-benchmark-", ".xml"), generate(10));
+
+        try {
+            System.out.format("Editing a POM with %d managed dependencies (%d bytes)%n", dependencies, Files.size(large));
+            MEASUREMENT.measure("Large POM", () -> edit(large));
+            MEASUREMENT.measure(String.format("%d small POMs", SMALL_POMS), () -> {
+                for (int i = 0; i < SMALL_POMS; i++) {
+                    edit(small);
+                }
+            });
+        } finally {
+            Files.delete(large);
+            Files.delete(small);
+        }
+    }
+
+    /**
+     * Generates a POM.
+     *
+     * @param dependencies
+     *            the number of the managed dependencies
+     *
+     * @return the content of the POM
+     */
+    public static byte[] generate(int dependencies) {
+        final StringBuilder result = new StringBuilder();
+        result.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        result.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+        result.append("    <modelVersion>4.0.0</modelVersion>\n");
+        result.append("    <groupId>org.example</groupId>\n");
+        result.append("    <artifactId>benchmark</artifactId>\n");
+        result.append("    <version>1.0.0-SNAPSHOT</version>\n");
+        result.append("    <dependencyManagement>\n");
+        result.append("        <dependencies>\n");
+        for (int i = 0; i < dependencies; i++) {
+            result.append("            <dependency>\n");
+            result.append("                <groupId>org.example.group").append(i % 100).append("</groupId>\n");
+            result.append("                <artifactId>artifact-").append(i).append("</artifactId>\n");
+            result.append("                <version>1.").append(i).append(".0</version>\n");
+            result.append("            </dependency>\n");
+        }
+
+        result.append("        </dependencies>\n");
+        result.append("    </dependencyManagement>\n");
+        result.append("</project>\n");
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Edits the version of a POM.
+     *
+     * @param pom
+     *            the path to the POM. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the editing failed
+     */
+    private static void edit(Path pom) throws IOException {
+        try (OutputStream sink = new NullOutputStream()) {
+            new PomVersionEditor(pom).version("2.0.0").persist(sink);
+        }
+    }
+
+    /**
+     * An output stream discarding everything.
+     */
+    private static final class NullOutputStream extends OutputStream {
+
+        /**
+         * Creates a new instance.
+         */
+        public NullOutputStream() {
+            // Default constructor
+        }
+
+        /**
+         * @see java.io.OutputStream#write(int)
+         */
+        @Override
+        public void write(int b) {
+            // Discard
+        }
+
+        /**
+         * @see java.io.OutputStream#write(byte[], int, int)
+         */
+        @Override
+        public void write(byte[] b, int off, int len) {
+            // Discard
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.Bundle;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.format.PetFormat;
+import net.yetamine.pet4bnd.model.scenario.Scenario;
+import net.yetamine.pet4bnd.model.scenario.ScenarioResolver;
+import net.yetamine.pet4bnd.version.VersionVariance;
+
+/**
+ * Measures evaluating what-if scenarios for a large synthetic definition.
+ *
+ * <p>
+ * This is not a test, but a standalone program to run manually (with the test
+ * classpath), e.g., {@code ScenarioBenchmark 50000} for a definition with
+ * 50000 package exports, which {@link ParsingBenchmark} generates. Each round
+ * evaluates {@value #SCENARIOS} scenarios with three minor changes each and
+ * compares that with resolving the whole definition once.
+ */
+public final class ScenarioBenchmark {
+
+    /** Measurement of the operations. */
+    private static final Measurement MEASUREMENT = new Measurement(20, 50);
+    /** Number of scenarios per round. */
+    private static final int SCENARIOS = 1000;
+
+    /**
+     * Prevents creating instances of this class.
+     */
+    private ScenarioBenchmark() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            the command line arguments: the number of exports (optional)
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    public static void main(String... args) throws Exception {
+        final int exports = (args.length > 0) ? Integer.parseInt(args[0]) : 50_000;
+        final Path source = Files.createTempFile("pet4bnd-benchmark-", ".pet");
+
+        try {
+            ParsingBenchmark.generate(source, exports);
+            final Bundle bundle = PetFormat.parse(source, Feedback.none()).result().get();
+            final List<String> names = new ArrayList<>(bundle.exports().keySet());
+            final ScenarioResolver resolver = new ScenarioResolver(bundle);
+
+            final Random random = new Random(1);
+            final List<Scenario> scenarios = new ArrayList<>(SCENARIOS);
+            for (int i = 0; i < SCENARIOS; i++) {
+                Scenario scenario = Scenario.empty();
+                for (int j = 0; j < 3; j++) {
+                    scenario = scenario.variance(names.get(random.nextInt(names.size())), VersionVariance.MINOR);
+                }
+
+                scenarios.add(scenario);
+            }
+
+            System.out.format("Evaluating %d scenarios for %d exports%n", SCENARIOS, exports);
+            MEASUREMENT.measure("Full resolve (once)", () -> new VersionResolver(bundle).resolve());
+            MEASUREMENT.measure("Scenarios", () -> scenarios.forEach(resolver::resolve));
+        } finally {
+            Files.delete(source);
+        }
+    }
+}
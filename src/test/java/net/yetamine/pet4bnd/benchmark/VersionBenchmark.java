@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.format.Format2Bnd;
+import net.yetamine.pet4bnd.format.Format2Map;
+import net.yetamine.pet4bnd.model.Bundle;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.format.PetFormat;
+
+/**
+ * Measures resolving and formatting the versions of a large synthetic
+ * definition.
+ *
+ * <p>
+ * This is not a test, but a standalone program to run manually (with the test
+ * classpath), e.g., {@code VersionBenchmark 50000} for a definition with 50000
+ * package exports, which {@link ParsingBenchmark} generates.
+ */
+public final class VersionBenchmark {
+
+    /** Measurement of the operations. */
+    private static final Measurement MEASUREMENT = new Measurement(20, 50);
+
+    /**
+     * Prevents creating instances of this class.
+     */
+    private VersionBenchmark() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            the command line arguments: the number of exports (optional)
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    public static void main(String... args) throws Exception {
+        final int exports = (args.length > 0) ? Integer.parseInt(args[0]) : 50_000;
+        final Path source = Files.createTempFile("pet4bnd-benchmark-", ".pet");
+
+        try {
+            ParsingBenchmark.generate(source, exports);
+            final Bundle bundle = PetFormat.parse(source, Feedback.none()).result().get();
+            System.out.format("Resolving and formatting %d exports%n", exports);
+
+            MEASUREMENT.measure("Resolve", () -> resolve(bundle));
+            MEASUREMENT.measure("Format", () -> format(bundle));
+        } finally {
+            Files.delete(source);
+        }
+    }
+
+    /**
+     * Resolves the versions and checks the constraints.
+     *
+     * @param bundle
+     *            the bundle to resolve. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the constraints are violated
+     */
+    private static void resolve(Bundle bundle) throws IOException {
+        if (!new VersionResolver(bundle).resolve().test()) {
+            throw new IOException("Constraints violated.");
+        }
+    }
+
+    /**
+     * Formats the resolved versions in both output formats.
+     *
+     * @param bundle
+     *            the bundle to format. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if the formatting failed
+     */
+    private static void format(Bundle bundle) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new NullWriter())) {
+            new Format2Bnd(bundle).persist(writer);
+        }
+
+        if (new Format2Map(bundle).content().isEmpty()) {
+            throw new IOException("Formatting failed.");
+        }
+    }
+
+    /**
+     * A writer discarding everything.
+     */
+    private static final class NullWriter extends Writer {
+
+        /**
+         * Creates a new instance.
+         */
+        public NullWriter() {
+            // Default constructor
+        }
+
+        /**
+         * @see java.io.Writer#write(char[], int, int)
+         */
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            // Discard
+        }
+
+        /**
+         * @see java.io.Writer#flush()
+         */
+        @Override
+        public void flush() {
+            // Do nothing
+        }
+
+        /**
+         * @see java.io.Writer#close()
+         */
+        @Override
+        public void close() {
+            // Do nothing
+        }
+    }
+}
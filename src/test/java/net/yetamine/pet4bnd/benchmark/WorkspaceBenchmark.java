@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import net.yetamine.pet4bnd.workspace.Workspace;
+
+/**
+ * Measures resolving a workspace with many modules sequentially and on the
+ * common pool.
+ *
+ * <p>
+ * This is not a test, but a standalone program to run manually (with the test
+ * classpath), e.g., {@code WorkspaceBenchmark 900} for a workspace with 900
+ * modules, most of them small and a few large ones, which
+ * {@link ParsingBenchmark} generates.
+ */
+public final class WorkspaceBenchmark {
+
+    /** Measurement of the operations. */
+    private static final Measurement MEASUREMENT = new Measurement(5, 10);
+    /** Number of exports of the largest module. */
+    private static final int LARGEST_MODULE = 100_000;
+
+    /**
+     * Prevents creating instances of this class.
+     */
+    private WorkspaceBenchmark() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            the command line arguments: the number of modules (optional)
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    public static void main(String... args) throws Exception {
+        final int modules = (args.length > 0) ? Integer.parseInt(args[0]) : 900;
+        final Path root = Files.createTempDirectory("pet4bnd-benchmark-");
+
+        try {
+            for (int i = 0; i < modules; i++) {
+                // Every 100th module is ten times larger, the first is the largest
+                final int exports = (i == 0) ? LARGEST_MODULE : ((i % 100) == 0) ? 2_000 : 200;
+                final Path module = Files.createDirectories(root.resolve("module-" + i));
+                ParsingBenchmark.generate(module.resolve(Workspace.DEFAULT_SOURCE_NAME), exports);
+            }
+
+            final Workspace workspace = Workspace.discover(root);
+            final Workspace largest = new Workspace(Collections.singletonList(workspace.sources().get(0)));
+            final ForkJoinPool sequential = new ForkJoinPool(1);
+
+            System.out.format("Resolving %d modules on %d workers%n", modules, ForkJoinPool.getCommonPoolParallelism());
+
+            try {
+                MEASUREMENT.measure("Sequential", () -> workspace.resolve(sequential));
+                MEASUREMENT.measure("Parallel", () -> workspace.resolve());
+                MEASUREMENT.measure("Largest module", () -> largest.resolve());
+            } finally {
+                sequential.shutdown();
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
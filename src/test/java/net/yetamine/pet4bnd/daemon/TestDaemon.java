@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.daemon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link Daemon} and {@link DaemonClient}.
+ */
+public final class TestDaemon {
+
+    /** Temporary directory. */
+    private Path directory;
+    /** Path of the descriptor. */
+    private Path descriptor;
+
+    /**
+     * Creates the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pet4bnd-");
+        descriptor = directory.resolve("daemon.properties");
+    }
+
+    /**
+     * Removes the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Tests executing a request.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testRequest() throws Exception {
+        final DaemonCommand command = request -> {
+            request.out().println(String.join(" ", request.arguments()));
+            request.err().println(request.directory());
+            request.out().print("\u00E9"); // No line end, must come as well
+            return request.arguments().size();
+        };
+
+        try (Daemon daemon = Daemon.start(descriptor, 2, command)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ByteArrayOutputStream err = new ByteArrayOutputStream();
+            final List<String> arguments = Arrays.asList("-pet", "a b.pet");
+
+            Assert.assertEquals(DaemonClient.execute(descriptor, arguments, directory, out, err), 2);
+            Assert.assertEquals(out.toString("UTF-8"), String.format("-pet a b.pet%n\u00E9"));
+            Assert.assertEquals(err.toString("UTF-8"), String.format("%s%n", directory.toAbsolutePath()));
+
+            Assert.assertEquals(DaemonClient.execute(descriptor, Collections.emptyList(), directory, out, err), 0);
+            Assert.assertEquals(daemon.statistics().getRequestCount(), 2L);
+            Assert.assertEquals(daemon.statistics().getFailedRequestCount(), 1L);
+            Assert.assertEquals(daemon.statistics().getActiveRequestCount(), 0);
+            Assert.assertTrue(daemon.statistics().getMaximalLatency() >= daemon.statistics().getAverageLatency());
+        }
+    }
+
+    /**
+     * Tests that the requests run concurrently.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testConcurrency() throws Exception {
+        final int threads = 4;
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+
+        final DaemonCommand command = request -> {
+            barrier.await(10, TimeUnit.SECONDS); // Fails unless all requests run at once
+            request.out().print(request.arguments().get(0));
+            return 0;
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (Daemon daemon = Daemon.start(descriptor, threads, command)) {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final String argument = Integer.toString(i);
+
+                results.add(executor.submit(() -> {
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    final List<String> arguments = Collections.singletonList(argument);
+                    Assert.assertEquals(DaemonClient.execute(descriptor, arguments, directory, out, out), 0);
+                    return out.toString("UTF-8");
+                }));
+            }
+
+            for (int i = 0; i < threads; i++) {
+                Assert.assertEquals(results.get(i).get(), Integer.toString(i));
+            }
+
+            Assert.assertEquals(daemon.statistics().getRequestCount(), (long) threads);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a failing request reports the failure to the client.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testFailure() throws Exception {
+        final DaemonCommand command = request -> {
+            throw new IllegalStateException("Failed on purpose.");
+        };
+
+        try (Daemon daemon = Daemon.start(descriptor, 1, command)) {
+            final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+            try {
+                DaemonClient.execute(descriptor, Collections.emptyList(), directory, new ByteArrayOutputStream(), err);
+                Assert.fail("Failure not reported.");
+            } catch (IOException e) {
+                Assert.assertTrue(err.toString("UTF-8").contains("Failed on purpose."));
+            }
+
+            Assert.assertEquals(daemon.statistics().getFailedRequestCount(), 1L);
+        }
+    }
+
+    /**
+     * Tests that a client without the proper secret is rejected.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testRejected() throws Exception {
+        try (Daemon daemon = Daemon.start(descriptor, 1, request -> 0)) {
+            final Path forged = directory.resolve("forged.properties");
+            DaemonProtocol.writeDescriptor(forged, daemon.port(), DaemonProtocol.secret());
+
+            try {
+                DaemonClient.execute(forged, Collections.emptyList(), directory, new ByteArrayOutputStream(), new ByteArrayOutputStream());
+                Assert.fail("Forged secret accepted.");
+            } catch (IOException e) {
+                // Expected
+            }
+
+            Assert.assertEquals(daemon.statistics().getRequestCount(), 0L);
+            Assert.assertEquals(daemon.statistics().getRejectedConnectionCount(), 1L);
+        }
+    }
+
+    /**
+     * Tests publishing the statistics and the descriptor.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testLifecycle() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name;
+
+        try (Daemon daemon = Daemon.start(descriptor, 1, request -> 0)) {
+            Assert.assertEquals(DaemonProtocol.readDescriptor(descriptor).port(), daemon.port());
+            if (Files.getFileStore(descriptor).supportsFileAttributeView("posix")) {
+                Assert.assertEquals(Files.getPosixFilePermissions(descriptor).toString(), "[OWNER_READ, OWNER_WRITE]");
+            }
+
+            name = new ObjectName("net.yetamine.pet4bnd:type=Daemon,port=" + daemon.port());
+            DaemonClient.execute(descriptor, Collections.emptyList(), directory, new ByteArrayOutputStream(), new ByteArrayOutputStream());
+            Assert.assertEquals(server.getAttribute(name, "RequestCount"), 1L);
+        }
+
+        Assert.assertFalse(server.isRegistered(name));
+        Assert.assertFalse(Files.exists(descriptor));
+
+        try {
+            DaemonClient.execute(descriptor, Collections.emptyList(), directory, new ByteArrayOutputStream(), new ByteArrayOutputStream());
+            Assert.fail("Closed daemon accessible.");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
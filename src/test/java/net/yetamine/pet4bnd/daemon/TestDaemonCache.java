@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.daemon;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.ResolvedBundle;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.format.PetFormat;
+
+/**
+ * Tests {@link DaemonCache}.
+ */
+public final class TestDaemonCache {
+
+    /** Path to the definition file. */
+    private Path source;
+
+    /**
+     * Prepares the definition file, which is old enough to be cached.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @BeforeMethod
+    public void setUp() throws Exception {
+        source = Files.createTempFile("pet4bnd-test-", ".pet");
+        write("$bundle: 1.0.0", -1);
+    }
+
+    /**
+     * Removes the definition file.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @AfterMethod
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(source);
+    }
+
+    /**
+     * Tests that an unchanged file uses the stored definition.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testHit() throws Exception {
+        final DaemonCache cache = new DaemonCache();
+        final DaemonCache.Lookup miss = cache.lookup(source);
+        Assert.assertFalse(miss.value().isPresent());
+        final ResolvedBundle definition = load();
+        miss.store(definition);
+
+        final DaemonCache.Lookup hit = cache.lookup(source);
+        Assert.assertSame(hit.value().get(), definition);
+        Assert.assertEquals(cache.hitCount(), 1L);
+        Assert.assertEquals(cache.missCount(), 1L);
+        Assert.assertEquals(cache.size(), 1);
+
+        // Relative paths make the same entry
+        Assert.assertTrue(cache.lookup(source.toAbsolutePath().getParent().resolve(".").resolve(source.getFileName())).value().isPresent());
+
+        cache.invalidate(source);
+        Assert.assertFalse(cache.lookup(source).value().isPresent());
+    }
+
+    /**
+     * Tests that a changed file does not use the stored definition.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testChanged() throws Exception {
+        final DaemonCache cache = new DaemonCache();
+        cache.lookup(source).store(load());
+
+        write("$bundle: 10.0.0", -1); // Different size
+        Assert.assertFalse(cache.lookup(source).value().isPresent());
+
+        cache.lookup(source).store(load());
+        Assert.assertEquals(cache.lookup(source).value().get().version().baseline().toString(), "10.0.0");
+
+        write("$bundle: 30.0.0", -2); // Same size, different time
+        Assert.assertFalse(cache.lookup(source).value().isPresent());
+    }
+
+    /**
+     * Tests that a recently modified file or a discarded lookup is not
+     * cached.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testNotStored() throws Exception {
+        final DaemonCache cache = new DaemonCache();
+
+        final DaemonCache.Lookup discarded = cache.lookup(source);
+        discarded.discard();
+        discarded.store(load());
+        Assert.assertFalse(cache.lookup(source).value().isPresent());
+
+        write("$bundle: 2.0.0", 0);
+        cache.lookup(source).store(load());
+        Assert.assertFalse(cache.lookup(source).value().isPresent());
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    /**
+     * Tests that a missing file fails.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test(expectedExceptions = NoSuchFileException.class)
+    public void testMissing() throws Exception {
+        Files.delete(source);
+        new DaemonCache().lookup(source);
+    }
+
+    /**
+     * Writes the definition file.
+     *
+     * @param content
+     *            the content to write. It must not be {@code null}.
+     * @param minutes
+     *            the age of the file in minutes (negative for the past)
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    private void write(String content, int minutes) throws Exception {
+        Files.write(source, Collections.singletonList(content));
+        final long time = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(minutes);
+        Files.setLastModifiedTime(source, FileTime.fromMillis(time));
+    }
+
+    /**
+     * Loads the definition file.
+     *
+     * @return the resolved definition
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    private ResolvedBundle load() throws Exception {
+        final PetFormat definition = PetFormat.parse(source, Feedback.none()).result().get();
+        new VersionResolver(definition).resolve();
+        return ResolvedBundle.copyOf(definition);
+    }
+}
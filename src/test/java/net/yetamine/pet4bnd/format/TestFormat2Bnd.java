@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.format;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.Bundle;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.format.PetDocument;
+
+/**
+ * Tests {@link Format2Bnd}.
+ */
+public final class TestFormat2Bnd {
+
+    /** Clock for the timestamp. */
+    private static final Clock CLOCK = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+    /** Attribute with characters outside ASCII, including a surrogate pair. */
+    private static final String ATTRIBUTE = "mandatory:=\"\u017elu\u0165ou\u010dk\u00fd \ud83d\ude00\"";
+
+    /**
+     * Tests the output of all ways of persisting.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testPersist() throws Exception {
+        final Bundle bundle = parse(
+                // @formatter:off
+                "$bundle: 1.2.0",
+                "org.example.api: 1.0.0 @ minor",
+                "+ " + ATTRIBUTE,
+                "org.example.impl: 0.1.0",
+                "org.example.util: 2.0.0",
+                "+ resolution:=optional"
+                // @formatter:on
+        );
+
+        final Format2Bnd format = new Format2Bnd(bundle).timestamp(CLOCK);
+        final List<String> lines = Arrays.asList(
+                // @formatter:off
+                "org.example.api;version=\"1.1.0\";" + ATTRIBUTE,
+                "org.example.impl;version=\"0.1.0\"",
+                "org.example.util;version=\"2.0.0\";resolution:=optional"
+                // @formatter:on
+        );
+
+        Assert.assertEquals(format.exports(), lines);
+
+        // The longest line has 57 characters (counting the surrogates), hence the backslash follows 64 characters
+        final String expected = String.join(System.lineSeparator(),
+                // @formatter:off
+                "# Generated by the pet4bnd tool",
+                "# 1970-01-01T00:00:00Z",
+                "",
+                "Bundle-Version: 1.3.0",
+                "",
+                "Export-Package:" + spaces(49) + "\\",
+                "    " + lines.get(0) + "," + spaces(2) + "\\",
+                "    " + lines.get(1) + "," + spaces(27) + "\\",
+                "    " + lines.get(2),
+                "",
+                ""
+                // @formatter:on
+        );
+
+        final byte[] bytes = expected.getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(format.toBytes(), bytes);
+
+        final ByteArrayOutputStream writer = new ByteArrayOutputStream();
+        try (BufferedWriter sink = new BufferedWriter(new OutputStreamWriter(writer, StandardCharsets.UTF_8))) {
+            format.persist(sink);
+        }
+
+        Assert.assertEquals(writer.toByteArray(), bytes);
+
+        final Path path = Files.createTempFile("pet4bnd-test-", ".bnd");
+        try {
+            Files.write(path, Collections.nCopies(1000, "Garbage to truncate"));
+            format.store(path);
+            Assert.assertEquals(Files.readAllBytes(path), bytes);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Tests the output of a definition without exports and without the bundle
+     * version.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testPersistEmpty() throws Exception {
+        final Format2Bnd format = new Format2Bnd(parse("$bundle: 1.0.0"), false).timestamp(null);
+        Assert.assertTrue(format.exports().isEmpty());
+
+        final String expected = "# Generated by the pet4bnd tool" + System.lineSeparator() + System.lineSeparator();
+        Assert.assertEquals(format.toBytes(), expected.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that lines longer than the buffer and padding longer than the
+     * bulk space array are formatted correctly.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testPersistLong() throws Exception {
+        final char[] name = new char[100_000];
+        Arrays.fill(name, 'x');
+        final String longName = "org.example." + new String(name);
+        final Format2Bnd format = new Format2Bnd(parse("$bundle: 1.0.0", longName + ": 1.0.0", "org.example.z: 1.0.0"), false);
+
+        final String text = new String(format.timestamp(null).toBytes(), StandardCharsets.UTF_8);
+        final String[] lines = text.split(System.lineSeparator());
+        Assert.assertEquals(lines[3], "    " + longName + ";version=\"1.0.0\",   \\");
+        Assert.assertEquals(lines[4], "    org.example.z;version=\"1.0.0\"");
+        Assert.assertEquals(lines[2].length(), lines[3].length());
+        Assert.assertTrue(lines[2].startsWith("Export-Package: "));
+    }
+
+    /**
+     * Tests that updating leaves the file with the same content untouched.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testUpdate() throws Exception {
+        final Format2Bnd format = new Format2Bnd(parse("$bundle: 1.0.0", "org.example: 1.0.0 @ minor"));
+        final Path path = Files.createTempFile("pet4bnd-test-", ".bnd");
+
+        try {
+            final FileTime past = FileTime.fromMillis(0);
+            Assert.assertTrue(format.timestamp(null).update(path));
+            Files.setLastModifiedTime(path, past);
+
+            Assert.assertFalse(format.timestamp(null).update(path));
+            Assert.assertEquals(Files.getLastModifiedTime(path), past);
+            Assert.assertTrue(format.timestamp(CLOCK).update(path));
+            Assert.assertEquals(Files.readAllBytes(path), format.timestamp(CLOCK).toBytes());
+            Assert.assertNotEquals(Files.getLastModifiedTime(path), past);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Returns a string of spaces.
+     *
+     * @param count
+     *            the number of spaces
+     *
+     * @return the string of spaces
+     */
+    private static String spaces(int count) {
+        return String.join("", Collections.nCopies(count, " "));
+    }
+
+    /**
+     * Parses and resolves a definition.
+     *
+     * @param lines
+     *            the lines of the definition. It must not be {@code null}.
+     *
+     * @return the resolved definition
+     */
+    private static Bundle parse(String... lines) {
+        final Bundle result = new PetDocument(Arrays.asList(lines)).parse(Feedback.none()).result().get();
+        new VersionResolver(result).resolve();
+        return result;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.format;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.TimeZone;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.Bundle;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.format.PetDocument;
+
+/**
+ * Tests {@link Format2Map}.
+ */
+public final class TestFormat2Map {
+
+    /** Clock for the timestamp. */
+    private static final Clock CLOCK = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+
+    /**
+     * Tests the timestamp of the output.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testTimestamp() throws Exception {
+        final Format2Map format = new Format2Map(parse());
+
+        final String fixed = new String(format.timestamp(CLOCK).toBytes(), StandardCharsets.ISO_8859_1);
+        final String[] lines = fixed.split(System.lineSeparator());
+        Assert.assertEquals(lines[0], "#Generated by the pet4bnd tool");
+        Assert.assertEquals(lines[1], "#Thu Jan 01 00:00:00 UTC 1970");
+        Assert.assertEquals(lines.length, 6);
+
+        final String none = new String(format.timestamp(null).toBytes(), StandardCharsets.ISO_8859_1);
+        Assert.assertEquals(none, fixed.replace(lines[1] + System.lineSeparator(), ""));
+
+        final Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(format.timestamp(null).toBytes()));
+        Assert.assertEquals(properties, format.toProperties());
+    }
+
+    /**
+     * Tests that the timestamp does not depend on the default time zone.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testTimeZone() throws Exception {
+        final Format2Map format = new Format2Map(parse()).timestamp(Clock.fixed(Instant.ofEpochSecond(1_500_000_000L), ZoneOffset.ofHours(5)));
+        final TimeZone zone = TimeZone.getDefault();
+
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+            final byte[] western = format.toBytes();
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+            final byte[] eastern = format.toBytes();
+            Assert.assertEquals(eastern, western);
+        } finally {
+            TimeZone.setDefault(zone);
+        }
+    }
+
+    @SuppressWarnings("javadoc")
+    @DataProvider(name = "files")
+    public static Object[][] files() {
+        return new Object[][] {
+            // @formatter:off
+            { ".properties" },
+            { ".xml"        }
+            // @formatter:on
+        };
+    }
+
+    /**
+     * Tests that updating leaves the file with the same content untouched.
+     *
+     * @param suffix
+     *            the suffix of the file. It must not be {@code null}.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test(dataProvider = "files")
+    public void testUpdate(String suffix) throws Exception {
+        final Format2Map format = new Format2Map(parse()).timestamp(null);
+        final Path path = Files.createTempFile("pet4bnd-test-", suffix);
+
+        try {
+            format.store(path);
+            final byte[] stored = Files.readAllBytes(path);
+
+            final FileTime past = FileTime.fromMillis(0);
+            Files.setLastModifiedTime(path, past);
+            Assert.assertFalse(format.update(path));
+            Assert.assertEquals(Files.getLastModifiedTime(path), past);
+
+            Files.delete(path);
+            Assert.assertTrue(format.update(path));
+            Assert.assertEquals(Files.readAllBytes(path), stored);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Parses and resolves the definition.
+     *
+     * @return the resolved definition
+     */
+    private static Bundle parse() {
+        final Bundle result = new PetDocument(Arrays.asList(
+                // @formatter:off
+                "$bundle: 1.0.0",
+                "org.example.api: 1.0.0 @ minor",
+                "+ resolution:=optional",
+                "org.example.impl: 1.2.0"
+                // @formatter:on
+        )).parse(Feedback.none()).result().get();
+
+        new VersionResolver(result).resolve();
+        return result;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.format.Format2Bnd;
+import net.yetamine.pet4bnd.model.format.PetDocument;
+import net.yetamine.pet4bnd.model.format.PetFormat;
+import net.yetamine.pet4bnd.version.Version;
+import net.yetamine.pet4bnd.version.VersionVariance;
+
+/**
+ * Tests {@link ResolvedBundle}.
+ */
+public final class TestResolvedBundle {
+
+    /** Content of the source. */
+    private static final List<String> SOURCE = Arrays.asList(
+            // @formatter:off
+            "$bundle: 1.2.0 < 2.0.0",
+            "$api: 1.0.0.beta @ minor",
+            "$spi: $api",
+            "org.example.impl: 0.9.0 < 1.0.0 @ micro",
+            "+ resolution:=optional",
+            "org.example.api: $api",
+            "org.example.api.spi: $spi @ micro",
+            "org.example.core: $bundle < 3.0.0"
+            // @formatter:on
+    );
+
+    /**
+     * Tests that a snapshot captures the resolved state.
+     */
+    @Test
+    public void testSnapshot() {
+        final PetFormat bundle = parse();
+        final VersionResolver resolver = new VersionResolver(bundle);
+        final ResolvedBundle snapshot = resolver.snapshot();
+
+        Assert.assertEquals(snapshot.version().resolution(), bundle.version().resolution());
+        Assert.assertEquals(snapshot.version().constraint(), bundle.version().constraint());
+        Assert.assertEquals(new ArrayList<>(snapshot.exports().keySet()), new ArrayList<>(bundle.exports().keySet()));
+        bundle.exports().forEach((name, export) -> {
+            final PackageExport found = snapshot.exports().get(name);
+            Assert.assertEquals(found.packageName(), name);
+            Assert.assertEquals(found.attributes(), export.attributes());
+            Assert.assertEquals(found.version().resolution(), export.version().resolution());
+            Assert.assertEquals(found.version().baseline(), export.version().baseline());
+            Assert.assertEquals(found.version().constraint(), export.version().constraint());
+            Assert.assertEquals(found.version().variance(), export.version().variance());
+            Assert.assertEquals(found.version().inheriting(), export.version().inheriting());
+        });
+
+        // The inheritance must be shared in the same way
+        final VersionGroup spi = (VersionGroup) snapshot.exports().get("org.example.api.spi").version().inheritance().get();
+        Assert.assertEquals(spi.identifier(), "$spi");
+        Assert.assertSame(spi.inheritance().get(), snapshot.exports().get("org.example.api").version().inheritance().get());
+        Assert.assertSame(snapshot.exports().get("org.example.core").version().inheritance().get(), snapshot.version());
+
+        // Changing the bundle must not affect the snapshot
+        final Version resolution = snapshot.exports().get("org.example.impl").version().resolution();
+        bundle.exports().get("org.example.impl").version().variance(VersionVariance.MAJOR);
+        resolver.invalidate(bundle.exports().get("org.example.impl").version()).resolve();
+        Assert.assertNotEquals(bundle.exports().get("org.example.impl").version().resolution(), resolution);
+        Assert.assertEquals(snapshot.exports().get("org.example.impl").version().resolution(), resolution);
+        Assert.assertNotEquals(resolver.snapshot().version().resolution(), snapshot.version().resolution());
+    }
+
+    /**
+     * Tests the map of the exports.
+     */
+    @Test
+    public void testExports() {
+        final ResolvedBundle snapshot = new VersionResolver(parse()).snapshot();
+        Assert.assertEquals(snapshot.exports().size(), 4);
+        Assert.assertTrue(snapshot.exports().containsKey("org.example.api"));
+        Assert.assertFalse(snapshot.exports().containsKey("org.example"));
+        Assert.assertNull(snapshot.exports().get("org.example.missing"));
+        Assert.assertNull(snapshot.exports().get(Boolean.TRUE));
+        Assert.assertSame(snapshot.exports().get("org.example.api"), snapshot.exports().get("org.example.api"));
+        Assert.assertEquals(snapshot.exports(), snapshot.exports().entrySet().stream() // @formatter:break
+                .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue())));
+    }
+
+    /**
+     * Provides the operations that must fail.
+     *
+     * @return the operations that must fail
+     */
+    @DataProvider(name = "modifications")
+    public static Object[][] modifications() {
+        final ResolvedBundle snapshot = new VersionResolver(parse()).snapshot();
+        final PackageVersion version = snapshot.exports().get("org.example.api").version();
+        final VersionGroup group = (VersionGroup) version.inheritance().get();
+
+        return new Object[][] {
+            // @formatter:off
+            { (Runnable) snapshot::restore                                          },
+            { (Runnable) () -> snapshot.exports().get("org.example.api").restore()  },
+            { (Runnable) () -> snapshot.exports().remove("org.example.api")         },
+            { (Runnable) () -> snapshot.exports().clear()                           },
+            { (Runnable) () -> snapshot.version().resolve(null)                     },
+            { (Runnable) () -> snapshot.version().variance(VersionVariance.MAJOR)   },
+            { (Runnable) () -> version.baseline(Version.ZERO)                       },
+            { (Runnable) () -> version.constraint(null)                             },
+            { (Runnable) () -> version.inherit(null)                                },
+            { (Runnable) () -> group.inherit(snapshot.version())                    },
+            // @formatter:on
+        };
+    }
+
+    /**
+     * Tests that a snapshot can't be modified.
+     *
+     * @param operation
+     *            the operation to test
+     */
+    @Test(dataProvider = "modifications", expectedExceptions = UnsupportedOperationException.class)
+    public void testModifications(Runnable operation) {
+        operation.run();
+    }
+
+    /**
+     * Tests that parallel consumers get the same results.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testSharing() throws Exception {
+        final ResolvedBundle snapshot = new VersionResolver(parse()).snapshot();
+        final Clock clock = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+        final byte[] expected = new Format2Bnd(snapshot).timestamp(clock).toBytes();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<CompletableFuture<byte[]>> results = IntStream.range(0, 100).mapToObj(i -> {
+                return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return new Format2Bnd(snapshot).timestamp(clock).toBytes();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor);
+            }).collect(Collectors.toList());
+
+            for (CompletableFuture<byte[]> result : results) {
+                Assert.assertEquals(result.get(), expected);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Parses the source.
+     *
+     * @return the result
+     */
+    private static PetFormat parse() {
+        return new PetDocument(SOURCE).parse(Feedback.none()).result().get();
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.format.PetDocument;
+import net.yetamine.pet4bnd.model.format.PetFormat;
+import net.yetamine.pet4bnd.model.format.PetParser;
+import net.yetamine.pet4bnd.model.support.PackageGroupDefinition;
+import net.yetamine.pet4bnd.version.Version;
+import net.yetamine.pet4bnd.version.VersionVariance;
+
+/**
+ * Tests {@link VersionResolver}.
+ */
+public final class TestVersionResolver {
+
+    /**
+     * Tests resolving nested groups.
+     */
+    @Test
+    public void testNestedGroups() {
+        final PetFormat bundle = parse(
+                // @formatter:off
+                "$bundle: 1.0.0",
+                "$parent: 2.0.0",
+                "$child: $parent @ minor",
+                "$grandchild: $child",
+                "$module: $bundle",
+                "org.example.a: $grandchild",
+                "org.example.b: $module @ micro",
+                "org.example.c: 3.0.0"
+                // @formatter:on
+        );
+
+        new VersionResolver(bundle).resolve();
+        // Only the variances of the exports affect the bundle beyond its dependents
+        Assert.assertEquals(bundle.version().resolution(), Version.valueOf("1.0.1"));
+        Assert.assertEquals(resolution(bundle, "org.example.a"), Version.valueOf("2.1.0"));
+        Assert.assertEquals(resolution(bundle, "org.example.b"), Version.valueOf("1.0.1"));
+        Assert.assertEquals(resolution(bundle, "org.example.c"), Version.valueOf("3.0.0"));
+        Assert.assertEquals(groups(bundle).get("$parent").resolution(), Version.valueOf("2.1.0"));
+        Assert.assertEquals(groups(bundle).get("$grandchild").resolution(), Version.valueOf("2.1.0"));
+    }
+
+    /**
+     * Tests that the variance of an export bubbles up through the groups.
+     */
+    @Test
+    public void testVarianceBubbling() {
+        final PetFormat bundle = parse(
+                // @formatter:off
+                "$bundle: 1.0.0",
+                "$parent: 2.0.0 @ micro",
+                "$child: $parent",
+                "org.example.a: $child @ major",
+                "org.example.b: $parent"
+                // @formatter:on
+        );
+
+        new VersionResolver(bundle).resolve();
+        Assert.assertEquals(bundle.version().resolution(), Version.valueOf("2.0.0"));
+        Assert.assertEquals(resolution(bundle, "org.example.a"), Version.valueOf("3.0.0"));
+        Assert.assertEquals(resolution(bundle, "org.example.b"), Version.valueOf("3.0.0"));
+    }
+
+    /**
+     * Tests that resolving after invalidating changed statements yields the
+     * same results as resolving from scratch.
+     */
+    @Test
+    public void testInvalidation() {
+        final List<String> lines = new ArrayList<>(Arrays.asList(
+                // @formatter:off
+                "$bundle: 1.0.0",
+                "$g1: 1.0.0",
+                "$g2: $g1",
+                "$g3: $bundle",
+                "$g4: $g2"
+                // @formatter:on
+        ));
+
+        final String[] sources = { "$g1", "$g2", "$g3", "$g4", "$bundle", "1.0.0" };
+        for (int i = 0; i < 50; i++) {
+            lines.add("org.example.p" + i + ": " + sources[i % sources.length]);
+        }
+
+        final PetFormat bundle = parse(lines.toArray(new String[lines.size()]));
+        final VersionResolver resolver = new VersionResolver(bundle).resolve();
+
+        final VersionVariance[] variances = VersionVariance.values();
+        final List<VersionStatement> statements = new ArrayList<>();
+        statements.add(bundle.version());
+        statements.addAll(groups(bundle).values());
+        bundle.exports().values().forEach(export -> statements.add(export.version()));
+
+        final Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            final VersionStatement statement = statements.get(random.nextInt(statements.size()));
+            if (random.nextBoolean()) {
+                statement.variance(variances[random.nextInt(variances.length)]);
+            } else {
+                statement.variance(null);
+            }
+
+            resolver.invalidate(statement).resolve();
+            final PetFormat expected = parse(lines.toArray(new String[lines.size()]));
+            copyVariances(bundle, expected);
+            new VersionResolver(expected).resolve();
+
+            Assert.assertEquals(bundle.version().resolution(), expected.version().resolution());
+            final Map<String, VersionGroup> groups = groups(bundle);
+            groups(expected).forEach((name, group) -> {
+                Assert.assertEquals(groups.get(name).resolution(), group.resolution(), name);
+            });
+
+            expected.exports().forEach((name, export) -> {
+                Assert.assertEquals(resolution(bundle, name), export.version().resolution(), name);
+            });
+        }
+    }
+
+    /**
+     * Tests that restoring the inheritance from a group, which no export used
+     * meanwhile, takes the group into account again.
+     */
+    @Test
+    public void testInheritanceRestored() {
+        final PetFormat bundle = parse(
+                // @formatter:off
+                "$bundle: 1.0.0",
+                "$api: 1.0.0 @ minor",
+                "$spi: $api",
+                "org.example.spi: $spi @ micro"
+                // @formatter:on
+        );
+
+        final VersionResolver resolver = new VersionResolver(bundle).resolve();
+        final InheritingVersion version = bundle.exports().get("org.example.spi").version();
+        final VersionStatement source = version.inheritance().get();
+        Assert.assertEquals(version.resolution(), Version.valueOf("1.1.0"));
+
+        version.baseline(Version.valueOf("0.1.0"));
+        resolver.invalidate(version).resolve();
+        Assert.assertEquals(version.resolution(), Version.valueOf("0.1.1"));
+
+        version.inherit(source);
+        resolver.invalidate(version).resolve();
+        Assert.assertEquals(version.resolution(), Version.valueOf("1.1.0"));
+    }
+
+    /**
+     * Tests that cyclic inheritance is refused.
+     */
+    @Test
+    public void testCycle() {
+        final PackageGroupDefinition a = new PackageGroupDefinition("a");
+        final PackageGroupDefinition b = new PackageGroupDefinition("b");
+        final PackageGroupDefinition c = new PackageGroupDefinition("c");
+        a.baseline(Version.valueOf("1.0.0"));
+        b.inherit(a);
+        c.inherit(b);
+
+        try {
+            a.inherit(c);
+            Assert.fail("Cycle not detected.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertFalse(a.inheriting());
+        }
+
+        try {
+            a.inherit(a);
+            Assert.fail("Cycle not detected.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertFalse(a.inheriting());
+        }
+    }
+
+    /**
+     * Parses the given lines.
+     *
+     * @param lines
+     *            the lines to parse. It must not be {@code null}.
+     *
+     * @return the result
+     */
+    private static PetFormat parse(String... lines) {
+        final PetParser parser = new PetDocument(Arrays.asList(lines)).parse(Feedback.none());
+        Assert.assertEquals(parser.errorCount(), 0);
+        return parser.result().get();
+    }
+
+    /**
+     * Returns the resolution of an export.
+     *
+     * @param bundle
+     *            the bundle. It must not be {@code null}.
+     * @param name
+     *            the name of the export. It must not be {@code null}.
+     *
+     * @return the resolution
+     */
+    private static Version resolution(Bundle bundle, String name) {
+        return bundle.exports().get(name).version().resolution();
+    }
+
+    /**
+     * Collects the groups that the exports inherit from.
+     *
+     * @param bundle
+     *            the bundle. It must not be {@code null}.
+     *
+     * @return the groups by their identifiers
+     */
+    private static Map<String, VersionGroup> groups(Bundle bundle) {
+        final Map<String, VersionGroup> result = new HashMap<>();
+        bundle.exports().values().forEach(export -> {
+            VersionStatement source = export.version().inheritance().orElse(null);
+            while (source instanceof VersionGroup) {
+                final VersionGroup group = (VersionGroup) source;
+                result.put(group.identifier(), group);
+                source = group.inheritance().orElse(null);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Copies the variances of all statements.
+     *
+     * @param source
+     *            the source bundle. It must not be {@code null}.
+     * @param target
+     *            the target bundle. It must not be {@code null}.
+     */
+    private static void copyVariances(Bundle source, Bundle target) {
+        target.version().variance(source.version().variance().orElse(null));
+        final Map<String, VersionGroup> groups = groups(target);
+        groups(source).forEach((name, group) -> {
+            groups.get(name).variance(group.variance().orElse(null));
+        });
+
+        source.exports().forEach((name, export) -> {
+            target.exports().get(name).version().variance(export.version().variance().orElse(null));
+        });
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.format;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+
+/**
+ * Tests {@link FileLines}.
+ */
+public final class TestFileLines {
+
+    /**
+     * Tests splitting the content into lines.
+     *
+     * @param content
+     *            the content to split. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test(dataProvider = "contents")
+    public void testLines(String content) throws IOException {
+        final List<String> expected = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+            for (String line; (line = reader.readLine()) != null;) {
+                expected.add(line);
+            }
+        }
+
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        for (int chunkSize : new int[] { 1, 2, 3, 1024, bytes.length + 1 }) { // Test the chunk boundaries as well
+            final List<String> result = new ArrayList<>();
+            FileLines.forEach(Channels.newChannel(new ByteArrayInputStream(bytes)), chunkSize, result::add);
+            Assert.assertEquals(result, expected);
+        }
+    }
+
+    /**
+     * Tests splitting a content that spans several chunks.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test
+    public void testChunks() throws IOException {
+        final String[] terminators = { "\n", "\r", "\r\n" };
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            content.append("line ").append(i).append((i % 7 == 0) ? " \u00E9" : "");
+            content.append(terminators[i % terminators.length]);
+        }
+
+        final char[] longLine = new char[200_000];
+        Arrays.fill(longLine, 'x');
+        content.append(longLine).append("\r\nlast");
+        testLines(content.toString());
+    }
+
+    /**
+     * Tests parsing a file.
+     *
+     * @param content
+     *            the content to parse. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test(dataProvider = "contents")
+    public void testParse(String content) throws IOException {
+        final PetParser expected = new PetParser();
+        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+            for (String line; (line = reader.readLine()) != null;) {
+                expected.accept(line);
+            }
+        }
+
+        expected.finish();
+
+        final Path path = Files.createTempFile("pet4bnd-", ".pet");
+        try {
+            Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+            final PetParser result = PetFormat.parse(path, Feedback.none());
+            Assert.assertEquals(result.errorCount(), expected.errorCount());
+            Assert.assertEquals(result.warningCount(), expected.warningCount());
+
+            if (expected.result().isPresent()) {
+                Assert.assertEquals(result.result().get().toBytes(), expected.result().get().toBytes());
+            } else {
+                Assert.assertFalse(result.result().isPresent());
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Tests that malformed input is rejected.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test(expectedExceptions = CharacterCodingException.class)
+    public void testMalformed() throws IOException {
+        final byte[] content = { 'a', '\n', (byte) 0xC3, '\n' };
+        FileLines.forEach(Channels.newChannel(new ByteArrayInputStream(content)), 1024, line -> {
+            // Do nothing
+        });
+    }
+
+    @SuppressWarnings("javadoc")
+    @DataProvider(name = "contents")
+    public static Object[][] contents() {
+        return new Object[][] {
+            // @formatter:off
+            { ""                                                                },
+            { "\n"                                                              },
+            { "\r\n\r\n"                                                        },
+            { "\n\r"                                                            },
+            { "\r\r\n\n"                                                        },
+            { "org.example: 1.0.0"                                              },
+            { "org.example: 1.0.0\n"                                            },
+            { "# Comment\r\norg.example: 1.0.0\r\n"                             },
+            { "# \u010Cesk\u00FD koment\u00E1\u0159\norg.example: 1.0.0\r"      },
+            { "$group: 1.0.0 < minor\norg.example: $group ; note=\"\u00E9\"\n"  },
+            { "org.example: 1.0.0 < wrong\r\n"                                  },
+            // @formatter:on
+        };
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.format;
+
+import java.text.ParseException;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.version.Version;
+import net.yetamine.pet4bnd.version.VersionVariance;
+
+/**
+ * Tests {@link LineParser}.
+ */
+public final class TestLineParser {
+
+    /** Length of the pathological fragments. */
+    private static final int PATHOLOGICAL_SIZE = 1 << 20;
+    /** Maximal number of accesses per a character of a line. */
+    private static final long COST_PER_CHARACTER = 8;
+
+    /**
+     * Tests parsing an export declaration with all details.
+     *
+     * @param line
+     *            the line to parse. It must not be {@code null}.
+     * @param name
+     *            the expected package name
+     * @param baseline
+     *            the expected baseline
+     * @param constraint
+     *            the expected constraint
+     * @param variance
+     *            the expected variance
+     * @param trailing
+     *            the expected result of the trailing test
+     *
+     * @throws ParseException
+     *             if the parsing fails unexpectedly
+     */
+    @Test(dataProvider = "exports")
+    public void testExport(String line, String name, Version baseline, Version constraint, VersionVariance variance, boolean trailing) throws ParseException {
+        final LineParser parser = new LineParser(line);
+        Assert.assertFalse(parser.ignorable());
+        Assert.assertNull(parser.attributes());
+        Assert.assertNull(parser.groupDeclaration());
+        Assert.assertEquals(parser.exportDeclaration(), name);
+        Assert.assertEquals(parser.baseline(), baseline);
+        Assert.assertEquals(parser.constraint(), constraint);
+        Assert.assertEquals(parser.variance(), variance);
+        Assert.assertEquals(parser.trailing(), trailing);
+    }
+
+    @SuppressWarnings("javadoc")
+    @DataProvider(name = "exports")
+    public static Object[][] exports() {
+        return new Object[][] { // @formatter:off
+            { "foo: 1",                     "foo",  new Version(1, 0, 0),       null,                   null,                   true    },
+            { "  foo.bar :1.2.3",           "foo.bar", new Version(1, 2, 3),    null,                   null,                   true    },
+            { "foo: 1.2.x",                 "foo",  new Version(1, 2, 0, "x"),  null,                   null,                   true    },
+            { "foo: 1..2",                  "foo",  new Version(1, 0, 0, ".2"), null,                   null,                   true    },
+            { "foo: 1.2.3.4.5",             "foo",  new Version(1, 2, 3, "4.5"), null,                  null,                   true    },
+            { "foo: 1.2.3. # comment",      "foo",  new Version(1, 2, 3),       null,                   null,                   false   },
+            { "foo: 1<2@minor",             "foo",  new Version(1, 0, 0),       new Version(2, 0, 0),   VersionVariance.MINOR,  true    },
+            { "foo:\t1 < 2.0 @ MaJoR #",    "foo",  new Version(1, 0, 0),       new Version(2, 0, 0),   VersionVariance.MAJOR,  true    },
+            { "foo: 1 < x @ micro",         "foo",  new Version(1, 0, 0),       null,                   null,                   false   },
+            { "foo: 1.2.3junk",             "foo",  new Version(1, 2, 3),       null,                   null,                   false   },
+        }; // @formatter:on
+    }
+
+    /**
+     * Tests the failure positions.
+     *
+     * @param line
+     *            the line to parse. It must not be {@code null}.
+     * @param position
+     *            the expected position of the error
+     */
+    @Test(dataProvider = "failures")
+    public void testFailure(String line, int position) {
+        final LineParser parser = new LineParser(line);
+
+        try {
+            Assert.assertNotNull(parser.exportDeclaration());
+            parser.baseline();
+            parser.constraint();
+            parser.variance();
+            Assert.fail("Expected the parsing to fail.");
+        } catch (ParseException e) {
+            Assert.assertEquals(e.getErrorOffset(), position);
+        }
+    }
+
+    @SuppressWarnings("javadoc")
+    @DataProvider(name = "failures")
+    public static Object[][] failures() {
+        return new Object[][] { // @formatter:off
+            { "foo:",                       4 },
+            { "foo: bar",                   5 },
+            { "foo: 99999999999",           5 },
+            { "foo: 1.0 < 99999999999",     8 },
+            { "foo: 1.0 @ bogus",           8 },
+        }; // @formatter:on
+    }
+
+    /**
+     * Tests parsing attributes.
+     *
+     * @param line
+     *            the line to parse. It must not be {@code null}.
+     * @param attributes
+     *            the expected attributes
+     */
+    @Test(dataProvider = "attributes")
+    public void testAttributes(String line, String attributes) {
+        Assert.assertEquals(new LineParser(line).attributes(), attributes);
+    }
+
+    @SuppressWarnings("javadoc")
+    @DataProvider(name = "attributes")
+    public static Object[][] attributes() {
+        return new Object[][] { // @formatter:off
+            { "+",                          ""                  },
+            { "  +  a:=b; c=d  \t",         "a:=b; c=d"         },
+            { "+ # not a comment",          "# not a comment"   },
+            { "+ a\r\n",                    "a"                 },
+            { "+ a\u2028b",                  null                },
+            { "foo: 1",                     null                },
+        }; // @formatter:on
+    }
+
+    /**
+     * Tests that the text representation reproduces the input.
+     *
+     * @param line
+     *            the line to parse. It must not be {@code null}.
+     */
+    @Test(dataProvider = "representations")
+    public void testRepresentation(String line) {
+        final PetParser parser = new PetParser();
+        parser.accept("$bundle: 1.0.0");
+        parser.accept(line);
+
+        final StringBuilder result = new StringBuilder();
+        parser.finish().result().get().format(result::append);
+        Assert.assertEquals(result.toString(), "$bundle: 1.0.0" + line);
+    }
+
+    @SuppressWarnings("javadoc")
+    @DataProvider(name = "representations")
+    public static Object[][] representations() {
+        return new Object[][] { // @formatter:off
+            { ""                                        },
+            { "   # Comment"                            },
+            { "foo.bar : $bundle"                       },
+            { " foo.bar:1.2.0 <2.0.0 @minor # Comment"  },
+            { "$group :\t1.0.0.q   @ none"              },
+            { "foo.bar: 1.0.0 trailing garbage"         },
+        }; // @formatter:on
+    }
+
+    /**
+     * Tests that parsing pathological lines examines every character at most a
+     * constant number of times, so that the cost of a line is linear in its
+     * length regardless of the content.
+     *
+     * @param line
+     *            the line to parse. It must not be {@code null}.
+     */
+    @Test(dataProvider = "pathological")
+    public void testLinearCost(String line) {
+        final CountingSequence source = new CountingSequence(line);
+        final LineParser parser = new LineParser(source);
+
+        // Follow the same sequence as LineToken does
+        if (!parser.ignorable() && (parser.attributes() == null)) {
+            try {
+                final boolean group = (parser.groupDeclaration() != null);
+                if (group || (parser.exportDeclaration() != null)) {
+                    if (group || (parser.groupReference() == null)) {
+                        parser.baseline();
+                    }
+
+                    parser.constraint();
+                    parser.variance();
+                    parser.trailing();
+                }
+            } catch (ParseException e) {
+                // Failures are fine, just their cost matters
+            }
+        }
+
+        final long limit = COST_PER_CHARACTER * (line.length() + 1);
+        Assert.assertTrue(source.accesses() <= limit, String.format("%d > %d", source.accesses(), limit));
+    }
+
+    @SuppressWarnings("javadoc")
+    @DataProvider(name = "pathological")
+    public static Object[][] pathological() {
+        final String s = repeat(" ", PATHOLOGICAL_SIZE);
+        final String w = repeat(" \t\f\u000B", PATHOLOGICAL_SIZE / 4);
+        final String a = repeat("a", PATHOLOGICAL_SIZE);
+
+        return new Object[][] { // @formatter:off
+            { s                                                         },
+            { s + "#" + s + "\r\n"                                      },
+            { s + "#" + s + "\n" + s                                     },
+            { "+" + s                                                   },
+            { "+" + s + "a" + w + "\r\n"                                },
+            { "+" + s + "a" + w + "\u2028"                               },
+            { "+" + s + "a" + s + "\n" + s                               },
+            { "+" + repeat(" a", PATHOLOGICAL_SIZE / 2) + s            },
+            { "+ " + a + w + "\u2028" + w                                },
+            { a                                                         },
+            { a + s + ":"                                               },
+            { "$" + a + s + ":" + s                                     },
+            { "foo:" + s + "1" + s + "<" + s + "2" + s + "@" + s + "minor" + s + "junk" },
+            { "foo:" + w + "$" + a + w + "<" + w + "x"                  },
+            { "foo: 1." + a + s                                         },
+            { "foo: " + repeat("1", PATHOLOGICAL_SIZE)                  },
+            { "foo: 1 < 2 @ " + a                                       },
+            { "foo: 1" + repeat(" <", PATHOLOGICAL_SIZE / 2)            },
+        }; // @formatter:on
+    }
+
+    /**
+     * Repeats a string.
+     *
+     * @param string
+     *            the string to repeat. It must not be {@code null}.
+     * @param count
+     *            the number of the repetitions
+     *
+     * @return the result
+     */
+    private static String repeat(String string, int count) {
+        final StringBuilder result = new StringBuilder(string.length() * count);
+        for (int i = 0; i < count; i++) {
+            result.append(string);
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * A character sequence counting the accesses to its characters.
+     */
+    private static final class CountingSequence implements CharSequence {
+
+        /** Underlying string. */
+        private final String string;
+        /** Number of the accesses. */
+        private long accesses;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param value
+         *            the underlying string. It must not be {@code null}.
+         */
+        public CountingSequence(String value) {
+            string = value;
+        }
+
+        /**
+         * Returns the number of the accesses to the characters.
+         *
+         * @return the number of the accesses
+         */
+        public long accesses() {
+            return accesses;
+        }
+
+        /**
+         * @see java.lang.CharSequence#length()
+         */
+        public int length() {
+            return string.length();
+        }
+
+        /**
+         * @see java.lang.CharSequence#charAt(int)
+         */
+        public char charAt(int index) {
+            ++accesses;
+            return string.charAt(index);
+        }
+
+        /**
+         * @see java.lang.CharSequence#subSequence(int, int)
+         */
+        public CharSequence subSequence(int start, int end) {
+            accesses += end - start;
+            return string.subSequence(start, end);
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            accesses += string.length();
+            return string;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.format;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.version.Version;
+
+/**
+ * Tests {@link PetDocument}.
+ */
+public final class TestPetDocument {
+
+    /**
+     * Tests that changing a group affects the exports that inherit from it.
+     */
+    @Test
+    public void testGroupChange() {
+        final List<String> lines = Arrays.asList( // @formatter:break
+                "$bundle: 1.0.0",                 // Line 0
+                "$api: 1.0.0 @ minor",            // Line 1
+                "org.example.api: $api",          // Line 2
+                "org.example.impl: 2.0.0"         // Line 3
+        );
+
+        final PetDocument document = new PetDocument(lines);
+        final PetParser first = document.parse(Feedback.none());
+        Assert.assertEquals(first.errorCount(), 0);
+        final PetFormat before = first.result().get();
+        new VersionResolver(before).resolve();
+        Assert.assertEquals(before.exports().get("org.example.api").version().resolution(), Version.valueOf("1.1.0"));
+
+        document.replace(1, "$api: 3.0.0 @ major");
+        final PetParser second = document.parse(Feedback.none());
+        Assert.assertEquals(second.errorCount(), 0);
+        final PetFormat after = second.result().get();
+        new VersionResolver(after).resolve();
+        Assert.assertEquals(after.exports().get("org.example.api").version().resolution(), Version.valueOf("4.0.0"));
+        Assert.assertEquals(after.exports().get("org.example.impl").version().resolution(), Version.valueOf("2.0.0"));
+
+        document.replace(1, 2, Collections.emptyList());
+        Assert.assertEquals(document.lineCount(), 3);
+        Assert.assertEquals(document.parse(Feedback.none()).errorCount(), 1);
+    }
+
+    /**
+     * Tests that the document yields the same results as parsing the whole
+     * content after random changes.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test
+    public void testRandomChanges() throws IOException {
+        final String[] samples = {
+            // @formatter:off
+            "$bundle: 1.0.0",
+            "$g1: 1.2.0 @ minor",
+            "$g2: $g1",
+            "org.example.a: $g1 < 2.0.0",
+            "org.example.b: 1.0.0",
+            "org.example.b: $bundle @ micro",
+            "+ resolution:=optional",
+            "# Comment",
+            "",
+            "org.example.c: $undefined",
+            "unknown construct",
+            "org.example.d: 1.0.0 junk",
+            // @formatter:on
+        };
+
+        final Random random = new Random(1);
+        final List<String> lines = new ArrayList<>();
+        final PetDocument document = new PetDocument();
+
+        for (int i = 0; i < 500; i++) {
+            final int start = random.nextInt(lines.size() + 1);
+            final int end = start + random.nextInt(Math.min(3, lines.size() - start) + 1);
+
+            final List<String> replacement = new ArrayList<>();
+            for (int j = random.nextInt(4); j > 0; j--) {
+                replacement.add(samples[random.nextInt(samples.length)]);
+            }
+
+            lines.subList(start, end).clear();
+            lines.addAll(start, replacement);
+            document.replace(start, end, replacement);
+            Assert.assertEquals(document.lineCount(), lines.size());
+
+            final List<String> expectedMessages = new ArrayList<>();
+            final PetParser expected = PetFormat.parse(lines, recorder(expectedMessages), false);
+            final List<String> resultMessages = new ArrayList<>();
+            final PetParser result = document.parse(recorder(resultMessages));
+
+            Assert.assertEquals(resultMessages, expectedMessages);
+            Assert.assertEquals(result.errorCount(), expected.errorCount());
+            Assert.assertEquals(result.warningCount(), expected.warningCount());
+            Assert.assertEquals(result.result().get().toBytes(), expected.result().get().toBytes());
+            Assert.assertEquals(result.result().get().exports().keySet(), expected.result().get().exports().keySet());
+        }
+    }
+
+    /**
+     * Tests that changing versions only yields the same results as parsing the
+     * whole content.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test
+    public void testVersionChanges() throws IOException {
+        final String[] versions = { "1.0.0", "2.1", "0.9.0.beta < 1.0.0", "3.0.0 @ major", "1.0.0 < 2.0.0 @ minor" };
+
+        final List<String> lines = new ArrayList<>();
+        lines.add("$bundle: 1.0.0");
+        lines.add("$api: 1.0.0");
+        for (int i = 0; i < 100; i++) {
+            lines.add("org.example.p" + i + ": " + (((i % 3) == 0) ? "$api" : ((i % 3) == 1) ? "$bundle" : "1.0.0"));
+            if ((i % 7) == 0) {
+                lines.add("+ resolution:=optional");
+            }
+        }
+
+        final Random random = new Random(1);
+        final PetDocument document = new PetDocument(lines);
+        for (int i = 0; i < 500; i++) {
+            final int index = random.nextInt(lines.size());
+            final String line = lines.get(index);
+
+            final int colon = line.indexOf(':');
+            if (line.startsWith("+")) {
+                continue;
+            }
+
+            final String version = versions[random.nextInt(versions.length)];
+            final String replacement = line.substring(0, colon + 2) + version;
+            lines.set(index, replacement);
+            document.replace(index, replacement);
+
+            final PetFormat expected = PetFormat.parse(lines, Feedback.none(), false).result().get();
+            final PetFormat result = document.parse(Feedback.none()).result().get();
+            Assert.assertEquals(result.toBytes(), expected.toBytes());
+            Assert.assertEquals(result.version().toString(), expected.version().toString());
+        }
+
+        // Resolve only the last result, resolving modifies the statements
+        final PetFormat expected = PetFormat.parse(lines, Feedback.none(), false).result().get();
+        final PetFormat result = document.parse(Feedback.none()).result().get();
+        new VersionResolver(expected).resolve();
+        new VersionResolver(result).resolve();
+        Assert.assertEquals(result.version().resolution(), expected.version().resolution());
+        expected.exports().forEach((name, export) -> {
+            final Version resolution = result.exports().get(name).version().resolution();
+            Assert.assertEquals(resolution, export.version().resolution());
+        });
+    }
+
+    /**
+     * Tests that the resolver of the document yields the same results as
+     * resolving the whole content after changing the declarations.
+     */
+    @Test
+    public void testResolver() {
+        final String[] sources = { "$bundle", "$g1", "$g2", "$g3", "1.0.0", "2.1" };
+        final String[] versions = { "1.0.0", "2.1", "0.9.0.beta" };
+        final String[] variances = { "", " @ none", " @ micro", " @ minor", " @ major" };
+
+        final List<String> prefixes = new ArrayList<>();
+        prefixes.add("$bundle: 1.0.0");
+        prefixes.add("$g1: 1.0.0");
+        prefixes.add("$g2: $g1");
+        prefixes.add("$g3: $bundle");
+        for (int i = 0; i < 50; i++) {
+            prefixes.add("org.example.p" + i + ": " + sources[i % sources.length]);
+        }
+
+        final List<String> lines = new ArrayList<>(prefixes);
+        final Random random = new Random(1);
+        final PetDocument document = new PetDocument(lines);
+        final VersionResolver resolver = document.resolver().get();
+        for (int i = 0; i < 200; i++) {
+            final int index = random.nextInt(lines.size());
+            String prefix = prefixes.get(index);
+            final int colon = prefix.indexOf(':');
+            if (prefix.indexOf('$', colon) < 0) { // Change the version if not inherited
+                prefix = prefix.substring(0, colon + 2) + versions[random.nextInt(versions.length)];
+            }
+
+            final String replacement = prefix + variances[random.nextInt(variances.length)];
+            lines.set(index, replacement);
+            document.replace(index, replacement);
+
+            // The resolver must survive the changes that keep the references
+            Assert.assertSame(document.resolver().get(), resolver);
+            final PetFormat result = (PetFormat) resolver.resolve().bundle();
+            final PetFormat expected = PetFormat.parse(lines, Feedback.none(), false).result().get();
+            new VersionResolver(expected).resolve();
+
+            Assert.assertEquals(result.version().resolution(), expected.version().resolution());
+            expected.exports().forEach((name, export) -> {
+                final Version resolution = result.exports().get(name).version().resolution();
+                Assert.assertEquals(resolution, export.version().resolution(), name);
+            });
+        }
+
+        document.replace(3, "$g3: $g2");
+        Assert.assertNotSame(document.resolver().get(), resolver);
+        document.replace(1, "$g1: junk");
+        Assert.assertFalse(document.resolver().isPresent());
+    }
+
+    /**
+     * Makes a feedback that records all messages.
+     *
+     * @param messages
+     *            the list to record the messages in. It must not be
+     *            {@code null}.
+     *
+     * @return the feedback
+     */
+    private static Feedback recorder(List<String> messages) {
+        return new Feedback() {
+
+            public void fail(String message, Throwable t) {
+                messages.add("E: " + message);
+            }
+
+            public void warn(String message, Throwable t) {
+                messages.add("W: " + message);
+            }
+
+            public void info(String message) {
+                messages.add("I: " + message);
+            }
+        };
+    }
+}
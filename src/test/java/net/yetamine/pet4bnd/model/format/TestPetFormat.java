@@ -0,0 +1,289 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.format;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.PackageExport;
+
+/**
+ * Tests {@link PetFormat}.
+ */
+public final class TestPetFormat {
+
+    /**
+     * Tests that the parallel parsing yields the same results as the sequential
+     * parsing.
+     *
+     * @param seed
+     *            the seed for generating the content
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test(dataProvider = "seeds")
+    public void testParallel(long seed) throws IOException {
+        final List<String> lines = generate(new Random(seed), 20_000);
+
+        final RecordingFeedback sequentialFeedback = new RecordingFeedback();
+        final PetParser sequential = PetFormat.parse(lines, sequentialFeedback, false);
+        final RecordingFeedback parallelFeedback = new RecordingFeedback();
+        final PetParser parallel = PetFormat.parse(lines, parallelFeedback, true);
+
+        Assert.assertEquals(parallel.errorCount(), sequential.errorCount());
+        Assert.assertEquals(parallel.warningCount(), sequential.warningCount());
+        Assert.assertEquals(parallelFeedback.messages, sequentialFeedback.messages);
+
+        final PetFormat expected = sequential.result().get();
+        final PetFormat result = parallel.result().get();
+        Assert.assertEquals(result.toBytes(), expected.toBytes());
+
+        // The file is streamed partially and analyzed partially in parallel
+        final Path path = Files.createTempFile("pet4bnd-", ".pet");
+        try {
+            Files.write(path, lines, StandardCharsets.UTF_8);
+            final RecordingFeedback fileFeedback = new RecordingFeedback();
+            final PetParser file = PetFormat.parse(path, fileFeedback);
+            Assert.assertEquals(fileFeedback.messages, sequentialFeedback.messages);
+            Assert.assertEquals(file.result().get().toBytes(), expected.toBytes());
+        } finally {
+            Files.delete(path);
+        }
+
+        Assert.assertEquals(result.version().toString(), expected.version().toString());
+        Assert.assertEquals(result.exports().keySet(), expected.exports().keySet());
+        expected.exports().forEach((name, export) -> {
+            final PackageExport found = result.exports().get(name);
+            Assert.assertEquals(found.version().toString(), export.version().toString());
+            Assert.assertEquals(found.attributes(), export.attributes());
+        });
+    }
+
+    /**
+     * Tests that the read-only parsing yields the same model and the same
+     * feedback as the lossless parsing.
+     *
+     * @param seed
+     *            the seed for generating the content
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test(dataProvider = "seeds")
+    public void testRead(long seed) throws IOException {
+        final List<String> lines = generate(new Random(seed), 20_000);
+        final Path path = Files.createTempFile("pet4bnd-", ".pet");
+
+        try {
+            Files.write(path, lines, StandardCharsets.UTF_8);
+
+            final RecordingFeedback losslessFeedback = new RecordingFeedback();
+            final PetParser lossless = PetFormat.parse(path, losslessFeedback);
+            final RecordingFeedback readFeedback = new RecordingFeedback();
+            final PetParser read = PetFormat.read(path, readFeedback);
+
+            Assert.assertTrue(lossless.lossless());
+            Assert.assertFalse(read.lossless());
+            Assert.assertNull(read.representation());
+            Assert.assertEquals(read.errorCount(), lossless.errorCount());
+            Assert.assertEquals(read.warningCount(), lossless.warningCount());
+            Assert.assertEquals(readFeedback.messages, losslessFeedback.messages);
+
+            final PetFormat expected = lossless.result().get();
+            final PetFormat result = read.result().get();
+            Assert.assertTrue(expected.lossless());
+            Assert.assertFalse(result.lossless());
+            Assert.assertEquals(result.version().toString(), expected.version().toString());
+            Assert.assertEquals(result.exports().keySet(), expected.exports().keySet());
+            expected.exports().forEach((name, export) -> {
+                final PackageExport found = result.exports().get(name);
+                Assert.assertEquals(found.version().toString(), export.version().toString());
+                Assert.assertEquals(found.attributes(), export.attributes());
+            });
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Tests that the read-only result can't be persisted.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testReadPersist() throws IOException {
+        final Path path = Files.createTempFile("pet4bnd-", ".pet");
+
+        try {
+            Files.write(path, Arrays.asList("$bundle: 1.0.0", "org.example: $bundle"), StandardCharsets.UTF_8);
+            final PetFormat result = PetFormat.read(path, Feedback.none()).result().get();
+            result.persist(new ByteArrayOutputStream());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Tests that the diagnostics record the problems with their positions even
+     * if no feedback emits them.
+     */
+    @Test
+    public void testDiagnostics() {
+        final List<String> lines = Arrays.asList( // @formatter:break
+                "$bundle: 1.0.0",                 // Line 1
+                "unknown",                        // Line 2
+                "org.example.a: 1.0.0 @ bogus",   // Line 3
+                "org.example.b: $undefined",      // Line 4
+                "org.example.c: 99999999999",     // Line 5
+                "org.example.c: 1.0.0 junk",      // Line 6
+                "$bundle: 2.0.0"                  // Line 7
+        );
+
+        final PetParser parser = PetFormat.parse(lines, Feedback.none(), false);
+        Assert.assertEquals(parser.errorCount(), 4);
+        Assert.assertEquals(parser.warningCount(), 2);
+
+        final Diagnostics diagnostics = parser.diagnostics();
+        Assert.assertEquals(diagnostics.size(), 6);
+
+        final Object[][] expected = {
+            // @formatter:off
+            { Problem.UNKNOWN_CONSTRUCT,    2,  0, null         },
+            { Problem.INVALID_VARIANCE,     3, 20, "BOGUS"      },
+            { Problem.UNDEFINED_GROUP,      4, 25, "$undefined" },
+            { Problem.INVALID_NUMBER,       5, 15, "99999999999"},
+            { Problem.UNEXPECTED_TRAILING,  6, -1, null         },
+            { Problem.DUPLICATE_GROUP,      7,  0, "$bundle"    }
+            // @formatter:on
+        };
+
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(diagnostics.problem(i), expected[i][0]);
+            Assert.assertEquals(diagnostics.line(i), expected[i][1]);
+            Assert.assertEquals(diagnostics.column(i), expected[i][2]);
+            Assert.assertEquals(diagnostics.argument(i), expected[i][3]);
+        }
+
+        Assert.assertEquals(diagnostics.message(2), "Reference to undefined group '$undefined'.");
+        Assert.assertEquals(diagnostics.message(3), "For input string: \"99999999999\"");
+    }
+
+    @SuppressWarnings("javadoc")
+    @DataProvider(name = "seeds")
+    public static Object[][] seeds() {
+        return new Object[][] { { 1L }, { 2L }, { 3L } };
+    }
+
+    /**
+     * Generates lines with valid and invalid constructs, duplicates and
+     * references to defined and undefined groups.
+     *
+     * @param random
+     *            the source of randomness. It must not be {@code null}.
+     * @param count
+     *            the number of lines
+     *
+     * @return the lines
+     */
+    private static List<String> generate(Random random, int count) {
+        final String[] versions = { "1.0.0", "1.2", "2.0.0.beta", "$bundle", "$g1", "$g2", "$undefined", "x.y" };
+        final String[] suffixes = { "", " < 2.0.0", " @ minor", " < 1.5.0 @ MICRO", " @ bogus", " junk", " # note" };
+
+        final List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final String version = versions[random.nextInt(versions.length)];
+            final String suffix = suffixes[random.nextInt(suffixes.length)];
+
+            switch (random.nextInt(8)) {
+                case 0:
+                    result.add("# Comment " + i);
+                    break;
+
+                case 1:
+                    result.add("+ resolution:=optional");
+                    break;
+
+                case 2:
+                    result.add("$g" + random.nextInt(4) + ": " + version + suffix);
+                    break;
+
+                case 3:
+                    result.add(((i % 5000) == 0) ? "$bundle: 1.0.0" : "?" + i);
+                    break;
+
+                default:
+                    result.add("org.example.p" + random.nextInt(count) + ": " + version + suffix);
+                    break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Records all messages with their line references.
+     */
+    private static final class RecordingFeedback implements Feedback {
+
+        /** Recorded messages. */
+        final List<String> messages = new ArrayList<>();
+
+        /**
+         * Creates a new instance.
+         */
+        public RecordingFeedback() {
+            // Default constructor
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.feedback.Feedback#fail(java.lang.String,
+         *      java.lang.Throwable)
+         */
+        public void fail(String message, Throwable t) {
+            messages.add("E: " + message);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.feedback.Feedback#warn(java.lang.String,
+         *      java.lang.Throwable)
+         */
+        public void warn(String message, Throwable t) {
+            messages.add("W: " + message);
+        }
+
+        /**
+         * @see net.yetamine.pet4bnd.feedback.Feedback#info(java.lang.String)
+         */
+        public void info(String message) {
+            messages.add("I: " + message);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.format;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.PackageExport;
+import net.yetamine.pet4bnd.model.VersionGroup;
+import net.yetamine.pet4bnd.model.VersionResolver;
+
+/**
+ * Tests {@link PetSnapshot}.
+ */
+public final class TestPetSnapshot {
+
+    /** Content of the source. */
+    private static final List<String> SOURCE = Arrays.asList(
+            // @formatter:off
+            "$bundle: 1.2.0 < 2.0.0",
+            "$api: 1.0.0.beta @ minor",
+            "$unused: 3.0.0",
+            "$internal: $api @ micro",
+            "# Comment",
+            "org.example.api: $api",
+            "org.example.api.spi: $api @ major",
+            "+ uses:=\"org.example.api\"",
+            "org.example.api.internal: $internal",
+            "org.example.core: $bundle < 2.0.0",
+            "org.example.impl: 0.9.0 < 1.0.0 @ micro",
+            "+ resolution:=optional; note=\"\u00e9t\u00e9\""
+            // @formatter:on
+    );
+
+    /** Temporary directory for the test. */
+    private Path directory;
+
+    /**
+     * Makes the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pet4bnd-");
+    }
+
+    /**
+     * Removes the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Tests that a stored snapshot yields the same definition as parsing.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        final Path source = Files.write(directory.resolve("exports.pet"), SOURCE, StandardCharsets.UTF_8);
+        final Path snapshot = directory.resolve("cache").resolve("exports.petc");
+
+        final byte[] key = PetSnapshot.key(source);
+        final PetFormat expected = PetFormat.read(source, Feedback.none()).result().get();
+        PetSnapshot.store(snapshot, key, expected);
+
+        final PetFormat result = PetSnapshot.load(snapshot, key).get();
+        Assert.assertFalse(result.lossless());
+        Assert.assertEquals(result.version().toString(), expected.version().toString());
+        Assert.assertEquals(result.exports().keySet(), expected.exports().keySet());
+        expected.exports().forEach((name, export) -> {
+            final PackageExport found = result.exports().get(name);
+            Assert.assertEquals(found.packageName(), name);
+            Assert.assertEquals(found.version().toString(), export.version().toString());
+            Assert.assertEquals(found.version().inheriting(), export.version().inheriting());
+            Assert.assertEquals(found.attributes(), export.attributes());
+        });
+
+        // The inheritance must be shared in the same way
+        final PackageExport api = result.exports().get("org.example.api");
+        final PackageExport spi = result.exports().get("org.example.api.spi");
+        Assert.assertSame(api.version().inheritance().get(), spi.version().inheritance().get());
+        Assert.assertSame(result.exports().get("org.example.core").version().inheritance().get(), result.version());
+        // Including the nested groups
+        final VersionGroup internal = (VersionGroup) result.exports().get("org.example.api.internal").version().inheritance().get();
+        Assert.assertSame(internal.inheritance().get(), api.version().inheritance().get());
+
+        new VersionResolver(expected).resolve();
+        new VersionResolver(result).resolve();
+        Assert.assertEquals(result.version().resolution(), expected.version().resolution());
+        expected.exports().forEach((name, export) -> {
+            Assert.assertEquals(result.exports().get(name).version().resolution(), export.version().resolution());
+        });
+    }
+
+    /**
+     * Tests that a snapshot is not loaded when the source changes or when the
+     * snapshot is missing or corrupted.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test
+    public void testMismatch() throws IOException {
+        final Path source = Files.write(directory.resolve("exports.pet"), SOURCE, StandardCharsets.UTF_8);
+        final Path snapshot = directory.resolve("exports.petc");
+
+        final byte[] key = PetSnapshot.key(source);
+        Assert.assertFalse(PetSnapshot.load(snapshot, key).isPresent());
+        PetSnapshot.store(snapshot, key, PetFormat.read(source, Feedback.none()).result().get());
+        Assert.assertTrue(PetSnapshot.load(snapshot, key).isPresent());
+
+        Files.write(source, Arrays.asList("$bundle: 1.0.0"), StandardCharsets.UTF_8);
+        final byte[] changed = PetSnapshot.key(source);
+        Assert.assertFalse(Arrays.equals(changed, key));
+        Assert.assertFalse(PetSnapshot.load(snapshot, changed).isPresent());
+
+        final byte[] content = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(content, content.length - 5));
+        Assert.assertFalse(PetSnapshot.load(snapshot, key).isPresent());
+    }
+}
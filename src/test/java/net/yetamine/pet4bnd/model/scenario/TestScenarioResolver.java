@@ -0,0 +1,235 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.scenario;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.Bundle;
+import net.yetamine.pet4bnd.model.PackageExport;
+import net.yetamine.pet4bnd.model.VersionGroup;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.VersionStatement;
+import net.yetamine.pet4bnd.model.format.PetDocument;
+import net.yetamine.pet4bnd.version.Version;
+import net.yetamine.pet4bnd.version.VersionVariance;
+
+/**
+ * Tests {@link ScenarioResolver}.
+ */
+public final class TestScenarioResolver {
+
+    /** Content of the source. */
+    private static final List<String> SOURCE = Arrays.asList(
+            // @formatter:off
+            "$bundle: 1.2.0 < 2.0.0",
+            "$api: 1.0.0.beta @ minor",
+            "$spi: $api",
+            "org.example.impl: 0.9.0 < 1.0.0 @ micro",
+            "+ resolution:=optional",
+            "org.example.api: $api",
+            "org.example.api.spi: $spi @ micro",
+            "org.example.util: 2.1.0",
+            "org.example.core: $bundle < 3.0.0"
+            // @formatter:on
+    );
+
+    /**
+     * Tests that scenarios share the changes of the scenarios they derive
+     * from and that the latest change of a statement wins.
+     */
+    @Test
+    public void testScenario() {
+        final Scenario empty = Scenario.empty();
+        Assert.assertTrue(empty.isEmpty());
+
+        final Scenario first = empty.variance("org.example.util", VersionVariance.MAJOR);
+        final Scenario second = first.variance("org.example.util", VersionVariance.MINOR);
+        final Scenario third = second.baseline("org.example.util", Version.valueOf("3.0.0"));
+        final Scenario other = first.variance("$api", null);
+
+        Assert.assertTrue(empty.isEmpty());
+        Assert.assertEquals(first.size(), 1);
+        Assert.assertEquals(second.size(), 2);
+        Assert.assertEquals(third.size(), 3);
+        Assert.assertEquals(other.size(), 2);
+
+        Assert.assertEquals(first.changes().get("org.example.util").variance, VersionVariance.MAJOR);
+        Assert.assertEquals(second.changes().get("org.example.util").variance, VersionVariance.MINOR);
+        Assert.assertEquals(third.changes().get("org.example.util").variance, VersionVariance.MINOR);
+        Assert.assertEquals(third.changes().get("org.example.util").baseline, Version.valueOf("3.0.0"));
+        Assert.assertEquals(other.changes().keySet().size(), 2);
+        Assert.assertFalse(second.changes().containsKey("$api"));
+    }
+
+    /**
+     * Tests that scenarios yield the same resolutions as resolving the changed
+     * definition from scratch and do not affect each other.
+     */
+    @Test
+    public void testResolve() {
+        final Bundle bundle = parse();
+        final ScenarioResolver resolver = new ScenarioResolver(bundle);
+        Assert.assertEquals(resolver.base().version().resolution(), Version.valueOf("1.2.1"));
+
+        final Scenario major = Scenario.empty().variance("$api", VersionVariance.MAJOR);
+        final ScenarioResult result = resolver.resolve(major);
+        Assert.assertEquals(result.resolution("org.example.api"), Version.valueOf("2.0.0.beta"));
+        Assert.assertEquals(result.resolution("org.example.impl"), Version.valueOf("0.9.1"));
+        Assert.assertEquals(result.changes().get("$api"), Version.valueOf("2.0.0.beta"));
+        Assert.assertFalse(result.changes().containsKey("org.example.impl"));
+        assertEquivalent(bundle, major, result);
+
+        final Scenario bundleMajor = Scenario.empty().variance(Scenario.BUNDLE_VERSION, VersionVariance.MAJOR);
+        final ScenarioResult violating = resolver.resolve(bundleMajor);
+        Assert.assertEquals(violating.version(), Version.valueOf("2.0.0"));
+        Assert.assertFalse(violating.test());
+        assertEquivalent(bundle, bundleMajor, violating);
+
+        // The former scenarios must not leak into the next one
+        final ScenarioResult none = resolver.resolve(Scenario.empty());
+        Assert.assertTrue(none.changes().isEmpty());
+        Assert.assertEquals(none.version(), resolver.base().version().resolution());
+        Assert.assertTrue(none.test());
+
+        // The original definition remains untouched
+        Assert.assertFalse(bundle.exports().get("org.example.api").version().variance().isPresent());
+    }
+
+    /**
+     * Tests that random scenarios yield the same resolutions as resolving the
+     * changed definition from scratch.
+     */
+    @Test
+    public void testRandomScenarios() {
+        final Bundle bundle = parse();
+        final ScenarioResolver resolver = new ScenarioResolver(bundle);
+        final VersionVariance[] variances = VersionVariance.values();
+        final String[] names = {
+                // @formatter:off
+                Scenario.BUNDLE_VERSION, "$api", "$spi",
+                "org.example.impl", "org.example.api", "org.example.api.spi",
+                "org.example.util", "org.example.core"
+                // @formatter:on
+        };
+
+        final Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            Scenario scenario = Scenario.empty();
+            for (int j = random.nextInt(4); 0 <= j; j--) {
+                final String name = names[random.nextInt(names.length)];
+                if (random.nextInt(4) == 0) {
+                    scenario = scenario.baseline(name, Version.valueOf(random.nextInt(3) + ".0.0"));
+                } else if (random.nextInt(4) == 0) {
+                    scenario = scenario.variance(name, null);
+                } else {
+                    scenario = scenario.variance(name, variances[random.nextInt(variances.length)]);
+                }
+            }
+
+            assertEquivalent(bundle, scenario, resolver.resolve(scenario));
+        }
+    }
+
+    /**
+     * Tests that changing an unknown statement fails.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownStatement() {
+        new ScenarioResolver(parse()).resolve(Scenario.empty().variance("org.example.unknown", null));
+    }
+
+    /**
+     * Asserts that the result of a scenario equals to applying the changes to
+     * a fresh copy of the definition and resolving it from scratch.
+     *
+     * @param definition
+     *            the original definition. It must not be {@code null}.
+     * @param scenario
+     *            the scenario. It must not be {@code null}.
+     * @param result
+     *            the result to check. It must not be {@code null}.
+     */
+    private static void assertEquivalent(Bundle definition, Scenario scenario, ScenarioResult result) {
+        final Bundle bundle = parse();
+        final Map<String, VersionGroup> groups = groups(bundle);
+        scenario.changes().forEach((name, change) -> {
+            final VersionStatement statement;
+            if (Scenario.BUNDLE_VERSION.equals(name)) {
+                statement = bundle.version();
+            } else if (groups.containsKey(name)) {
+                statement = groups.get(name);
+            } else {
+                statement = bundle.exports().get(name).version();
+            }
+
+            if (change.baseline != null) {
+                statement.baseline(change.baseline);
+            }
+
+            if (change.varianceChange) {
+                statement.variance(change.variance);
+            }
+        });
+
+        final boolean valid = new VersionResolver(bundle).resolve().test();
+        Assert.assertEquals(result.version(), bundle.version().resolution());
+        Assert.assertEquals(result.test(), valid);
+        bundle.exports().forEach((name, export) -> {
+            Assert.assertEquals(result.resolution(name), export.version().resolution(), name);
+        });
+    }
+
+    /**
+     * Collects the groups of a bundle.
+     *
+     * @param bundle
+     *            the bundle. It must not be {@code null}.
+     *
+     * @return the groups by their identifiers
+     */
+    private static Map<String, VersionGroup> groups(Bundle bundle) {
+        final Map<String, VersionGroup> result = new HashMap<>();
+        for (PackageExport export : bundle.exports().values()) {
+            Optional<VersionStatement> source = export.version().inheritance();
+            while (source.isPresent() && (source.get() instanceof VersionGroup)) {
+                final VersionGroup group = (VersionGroup) source.get();
+                result.put(group.identifier(), group);
+                source = group.inheritance();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses the source.
+     *
+     * @return the parsed definition
+     */
+    private static Bundle parse() {
+        return new PetDocument(SOURCE).parse(Feedback.none()).result().get();
+    }
+}
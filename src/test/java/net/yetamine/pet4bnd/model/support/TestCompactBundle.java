@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.model.support;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.format.Format2Bnd;
+import net.yetamine.pet4bnd.model.Bundle;
+import net.yetamine.pet4bnd.model.PackageExport;
+import net.yetamine.pet4bnd.model.PackageVersion;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.format.PetDocument;
+import net.yetamine.pet4bnd.model.format.PetFormat;
+import net.yetamine.pet4bnd.version.Version;
+import net.yetamine.pet4bnd.version.VersionVariance;
+
+/**
+ * Tests {@link CompactBundle}.
+ */
+public final class TestCompactBundle {
+
+    /** Content of the source. */
+    private static final List<String> SOURCE = Arrays.asList(
+            // @formatter:off
+            "$bundle: 1.2.0 < 2.0.0",
+            "$api: 1.0.0.beta @ minor",
+            "$spi: $api @ micro",
+            "$core: $bundle",
+            "org.example.api: $api",
+            "org.example.api.spi: $spi @ major",
+            "+ uses:=\"org.example.api\"",
+            "org.example.core: $core < 3.0.0",
+            "org.example.impl: 0.9.0 < 1.0.0 @ micro",
+            "+ resolution:=optional",
+            "org.example.large: 3000000.0.0 @ minor",
+            "org.example.beta: 2.0.0.beta",
+            "org.example.fixed: 4.0.0"
+            // @formatter:on
+    );
+
+    /**
+     * Tests that a copy yields the same results as the original.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test
+    public void testCopy() throws IOException {
+        final PetFormat original = parse();
+        final CompactBundle copy = CompactBundle.copyOf(original);
+        Assert.assertEquals(copy.exports().keySet(), original.exports().keySet());
+        Assert.assertEquals(new ArrayList<>(copy.exports().keySet()), new ArrayList<>(original.exports().keySet()));
+
+        original.exports().forEach((name, export) -> {
+            final PackageExport found = copy.exports().get(name);
+            Assert.assertEquals(found.packageName(), name);
+            Assert.assertEquals(found.attributes(), export.attributes());
+            Assert.assertEquals(found.version().baseline(), export.version().baseline());
+            Assert.assertEquals(found.version().constraint(), export.version().constraint());
+            Assert.assertEquals(found.version().variance(), export.version().variance());
+            Assert.assertEquals(found.version().inheriting(), export.version().inheriting());
+        });
+
+        new VersionResolver(original).resolve();
+        new VersionResolver(copy).resolve();
+        Assert.assertEquals(copy.version().resolution(), original.version().resolution());
+        original.exports().forEach((name, export) -> {
+            Assert.assertEquals(copy.exports().get(name).version().resolution(), export.version().resolution(), name);
+        });
+
+        final Clock clock = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+        final byte[] expected = new Format2Bnd(original).timestamp(clock).toBytes();
+        Assert.assertEquals(new Format2Bnd(copy).timestamp(clock).toBytes(), expected);
+    }
+
+    /**
+     * Tests the views of the exports.
+     */
+    @Test
+    public void testViews() {
+        final CompactBundle bundle = CompactBundle.copyOf(parse());
+        Assert.assertNull(bundle.exports().get("org.example.missing"));
+        Assert.assertNull(bundle.exports().get(Boolean.TRUE));
+        Assert.assertFalse(bundle.exports().containsKey("org.example.missing"));
+        Assert.assertTrue(bundle.exports().containsKey("org.example.api"));
+
+        final PackageExport export = bundle.exports().get("org.example.impl");
+        Assert.assertEquals(export, bundle.exports().get("org.example.impl"));
+        Assert.assertEquals(export.hashCode(), bundle.exports().get("org.example.impl").hashCode());
+        Assert.assertEquals(export.version(), export.version());
+        Assert.assertNotEquals(export, bundle.exports().get("org.example.api"));
+        Assert.assertNotEquals(export, CompactBundle.copyOf(bundle).exports().get("org.example.impl"));
+
+        final PackageVersion version = export.version();
+        version.baseline(Version.valueOf("0.9.1.q"));
+        version.constraint(null);
+        version.variance(VersionVariance.MAJOR);
+        Assert.assertEquals(export.version().resolution(), Version.valueOf("1.0.0.q"));
+        Assert.assertFalse(export.version().constraint().isPresent());
+        version.resolve(Version.valueOf("5.0.0"));
+        Assert.assertEquals(export.version().resolution(), Version.valueOf("5.0.0"));
+        version.resolve(null);
+        Assert.assertEquals(export.version().resolution(), Version.valueOf("1.0.0.q"));
+
+        // Detach an inheriting version
+        final PackageVersion api = bundle.exports().get("org.example.api").version();
+        final VersionResolver resolver = new VersionResolver(bundle).resolve();
+        Assert.assertEquals(api.resolution(), Version.valueOf("2.0.0.beta"));
+        api.inherit(null);
+        Assert.assertFalse(api.inheriting());
+        Assert.assertEquals(api.baseline(), Version.valueOf("1.0.0.beta"));
+        Assert.assertEquals(api.resolution(), Version.valueOf("2.0.0.beta"));
+
+        // A new view must be recognized by the resolver
+        api.inherit(bundle.version());
+        resolver.invalidate(bundle.exports().get("org.example.api").version()).resolve();
+        Assert.assertEquals(api.resolution(), bundle.version().resolution());
+
+        try {
+            api.inherit(api);
+            Assert.fail("Cycle not detected.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertSame(api.inheritance().get(), bundle.version());
+        }
+    }
+
+    /**
+     * Tests restoring the baselines.
+     */
+    @Test
+    public void testRestore() {
+        final Bundle bundle = CompactBundle.copyOf(parse());
+        new VersionResolver(bundle).resolve();
+        final Version large = bundle.exports().get("org.example.large").version().resolution();
+        Assert.assertEquals(large, Version.valueOf("3000000.1.0"));
+        bundle.restore();
+
+        final PackageVersion version = bundle.exports().get("org.example.large").version();
+        Assert.assertEquals(version.baseline(), large);
+        Assert.assertEquals(version.variance(), Optional.of(VersionVariance.NONE));
+    }
+
+    /**
+     * Parses the source.
+     *
+     * @return the result
+     */
+    private static PetFormat parse() {
+        return new PetDocument(SOURCE).parse(Feedback.none()).result().get();
+    }
+}
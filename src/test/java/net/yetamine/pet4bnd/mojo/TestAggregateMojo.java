@@ -0,0 +1,241 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.mojo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.format.Format2Bnd;
+import net.yetamine.pet4bnd.format.Format2Map;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.format.PetFormat;
+
+/**
+ * Tests {@link AggregateMojo}.
+ */
+public final class TestAggregateMojo {
+
+    /** Temporary directory. */
+    private Path directory;
+
+    /**
+     * Creates the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pet4bnd-");
+    }
+
+    /**
+     * Removes the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Tests that all modules get their outputs.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testModules() throws Exception {
+        final Path shared = Files.write(directory.resolve("shared.pet"), definition("2.0.0"), StandardCharsets.UTF_8);
+
+        final List<MavenProject> projects = new ArrayList<>();
+        projects.add(project("root", "1.0.0")); // No outputs
+        for (int i = 0; i < 10; i++) {
+            final MavenProject project = project("module-" + i, (i % 2 == 0) ? "1.0.0" : "1.0.0-SNAPSHOT");
+            project.getProperties().setProperty("pet4bnd.output", "target/exports.bnd");
+            project.getProperties().setProperty("pet4bnd.export", "target/exports.properties");
+            if (i % 3 == 0) { // Share the definition file
+                project.getProperties().setProperty("pet4bnd.source", shared.toString());
+            } else { // Use the default definition file
+                Files.write(project.getBasedir().toPath().resolve("exports.pet"), definition("1." + i + ".0"), StandardCharsets.UTF_8);
+            }
+
+            projects.add(project);
+        }
+
+        final AggregateMojo mojo = mojo(projects);
+        mojo.execute();
+
+        for (MavenProject project : projects.subList(1, projects.size())) {
+            final Path basedir = project.getBasedir().toPath();
+            final String source = project.getProperties().getProperty("pet4bnd.source");
+            final Path sourcePath = (source != null) ? basedir.resolve(source) : basedir.resolve("exports.pet");
+            final PetFormat definition = PetFormat.read(sourcePath, Feedback.none()).result().get();
+            new VersionResolver(definition).resolve();
+
+            final boolean bundleVersionRequired = !project.getVersion().endsWith("-SNAPSHOT");
+            final ByteArrayOutputStream bnd = new ByteArrayOutputStream();
+            new Format2Bnd(definition, bundleVersionRequired).timestamp(null).persist(bnd);
+            Assert.assertEquals(Files.readAllBytes(basedir.resolve("target/exports.bnd")), bnd.toByteArray());
+
+            final ByteArrayOutputStream properties = new ByteArrayOutputStream();
+            new Format2Map(definition).timestamp(null).persist(properties);
+            Assert.assertEquals(Files.readAllBytes(basedir.resolve("target/exports.properties")), properties.toByteArray());
+        }
+
+        Assert.assertFalse(Files.exists(directory.resolve("root/target")));
+        mojo(projects).execute(); // Again with the fingerprints
+    }
+
+    /**
+     * Tests that the modules may specify the location of the snapshot.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testSnapshotLocation() throws Exception {
+        final List<MavenProject> projects = new ArrayList<>();
+        for (String name : Arrays.asList("default", "relocated", "disabled")) {
+            final MavenProject project = project(name, "1.0.0");
+            project.getProperties().setProperty("pet4bnd.output", "target/exports.bnd");
+            Files.write(project.getBasedir().toPath().resolve("exports.pet"), definition("1.0.0"), StandardCharsets.UTF_8);
+            projects.add(project);
+        }
+
+        projects.get(1).getProperties().setProperty("pet4bnd.cache", "cache/exports.petc");
+        projects.get(2).getProperties().setProperty("pet4bnd.cache", "");
+        mojo(projects).execute();
+
+        Assert.assertTrue(Files.isRegularFile(directory.resolve("default/target/pet4bnd/exports.petc")));
+        Assert.assertTrue(Files.isRegularFile(directory.resolve("relocated/cache/exports.petc")));
+        Assert.assertFalse(Files.exists(directory.resolve("relocated/target/pet4bnd/exports.petc")));
+        Assert.assertFalse(Files.exists(directory.resolve("disabled/target/pet4bnd/exports.petc")));
+        Assert.assertTrue(Files.isRegularFile(directory.resolve("disabled/target/exports.bnd")));
+    }
+
+    /**
+     * Tests that a failing module fails the execution, but does not prevent
+     * the other modules from processing.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testFailure() throws Exception {
+        final MavenProject broken = project("broken", "1.0.0");
+        broken.getProperties().setProperty("pet4bnd.output", "target/exports.bnd");
+        Files.write(broken.getBasedir().toPath().resolve("exports.pet"), Arrays.asList("$bundle: x"), StandardCharsets.UTF_8);
+
+        final MavenProject valid = project("valid", "1.0.0");
+        valid.getProperties().setProperty("pet4bnd.output", "target/exports.bnd");
+        Files.write(valid.getBasedir().toPath().resolve("exports.pet"), definition("1.0.0"), StandardCharsets.UTF_8);
+
+        try {
+            mojo(Arrays.asList(broken, valid)).execute();
+            Assert.fail("Failure expected.");
+        } catch (MojoExecutionException e) {
+            Assert.assertTrue(Files.isRegularFile(directory.resolve("valid/target/exports.bnd")));
+            Assert.assertFalse(Files.exists(directory.resolve("broken/target/exports.bnd")));
+        }
+    }
+
+    /**
+     * Makes the aggregator for the given projects.
+     *
+     * @param projects
+     *            the projects of the reactor. It must not be {@code null}.
+     *
+     * @return the aggregator
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    private AggregateMojo mojo(List<MavenProject> projects) throws Exception {
+        final AggregateMojo result = new AggregateMojo();
+        result.setLog(TestMojoConcurrency.SILENT_LOG);
+        TestMojoConcurrency.set(result, "project", projects.get(0));
+        TestMojoConcurrency.set(result, "session", this);
+        TestMojoConcurrency.set(result, "reactorProjects", projects);
+        TestMojoConcurrency.set(result, "bundleVersion", "release");
+        TestMojoConcurrency.set(result, "threads", 4);
+        TestMojoConcurrency.set(result, "cache", directory.resolve("root/target/pet4bnd/exports.petc").toString());
+        TestMojoConcurrency.set(result, "fingerprints", directory.resolve("fingerprints").toString());
+        TestMojoConcurrency.set(result, "deterministic", true);
+        return result;
+    }
+
+    /**
+     * Makes a project in its own directory.
+     *
+     * @param name
+     *            the name of the project. It must not be {@code null}.
+     * @param version
+     *            the version of the project. It must not be {@code null}.
+     *
+     * @return the project
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    private MavenProject project(String name, String version) throws IOException {
+        final Path basedir = Files.createDirectories(directory.resolve(name));
+        final MavenProject result = new MavenProject();
+        result.setArtifactId(name);
+        result.setVersion(version);
+        result.setFile(basedir.resolve("pom.xml").toFile());
+        result.getBuild().setDirectory(basedir.resolve("target").toString());
+        return result;
+    }
+
+    /**
+     * Makes the lines of a definition file.
+     *
+     * @param version
+     *            the version of the bundle. It must not be {@code null}.
+     *
+     * @return the lines
+     */
+    private static List<String> definition(String version) {
+        final List<String> result = new ArrayList<>();
+        result.add("$bundle: " + version);
+        for (int i = 0; i < 20; i++) {
+            result.add("org.example.e" + i + ": 1." + i + ".0" + ((i % 4 == 0) ? " @ minor" : ""));
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.mojo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.model.ResolvedBundle;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.format.PetFormat;
+
+/**
+ * Tests {@link DefinitionCache}.
+ */
+public final class TestDefinitionCache {
+
+    /** Path to the definition file. */
+    private Path source;
+    /** Number of loads. */
+    private final AtomicInteger loads = new AtomicInteger();
+
+    /**
+     * Prepares the definition file.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @BeforeMethod
+    public void setUp() throws Exception {
+        source = Files.createTempFile("pet4bnd-test-", ".pet");
+        Files.write(source, Collections.singletonList("$bundle: 1.0.0"));
+        loads.set(0);
+    }
+
+    /**
+     * Removes the definition file.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @AfterMethod
+    public void tearDown() throws Exception {
+        Files.delete(source);
+    }
+
+    /**
+     * Tests that the entries are shared until the file changes or the entry
+     * is invalidated.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testSharing() throws Exception {
+        final Object session = new Object();
+        final DefinitionCache cache = DefinitionCache.forSession(session);
+        Assert.assertSame(DefinitionCache.forSession(session), cache);
+        Assert.assertNotSame(DefinitionCache.forSession(null), DefinitionCache.forSession(null));
+
+        final ResolvedBundle first = cache.get(source, this::load);
+        Assert.assertSame(cache.get(source.toAbsolutePath(), this::load), first);
+        Assert.assertEquals(loads.get(), 1);
+
+        Files.write(source, Collections.singletonList("$bundle: 2.0.0 @ minor"));
+        final ResolvedBundle second = cache.get(source, this::load);
+        Assert.assertEquals(second.version().resolution().toString(), "2.1.0");
+        Assert.assertEquals(loads.get(), 2);
+
+        cache.invalidate(source);
+        Assert.assertNotSame(cache.get(source, this::load), second);
+        Assert.assertEquals(loads.get(), 3);
+    }
+
+    /**
+     * Tests that a failure is not cached.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testFailure() throws Exception {
+        final DefinitionCache cache = new DefinitionCache();
+
+        try {
+            cache.get(source, discard -> {
+                throw new MojoExecutionException("Failed.");
+            });
+
+            Assert.fail("Loading should have failed.");
+        } catch (MojoExecutionException e) {
+            // Expected
+        }
+
+        Assert.assertNotNull(cache.get(source, this::load));
+        Assert.assertEquals(loads.get(), 1);
+    }
+
+    /**
+     * Tests that concurrent requests load the file just once.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testConcurrency() throws Exception {
+        final DefinitionCache cache = new DefinitionCache();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            final List<Future<ResolvedBundle>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(executor.submit(() -> cache.get(source, discard -> {
+                    LockSupport.parkNanos(50_000_000L); // Make the others wait
+                    return load(discard);
+                })));
+            }
+
+            final ResolvedBundle expected = results.get(0).get();
+            for (Future<ResolvedBundle> result : results) {
+                Assert.assertSame(result.get(), expected);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(loads.get(), 1);
+    }
+
+    /**
+     * Tests that a discarded result is not shared, not even with the callers
+     * waiting for it.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testDiscarded() throws Exception {
+        final DefinitionCache cache = new DefinitionCache();
+        final ResolvedBundle first = cache.get(source, discard -> {
+            discard.run();
+            return load(discard);
+        });
+
+        Assert.assertNotSame(cache.get(source, this::load), first);
+        Assert.assertEquals(loads.get(), 2);
+
+        // The callers waiting for a discarded result load on their own
+        cache.invalidate(source);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<ResolvedBundle>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get(source, discard -> {
+                    LockSupport.parkNanos(50_000_000L); // Make the others wait
+                    discard.run();
+                    return load(discard);
+                })));
+            }
+
+            for (Future<ResolvedBundle> result : results) {
+                Assert.assertNotNull(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(loads.get(), 10);
+    }
+
+    /**
+     * Loads the definition file.
+     *
+     * @param discard
+     *            the callback for discarding the result, which is not used
+     *
+     * @return the resolved definition
+     *
+     * @throws MojoExecutionException
+     *             if loading failed
+     */
+    private ResolvedBundle load(Runnable discard) throws MojoExecutionException {
+        loads.incrementAndGet();
+
+        try {
+            final PetFormat definition = PetFormat.read(source, Feedback.none()).result().get();
+            return new VersionResolver(definition).snapshot();
+        } catch (Exception e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+}
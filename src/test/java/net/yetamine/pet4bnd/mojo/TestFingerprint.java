@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.mojo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link Fingerprint}.
+ */
+public final class TestFingerprint {
+
+    /** Temporary directory for the test files. */
+    private Path directory;
+    /** Path to the source. */
+    private Path source;
+    /** Path to the output. */
+    private Path output;
+    /** Path to the fingerprint. */
+    private Path fingerprint;
+
+    /**
+     * Prepares the test files.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @BeforeMethod
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("pet4bnd-test-");
+        source = Files.write(directory.resolve("exports.pet"), Collections.singletonList("$bundle: 1.0.0"));
+        output = Files.write(directory.resolve("exports.bnd"), Collections.singletonList("# Output"));
+        fingerprint = directory.resolve("pet4bnd").resolve("generate.fingerprint");
+    }
+
+    /**
+     * Removes the test files.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @AfterMethod
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(fingerprint);
+        Files.deleteIfExists(fingerprint.getParent());
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(output);
+        Files.delete(directory);
+    }
+
+    /**
+     * Tests that a stored fingerprint matches as long as nothing changes.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testMatches() throws Exception {
+        final List<Object> parameters = Arrays.asList("generate", Boolean.TRUE);
+        Assert.assertFalse(make(parameters).matches());
+
+        make(parameters).store();
+        Assert.assertTrue(make(parameters).matches());
+        Assert.assertFalse(make(Arrays.asList("generate", Boolean.FALSE)).matches());
+        Assert.assertFalse(make(Arrays.asList("generate", null, Boolean.TRUE)).matches());
+
+        // Change the output
+        Files.write(output, Collections.singletonList("# Changed"));
+        Assert.assertFalse(make(parameters).matches());
+        make(parameters).store();
+        Assert.assertTrue(make(parameters).matches());
+
+        // Remove the output
+        Files.delete(output);
+        Assert.assertFalse(make(parameters).matches());
+        Files.write(output, Collections.singletonList("# Changed"));
+        Assert.assertTrue(make(parameters).matches());
+
+        // Change the source
+        Files.write(source, Collections.singletonList("$bundle: 1.0.1"));
+        Assert.assertFalse(make(parameters).matches());
+    }
+
+    /**
+     * Makes a fingerprint.
+     *
+     * @param parameters
+     *            the parameters. It must not be {@code null}.
+     *
+     * @return the fingerprint
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    private Fingerprint make(List<?> parameters) throws Exception {
+        return new Fingerprint(fingerprint, source, output, parameters);
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.mojo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.format.Format2Bnd;
+import net.yetamine.pet4bnd.format.Format2Map;
+import net.yetamine.pet4bnd.model.VersionResolver;
+import net.yetamine.pet4bnd.model.format.PetFormat;
+import net.yetamine.pet4bnd.pom.PomVersionEditor;
+
+/**
+ * Tests that the goals can run concurrently as in a parallel build, sharing
+ * the definition files and the output files.
+ */
+public final class TestMojoConcurrency {
+
+    /** Number of definition files. */
+    private static final int SOURCES = 3;
+    /** Number of executions of each goal per definition file and round. */
+    private static final int EXECUTIONS = 8;
+    /** Number of rounds. */
+    private static final int ROUNDS = 3;
+
+    /** Log that discards everything. */
+    static final Log SILENT_LOG = (Log) Proxy.newProxyInstance( // @formatter:break
+            Log.class.getClassLoader(),
+            new Class<?>[] { Log.class },
+            (proxy, method, args) -> (method.getReturnType() == boolean.class) ? Boolean.FALSE : null);
+
+    /** Temporary directory. */
+    private Path directory;
+
+    /**
+     * Creates the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pet4bnd-");
+    }
+
+    /**
+     * Removes the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Tests that concurrent executions produce the same outputs as a single
+     * execution would.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testParallelExecutions() throws Exception {
+        final Object session = new Object();
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < SOURCES; i++) {
+            final Path source = Files.write(directory.resolve("exports-" + i + ".pet"), definition(i), StandardCharsets.UTF_8);
+            final Path pom = Files.write(directory.resolve("pom-" + i + ".xml"), pom(), StandardCharsets.UTF_8);
+            final Path cache = directory.resolve("target-" + i).resolve("exports.petc");
+
+            for (int j = 0; j < EXECUTIONS; j++) {
+                final GenerateMojo generate = configure(new GenerateMojo(), session, source, cache);
+                set(generate, "output", directory.resolve("exports-" + i + ".bnd").toString());
+                set(generate, "bundleVersion", "release");
+                set(generate, "verbose", false);
+                tasks.add(task(generate));
+
+                final ExportMojo export = configure(new ExportMojo(), session, source, cache);
+                set(export, "export", directory.resolve("exports-" + i + ".properties").toString());
+                set(export, "verbose", false);
+                tasks.add(task(export));
+
+                final ReleaseMojo release = configure(new ReleaseMojo(), session, source, cache);
+                set(release, "pom", pom.toFile());
+                tasks.add(task(release));
+            }
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                Collections.shuffle(tasks);
+                for (Future<Void> future : executor.invokeAll(tasks)) {
+                    future.get(); // Fail on any exception
+                }
+
+                for (int i = 0; i < SOURCES; i++) {
+                    verify(i);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Verifies the outputs for the given definition file.
+     *
+     * @param index
+     *            the index of the definition file
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    private void verify(int index) throws Exception {
+        final PetFormat definition = PetFormat.read(directory.resolve("exports-" + index + ".pet"), Feedback.none()).result().get();
+        new VersionResolver(definition).resolve();
+
+        final ByteArrayOutputStream bnd = new ByteArrayOutputStream();
+        new Format2Bnd(definition, true).timestamp(null).persist(bnd);
+        Assert.assertEquals(Files.readAllBytes(directory.resolve("exports-" + index + ".bnd")), bnd.toByteArray());
+
+        final ByteArrayOutputStream properties = new ByteArrayOutputStream();
+        new Format2Map(definition).timestamp(null).persist(properties);
+        Assert.assertEquals(Files.readAllBytes(directory.resolve("exports-" + index + ".properties")), properties.toByteArray());
+
+        final PomVersionEditor pom = new PomVersionEditor(directory.resolve("pom-" + index + ".xml"));
+        Assert.assertEquals(pom.version(), definition.version().resolution().toString());
+    }
+
+    /**
+     * Makes a task executing the given Mojo.
+     *
+     * @param mojo
+     *            the Mojo to execute. It must not be {@code null}.
+     *
+     * @return the task
+     */
+    private static Callable<Void> task(AbstractMojo mojo) {
+        return () -> {
+            mojo.execute();
+            return null;
+        };
+    }
+
+    /**
+     * Configures the common parameters of a Mojo.
+     *
+     * @param <T>
+     *            the type of the Mojo
+     * @param mojo
+     *            the Mojo to configure. It must not be {@code null}.
+     * @param session
+     *            the build session. It must not be {@code null}.
+     * @param source
+     *            the definition file. It must not be {@code null}.
+     * @param cache
+     *            the definition snapshot. It must not be {@code null}.
+     *
+     * @return the Mojo
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    private <T extends AbstractPet4BndMojo> T configure(T mojo, Object session, Path source, Path cache) throws Exception {
+        final MavenProject project = new MavenProject();
+        project.setVersion("1.0.0");
+
+        mojo.setLog(SILENT_LOG);
+        set(mojo, "project", project);
+        set(mojo, "session", session);
+        set(mojo, "source", source.toString());
+        set(mojo, "cache", cache.toString());
+        set(mojo, "fingerprints", directory.resolve("fingerprints").toString());
+        set(mojo, "deterministic", true);
+        return mojo;
+    }
+
+    /**
+     * Sets a field of a Mojo as the injection does.
+     *
+     * @param mojo
+     *            the Mojo. It must not be {@code null}.
+     * @param name
+     *            the name of the field. It must not be {@code null}.
+     * @param value
+     *            the value to set
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    static void set(Object mojo, String name, Object value) throws Exception {
+        for (Class<?> clazz = mojo.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+            try {
+                final Field field = clazz.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(mojo, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                // Try the superclass
+            }
+        }
+
+        throw new NoSuchFieldException(name);
+    }
+
+    /**
+     * Makes the lines of a definition file.
+     *
+     * @param index
+     *            the index of the definition
+     *
+     * @return the lines
+     */
+    private static List<String> definition(int index) {
+        final List<String> result = new ArrayList<>();
+        result.add("$bundle: " + (index + 1) + ".0.0");
+        result.add("$api: 1." + index + ".0 @ minor");
+        for (int i = 0; i < 200; i++) {
+            result.add("org.example.p" + index + ".e" + i + ": " + ((i % 2 == 0) ? "$api" : "2.0." + i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Makes the lines of a POM.
+     *
+     * @return the lines
+     */
+    private static List<String> pom() {
+        return Arrays.asList(
+                // @formatter:off
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+                "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">",
+                "  <modelVersion>4.0.0</modelVersion>",
+                "  <groupId>org.example</groupId>",
+                "  <artifactId>example</artifactId>",
+                "  <version>0.0.1-SNAPSHOT</version>",
+                "</project>"
+                // @formatter:on
+        );
+    }
+}
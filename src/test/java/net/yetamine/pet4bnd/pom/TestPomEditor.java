@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.pom;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.support.Resource;
+
+/**
+ * Tests {@link PomEditor}.
+ */
+public final class TestPomEditor {
+
+    /** Sample POM. */
+    private static final String POM = String.join("\n",
+            // @formatter:off
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+            "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">",
+            "  <parent>",
+            "    <groupId>org.example</groupId>",
+            "    <artifactId>parent</artifactId>",
+            "    <version>1.0.0</version>",
+            "  </parent>",
+            "  <artifactId>module</artifactId>",
+            "  <version>2.0.0</version>",
+            "  <dependencyManagement>",
+            "    <dependencies>",
+            "      <dependency>",
+            "        <groupId>org.example</groupId>",
+            "        <artifactId>managed</artifactId>",
+            "        <version> 3.0.0 </version>",
+            "      </dependency>",
+            "    </dependencies>",
+            "  </dependencyManagement>",
+            "  <dependencies>",
+            "    <dependency>",
+            "      <groupId>org.example</groupId>",
+            "      <artifactId>managed</artifactId>",
+            "    </dependency>",
+            "    <dependency>",
+            "      <groupId>org.example</groupId>",
+            "      <artifactId>other</artifactId>",
+            "      <version>${project.version}</version>",
+            "    </dependency>",
+            "  </dependencies>",
+            "</project>",
+            ""
+            // @formatter:on
+    );
+
+    /**
+     * Tests finding the coordinates and references.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testReferences() throws Exception {
+        final PomEditor editor = editor(POM);
+        Assert.assertEquals(editor.groupId().get(), "org.example");
+        Assert.assertEquals(editor.artifactId(), "module");
+        Assert.assertEquals(editor.version().get(), "2.0.0");
+        Assert.assertTrue(editor.hasVersion());
+
+        final PomEditor.Reference parent = editor.parent().get();
+        Assert.assertEquals(parent.artifactId().get(), "parent");
+        Assert.assertEquals(parent.version().get(), "1.0.0");
+
+        final List<PomEditor.Reference> dependencies = editor.dependencies();
+        Assert.assertEquals(dependencies.size(), 3);
+        Assert.assertEquals(dependencies.get(0).version().get(), "3.0.0");
+        Assert.assertFalse(dependencies.get(1).version().isPresent());
+        Assert.assertEquals(dependencies.get(2).version().get(), "${project.version}");
+    }
+
+    /**
+     * Tests editing the versions.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testEdit() throws Exception {
+        final PomEditor editor = editor(POM);
+        Assert.assertFalse(editor.modified());
+        editor.version("2.0.0");
+        Assert.assertFalse(editor.modified());
+
+        editor.version("2.1.0\u00E9");
+        editor.version(editor.parent().get(), "1.1.0");
+        editor.version(editor.dependencies().get(0), "3.1.0");
+        Assert.assertTrue(editor.modified());
+
+        final String expected = POM
+                .replace("<version>1.0.0</version>", "<version>1.1.0</version>")
+                .replace("<version>2.0.0</version>", "<version>2.1.0\u00E9</version>")
+                .replace("<version> 3.0.0 </version>", "<version>3.1.0</version>");
+
+        Assert.assertEquals(new String(editor.toBytes(), StandardCharsets.UTF_8), expected);
+
+        try {
+            editor.version(editor.dependencies().get(1), "1.0.0");
+            Assert.fail("Missing version edited.");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Tests that malformed input is rejected rather than replaced, which would
+     * break the offsets of all references.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testMalformed() throws Exception {
+        // Latin-1 bytes in the file declared as UTF-8, placed before the dependencies
+        final String pom = POM.replace("<dependencyManagement>", "<name>Caf\u00E9</name><dependencyManagement>");
+        Assert.assertEquals(editor(pom).dependencies().size(), 3); // Valid when encoded properly
+
+        try {
+            new PomEditor(new ByteArrayInputStream(pom.getBytes(StandardCharsets.ISO_8859_1)));
+            Assert.fail("Malformed input not detected.");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("UTF-8"), e.getMessage());
+        }
+    }
+
+    /**
+     * Tests the same resources as {@link TestPomVersionEditor}.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testResources() throws Exception {
+        for (Object[] resource : TestPomVersionEditor.resources()) {
+            final PomEditor editor;
+            try (InputStream is = new Resource(resource[0] + ".xml").inputStream()) {
+                editor = new PomEditor(is);
+            }
+
+            Assert.assertEquals(editor.version().get(), resource[1]);
+            editor.version((String) resource[2]);
+            Assert.assertEquals(editor.toBytes(), new Resource(resource[0] + ".xml+change").toBytes(), (String) resource[0]);
+        }
+    }
+
+    /**
+     * Makes an editor for the given content.
+     *
+     * @param content
+     *            the content. It must not be {@code null}.
+     *
+     * @return the editor
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    private static PomEditor editor(String content) throws Exception {
+        return new PomEditor(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.pom;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.support.PathLocks;
+
+/**
+ * Tests {@link PomUpdate}.
+ */
+public final class TestPomUpdate {
+
+    /** Temporary directory. */
+    private Path directory;
+    /** Root POM. */
+    private Path root;
+    /** POM of the module <i>a</i>. */
+    private Path moduleA;
+    /** POM of the module <i>b</i>. */
+    private Path moduleB;
+
+    /**
+     * Creates the temporary directory with a sample project.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pet4bnd-");
+
+        root = write(directory.resolve("pom.xml"),
+                // @formatter:off
+                "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">",
+                "  <groupId>org.example</groupId>",
+                "  <artifactId>root</artifactId>",
+                "  <version>1.0.0-SNAPSHOT</version>",
+                "  <dependencyManagement>",
+                "    <dependencies>",
+                "      <dependency>",
+                "        <groupId>org.example</groupId>",
+                "        <artifactId>a</artifactId>",
+                "        <version>1.0.0-SNAPSHOT</version>",
+                "      </dependency>",
+                "    </dependencies>",
+                "  </dependencyManagement>",
+                "</project>"
+                // @formatter:on
+        );
+
+        moduleA = write(directory.resolve("a/pom.xml"),
+                // @formatter:off
+                "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">",
+                "  <parent>",
+                "    <groupId>org.example</groupId>",
+                "    <artifactId>root</artifactId>",
+                "    <version>1.0.0-SNAPSHOT</version>",
+                "  </parent>",
+                "  <artifactId>a</artifactId>",
+                "  <version>1.0.0-SNAPSHOT</version>",
+                "</project>"
+                // @formatter:on
+        );
+
+        write(directory.resolve("a/exports.pet"), "$bundle: 1.2.0");
+
+        moduleB = write(directory.resolve("b/pom.xml"),
+                // @formatter:off
+                "<project>",
+                "  <groupId>org.example</groupId>",
+                "  <artifactId>b</artifactId>",
+                "  <version>3.0.0-SNAPSHOT</version>",
+                "  <dependencies>",
+                "    <dependency>",
+                "      <groupId>org.example</groupId>",
+                "      <artifactId>a</artifactId>",
+                "      <version>1.0.0-SNAPSHOT</version>",
+                "    </dependency>",
+                "    <dependency>",
+                "      <groupId>org.example</groupId>",
+                "      <artifactId>x</artifactId>",
+                "      <version>1.0.0-SNAPSHOT</version>",
+                "    </dependency>",
+                "    <dependency>",
+                "      <groupId>org.example</groupId>",
+                "      <artifactId>a</artifactId>",
+                "      <version>${project.version}</version>",
+                "    </dependency>",
+                "  </dependencies>",
+                "</project>"
+                // @formatter:on
+        );
+
+        write(directory.resolve("b/exports.pet"), "$bundle: 3.0.0");
+
+        // A copy in the build output must be ignored
+        write(directory.resolve("a/target/classes/pom.xml"), new String(Files.readAllBytes(moduleA), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Removes the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Tests discovering the modules.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testDiscover() throws Exception {
+        final Map<Path, Optional<Path>> modules = PomUpdate.discover(directory);
+        Assert.assertEquals(modules.size(), 3);
+        Assert.assertEquals(modules.get(root), Optional.empty());
+        Assert.assertEquals(modules.get(moduleA), Optional.of(moduleA.resolveSibling("exports.pet")));
+        Assert.assertEquals(modules.get(moduleB), Optional.of(moduleB.resolveSibling("exports.pet")));
+    }
+
+    /**
+     * Tests updating to the release versions.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testRelease() throws Exception {
+        final String rootContent = read(root);
+        final String moduleContent = read(moduleB);
+
+        final PomUpdate update = PomUpdate.prepare(PomUpdate.discover(directory), false, Feedback.none());
+        Assert.assertEquals(update.versions().get(moduleA), "1.2.0");
+        Assert.assertEquals(update.versions().get(moduleB), "3.0.0");
+        Assert.assertFalse(update.versions().containsKey(root));
+        Assert.assertEquals(update.changes().size(), 3);
+        // Nothing written yet
+        Assert.assertEquals(read(root), rootContent);
+
+        update.commit();
+
+        Assert.assertEquals(read(root), rootContent.replace("1.0.0-SNAPSHOT</version>\n      </dependency>", "1.2.0</version>\n      </dependency>"));
+        Assert.assertEquals(new PomEditor(moduleA).version().get(), "1.2.0");
+        Assert.assertEquals(new PomEditor(moduleA).parent().get().version().get(), "1.0.0-SNAPSHOT");
+
+        final String expected = moduleContent // Only the own version and the reference to 'a'
+                .replace("<version>3.0.0-SNAPSHOT</version>", "<version>3.0.0</version>")
+                .replaceFirst("<version>1\\.0\\.0-SNAPSHOT</version>", "<version>1.2.0</version>");
+
+        Assert.assertEquals(read(moduleB), expected);
+        assertNoTemporaryFiles();
+    }
+
+    /**
+     * Tests updating to the snapshot versions.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testSnapshot() throws Exception {
+        PomUpdate.prepare(PomUpdate.discover(directory), true, Feedback.none()).commit();
+
+        final PomEditor editor = new PomEditor(moduleB);
+        Assert.assertEquals(editor.version().get(), "4.0.0-SNAPSHOT");
+        Assert.assertEquals(editor.dependencies().get(0).version().get(), "2.0.0-SNAPSHOT");
+        Assert.assertEquals(editor.dependencies().get(1).version().get(), "1.0.0-SNAPSHOT");
+        Assert.assertEquals(editor.dependencies().get(2).version().get(), "${project.version}");
+        Assert.assertEquals(new PomEditor(moduleA).version().get(), "2.0.0-SNAPSHOT");
+        assertNoTemporaryFiles();
+    }
+
+    /**
+     * Tests that an invalid definition prevents any change.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testInvalidDefinition() throws Exception {
+        write(moduleB.resolveSibling("exports.pet"), "$bundle: invalid");
+        final String content = read(moduleA);
+
+        try {
+            PomUpdate.prepare(PomUpdate.discover(directory), false, Feedback.none());
+            Assert.fail("Invalid definition accepted.");
+        } catch (IOException e) {
+            Assert.assertEquals(read(moduleA), content);
+        }
+    }
+
+    /**
+     * Tests that a failing commit leaves the original files.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testCommitFailure() throws Exception {
+        final String rootContent = read(root);
+        final String moduleContent = read(moduleA);
+        final PomUpdate update = PomUpdate.prepare(PomUpdate.discover(directory), false, Feedback.none());
+
+        // Make the module 'b' impossible to write
+        Files.delete(moduleB.resolveSibling("exports.pet"));
+        Files.delete(moduleB);
+        Files.delete(moduleB.getParent());
+
+        try {
+            update.commit();
+            Assert.fail("Commit succeeded.");
+        } catch (IOException e) {
+            Assert.assertEquals(read(root), rootContent);
+            Assert.assertEquals(read(moduleA), moduleContent);
+            assertNoTemporaryFiles();
+        }
+    }
+
+    /**
+     * Tests that committing fails when a POM changed after preparing.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testConcurrentChange() throws Exception {
+        final String rootContent = read(root);
+        final PomUpdate update = PomUpdate.prepare(PomUpdate.discover(directory), false, Feedback.none());
+
+        final String moduleContent = read(moduleA).replace("<artifactId>a</artifactId>", "<artifactId>a</artifactId><!-- Edited -->");
+        Files.write(moduleA, moduleContent.getBytes(StandardCharsets.UTF_8));
+
+        try {
+            update.commit();
+            Assert.fail("Commit succeeded.");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("changed meanwhile"), e.getMessage());
+            Assert.assertEquals(read(root), rootContent);
+            Assert.assertEquals(read(moduleA), moduleContent);
+            assertNoTemporaryFiles();
+        }
+    }
+
+    /**
+     * Tests that committing waits for the locks of the POMs.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testLocked() throws Exception {
+        final String rootContent = read(root);
+        final PomUpdate update = PomUpdate.prepare(PomUpdate.discover(directory), false, Feedback.none());
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            final Future<?> commit;
+            final PathLocks.Hold hold = PathLocks.writing(Arrays.asList(moduleB));
+            try {
+                commit = executor.submit(() -> {
+                    update.commit();
+                    return null;
+                });
+
+                Thread.sleep(200);
+                Assert.assertFalse(commit.isDone());
+                Assert.assertEquals(read(root), rootContent);
+            } finally {
+                hold.close();
+            }
+
+            commit.get(10, TimeUnit.SECONDS);
+            Assert.assertNotEquals(read(root), rootContent);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Asserts that no temporary files remain.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    private void assertNoTemporaryFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            Assert.assertEquals(paths.filter(path -> path.toString().endsWith(".tmp")).collect(Collectors.toList()), Arrays.asList());
+        }
+    }
+
+    /**
+     * Reads a file.
+     *
+     * @param path
+     *            the file to read. It must not be {@code null}.
+     *
+     * @return the content of the file
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a file, creating the parent directories as necessary.
+     *
+     * @param path
+     *            the file to write. It must not be {@code null}.
+     * @param lines
+     *            the lines to write. It must not be {@code null}.
+     *
+     * @return the file
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    private static Path write(Path path, String... lines) throws IOException {
+        Files.createDirectories(path.getParent());
+        return Files.write(path, (String.join("\n", lines) + '\n').getBytes(StandardCharsets.UTF_8));
+    }
+}
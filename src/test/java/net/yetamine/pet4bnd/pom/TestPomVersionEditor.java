@@ -14,9 +14,10 @@
  * limitations under the License.
  */
 
-package net.yetamine.pet4bnd.mojo;
+package net.yetamine.pet4bnd.pom;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
@@ -64,6 +65,48 @@ public final class TestPomVersionEditor {
         Assert.assertEquals(result, expect);
     }
 
+    /**
+     * Tests a POM on a single line, where the parser reads ahead beyond the
+     * version element.
+     *
+     * @throws Exception
+     *             if something goes very wrong
+     */
+    @Test
+    public void testSingleLine() throws Exception {
+        final String pom = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\"><parent><version>1.0.0</version></parent>"
+                + "<artifactId>a</artifactId><version>1.0.0-SNAPSHOT</version></project>";
+
+        final PomVersionEditor editor = new PomVersionEditor(new ByteArrayInputStream(pom.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(editor.version(), "1.0.0-SNAPSHOT");
+        editor.version("1.0.0");
+        final String expect = pom.replace("1.0.0-SNAPSHOT", "1.0.0");
+        Assert.assertEquals(new String(editor.toBytes(), StandardCharsets.UTF_8), expect);
+    }
+
+    /**
+     * Tests that malformed input is rejected rather than replaced, which would
+     * break the offsets of the version in the original bytes.
+     *
+     * @throws Exception
+     *             if something goes very wrong
+     */
+    @Test
+    public void testMalformed() throws Exception {
+        final String pom = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\"><name>Caf\u00E9</name>"
+                + "<version>1.0.0-SNAPSHOT</version></project>";
+
+        // Latin-1 bytes in the file declared as UTF-8
+        final byte[] bytes = pom.getBytes(StandardCharsets.ISO_8859_1);
+        try {
+            new PomVersionEditor(new ByteArrayInputStream(bytes));
+            Assert.fail("Malformed input not detected.");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("UTF-8"), e.getMessage());
+        }
+    }
+
     @SuppressWarnings("javadoc")
     @DataProvider(name = "resources")
     public static Object[][] resources() throws IOException {
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.support;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link FileUpdate}.
+ */
+public final class TestFileUpdate {
+
+    /** Modification time for recognizing untouched files. */
+    private static final FileTime PAST = FileTime.fromMillis(1_000_000_000_000L);
+
+    /** Temporary directory. */
+    private Path directory;
+
+    /**
+     * Creates the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pet4bnd-");
+    }
+
+    /**
+     * Removes the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Tests updating a file.
+     *
+     * @param existing
+     *            the existing content, or {@code null} if the file is missing
+     * @param content
+     *            the new content. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test(dataProvider = "contents")
+    public void testUpdate(String existing, String content) throws IOException {
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        final Path path = directory.resolve("file.txt");
+        if (existing != null) {
+            Files.write(path, existing.getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(path, PAST);
+        }
+
+        final boolean changed = !content.equals(existing);
+        Assert.assertEquals(FileUpdate.update(path, sink -> sink.write(bytes)), changed);
+        Assert.assertEquals(Files.readAllBytes(path), bytes);
+        Assert.assertEquals(Files.getLastModifiedTime(path).equals(PAST), !changed);
+
+        // Write byte by byte and close the sink as the content may do
+        Files.setLastModifiedTime(path, PAST);
+        Assert.assertFalse(FileUpdate.update(path, sink -> {
+            for (byte b : bytes) {
+                sink.write(b);
+            }
+
+            sink.close();
+        }));
+
+        Assert.assertEquals(Files.getLastModifiedTime(path), PAST);
+        assertNoTemporaryFiles();
+    }
+
+    /**
+     * Tests that a failure leaves the file untouched.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test
+    public void testFailure() throws IOException {
+        final byte[] content = "content".getBytes(StandardCharsets.UTF_8);
+        final Path path = directory.resolve("file.txt");
+        Files.write(path, content);
+        Files.setLastModifiedTime(path, PAST);
+
+        try {
+            FileUpdate.update(path, sink -> {
+                sink.write("cont".getBytes(StandardCharsets.UTF_8));
+                sink.write("ENT and more".getBytes(StandardCharsets.UTF_8));
+                throw new IOException("Failed.");
+            });
+
+            Assert.fail("The update should have failed.");
+        } catch (IOException e) {
+            Assert.assertEquals(e.getMessage(), "Failed.");
+        }
+
+        Assert.assertEquals(Files.readAllBytes(path), content);
+        Assert.assertEquals(Files.getLastModifiedTime(path), PAST);
+        assertNoTemporaryFiles();
+    }
+
+    /**
+     * Tests updating a file larger than the comparison buffer.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test
+    public void testLarge() throws IOException {
+        final byte[] content = new byte[100_000];
+        new Random(1).nextBytes(content);
+        final Path path = directory.resolve("file.bin");
+        Files.write(path, content);
+        Files.setLastModifiedTime(path, PAST);
+
+        Assert.assertFalse(FileUpdate.update(path, sink -> {
+            for (int offset = 0; offset < content.length; offset += 999) {
+                sink.write(content, offset, Math.min(999, content.length - offset));
+            }
+        }));
+
+        Assert.assertEquals(Files.getLastModifiedTime(path), PAST);
+
+        final byte[] changed = Arrays.copyOf(content, content.length - 10);
+        changed[50_000] ^= 1;
+        Assert.assertTrue(FileUpdate.update(path, sink -> sink.write(changed)));
+        Assert.assertEquals(Files.readAllBytes(path), changed);
+        assertNoTemporaryFiles();
+    }
+
+    /**
+     * Asserts that no temporary files remain.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    private void assertNoTemporaryFiles() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            Assert.assertEquals(paths.filter(path -> path.toString().endsWith(".tmp")).collect(Collectors.toList()), Collections.emptyList());
+        }
+    }
+
+    @SuppressWarnings("javadoc")
+    @DataProvider(name = "contents")
+    public static Object[][] contents() {
+        return new Object[][] {
+            // @formatter:off
+            { null,         ""              },
+            { null,         "content"       },
+            { "",           ""              },
+            { "",           "content"       },
+            { "content",    ""              },
+            { "content",    "content"       },
+            { "content",    "contents"      },
+            { "contents",   "content"       },
+            { "content",    "CONTENT"       },
+            { "content",    "cont\u00E9nt"  },
+            // @formatter:on
+        };
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.support;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link PathLocks}.
+ */
+public final class TestPathLocks {
+
+    /**
+     * Tests that the readers share a lock and a writer excludes the others.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testExclusion() throws Exception {
+        final Path path = Paths.get("pet4bnd-test", "..", "pet4bnd-test-exclusion");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            final PathLocks.Hold reading = PathLocks.reading(path);
+            try {
+                executor.submit(() -> PathLocks.reading(path.toAbsolutePath()).close()).get(10, TimeUnit.SECONDS);
+
+                final Future<?> writer = executor.submit(() -> PathLocks.writing(Paths.get("pet4bnd-test-exclusion")).close());
+                Thread.sleep(200);
+                Assert.assertFalse(writer.isDone());
+                reading.close();
+                writer.get(10, TimeUnit.SECONDS);
+            } finally {
+                reading.close();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that unused locks are removed.
+     */
+    @Test
+    public void testRemoval() {
+        final int size = PathLocks.size();
+        final Path first = Paths.get("pet4bnd-test-first");
+        final Path second = Paths.get("pet4bnd-test-second");
+
+        final PathLocks.Hold both = PathLocks.locking(Collections.singleton(first), Arrays.asList(second, first));
+        try {
+            final PathLocks.Hold again = PathLocks.reading(second); // Reentrant for the writer
+            try {
+                Assert.assertEquals(PathLocks.size(), size + 2);
+            } finally {
+                again.close();
+            }
+
+            Assert.assertEquals(PathLocks.size(), size + 2);
+        } finally {
+            both.close();
+        }
+
+        Assert.assertEquals(PathLocks.size(), size);
+    }
+}
@@ -16,6 +16,11 @@
 
 package net.yetamine.pet4bnd.version;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -157,7 +162,12 @@ public final class TestVersion {
             { new Version(3, 0, 0),                     "3"                         },
             { new Version(3, 2, 0, null),               "3.2"                       },
             { new Version(3, 2, 0, "qualifier"),        "3.2.qualifier"             },
-            { new Version(3, 0, 0, "q-W@2016/03/31.1"), "3.q-W@2016/03/31.1"        }
+            { new Version(3, 0, 0, "q-W@2016/03/31.1"), "3.q-W@2016/03/31.1"        },
+            { new Version(1, 0, 0, ".2"),               "1..2"                      },
+            { new Version(1, 0, 0, "2x"),               "1.2x"                      },
+            { new Version(1, 0, 0, "2."),               "1.2."                      },
+            { new Version(1, 2, 0, "3."),               "1.2.3."                    },
+            { new Version(1, 2, 0, "3x.4"),             "1.2.3x.4"                  }
             // @formatter:on
         };
     }
@@ -176,7 +186,7 @@ public final class TestVersion {
     @SuppressWarnings("javadoc")
     @DataProvider(name = "parsingFailure")
     public static Object[][] parsingFailure() {
-        return new Object[][] { { "a" }, { "a.q" }, { "0.q q" }, { "0. q" }, { "0.q " } };
+        return new Object[][] { { "a" }, { "a.q" }, { "0.q q" }, { "0. q" }, { "0.q " }, { "" }, { "1." }, { "1.99999999999" } };
     }
 
     /**
@@ -217,11 +227,85 @@ public final class TestVersion {
             { new Version(1, 0, 0),                     new Version(1, 0, 1),           -1 },
             { new Version(1, 0, 0),                     new Version(1, 1, 0),           -1 },
             { new Version(1, 0, 0),                     new Version(2, 0, 0),           -1 },
-            { new Version(3, 2, 0),                     new Version(3, 2, 1),           -1 }
+            { new Version(3, 2, 0),                     new Version(3, 2, 1),           -1 },
+            { new Version(1, 2097152, 0),               new Version(2, 0, 0),           -1 },
+            { new Version(1, 2097152, 0),               new Version(1, 2097151, 9),     1  },
+            { new Version(1, 0, Integer.MAX_VALUE),     new Version(1, 0, 2097151),     1  },
+            { new Version(Integer.MAX_VALUE, 0, 0),     new Version(Integer.MAX_VALUE, 0, 0), 0 },
+            { new Version(Integer.MAX_VALUE, 0, 0, "a"), new Version(Integer.MAX_VALUE, 0, 0, "b"), -1 }
             // @formatter:on
         };
     }
 
+    /**
+     * Tests that the factory methods share the instances and that derived
+     * instances remain the same if nothing changes.
+     */
+    @Test
+    public void testCanonical() {
+        Assert.assertSame(Version.of(0, 0, 0), Version.ZERO);
+        Assert.assertSame(Version.of(1, 2, 3, "q"), Version.of(1, 2, 3, "q"));
+        Assert.assertSame(Version.valueOf("1.2.3"), Version.of(1, 2, 3));
+        Assert.assertEquals(Version.of(1, 2, 3), new Version(1, 2, 3));
+
+        final Version version = Version.of(1, 2, 3, "q");
+        Assert.assertSame(version.major(1).minor(2).micro(3).qualifier("q"), version);
+        Assert.assertSame(version.toString(), version.toString());
+        Assert.assertSame(VersionVariance.MINOR.apply(version), Version.of(1, 3, 0, "q"));
+    }
+
+    /**
+     * Tests the packed form of versions.
+     */
+    @Test
+    public void testPacked() {
+        final Version[] versions = { Version.ZERO, Version.of(1, 2, 3), Version.of(2097151, 2097151, 2097151) };
+        for (int i = 0; i < versions.length; i++) {
+            final long packed = versions[i].packed();
+            Assert.assertTrue(packed >= 0);
+            Assert.assertSame(Version.unpack(packed), Version.unpack(packed));
+            Assert.assertEquals(Version.unpack(packed), versions[i]);
+            if (i > 0) { // The packed form must preserve the ordering
+                Assert.assertTrue(versions[i - 1].packed() < packed);
+            }
+        }
+
+        Assert.assertTrue(Version.of(1, 2, 3, "q").packed() < 0);
+        Assert.assertTrue(Version.of(2097152, 0, 0).packed() < 0);
+        Assert.assertTrue(Version.of(0, 0, 2097152).packed() < 0);
+    }
+
+    /**
+     * Tests that unpacking a negative value fails.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnpackFailure() {
+        Version.unpack(-1L);
+    }
+
+    /**
+     * Tests that deserialization restores a fully working instance.
+     *
+     * @throws Exception
+     *             if something goes wrong
+     */
+    @Test
+    public void testSerialization() throws Exception {
+        final Version version = new Version(1, 2, 3, "q");
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(version);
+        }
+
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final Version result = (Version) input.readObject();
+            Assert.assertEquals(result, version);
+            Assert.assertEquals(result.hashCode(), version.hashCode());
+            Assert.assertEquals(result.compareTo(new Version(1, 2, 4)), -1);
+            Assert.assertEquals(result.toString(), "1.2.3.q");
+        }
+    }
+
     /**
      * Computes signum of an integer value.
      *
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 Yetamine
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.yetamine.pet4bnd.workspace;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.yetamine.pet4bnd.feedback.Feedback;
+import net.yetamine.pet4bnd.version.Version;
+
+/**
+ * Tests {@link Workspace}.
+ */
+public final class TestWorkspace {
+
+    /** Temporary directory for the test. */
+    private Path directory;
+
+    /**
+     * Makes the temporary directory with the definitions.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pet4bnd-");
+        write("valid", "$bundle: 1.0.0", "org.example.api: 1.2.0 @ minor");
+        write("violated", "$bundle: 1.0.0 < 1.1.0", "org.example.impl: 1.0.0 @ minor");
+        write("malformed", "$bundle: 1.0.0", "org.example.spi: junk");
+        write("nested/module", "$bundle: 2.0.0", "$api: 1.0.0", "org.example.nested: $api @ major");
+        write(".hidden", "$bundle: 1.0.0");
+        Files.write(directory.resolve("valid").resolve("other.pet"), Arrays.asList("$bundle: 1.0.0"));
+    }
+
+    /**
+     * Removes the temporary directory.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Tests discovering the definitions.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test
+    public void testDiscover() throws IOException {
+        final List<Path> expected = Stream.of("malformed", "nested/module", "valid", "violated") // @formatter:break
+                .map(module -> directory.resolve(module).resolve(Workspace.DEFAULT_SOURCE_NAME))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(Workspace.discover(directory).sources(), expected);
+        Assert.assertEquals(Workspace.discover(directory, "other.pet").sources().size(), 1);
+    }
+
+    /**
+     * Tests resolving the definitions.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    @Test
+    public void testResolve() throws IOException {
+        final Workspace workspace = Workspace.discover(directory);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            final WorkspaceResolution resolution = workspace.resolve(pool);
+            final List<BundleResolution> bundles = resolution.bundles();
+            Assert.assertEquals(bundles.stream().map(BundleResolution::source).collect(Collectors.toList()), workspace.sources());
+            Assert.assertFalse(resolution.valid());
+            Assert.assertEquals(resolution.failures(), Arrays.asList(bundles.get(0), bundles.get(3)));
+
+            // malformed
+            Assert.assertFalse(bundles.get(0).bundle().isPresent());
+            Assert.assertFalse(bundles.get(0).errors().isEmpty());
+            // nested/module
+            Assert.assertTrue(bundles.get(1).valid());
+            Assert.assertEquals(version(bundles.get(1)), Version.valueOf("3.0.0"));
+            // valid
+            Assert.assertTrue(bundles.get(2).valid());
+            Assert.assertEquals(version(bundles.get(2)), Version.valueOf("1.1.0"));
+            // violated
+            Assert.assertTrue(bundles.get(3).bundle().isPresent());
+            Assert.assertEquals(bundles.get(3).errors().size(), 2);
+
+            final List<String> messages = new ArrayList<>();
+            resolution.report(new Feedback() {
+
+                public void fail(String message, Throwable t) {
+                    messages.add(message);
+                }
+
+                public void warn(String message, Throwable t) {
+                    messages.add(message);
+                }
+
+                public void info(String message) {
+                    messages.add(message);
+                }
+            });
+
+            Assert.assertEquals(messages.get(messages.size() - 1), "Resolved 4 definition(s), 2 failed.");
+            Assert.assertTrue(messages.get(0).startsWith(bundles.get(0).source().toString()));
+        } finally {
+            pool.shutdown();
+        }
+
+        // The common pool must yield the same results
+        final List<Boolean> valid = workspace.resolve().bundles().stream() // @formatter:break
+                .map(BundleResolution::valid)
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(valid, Arrays.asList(false, true, true, false));
+    }
+
+    /**
+     * Tests that a missing definition fails alone.
+     */
+    @Test
+    public void testMissing() {
+        final Path missing = directory.resolve("missing").resolve(Workspace.DEFAULT_SOURCE_NAME);
+        final Path valid = directory.resolve("valid").resolve(Workspace.DEFAULT_SOURCE_NAME);
+        final WorkspaceResolution resolution = new Workspace(Arrays.asList(missing, valid)).resolve();
+        Assert.assertFalse(resolution.bundles().get(0).valid());
+        Assert.assertEquals(resolution.bundles().get(0).errors().size(), 1);
+        Assert.assertTrue(resolution.bundles().get(1).valid());
+    }
+
+    /**
+     * Returns the resolved bundle version.
+     *
+     * @param resolution
+     *            the resolution of the bundle. It must not be {@code null}.
+     *
+     * @return the resolved bundle version
+     */
+    private static Version version(BundleResolution resolution) {
+        return resolution.bundle().get().version().resolution();
+    }
+
+    /**
+     * Writes a definition of a module.
+     *
+     * @param module
+     *            the relative path of the module. It must not be
+     *            {@code null}.
+     * @param lines
+     *            the lines of the definition. It must not be {@code null}.
+     *
+     * @throws IOException
+     *             if something goes wrong
+     */
+    private void write(String module, String... lines) throws IOException {
+        final Path path = directory.resolve(module).resolve(Workspace.DEFAULT_SOURCE_NAME);
+        Files.createDirectories(path.getParent());
+        Files.write(path, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}